@@ -0,0 +1,266 @@
+package progettofinale.Config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository delle sessioni che scrive in gruppo gli accessi alle sessioni salvate da Spring Session JDBC.
+ * Ogni richiesta aggiorna l'ultimo accesso della sessione, ma nella maggior parte delle richieste
+ * gli attributi non cambiano: in quel caso la sessione non viene salvata subito, l'accesso viene messo
+ * in attesa (uno per sessione, il più recente) e un thread li scrive tutti insieme ogni flushIntervalMs,
+ * in un'unica transazione con un batch JDBC.
+ * Le sessioni nuove e quelle con attributi, ID o durata modificati vengono invece salvate subito dal repository
+ * JDBC, prima della risposta: così un login è già salvato quando arriva la richiesta successiva.
+ */
+public class BatchingSessionRepository implements FindByIndexNameSessionRepository<Session> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingSessionRepository.class);
+
+    static final int BATCH_SIZE = 500; // Accessi scritti per batch JDBC
+
+    // Non riporta indietro l'ultimo accesso se un salvataggio completo ne ha già scritto uno più recente
+    static final String UPDATE_ACCESS_SQL = "UPDATE " + JdbcIndexedSessionRepository.DEFAULT_TABLE_NAME
+            + " SET LAST_ACCESS_TIME = ?, EXPIRY_TIME = ? WHERE SESSION_ID = ? AND LAST_ACCESS_TIME < ?";
+
+    private final FindByIndexNameSessionRepository<Session> delegate; // Repository JDBC delle sessioni
+    private final JdbcOperations jdbcOperations;
+    private final TransactionOperations transactionOperations;
+    private final long flushIntervalMs; // Intervallo tra due scritture degli accessi in attesa
+    private final Map<String, PendingAccess> pendingAccesses = new ConcurrentHashMap<>(); // Accessi per ID di sessione
+
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Crea il repository.
+     *
+     * @param delegate                 Il repository JDBC che salva e legge le sessioni.
+     * @param jdbcOperations           Per scrivere gli accessi in attesa.
+     * @param transactionOperations    Transazione in cui scrivere ogni gruppo di accessi.
+     * @param flushIntervalMs          Intervallo, in millisecondi, tra due scritture degli accessi in attesa.
+     */
+    public BatchingSessionRepository(FindByIndexNameSessionRepository<Session> delegate, JdbcOperations jdbcOperations,
+                                     TransactionOperations transactionOperations, long flushIntervalMs) {
+        this.delegate = delegate;
+        this.jdbcOperations = jdbcOperations;
+        this.transactionOperations = transactionOperations;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Avvia il thread che scrive periodicamente gli accessi in attesa.
+     */
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-access-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ferma il thread di scrittura e scrive gli accessi rimasti in attesa.
+     *
+     * @throws InterruptedException   Se l'attesa del thread viene interrotta.
+     */
+    public void stop() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        flush();
+    }
+
+    @Override
+    public Session createSession() {
+        return new TrackedSession(delegate.createSession(), true);
+    }
+
+    /**
+     * Salva la sessione subito se è nuova o modificata, altrimenti mette in attesa il solo ultimo accesso.
+     *
+     * @param session     La sessione creata o letta da questo repository.
+     */
+    @Override
+    public void save(Session session) {
+        TrackedSession tracked = (TrackedSession) session;
+        if (tracked.isNew || tracked.changed) {
+            pendingAccesses.remove(tracked.getId());
+            delegate.save(tracked.session);
+            tracked.isNew = false;
+            tracked.changed = false;
+        } else {
+            pendingAccesses.put(tracked.getId(),
+                    new PendingAccess(tracked.getLastAccessedTime(), tracked.getMaxInactiveInterval()));
+        }
+    }
+
+    @Override
+    public Session findById(String id) {
+        Session session = delegate.findById(id);
+        if (session == null) {
+            pendingAccesses.remove(id); // Sessione scaduta o eliminata
+            return null;
+        }
+        return new TrackedSession(session, false);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        pendingAccesses.remove(id);
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public Map<String, Session> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        Map<String, Session> sessions = new LinkedHashMap<>();
+        delegate.findByIndexNameAndIndexValue(indexName, indexValue)
+                .forEach((id, session) -> sessions.put(id, new TrackedSession(session, false)));
+        return sessions;
+    }
+
+    /**
+     * Scrive in un'unica transazione gli accessi in attesa, in batch JDBC di al massimo BATCH_SIZE aggiornamenti.
+     * Se la scrittura fallisce gli accessi tornano in attesa, salvo quelli già sostituiti da uno più recente.
+     */
+    void flush() {
+        if (pendingAccesses.isEmpty()) {
+            return;
+        }
+        Map<String, PendingAccess> accesses = new LinkedHashMap<>();
+        for (String id : pendingAccesses.keySet()) {
+            PendingAccess access = pendingAccesses.remove(id);
+            if (access != null) {
+                accesses.put(id, access);
+            }
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(accesses.size());
+        accesses.forEach((id, access) -> {
+            long lastAccessTime = access.lastAccessedTime.toEpochMilli();
+            batchArgs.add(new Object[] { lastAccessTime, access.expiryTime(), id, lastAccessTime });
+        });
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                for (int from = 0; from < batchArgs.size(); from += BATCH_SIZE) {
+                    jdbcOperations.batchUpdate(UPDATE_ACCESS_SQL,
+                            batchArgs.subList(from, Math.min(from + BATCH_SIZE, batchArgs.size())));
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Scrittura di {} accessi alle sessioni fallita, nuovo tentativo al prossimo intervallo",
+                    accesses.size(), e);
+            accesses.forEach(pendingAccesses::putIfAbsent);
+        }
+    }
+
+    // Numero di accessi in attesa di essere scritti
+    int pendingCount() {
+        return pendingAccesses.size();
+    }
+
+    // Ultimo accesso di una sessione non modificata, in attesa di essere scritto
+    private record PendingAccess(Instant lastAccessedTime, Duration maxInactiveInterval) {
+
+        // Scadenza calcolata come in JdbcIndexedSessionRepository: le sessioni senza durata massima non scadono
+        private long expiryTime() {
+            if (maxInactiveInterval.isNegative()) {
+                return Long.MAX_VALUE;
+            }
+            return lastAccessedTime.plus(maxInactiveInterval).toEpochMilli();
+        }
+    }
+
+    // Sessione del repository JDBC che ricorda se attributi, ID o durata sono stati modificati
+    private static final class TrackedSession implements Session {
+        private final Session session;
+        private boolean isNew; // Mai salvata
+        private boolean changed; // Modificata dopo l'ultimo salvataggio
+
+        private TrackedSession(Session session, boolean isNew) {
+            this.session = session;
+            this.isNew = isNew;
+        }
+
+        @Override
+        public String getId() {
+            return session.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            changed = true;
+            return session.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return session.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return session.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            changed = true;
+            session.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            changed = true;
+            session.removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return session.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            session.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return session.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            changed = true;
+            session.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return session.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return session.isExpired();
+        }
+    }
+}
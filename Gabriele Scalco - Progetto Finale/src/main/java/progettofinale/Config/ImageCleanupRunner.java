@@ -0,0 +1,32 @@
+package progettofinale.Config;
+
+import progettofinale.Service.ImageCleanupService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Strumento di pulizia dei file di ImageStore non più usati da nessuna bicicletta.
+ * Viene eseguito all'avvio solo se è impostata la proprietà `app.images.cleanup.enabled=true`,
+ * ad esempio con `java -jar progettofinale.jar --app.images.cleanup.enabled=true`.
+ * Se è attiva anche la migrazione delle immagini, la pulizia viene eseguita dopo.
+ */
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "app.images.cleanup.enabled", havingValue = "true")
+public class ImageCleanupRunner implements ApplicationRunner {
+
+    @Autowired
+    private ImageCleanupService imageCleanupService;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        imageCleanupService.deleteUnreferencedImages();
+    }
+}
@@ -0,0 +1,31 @@
+package progettofinale.Config;
+
+import progettofinale.Service.ImageMigrationService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Strumento di migrazione delle immagini dalle colonne LOB a ImageStore e di generazione
+ * delle versioni ridotte mancanti.
+ * Viene eseguito all'avvio solo se è impostata la proprietà `app.images.migrate-legacy=true`,
+ * ad esempio con `java -jar progettofinale.jar --app.images.migrate-legacy=true`.
+ */
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "app.images.migrate-legacy", havingValue = "true")
+public class ImageMigrationRunner implements ApplicationRunner {
+
+    @Autowired
+    private ImageMigrationService imageMigrationService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        imageMigrationService.migrateLegacyImages();
+        imageMigrationService.generateMissingRenditions();
+    }
+}
@@ -0,0 +1,38 @@
+package progettofinale.Config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configurazione dell'executor usato per generare le versioni ridotte delle immagini.
+ * L'elaborazione avviene fuori dal thread della richiesta, così il caricamento di una bici
+ * termina senza attendere il ridimensionamento.
+ */
+@Configuration
+public class ImageProcessingConfig {
+
+    /**
+     * Crea un executor limitato per l'elaborazione delle immagini.
+     * Il numero di thread e la coda sono fissi, per non saturare CPU e memoria con immagini grandi:
+     * quando la coda è piena l'elaborazione viene scartata, invece di essere eseguita dal thread della richiesta.
+     * La bicicletta resta servita con l'immagine originale finché le versioni ridotte mancanti non vengono
+     * generate da {@link progettofinale.Service.ImageMigrationService#generateMissingRenditions()}.
+     *
+     * @return         L'executor per l'elaborazione delle immagini.
+     */
+    @Bean(name = "imageProcessingExecutor")
+    public ThreadPoolTaskExecutor imageProcessingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("image-processing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
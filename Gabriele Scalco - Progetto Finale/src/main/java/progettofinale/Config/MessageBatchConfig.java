@@ -0,0 +1,36 @@
+package progettofinale.Config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configurazione dell'executor su cui gira il thread di scrittura di MessageBatchWriter.
+ * Il thread è gestito dal contesto di Spring, che lo ferma alla chiusura dopo che MessageBatchWriter
+ * ha salvato i messaggi rimasti in coda.
+ */
+@Configuration
+public class MessageBatchConfig {
+
+    /**
+     * Crea un executor con un solo thread e senza coda: esegue solo il ciclo di scrittura dei messaggi,
+     * che resta attivo fino all'arresto dell'applicazione.
+     *
+     * @return         L'executor del salvataggio in gruppo dei messaggi.
+     */
+    @Bean(name = "messageBatchExecutor")
+    public ThreadPoolTaskExecutor messageBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("message-batch-writer-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,34 @@
+package progettofinale.Config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configurazione dell'executor su cui viene costruito all'avvio l'indice di ricerca dei messaggi.
+ * La costruzione legge tutti i messaggi salvati: eseguita in background, non ritarda l'avvio dell'applicazione.
+ */
+@Configuration
+public class MessageSearchConfig {
+
+    /**
+     * Crea un executor con un solo thread, usato una volta all'avvio.
+     * Alla chiusura dell'applicazione la costruzione ancora in corso viene interrotta.
+     *
+     * @return         L'executor della costruzione dell'indice di ricerca.
+     */
+    @Bean(name = "messageSearchIndexExecutor")
+    public ThreadPoolTaskExecutor messageSearchIndexExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("message-search-index-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,41 @@
+package progettofinale.Config;
+
+import progettofinale.Service.MessageSearchService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Costruisce all'avvio l'indice di ricerca dei messaggi, leggendo i messaggi già salvati.
+ * La costruzione avviene in background: finché non termina, la ricerca può non trovare i messaggi più vecchi.
+ * I messaggi salvati in seguito vengono aggiunti all'indice da MessageService.
+ */
+@Component
+public class MessageSearchIndexRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchIndexRunner.class);
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    @Qualifier("messageSearchIndexExecutor")
+    private TaskExecutor messageSearchIndexExecutor;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        messageSearchIndexExecutor.execute(() -> {
+            try {
+                messageSearchService.rebuildIndex();
+            } catch (RuntimeException e) {
+                logger.error("Costruzione dell'indice di ricerca dei messaggi fallita", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package progettofinale.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.FlushMode;
+import org.springframework.session.SaveMode;
+import org.springframework.session.Session;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Configurazione delle sessioni HTTP, salvate nel database con Spring Session JDBC invece che
+ * nella memoria del server: un riavvio non disconnette gli utenti.
+ * L'applicazione resta a istanza singola: altro stato vive ancora nella memoria del processo
+ * (emitter SSE e broker STOMP semplice, contatori dei non letti, indice di ricerca dei messaggi,
+ * limiti dei tentativi di login, ID dei messaggi non ancora confermati). Gli ID dei messaggi, riservati
+ * a blocchi di 50 dalla sequenza, non seguono l'ordine di commit nemmeno in un unico processo, perché
+ * transazioni concorrenti si confermano in ordine diverso: i cursori della sincronizzazione e dello stream
+ * si fermano al limite calcolato da MessageCommitTracker, che vede solo i messaggi salvati da questo processo.
+ * Le tabelle sono create dalla migrazione Flyway V10; le sessioni scadute vengono eliminate ogni minuto.
+ */
+@Configuration
+@EnableJdbcHttpSession
+public class SessionConfig {
+
+    /**
+     * Configura il repository JDBC: la sessione viene scritta solo a fine richiesta, e di una sessione
+     * esistente vengono scritti solo gli attributi impostati durante la richiesta.
+     *
+     * @param timeoutMinutes   Minuti di inattività dopo cui una sessione scade.
+     * @return                 La configurazione del repository JDBC.
+     */
+    @Bean
+    public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> jdbcSessionRepositoryCustomizer(
+            @Value("${app.session.timeout-minutes:30}") long timeoutMinutes) {
+        return repository -> {
+            repository.setFlushMode(FlushMode.ON_SAVE);
+            repository.setSaveMode(SaveMode.ON_SET_ATTRIBUTE);
+            repository.setDefaultMaxInactiveInterval(Duration.ofMinutes(timeoutMinutes));
+        };
+    }
+
+    /**
+     * Crea il repository usato dal filtro di Spring Session, che scrive in gruppo gli accessi
+     * alle sessioni non modificate (vedi {@link BatchingSessionRepository}).
+     *
+     * @param sessionRepository    Il repository JDBC creato da Spring Session.
+     * @param jdbcTemplate         Per scrivere gli accessi in attesa.
+     * @param transactionManager   Transazioni delle scritture degli accessi.
+     * @param flushIntervalMs      Intervallo, in millisecondi, tra due scritture degli accessi.
+     * @return                     Il repository delle sessioni.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @Primary
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public BatchingSessionRepository batchingSessionRepository(JdbcIndexedSessionRepository sessionRepository,
+                                                               JdbcTemplate jdbcTemplate,
+                                                               PlatformTransactionManager transactionManager,
+                                                               @Value("${app.session.access-flush-interval-ms:1000}") long flushIntervalMs) {
+        return new BatchingSessionRepository((FindByIndexNameSessionRepository<Session>) (FindByIndexNameSessionRepository) sessionRepository,
+                jdbcTemplate, new TransactionTemplate(transactionManager), flushIntervalMs);
+    }
+}
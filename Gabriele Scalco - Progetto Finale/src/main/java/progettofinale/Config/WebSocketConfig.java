@@ -0,0 +1,57 @@
+package progettofinale.Config;
+
+import progettofinale.Security.ConversationSubscriptionInterceptor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * Configurazione del canale STOMP su WebSocket per la chat tra acquirente e venditore.
+ * Usa il broker in memoria di Spring: ogni conversazione ha la sua destinazione
+ * /topic/conversations/{id}, e i messaggi inviati a /app/... vengono gestiti da ChatController.
+ * L'utente è quello autenticato dalla sessione HTTP con cui viene aperto il WebSocket.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Autowired
+    private ConversationSubscriptionInterceptor conversationSubscriptionInterceptor;
+
+    /**
+     * Registra l'endpoint del WebSocket, protetto da WebSecurityConfig come le altre pagine dei messaggi.
+     *
+     * @param registry     Il registro degli endpoint STOMP.
+     */
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws");
+    }
+
+    /**
+     * Configura il broker in memoria per le conversazioni e le code private degli utenti,
+     * e il prefisso dei messaggi gestiti dall'applicazione.
+     *
+     * @param registry     Il registro del broker.
+     */
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic", "/queue");
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+
+    /**
+     * Controlla le sottoscrizioni e gli invii dei client prima che raggiungano il broker.
+     *
+     * @param registration     La configurazione del canale in ingresso.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(conversationSubscriptionInterceptor);
+    }
+}
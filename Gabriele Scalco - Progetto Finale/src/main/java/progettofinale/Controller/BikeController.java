@@ -2,19 +2,28 @@ package progettofinale.Controller;
 
 import progettofinale.Model.*;
 import progettofinale.Model.Bikemodel.*;
+import progettofinale.Security.AppUserDetails;
 import progettofinale.Service.*;
 import progettofinale.Service.SortingStrategy.*;
+import progettofinale.Util.ImageUtil;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import java.security.Principal;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controller per gestire le operazioni relative alle biciclette.
@@ -30,48 +39,136 @@ public class BikeController {
     private UserService userService;
 
     /**
-     * Mostra la pagina principale con tutte le biciclette disponibili.
+     * Mostra la pagina principale con le biciclette disponibili, una pagina alla volta.
      *
-     * @param model Il modello utilizzato per passare dati alla vista.
+     * @param after     Cursore della pagina successiva (opzionale).
+     * @param before    Cursore della pagina precedente (opzionale).
+     * @param model     Il modello utilizzato per passare dati alla vista.
      * @return Vista "bici".
      */
     @GetMapping("/")
-    public String viewBikes(Model model) {
-        // Recupera tutte le biciclette dal database
-        List<Bike> bikes = bikeService.getAllBikes();
+    public String viewBikes(@RequestParam(required = false) String after,
+                            @RequestParam(required = false) String before,
+                            Model model) {
+        // Recupera una pagina di biciclette dal database, ordinate per prezzo crescente
+        BikePage page = bikeService.searchBikesPage(null, null, null, null, null, new PriceAscendingStrategy(), after, before);
 
-        // Aggiunge la lista di biciclette al modello per la vista
-        model.addAttribute("bikes", bikes);
+        // Aggiunge la pagina di biciclette al modello per la vista
+        model.addAttribute("bikes", page.getBikes());
+        model.addAttribute("page", page);
+        model.addAttribute("pagePath", "/");
         return "bici";
     }
 
     /**
-     * Mostra il profilo dell'utente autenticato, incluse le biciclette e la wishlist.
+     * Mostra il profilo dell'utente autenticato, incluse le biciclette e una pagina della wishlist.
      * Include anche il form per aggiungere una nuova bici.
      *
+     * @param wishlistAfter ID dell'ultima bicicletta della pagina precedente della wishlist (opzionale).
      * @param model     Il modello utilizzato per passare dati alla vista.
-     * @param principal Contiene i dettagli dell'utente autenticato.
+     * @param currentUser I dettagli dell'utente autenticato, salvati nella sessione.
      * @return Vista "user-profile".
      */
     @GetMapping("/profile")
-    public String showUserProfile(Model model, Principal principal) {
-        // Recupera l'email dell'utente autenticato
-        String username = principal.getName();
-
-        // Cerca l'utente nel database tramite l'email
-        User user = userService.retrieveUserWithWishlistByEmail(username);
+    public String showUserProfile(@RequestParam(value = "wishlistAfter", required = false) Long wishlistAfter,
+                                  Model model, @AuthenticationPrincipal AppUserDetails currentUser) {
+        // Recupera l'ID dell'utente autenticato dalla sessione
+        Long userId = currentUser.getId();
 
-        // Recupera le biciclette create dall'utente
-        List<Bike> userBikes = bikeService.getBikesByUser(user);
+        // Recupera le schede delle biciclette create dall'utente e una pagina della sua wishlist, senza immagini
+        List<BikeCard> userBikes = bikeService.getBikeCardsByUser(userId);
+        WishlistPage wishlist = userService.retrieveWishlistPage(userId, wishlistAfter);
 
         // Passa i dati dell'utente, le biciclette e la wishlist alla vista
-        model.addAttribute("user", user);
+        model.addAttribute("userId", userId);
         model.addAttribute("bikes", userBikes);
         model.addAttribute("bikeTypes", List.of("Mountain", "Road", "Electric")); // Tipi di biciclette disponibili
-        model.addAttribute("wishlist", user.getWishlist());
+        model.addAttribute("wishlist", wishlist.getBikes());
+        model.addAttribute("wishlistNextCursor", wishlist.getNextCursor());
         return "user-profile";
     }
 
+    /**
+     * Restituisce l'immagine originale di una bicicletta.
+     *
+     * @param id        ID della bicicletta.
+     * @param request   La richiesta, usata per gli header condizionali.
+     * @return          L'immagine della bicicletta, oppure una risposta 304 se non è cambiata.
+     */
+    @GetMapping("/images/bike/{id}")
+    public ResponseEntity<StreamingResponseBody> bikeImage(@PathVariable("id") Long id, WebRequest request) {
+        return serveBikeImage(id, ImageRendition.ORIGINAL, request);
+    }
+
+    /**
+     * Restituisce una versione ridotta dell'immagine di una bicicletta, referenziata da `imagePath` nelle viste:
+     * "card" per le schede del catalogo e "detail" per la pagina di dettaglio.
+     *
+     * @param id            ID della bicicletta.
+     * @param rendition     Nome della versione richiesta.
+     * @param request       La richiesta, usata per gli header condizionali.
+     * @return              L'immagine della bicicletta, oppure una risposta 304 se non è cambiata.
+     */
+    @GetMapping("/images/bike/{id}/{rendition}")
+    public ResponseEntity<StreamingResponseBody> bikeImageRendition(@PathVariable("id") Long id,
+                                                                    @PathVariable("rendition") String rendition,
+                                                                    WebRequest request) {
+        return serveBikeImage(id, ImageRendition.fromPathName(rendition), request);
+    }
+
+    /**
+     * Invia l'immagine con il tipo di contenuto corretto e con ETag, Last-Modified e
+     * Cache-Control di lunga durata, così il browser la scarica una sola volta.
+     * Se il browser ha già l'immagine risponde 304 senza leggere l'immagine.
+     * Le immagini in ImageStore vengono copiate dal file alla risposta a blocchi, senza caricarle per intero;
+     * quelle non ancora migrate vengono lette dalla colonna LOB.
+     * Finché la versione ridotta non è stata generata viene servito l'originale, senza cache di lunga durata,
+     * così il browser richiede la versione ridotta appena è pronta.
+     */
+    private ResponseEntity<StreamingResponseBody> serveBikeImage(Long id, ImageRendition requested, WebRequest request) {
+        ImageMetadata metadata = bikeService.getImageMetadata(id);
+        ImageRendition rendition = metadata.resolve(requested);
+        String etag = metadata.getETag(rendition);
+        long lastModified = metadata.getLastModified().toEpochMilli();
+        CacheControl cacheControl = rendition == requested
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic()
+                : CacheControl.noCache();
+
+        // Risponde 304 se l'immagine in cache nel browser è ancora valida
+        if (request.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .lastModified(lastModified)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        String key = metadata.getKey(rendition);
+        long contentLength;
+        MediaType contentType;
+        StreamingResponseBody body;
+        if (key != null) {
+            contentLength = bikeService.getStoredImageSize(key);
+            contentType = MediaType.parseMediaType(metadata.getContentType(rendition) != null
+                    ? metadata.getContentType(rendition)
+                    : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            body = output -> bikeService.writeStoredImage(key, output);
+        } else {
+            byte[] image = bikeService.getLegacyImage(id);
+            contentLength = image.length;
+            contentType = ImageUtil.detectContentType(image);
+            body = output -> output.write(image);
+        }
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(cacheControl)
+                .body(body);
+    }
+
     /**
      * Filtra le biciclette in base ai criteri specificati.
      *
@@ -81,6 +178,8 @@ public class BikeController {
      * @param brand       Marca della bici.
      * @param bikeType    Tipo di bici (es. Mountain, Road, Electric).
      * @param order       Ordinamento (es. ascendente o discendente).
+     * @param after       Cursore della pagina successiva (opzionale).
+     * @param before      Cursore della pagina precedente (opzionale).
      * @param model       Il modello utilizzato per passare dati alla vista.
      * @return            Vista "bici".
      */
@@ -90,7 +189,9 @@ public class BikeController {
                               @RequestParam(required = false) Double maxPrice,
                               @RequestParam(required = false) String brand,
                               @RequestParam(required = false) String bikeType,
-                              @RequestParam(name = "order", required = false) String order,    
+                              @RequestParam(name = "order", required = false) String order,
+                              @RequestParam(required = false) String after,
+                              @RequestParam(required = false) String before,
                               Model model) {
         // Determina la strategia di ordinamento in base al parametro "order"
         SortingStrategy sortingStrategy;
@@ -100,11 +201,13 @@ public class BikeController {
             sortingStrategy = new PriceAscendingStrategy(); // Ordina per prezzo crescente
         }
 
-        // Filtra le biciclette in base ai criteri forniti
-        List<Bike> filteredBikes = bikeService.searchBikes(size, maxPrice, brand, bikeType, sortingStrategy);
+        // Filtra le biciclette in base ai criteri forniti, una pagina alla volta
+        BikePage page = bikeService.searchBikesPage(size, place, maxPrice, brand, bikeType, sortingStrategy, after, before);
 
         // Aggiunge le biciclette filtrate al modello per la vista
-        model.addAttribute("bikes", filteredBikes);
+        model.addAttribute("bikes", page.getBikes());
+        model.addAttribute("page", page);
+        model.addAttribute("pagePath", "/filter");
         return "bici";
     }
 
@@ -141,6 +244,7 @@ public class BikeController {
         Bike newBike = BikeFactory.createBike(bikeType, brand, size, description, price, place, user);
 
         try {
+            byte[] imageBytes = null;
             if (image != null && !image.isEmpty()) {
                 // Controlla che il file caricato sia un'immagine valida
                 if (!image.getContentType().startsWith("image/")) {
@@ -154,18 +258,18 @@ public class BikeController {
                     return "redirect:/profile";
                 }
 
-                // Converte il file in un array di byte per salvarlo nel database
-                newBike.setImage(image.getBytes());
+                // Converte il file in un array di byte per salvarlo nell'archivio delle immagini
+                imageBytes = image.getBytes();
             }
+
+            // Salva la bicicletta nel database e l'immagine nell'archivio
+            bikeService.addBike(newBike, imageBytes);
         } catch (IOException e) {
-            // Gestisce eventuali errori durante la lettura del file immagine
+            // Gestisce eventuali errori durante la lettura o il salvataggio del file immagine
             redirectAttributes.addFlashAttribute("errorMessage", "Errore durante il caricamento dell'immagine.");
             return "redirect:/profile";
         }
 
-        // Salva la bicicletta nel database
-        bikeService.addBike(newBike);
-
         // Invia un messaggio di successo 
         redirectAttributes.addFlashAttribute("successMessage", "Bici aggiunta con successo!");
         return "redirect:/profile";
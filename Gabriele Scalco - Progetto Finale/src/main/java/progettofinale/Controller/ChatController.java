@@ -0,0 +1,105 @@
+package progettofinale.Controller;
+
+import progettofinale.Model.ChatMessage;
+import progettofinale.Security.AppUserDetails;
+import progettofinale.Service.MessageBatchWriter;
+import progettofinale.Service.UserService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.Principal;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Controller per la chat in tempo reale sul canale STOMP.
+ * I messaggi vengono salvati da MessageBatchWriter, in gruppo se abilitato, e dopo il commit
+ * vengono inoltrati a tutti i client iscritti alla conversazione.
+ * Il thread del canale STOMP non attende il salvataggio: gli errori arrivano al mittente sulla coda degli errori.
+ */
+@Controller
+public class ChatController {
+
+    private static final String ERROR_QUEUE = "/queue/errors"; // Coda degli errori del mittente
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Salva un messaggio inviato sul canale STOMP dall'utente autenticato a un altro utente su una bicicletta.
+     * Il metodo non attende il commit: se il salvataggio fallisce, il motivo viene inviato al mittente
+     * sulla coda degli errori. Gli errori rilevati prima del salvataggio passano da handleError.
+     *
+     * @param receiverId    ID del destinatario del messaggio.
+     * @param bikeId        ID della bicicletta oggetto del messaggio.
+     * @param chatMessage   Il testo del messaggio.
+     * @param principal     L'utente autenticato della sessione STOMP, con i dettagli salvati al login.
+     */
+    @MessageMapping("/conversations/{receiverId}/{bikeId}/send")
+    public void sendMessage(
+            @DestinationVariable("receiverId") Long receiverId,
+            @DestinationVariable("bikeId") Long bikeId,
+            @Payload ChatMessage chatMessage,
+            Principal principal) {
+        // Controllo per contenuto nullo
+        String content = chatMessage.getContent();
+        if (content == null || content.trim().isEmpty()) {
+            throw new IllegalArgumentException("Messaggio non può essere vuoto");
+        }
+
+        // Recupera l'ID dell'utente autenticato e salva il messaggio usando solo gli ID
+        Long senderId = currentUserId(principal);
+        messageBatchWriter.submit(senderId, receiverId, bikeId, content).whenComplete((message, failure) -> {
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                messagingTemplate.convertAndSendToUser(principal.getName(), ERROR_QUEUE, errorReason(cause));
+            }
+        });
+    }
+
+    /**
+     * Invia al solo mittente il motivo per cui il messaggio non è stato salvato.
+     *
+     * @param exception     L'errore sollevato durante l'invio.
+     * @return              Il messaggio di errore.
+     */
+    @MessageExceptionHandler({ResponseStatusException.class, IllegalArgumentException.class})
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public String handleError(RuntimeException exception) {
+        return errorReason(exception);
+    }
+
+    // Motivo dell'errore mostrato al mittente; gli errori imprevisti non espongono dettagli interni
+    private static String errorReason(Throwable exception) {
+        if (exception instanceof ResponseStatusException statusException) {
+            return statusException.getReason();
+        }
+        if (exception instanceof IllegalArgumentException) {
+            return exception.getMessage();
+        }
+        return "Message not saved";
+    }
+
+    // L'ID è nei dettagli salvati al login; viene cercato per email solo se il Principal non li contiene
+    private Long currentUserId(Principal principal) {
+        AppUserDetails currentUser = AppUserDetails.from(principal);
+        if (currentUser != null) {
+            return currentUser.getId();
+        }
+        return userService.retrieveUserIdByEmail(principal.getName());
+    }
+}
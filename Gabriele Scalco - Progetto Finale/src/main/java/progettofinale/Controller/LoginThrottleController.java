@@ -0,0 +1,33 @@
+package progettofinale.Controller;
+
+import progettofinale.Security.LoginThrottle;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Map;
+
+/**
+ * Controller per il monitoraggio dei limiti su login e registrazioni.
+ */
+@Controller
+public class LoginThrottleController {
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    /**
+     * Restituisce in JSON i contatori di LoginThrottle dall'avvio: login falliti, login rifiutati,
+     * registrazioni e registrazioni rifiutate.
+     *
+     * @return              I contatori per nome.
+     */
+    @GetMapping(value = "/api/security/login-throttle", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Long> getLoginThrottleStats() {
+        return loginThrottle.getStats();
+    }
+}
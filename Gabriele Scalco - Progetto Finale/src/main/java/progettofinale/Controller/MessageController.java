@@ -1,20 +1,24 @@
 package progettofinale.Controller;
 
 import progettofinale.Model.*;
-import progettofinale.Model.Bikemodel.*;
+import progettofinale.Security.AppUserDetails;
 import progettofinale.Service.*;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import java.security.Principal;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller per la gestione dei messaggi tra utenti.
- * Consente di inviare messaggi, visualizzare la pagina di invio e accedere alla inbox.
+ * Consente di inviare messaggi, visualizzare la pagina di invio, accedere alla inbox
+ * e ricevere i nuovi messaggi in tempo reale.
  */
 @Controller
 public class MessageController {
@@ -23,10 +27,10 @@ public class MessageController {
     private MessageService messageService;
 
     @Autowired
-    private UserService userService;
+    private MessageStreamService messageStreamService;
 
     @Autowired
-    private BikeService bikeService;
+    private MessageSearchService messageSearchService;
 
     /**
      * Mostra la pagina per inviare un messaggio a un altro utente su una determinata bici.
@@ -57,7 +61,7 @@ public class MessageController {
      * @param content            Contenuto del messaggio.
      * @param receiverId         ID del destinatario del messaggio.
      * @param bikeId             ID della bicicletta oggetto del messaggio.
-     * @param principal          Contiene i dettagli dell'utente autenticato.
+     * @param currentUser        I dettagli dell'utente autenticato, salvati nella sessione.
      * @param redirect           Per passare messaggi di successo o errore alla vista.
      * @return                   Redirect alla homepage.
      */
@@ -66,7 +70,7 @@ public class MessageController {
             @RequestParam("content") String content,
             @RequestParam("receiverId") Long receiverId,
             @RequestParam("bikeId") Long bikeId,
-            Principal principal,
+            @AuthenticationPrincipal AppUserDetails currentUser,
             RedirectAttributes redirectAttributes) {
 
         // Controllo per contenuto nullo
@@ -74,23 +78,11 @@ public class MessageController {
             throw new IllegalArgumentException("Messaggio non può essere vuoto");
         }
 
-        // Recupera l'utente autenticato
-        String username = principal.getName();
-        User sender = userService.findByEmail(username);
+        // Recupera l'ID dell'utente autenticato
+        Long senderId = currentUser.getId();
 
-        // Recupera il destinatario e la bici
-        User receiver = userService.retrieveUserById(receiverId);
-        Bike bike = bikeService.getBikeById(bikeId);
-
-        // Crea un nuovo messaggio
-        Message message = new Message();
-        message.setSender(sender);
-        message.setReceiver(receiver);
-        message.setBike(bike);
-        message.setContent(content);
-
-        // Salva il messaggio
-        messageService.saveMessage(message);
+        // Salva il messaggio usando solo gli ID di destinatario e bici
+        messageService.sendMessage(senderId, receiverId, bikeId, content);
 
         // Messaggio di successo e redirect
         redirectAttributes.addFlashAttribute("successMessage", "Messaggio inviato con successo!");
@@ -98,25 +90,124 @@ public class MessageController {
     }
 
     /**
-     * Mostra l'inbox dell'utente autenticato, con tutte le conversazioni disponibili.
+     * Mostra l'inbox dell'utente autenticato, con il riepilogo di tutte le conversazioni disponibili
+     * o, se è indicato un testo da cercare, delle sole conversazioni con messaggi che lo contengono.
+     * I messaggi di una conversazione vengono letti solo quando la conversazione viene aperta.
      *
+     * @param query         Testo da cercare nei messaggi (opzionale).
      * @param model         Modello per passare dati alla vista.
-     * @param principal     Contiene i dettagli dell'utente autenticato.
+     * @param currentUser   I dettagli dell'utente autenticato, salvati nella sessione.
      * @return              Vista "inbox".
      */
     @GetMapping("/messages/inbox")
-    public String showInbox(Model model, Principal principal) {
-        // Recupera l'utente autenticato
-        String username = principal.getName();
-        User currentUser = userService.findByEmail(username);
-
-        // Recupera tutte le conversazioni per l'utente
-        List<Conversation> conversations = messageService.getConversations(currentUser.getId());
+    public String showInbox(
+            @RequestParam(value = "q", required = false) String query,
+            Model model,
+            @AuthenticationPrincipal AppUserDetails currentUser) {
+        // Recupera l'ID dell'utente autenticato
+        Long currentUserId = currentUser.getId();
+
+        // Recupera i riepiloghi delle conversazioni per l'utente, filtrati dalla ricerca se presente
+        boolean searching = query != null && !query.isBlank();
+        List<ConversationSummary> conversations = searching
+                ? messageSearchService.search(currentUserId, query)
+                : messageService.getConversationSummaries(currentUserId);
 
         model.addAttribute("conversations", conversations);
-        model.addAttribute("currentUser", currentUser);
-        model.addAttribute("newMessage", new Message()); // Oggetto messaggio vuoto per eventuale utilizzo nella vista
+        model.addAttribute("query", searching ? query : null);
+        model.addAttribute("currentUserId", currentUserId);
 
         return "inbox";
     }
+
+    /**
+     * Mostra i messaggi di una conversazione dell'utente autenticato con un altro utente su una bicicletta,
+     * una pagina alla volta a partire dai più recenti.
+     *
+     * @param otherUserId   ID dell'altro utente della conversazione.
+     * @param bikeId        ID della bicicletta oggetto della conversazione.
+     * @param before        Cursore dei messaggi precedenti (opzionale).
+     * @param model         Modello per passare dati alla vista.
+     * @param currentUser   I dettagli dell'utente autenticato, salvati nella sessione.
+     * @return              Vista "conversation".
+     */
+    @GetMapping("/messages/conversation/{otherUserId}/{bikeId}")
+    public String showConversation(
+            @PathVariable("otherUserId") Long otherUserId,
+            @PathVariable("bikeId") Long bikeId,
+            @RequestParam(value = "before", required = false) String before,
+            Model model,
+            @AuthenticationPrincipal AppUserDetails currentUser) {
+        // Recupera l'ID dell'utente autenticato
+        Long currentUserId = currentUser.getId();
+
+        // Recupera una pagina di messaggi della conversazione
+        MessagePage page = messageService.getConversationPage(currentUserId, otherUserId, bikeId, before);
+
+        model.addAttribute("conversationId", page.getConversationId());
+        model.addAttribute("messages", page.getMessages());
+        model.addAttribute("olderCursor", page.getOlderCursor());
+        model.addAttribute("currentUserId", currentUserId);
+        model.addAttribute("otherUserId", otherUserId);
+        model.addAttribute("bikeId", bikeId);
+        model.addAttribute("newMessage", new Message()); // Oggetto messaggio vuoto per il form di risposta
+
+        return "conversation";
+    }
+
+    /**
+     * Apre lo stream Server-Sent Events dei messaggi ricevuti dall'utente autenticato.
+     * Alla riconnessione il browser invia l'header Last-Event-ID con l'ID dell'ultimo evento
+     * ricevuto, e i messaggi arrivati nel frattempo vengono reinviati.
+     *
+     * @param lastEventId   ID dell'ultimo evento ricevuto (opzionale).
+     * @param currentUser   I dettagli dell'utente autenticato, salvati nella sessione.
+     * @return              La connessione SSE.
+     */
+    @GetMapping(value = "/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamMessages(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @AuthenticationPrincipal AppUserDetails currentUser) {
+        // Recupera l'ID dell'utente autenticato
+        Long currentUserId = currentUser.getId();
+
+        return messageStreamService.subscribe(currentUserId, lastEventId);
+    }
+
+    /**
+     * Restituisce in JSON le modifiche all'inbox dell'utente autenticato dopo un cursore:
+     * nuovi messaggi, riepiloghi delle conversazioni modificate e nuovo cursore.
+     * Senza cursore restituisce solo il cursore corrente.
+     *
+     * @param since         ID dell'ultimo messaggio già letto (opzionale).
+     * @param currentUser   I dettagli dell'utente autenticato, salvati nella sessione.
+     * @return              Le modifiche successive al cursore.
+     */
+    @GetMapping(value = "/api/messages/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public MessageChanges getChanges(
+            @RequestParam(value = "since", required = false) Long since,
+            @AuthenticationPrincipal AppUserDetails currentUser) {
+        // Recupera l'ID dell'utente autenticato
+        Long currentUserId = currentUser.getId();
+
+        return messageService.getChangesSince(currentUserId, since);
+    }
+
+    /**
+     * Restituisce in JSON il numero di messaggi non letti dell'utente autenticato, per il badge dei messaggi.
+     * Il conteggio è mantenuto in memoria e di norma non richiede query sui messaggi.
+     *
+     * @param currentUser   I dettagli dell'utente autenticato, salvati nella sessione.
+     * @return              Il numero di messaggi non letti.
+     */
+    @GetMapping(value = "/api/messages/unread-count", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Long> getUnreadCount(@AuthenticationPrincipal AppUserDetails currentUser) {
+        // Recupera l'ID dell'utente autenticato
+        Long currentUserId = currentUser.getId();
+
+        return Map.of("unreadCount", messageService.getUnreadCount(currentUserId));
+    }
 }
@@ -1,16 +1,19 @@
 package progettofinale.Controller;
 
 import progettofinale.Model.*;
-import progettofinale.Model.Bikemodel.*;
+import progettofinale.Security.AppUserDetails;
+import progettofinale.Security.PasswordHashingBusyException;
 import progettofinale.Service.*;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.security.Principal;
 
 /**
  * Controller per la gestione degli utenti.
@@ -22,9 +25,6 @@ public class UserController {
     @Autowired
     private UserService userService;
 
-    @Autowired
-    private BikeService bikeService; 
-
     /**
      * Mostra la pagina di login.
      *
@@ -53,12 +53,16 @@ public class UserController {
      * @param user      Oggetto utente popolato dal form di registrazione.
      * @param model     Modello per passare messaggi di errore alla vista.
      * @return          Redirect alla pagina di login in caso di successo, pagina di registrazione in caso di errore.
+     * @throws ResponseStatusException   Se la coda del calcolo degli hash è piena (503).
      */
     @PostMapping("/register")
     public String registerUser(@ModelAttribute("user") User user, Model model) {
         try {
             userService.addUser(user); // Salva l'utente tramite il servizio
             return "redirect:/login";
+        } catch (PasswordHashingBusyException e) {
+            // Troppe password in coda: il client può riprovare più tardi
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Password hashing busy", e);
         } catch (Exception e) {
             model.addAttribute("error", "Errore nella registrazione dell'utente.");
             return "register"; 
@@ -69,24 +73,20 @@ public class UserController {
      * Aggiunge una bicicletta alla wishlist dell'utente autenticato.
      *
      * @param bikeId            ID della bicicletta da aggiungere alla wishlist.
-     * @param principal         Contiene i dettagli dell'utente autenticato.
+     * @param currentUser       I dettagli dell'utente autenticato, salvati nella sessione.
      * @param redirect          Per passare messaggi alla vista.
      * @return                  Redirect alla homepage.
      */
     @PostMapping("/wishlist/add")
     public String addToWishlist(@RequestParam("bikeId") Long bikeId,
-                                Principal principal,
+                                @AuthenticationPrincipal AppUserDetails currentUser,
                                 RedirectAttributes redirectAttributes) {
         try {
-            // Recupera l'utente autenticato
-            String username = principal.getName();
-            User user = userService.findByEmail(username);
-
-            // Recupera la bicicletta da aggiungere alla wishlist
-            Bike bike = bikeService.getBikeById(bikeId);
+            // Recupera l'ID dell'utente autenticato
+            Long userId = currentUser.getId();
 
-            // Aggiunge la bicicletta alla wishlist dell'utente
-            userService.addToWishlist(user, bike);
+            // Aggiunge la bicicletta alla wishlist dell'utente senza caricare utente e bici
+            userService.addToWishlist(userId, bikeId);
 
             // Aggiunge un messaggio di successo
             redirectAttributes.addFlashAttribute("successMessage", "Bici aggiunta alla wishlist!");
@@ -100,21 +100,20 @@ public class UserController {
      * Rimuove una bicicletta dalla wishlist di un utente.
      *
      * @param bikeId            ID della bicicletta da rimuovere.
-     * @param principal         Contiene i dettagli dell'utente autenticato.
+     * @param currentUser       I dettagli dell'utente autenticato, salvati nella sessione.
      * @param redirect          Per passare messaggi alla vista.
      * @return                  Redirect alla pagina del profilo utente.
      */
     @PostMapping("/wishlist/remove")
     public String removeFromWishlist(@RequestParam("bikeId") Long bikeId,
-                                     Principal principal,
+                                     @AuthenticationPrincipal AppUserDetails currentUser,
                                      RedirectAttributes redirectAttributes) {
         try {
-            // Recupera l'utente autenticato
-            String username = principal.getName();
-            User user = userService.findByEmail(username);
+            // Recupera l'ID dell'utente autenticato
+            Long userId = currentUser.getId();
 
             // Rimuove la bicicletta dalla wishlist dell'utente
-            userService.removeBikeFromWishlist(user.getId(), bikeId);
+            userService.removeBikeFromWishlist(userId, bikeId);
 
             // Aggiunge un messaggio di successo
             redirectAttributes.addFlashAttribute("successMessage", "Bici rimossa dalla wishlist!");
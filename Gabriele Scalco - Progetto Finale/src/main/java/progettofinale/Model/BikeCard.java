@@ -0,0 +1,84 @@
+package progettofinale.Model;
+
+import progettofinale.Util.ImageUtil;
+
+/**
+ * Classe che rappresenta una bicicletta nelle viste a elenco (catalogo, annunci e wishlist del profilo).
+ * Contiene solo i dati mostrati nelle schede e viene costruita direttamente dalle query di proiezione,
+ * senza leggere le immagini: la miniatura viene richiesta dal browser tramite `imagePath`.
+ */
+public class BikeCard {
+
+    private final Long id; // Identificatore della bicicletta
+    private final String brand; // Marca della bicicletta
+    private final String size; // Dimensione (es: M, L, XL)
+    private final String description; // Descrizione della bicicletta
+    private final double price; // Prezzo
+    private final String place; // Regione dove la bicicletta è disponibile
+    private final String bikeType; // Tipo di bicicletta (valore del discriminatore)
+    private final Long ownerId; // ID dell'utente proprietario
+    private final String imagePath; // URL della miniatura della bicicletta
+
+    /**
+     * Costruttore usato dalle query JPQL/Criteria con la sintassi `new BikeCard(...)`.
+     *
+     * @param id              ID della bicicletta.
+     * @param brand           Marca della bicicletta.
+     * @param size            Dimensione della bicicletta.
+     * @param description     Descrizione della bicicletta.
+     * @param price           Prezzo della bicicletta.
+     * @param place           Regione della bicicletta.
+     * @param bikeType        Tipo di bicicletta.
+     * @param ownerId         ID del proprietario.
+     * @param hasImage        true se la bicicletta ha un'immagine salvata.
+     */
+    public BikeCard(Long id, String brand, String size, String description, double price, String place,
+                    String bikeType, Long ownerId, boolean hasImage) {
+        this.id = id;
+        this.brand = brand;
+        this.size = size;
+        this.description = description;
+        this.price = price;
+        this.place = place;
+        this.bikeType = bikeType;
+        this.ownerId = ownerId;
+        this.imagePath = ImageUtil.bikeImagePath(id, hasImage, ImageRendition.CARD);
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getSize() {
+        return size;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public String getPlace() {
+        return place;
+    }
+
+    public String getBikeType() {
+        return bikeType;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public String getImagePath() {
+        return imagePath;
+    }
+}
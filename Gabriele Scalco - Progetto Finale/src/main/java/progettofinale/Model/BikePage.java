@@ -0,0 +1,35 @@
+package progettofinale.Model;
+
+import java.util.List;
+
+/**
+ * Classe che rappresenta una pagina del catalogo delle biciclette.
+ * Oltre alle schede delle biciclette della pagina contiene i cursori per la pagina successiva e precedente,
+ * codificati come "prezzo_id" dell'elemento di confine. Un cursore nullo indica che non ci sono altre pagine.
+ */
+public class BikePage {
+
+    private final List<BikeCard> bikes; // Le biciclette della pagina corrente
+    private final String nextCursor; // Cursore per la pagina successiva
+    private final String prevCursor; // Cursore per la pagina precedente
+
+    // Costruttore per inizializzare una pagina con le biciclette e i cursori.
+    public BikePage(List<BikeCard> bikes, String nextCursor, String prevCursor) {
+        this.bikes = bikes;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    // Getters
+    public List<BikeCard> getBikes() {
+        return bikes;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+}
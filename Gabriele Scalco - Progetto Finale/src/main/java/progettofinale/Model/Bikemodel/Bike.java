@@ -1,7 +1,12 @@
 package progettofinale.Model.Bikemodel;
 
+import progettofinale.Model.ImageRendition;
 import progettofinale.Model.User;
+import progettofinale.Util.ImageUtil;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Formula;
+
+import java.time.Instant;
 
 /**
  * Classe che rappresenta una bicicletta generica.
@@ -26,24 +31,36 @@ public abstract class Bike {
     private double price;  // Prezzo 
     private String place;  // Regione dove la bicicletta è disponibile
 
-    @Lob
-    @Column(name = "image", nullable = true)
-    private byte[] image;  // Immagine binaria della bicicletta
+    // Valore del discriminatore in sola lettura, usato dalle query di proiezione (BikeCard)
+    @Column(name = "type", insertable = false, updatable = false)
+    private String discriminator;
+
+    /*
+     * Le immagini salvate prima dell'introduzione di ImageStore sono nella tabella bike_legacy_image,
+     * mappata dall'entità BikeImage: qui se ne verifica solo la presenza, senza leggere le colonne LOB.
+     */
+    @Formula("(EXISTS (SELECT 1 FROM bike_legacy_image li WHERE li.bike_id = id))")
+    private boolean legacyImage;
+
+    @Column(name = "image_key", length = 64)
+    private String imageKey;  // Chiave SHA-256 dell'immagine originale in ImageStore
+
+    @Column(name = "image_card_key", length = 64)
+    private String imageCardKey;  // Chiave SHA-256 della miniatura per le schede
+
+    @Column(name = "image_detail_key", length = 64)
+    private String imageDetailKey;  // Chiave SHA-256 della versione per la pagina di dettaglio
+
+    @Column(name = "image_content_type")
+    private String imageContentType;  // Tipo di contenuto dell'immagine originale, rilevato al caricamento
+
+    @Column(name = "image_updated_at")
+    private Instant imageUpdatedAt;  // Istante di caricamento dell'immagine, usato per ETag e Last-Modified
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;  // Utente proprietario della bicicletta
 
-    /**
-     * Il campo `imagePath` è utilizzato per rappresentare l'immagine della bicicletta 
-     * in un formato leggibile dal frontend. Poiché le immagini sono memorizzate nel 
-     * database come array di byte (`byte[]`),`imagePath` permette di convertirle in
-     * stringhe codificate in Base64, pronte per essere usate nel tag HTML <img>. 
-     * Questo campo non è salvato nel database grazie all'annotazione `@Transient`.
-     */
-    @Transient
-    private String imagePath; 
-
     // Costruttore di default per JPA
     public Bike() {}
 
@@ -85,9 +102,54 @@ public abstract class Bike {
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
-    public byte[] getImage() { return image; }
-    public void setImage(byte[] image) { this.image = image; }
+    public String getImageKey() { return imageKey; }
+    public String getImageCardKey() { return imageCardKey; }
+    public String getImageDetailKey() { return imageDetailKey; }
+    public String getImageContentType() { return imageContentType; }
 
-    public String getImagePath() { return imagePath; }
-    public void setImagePath(String imagePath) { this.imagePath = imagePath; }
+    /**
+     * Associa alla bicicletta un'immagine salvata in ImageStore.
+     * Le versioni ridotte dell'immagine precedente non sono più valide e verranno rigenerate.
+     *
+     * @param imageKey           La chiave SHA-256 dell'immagine.
+     * @param imageContentType   Il tipo di contenuto dell'immagine.
+     */
+    public void setImageKey(String imageKey, String imageContentType) {
+        this.imageKey = imageKey;
+        this.imageContentType = imageContentType;
+        this.imageUpdatedAt = imageKey != null ? Instant.now() : null;
+        this.imageCardKey = null;
+        this.imageDetailKey = null;
+    }
+
+    public Instant getImageUpdatedAt() { return imageUpdatedAt; }
+
+    /**
+     * Indica se la bicicletta ha un'immagine, salvata in ImageStore o ancora nella tabella bike_legacy_image.
+     */
+    public boolean hasImage() { return imageKey != null || legacyImage; }
+
+    /**
+     * Restituisce l'URL da cui il browser scarica l'immagine della bicicletta nella versione di dettaglio,
+     * servita dall'endpoint `/images/bike/{id}/detail` invece che incorporata nella pagina in Base64.
+     * Se la bicicletta non ha un'immagine, restituisce quella predefinita.
+     */
+    public String getImagePath() { return ImageUtil.bikeImagePath(id, hasImage(), ImageRendition.DETAIL); }
+
+    /**
+     * Due biciclette sono uguali se hanno lo stesso ID. Le biciclette non ancora salvate sono uguali solo a sé stesse.
+     * L'hash non dipende dall'ID, così non cambia quando la bicicletta viene salvata e ne riceve uno.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Bike other && id != null && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Bike.class.hashCode();
+    }
 }
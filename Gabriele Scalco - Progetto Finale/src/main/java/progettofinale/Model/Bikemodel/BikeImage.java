@@ -0,0 +1,46 @@
+package progettofinale.Model.Bikemodel;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Classe che rappresenta l'immagine di una bicicletta salvata prima dell'introduzione di ImageStore.
+ * L'immagine vive nella tabella `bike_legacy_image`, separata da `bike` e con lo stesso ID della bicicletta:
+ * caricare una bicicletta non legge mai i byte delle immagini, che vengono letti solo da chi deve
+ * effettivamente servirle o migrarle. La riga viene eliminata dopo la migrazione in ImageStore.
+ */
+@Entity
+@Table(name = "bike_legacy_image")
+public class BikeImage {
+
+    @Id
+    @Column(name = "bike_id")
+    private Long id; // Stesso ID della bicicletta
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "bike_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Bike bike; // Bicicletta a cui appartiene l'immagine
+
+    @Lob
+    @Column(name = "image", nullable = false)
+    private byte[] image;  // Immagine binaria della bicicletta (formato precedente)
+
+    // Costruttore di default per JPA
+    public BikeImage() {}
+
+    // Costruttore completo, usato per le immagini caricate prima di ImageStore
+    public BikeImage(Bike bike, byte[] image) {
+        this.bike = bike;
+        this.image = image;
+    }
+
+    // Getter
+    public Long getId() { return id; }
+
+    public Bike getBike() { return bike; }
+
+    public byte[] getImage() { return image; }
+}
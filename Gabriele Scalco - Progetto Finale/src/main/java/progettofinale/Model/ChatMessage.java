@@ -0,0 +1,28 @@
+package progettofinale.Model;
+
+/**
+ * Classe che rappresenta un messaggio inviato da un client sul canale STOMP della chat.
+ * Contiene solo il testo: mittente, destinatario e bicicletta sono ricavati dall'utente
+ * autenticato e dalla destinazione del messaggio.
+ */
+public class ChatMessage {
+
+    private String content; // Contenuto del messaggio
+
+    // Costruttore di default richiesto per la conversione da JSON.
+    public ChatMessage() {}
+
+    // Costruttore per inizializzare un messaggio con il contenuto.
+    public ChatMessage(String content) {
+        this.content = content;
+    }
+
+    // Getter e Setter
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
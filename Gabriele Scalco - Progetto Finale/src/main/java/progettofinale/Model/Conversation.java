@@ -1,82 +1,79 @@
 package progettofinale.Model;
 
-import java.util.List;
-import java.util.Objects;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import progettofinale.Model.Bikemodel.*;
 
 /**
- * Classe che rappresenta una conversazione tra due utenti.
- * Una conversazione è definita dai partecipanti e dai messaggi scambiati relativi a una determinata bicicletta. 
- * Questa classe è utilizzata per strutturare le conversazioni nell'inbox utente.
+ * Classe che rappresenta una conversazione tra un acquirente e un venditore su una bicicletta.
+ * La riga viene aggiornata a ogni messaggio con l'ultimo messaggio, la data dell'ultima attività,
+ * il numero di messaggi e i messaggi non letti di ciascun partecipante,
+ * così l'inbox non deve leggere i messaggi.
  */
-
+@Entity
+@Table(name = "conversation",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"bike_id", "buyer_id", "seller_id"}))
 public class Conversation {
 
-    private User otherUser; // L'altro utente coinvolto nella conversazione
-    private Bike bike; // La bicicletta oggetto della conversazione
-    private List<Message> messages; // I messaggi scambiati nella conversazione
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // Identificatore univoco della conversazione
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "buyer_id", referencedColumnName = "id", nullable = false)
+    private User buyer; // Utente interessato alla bicicletta
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "seller_id", referencedColumnName = "id", nullable = false)
+    private User seller; // Proprietario della bicicletta
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bike_id", referencedColumnName = "id", nullable = false)
+    private Bike bike; // Bicicletta oggetto della conversazione
+
+    private Long lastMessageId; // ID del messaggio più recente
+    private LocalDateTime lastActivity; // Data e ora del messaggio più recente
+    private long messageCount; // Numero di messaggi scambiati
+    private int buyerUnreadCount; // Messaggi non ancora letti dall'acquirente
+    private int sellerUnreadCount; // Messaggi non ancora letti dal venditore
 
-    // Costruttore di default per JPA
+    // Costruttore di default richiesto da JPA.
     public Conversation() {}
 
-    // Costruttore per inizializzare una conversazione con i dettagli principali.
-    public Conversation(User otherUser, Bike bike, List<Message> messages) {
-        this.otherUser = otherUser;
-        this.bike = bike;
-        this.messages = messages;
+    // Getters
+    public Long getId() {
+        return id;
     }
 
-    // Getters e Setters
-    public User getOtherUser() {
-        return otherUser;
+    public User getBuyer() {
+        return buyer;
     }
 
-    public void setOtherUser(User otherUser) {
-        this.otherUser = otherUser;
+    public User getSeller() {
+        return seller;
     }
 
     public Bike getBike() {
         return bike;
     }
 
-    public void setBike(Bike bike) {
-        this.bike = bike;
+    public Long getLastMessageId() {
+        return lastMessageId;
     }
 
-    public List<Message> getMessages() {
-        return messages;
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
     }
 
-    public void setMessages(List<Message> messages) {
-        this.messages = messages;
+    public long getMessageCount() {
+        return messageCount;
     }
 
-    // Metodi utili per testing
-
-    /**
-     * Override del metodo equals() per confrontare due conversazioni.
-     * Due conversazioni sono considerate uguali se coinvolgono lo stesso utente,
-     * la stessa bicicletta e hanno la stessa lista di messaggi.
-     *
-     * @param o è l'oggetto da confrontare.
-     * ritorna true se le conversazioni sono uguali, altrimenti false.
-     */
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Conversation that = (Conversation) o;
-        return Objects.equals(otherUser, that.otherUser) &&
-               Objects.equals(bike, that.bike) &&
-               Objects.equals(messages, that.messages);
+    public int getBuyerUnreadCount() {
+        return buyerUnreadCount;
     }
 
-    /**
-     * Override del metodo hashCode() per generare un hash coerente con equals().
-     * ritorna l'hash code della conversazione.
-     */
-    @Override
-    public int hashCode() {
-        return Objects.hash(otherUser, bike, messages);
+    public int getSellerUnreadCount() {
+        return sellerUnreadCount;
     }
 }
@@ -0,0 +1,54 @@
+package progettofinale.Model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe che rappresenta una conversazione nell'inbox: interlocutore, bicicletta, ultimo messaggio,
+ * numero di messaggi e messaggi non letti. Non contiene i messaggi, che vengono letti solo quando
+ * la conversazione viene aperta.
+ */
+public class ConversationSummary {
+
+    private final Long otherUserId; // ID dell'altro utente della conversazione
+    private final String otherUserName; // Nome dell'altro utente
+    private final Long bikeId; // ID della bicicletta oggetto della conversazione
+    private final String bikeBrand; // Marca della bicicletta
+    private final String lastMessage; // Contenuto dell'ultimo messaggio
+    private final LocalDateTime lastActivity; // Data e ora dell'ultimo messaggio
+    private final long messageCount; // Numero di messaggi scambiati
+    private final int unreadCount; // Messaggi non ancora letti dall'utente
+
+    /**
+     * Costruttore usato dalle query JPQL con la sintassi `new ConversationSummary(...)`.
+     *
+     * @param otherUserId     ID dell'altro utente.
+     * @param otherUserName   Nome dell'altro utente.
+     * @param bikeId          ID della bicicletta.
+     * @param bikeBrand       Marca della bicicletta.
+     * @param lastMessage     Contenuto dell'ultimo messaggio.
+     * @param lastActivity    Data e ora dell'ultimo messaggio.
+     * @param messageCount    Numero di messaggi.
+     * @param unreadCount     Numero di messaggi non letti.
+     */
+    public ConversationSummary(Long otherUserId, String otherUserName, Long bikeId, String bikeBrand,
+                               String lastMessage, LocalDateTime lastActivity, long messageCount, int unreadCount) {
+        this.otherUserId = otherUserId;
+        this.otherUserName = otherUserName;
+        this.bikeId = bikeId;
+        this.bikeBrand = bikeBrand;
+        this.lastMessage = lastMessage;
+        this.lastActivity = lastActivity;
+        this.messageCount = messageCount;
+        this.unreadCount = unreadCount;
+    }
+
+    // Getters
+    public Long getOtherUserId() { return otherUserId; }
+    public String getOtherUserName() { return otherUserName; }
+    public Long getBikeId() { return bikeId; }
+    public String getBikeBrand() { return bikeBrand; }
+    public String getLastMessage() { return lastMessage; }
+    public LocalDateTime getLastActivity() { return lastActivity; }
+    public long getMessageCount() { return messageCount; }
+    public int getUnreadCount() { return unreadCount; }
+}
@@ -0,0 +1,99 @@
+package progettofinale.Model;
+
+import java.time.Instant;
+
+/**
+ * Classe che rappresenta i metadati dell'immagine di una bicicletta.
+ * Viene letta senza le colonne LOB e permette di rispondere alle richieste condizionali
+ * (If-None-Match / If-Modified-Since) del browser senza leggere l'immagine.
+ * Le immagini in ImageStore sono identificate dalla chiave SHA-256, che fa anche da ETag;
+ * le immagini non ancora migrate sono lette dalla tabella `bike_legacy_image`.
+ */
+public class ImageMetadata {
+
+    private final Long bikeId; // ID della bicicletta
+    private final Instant updatedAt; // Istante di caricamento dell'immagine (null per le immagini precedenti alla colonna)
+    private final String imageKey; // Chiave dell'originale in ImageStore (null se l'immagine non è stata migrata)
+    private final String cardKey; // Chiave della miniatura (null se non ancora generata)
+    private final String detailKey; // Chiave della versione di dettaglio (null se non ancora generata)
+    private final String contentType; // Tipo di contenuto dell'originale (null se non rilevato)
+
+    // Costruttore usato dalla query JPQL con la sintassi `new ImageMetadata(...)`.
+    public ImageMetadata(Long bikeId, Instant updatedAt, String imageKey, String cardKey, String detailKey,
+                         String contentType) {
+        this.bikeId = bikeId;
+        this.updatedAt = updatedAt;
+        this.imageKey = imageKey;
+        this.cardKey = cardKey;
+        this.detailKey = detailKey;
+        this.contentType = contentType;
+    }
+
+    public Long getBikeId() {
+        return bikeId;
+    }
+
+    /**
+     * Restituisce la versione effettivamente disponibile per quella richiesta:
+     * se la versione ridotta non è ancora stata generata si ricade sull'originale.
+     *
+     * @param requested    La versione richiesta.
+     * @return             La versione da servire.
+     */
+    public ImageRendition resolve(ImageRendition requested) {
+        return getKey(requested) != null ? requested : ImageRendition.ORIGINAL;
+    }
+
+    /**
+     * Restituisce la chiave in ImageStore di una versione dell'immagine.
+     *
+     * @param rendition    La versione dell'immagine.
+     * @return             La chiave, oppure null se la versione non è in ImageStore.
+     */
+    public String getKey(ImageRendition rendition) {
+        switch (rendition) {
+            case CARD:
+                return cardKey;
+            case DETAIL:
+                return detailKey;
+            default:
+                return imageKey;
+        }
+    }
+
+    /**
+     * Restituisce il tipo di contenuto di una versione dell'immagine.
+     * Le versioni ridotte sono sempre JPEG.
+     *
+     * @param rendition    La versione dell'immagine.
+     * @return             Il tipo di contenuto, oppure null se deve essere rilevato dai byte.
+     */
+    public String getContentType(ImageRendition rendition) {
+        return rendition == ImageRendition.ORIGINAL ? contentType : "image/jpeg";
+    }
+
+    /**
+     * Restituisce l'istante dell'ultima modifica dell'immagine, usato per l'header Last-Modified.
+     * Le immagini caricate prima dell'introduzione della colonna risultano modificate all'epoca Unix.
+     *
+     * @return L'istante dell'ultima modifica.
+     */
+    public Instant getLastModified() {
+        return updatedAt != null ? updatedAt : Instant.EPOCH;
+    }
+
+    /**
+     * Restituisce l'ETag di una versione dell'immagine: la chiave SHA-256 per le immagini in ImageStore,
+     * altrimenti un valore derivato dall'ID della bicicletta e dall'istante di caricamento.
+     *
+     * @param rendition    La versione servita.
+     * @return L'ETag tra virgolette, come richiesto dall'header HTTP.
+     */
+    public String getETag(ImageRendition rendition) {
+        String key = getKey(rendition);
+        if (key != null) {
+            return "\"" + key + "\"";
+        }
+        return "\"" + bikeId + "-" + rendition.getPathName() + "-" + getLastModified().toEpochMilli() + "\"";
+    }
+}
@@ -0,0 +1,48 @@
+package progettofinale.Model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Enum che rappresenta le versioni (rendition) disponibili per l'immagine di una bicicletta.
+ * Le versioni ridotte vengono generate al caricamento: le schede del catalogo usano CARD,
+ * la pagina di dettaglio usa DETAIL e ORIGINAL corrisponde al file caricato dall'utente.
+ */
+public enum ImageRendition {
+
+    CARD("card", 200),     // Miniatura per le schede delle viste a elenco
+    DETAIL("detail", 800), // Versione media per la pagina di dettaglio
+    ORIGINAL("original", 0); // File originale, senza ridimensionamento
+
+    private final String pathName; // Nome usato nell'URL dell'immagine
+    private final int maxWidth;    // Larghezza massima in pixel (0 per l'originale)
+
+    ImageRendition(String pathName, int maxWidth) {
+        this.pathName = pathName;
+        this.maxWidth = maxWidth;
+    }
+
+    public String getPathName() {
+        return pathName;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * Converte il nome usato nell'URL nella versione corrispondente.
+     *
+     * @param pathName                   Il nome della versione (es. card, detail, original).
+     * @return                           La versione corrispondente.
+     * @throws ResponseStatusException   Se la versione non esiste.
+     */
+    public static ImageRendition fromPathName(String pathName) {
+        for (ImageRendition rendition : values()) {
+            if (rendition.pathName.equalsIgnoreCase(pathName)) {
+                return rendition;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found");
+    }
+}
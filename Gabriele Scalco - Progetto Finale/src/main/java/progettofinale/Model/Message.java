@@ -7,14 +7,15 @@ import progettofinale.Model.Bikemodel.*;
 /**
  * Classe che rappresenta un messaggio tra due utenti.
  * Contiene informazioni sul mittente, destinatario, contenuto del messaggio, data di invio 
- * e un riferimento alla bicicletta oggetto della conversazione.
+ * e un riferimento alla bicicletta e alla conversazione di cui fa parte.
  */
 @Entity
 public class Message {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id; // Identificatore univoco del messaggio
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_seq")
+    @SequenceGenerator(name = "message_seq", sequenceName = "message_sequence", allocationSize = 50)
+    private Long id; // Identificatore univoco, assegnato prima dell'INSERT per i batch JDBC: non segue l'ordine di commit
 
     @ManyToOne
     @JoinColumn(name = "sender_id", referencedColumnName = "id", nullable = false)
@@ -28,6 +29,10 @@ public class Message {
     @JoinColumn(name = "bike_id", referencedColumnName = "id", nullable = false)
     private Bike bike; // Bicicletta associata al messaggio
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "conversation_id", referencedColumnName = "id", nullable = false)
+    private Conversation conversation; // Conversazione a cui appartiene il messaggio
+
     private String content; // Contenuto del messaggio
     private LocalDateTime timestamp; // Data e ora di invio del messaggio
 
@@ -72,6 +77,14 @@ public class Message {
         this.bike = bike;
     }
 
+    public Conversation getConversation() {
+        return conversation;
+    }
+
+    public void setConversation(Conversation conversation) {
+        this.conversation = conversation;
+    }
+
     public String getContent() {
         return content;
     }
@@ -0,0 +1,42 @@
+package progettofinale.Model;
+
+import java.util.List;
+
+/**
+ * Classe che rappresenta le modifiche all'inbox di un utente dopo un cursore:
+ * i nuovi messaggi inviati o ricevuti, i riepiloghi aggiornati delle sole conversazioni
+ * a cui appartengono e il cursore da usare per la richiesta successiva.
+ * Il cursore è l'ID dell'ultimo messaggio restituito.
+ */
+public class MessageChanges {
+
+    private final List<MessageEvent> messages; // Nuovi messaggi, in ordine di ID
+    private final List<ConversationSummary> conversations; // Riepiloghi delle conversazioni modificate
+    private final Long cursor; // Cursore per la richiesta successiva
+    private final boolean hasMore; // true se ci sono altre modifiche da leggere subito
+
+    // Costruttore per inizializzare le modifiche con messaggi, conversazioni e cursore.
+    public MessageChanges(List<MessageEvent> messages, List<ConversationSummary> conversations, Long cursor, boolean hasMore) {
+        this.messages = messages;
+        this.conversations = conversations;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters
+    public List<MessageEvent> getMessages() {
+        return messages;
+    }
+
+    public List<ConversationSummary> getConversations() {
+        return conversations;
+    }
+
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
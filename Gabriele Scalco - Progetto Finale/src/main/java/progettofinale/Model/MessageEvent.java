@@ -0,0 +1,51 @@
+package progettofinale.Model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe che rappresenta un messaggio inviato ai client connessi in tempo reale,
+ * tramite lo stream SSE o il canale STOMP della conversazione.
+ * Contiene solo gli ID della conversazione, dei partecipanti e della bicicletta, così la pagina
+ * può capire a quale conversazione appartiene il messaggio senza altre query.
+ */
+public class MessageEvent {
+
+    private final Long id; // Identificatore del messaggio, usato anche come ID dell'evento
+    private final Long conversationId; // ID della conversazione
+    private final Long senderId; // ID del mittente
+    private final Long receiverId; // ID del destinatario
+    private final Long bikeId; // ID della bicicletta oggetto della conversazione
+    private final String content; // Contenuto del messaggio
+    private final LocalDateTime timestamp; // Data e ora di invio
+
+    /**
+     * Costruttore usato anche dalle query JPQL con la sintassi `new MessageEvent(...)`.
+     *
+     * @param id                ID del messaggio.
+     * @param conversationId    ID della conversazione.
+     * @param senderId          ID del mittente.
+     * @param receiverId        ID del destinatario.
+     * @param bikeId            ID della bicicletta.
+     * @param content           Contenuto del messaggio.
+     * @param timestamp         Data e ora di invio.
+     */
+    public MessageEvent(Long id, Long conversationId, Long senderId, Long receiverId, Long bikeId,
+                        String content, LocalDateTime timestamp) {
+        this.id = id;
+        this.conversationId = conversationId;
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.bikeId = bikeId;
+        this.content = content;
+        this.timestamp = timestamp;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public Long getConversationId() { return conversationId; }
+    public Long getSenderId() { return senderId; }
+    public Long getReceiverId() { return receiverId; }
+    public Long getBikeId() { return bikeId; }
+    public String getContent() { return content; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+}
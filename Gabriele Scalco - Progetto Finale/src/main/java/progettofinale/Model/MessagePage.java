@@ -0,0 +1,37 @@
+package progettofinale.Model;
+
+import java.util.List;
+
+/**
+ * Classe che rappresenta una pagina dei messaggi di una conversazione.
+ * Contiene anche l'ID della conversazione, nullo se i due utenti non hanno ancora scambiato messaggi.
+ * I messaggi sono in ordine cronologico; il cursore per i messaggi precedenti è codificato
+ * come "timestamp_id" del messaggio più vecchio della pagina. Un cursore nullo indica che
+ * non ci sono messaggi più vecchi.
+ */
+public class MessagePage {
+
+    private final Long conversationId; // ID della conversazione
+    private final List<MessageView> messages; // I messaggi della pagina corrente
+    private final String olderCursor; // Cursore per i messaggi precedenti
+
+    // Costruttore per inizializzare una pagina con i messaggi e il cursore.
+    public MessagePage(Long conversationId, List<MessageView> messages, String olderCursor) {
+        this.conversationId = conversationId;
+        this.messages = messages;
+        this.olderCursor = olderCursor;
+    }
+
+    // Getters
+    public Long getConversationId() {
+        return conversationId;
+    }
+
+    public List<MessageView> getMessages() {
+        return messages;
+    }
+
+    public String getOlderCursor() {
+        return olderCursor;
+    }
+}
@@ -0,0 +1,37 @@
+package progettofinale.Model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe che rappresenta un messaggio nella pagina di una conversazione.
+ * Contiene solo i dati mostrati e viene costruita dalle query di proiezione,
+ * senza caricare mittente, destinatario e bicicletta.
+ */
+public class MessageView {
+
+    private final Long id; // Identificatore del messaggio
+    private final Long senderId; // ID del mittente
+    private final String content; // Contenuto del messaggio
+    private final LocalDateTime timestamp; // Data e ora di invio
+
+    /**
+     * Costruttore usato dalle query JPQL con la sintassi `new MessageView(...)`.
+     *
+     * @param id          ID del messaggio.
+     * @param senderId    ID del mittente.
+     * @param content     Contenuto del messaggio.
+     * @param timestamp   Data e ora di invio.
+     */
+    public MessageView(Long id, Long senderId, String content, LocalDateTime timestamp) {
+        this.id = id;
+        this.senderId = senderId;
+        this.content = content;
+        this.timestamp = timestamp;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public Long getSenderId() { return senderId; }
+    public String getContent() { return content; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+}
@@ -6,7 +6,7 @@ import java.util.*;
 
 /**
  * Classe che rappresenta un utente della piattaforma.
- * Contiene informazioni sull'email, password, nome utente e una lista di biciclette aggiunte alla wishlist. 
+ * Contiene informazioni sull'email, password, nome utente e l'insieme delle biciclette aggiunte alla wishlist. 
  * Può essere estesa in futuro per includere dettagli aggiuntivi come indirizzo, numero di telefono, ecc.
  */
 @Entity
@@ -21,13 +21,14 @@ public class User {
     private String password; // Password criptata dell'utente
     private String name; // Nome utente
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Caricata solo se richiesta: la wishlist si modifica e si legge a pagine tramite WishlistRepository
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "user_wishlist",
         joinColumns = @JoinColumn(name = "user_id"),
         inverseJoinColumns = @JoinColumn(name = "bike_id")
     )
-    private List<Bike> wishlist = new ArrayList<>(); // Lista delle biciclette preferite dall'utente
+    private Set<Bike> wishlist = new HashSet<>(); // Insieme delle biciclette preferite dall'utente
 
      // Costruttore di default richiesto da JPA.
     public User() {}
@@ -69,11 +70,11 @@ public class User {
         this.name = name;
     }
 
-    public List<Bike> getWishlist() {
+    public Set<Bike> getWishlist() {
         return wishlist;
     }
 
-    public void setWishlist(List<Bike> wishlist) {
+    public void setWishlist(Set<Bike> wishlist) {
         this.wishlist = wishlist;
     }
 }
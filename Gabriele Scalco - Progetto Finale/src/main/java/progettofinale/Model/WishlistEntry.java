@@ -0,0 +1,60 @@
+package progettofinale.Model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Classe che rappresenta una riga della tabella di join `user_wishlist`: una bicicletta nella wishlist di un utente.
+ * L'entità è mappata sulla stessa tabella dell'associazione {@link User#getWishlist()} e permette di aggiungere,
+ * rimuovere e leggere le biciclette preferite tramite WishlistRepository, senza caricare l'utente.
+ * Le righe vengono scritte solo con le query del repository, mai salvando direttamente questa entità.
+ */
+@Entity
+@Table(name = "user_wishlist")
+@IdClass(WishlistEntry.Key.class)
+public class WishlistEntry {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId; // ID dell'utente
+
+    @Id
+    @Column(name = "bike_id")
+    private Long bikeId; // ID della bicicletta preferita
+
+    // Costruttore di default per JPA
+    public WishlistEntry() {}
+
+    // Getter
+    public Long getUserId() { return userId; }
+
+    public Long getBikeId() { return bikeId; }
+
+    /**
+     * Chiave composta della riga, corrispondente alla chiave primaria (user_id, bike_id).
+     */
+    public static class Key implements Serializable {
+
+        private Long userId;
+        private Long bikeId;
+
+        // Costruttore di default per JPA
+        public Key() {}
+
+        public Key(Long userId, Long bikeId) {
+            this.userId = userId;
+            this.bikeId = bikeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Objects.equals(userId, other.userId) && Objects.equals(bikeId, other.bikeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, bikeId);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package progettofinale.Model;
+
+import java.util.List;
+
+/**
+ * Classe che rappresenta una pagina della wishlist di un utente.
+ * Le biciclette sono in ordine di ID; il cursore per la pagina successiva è l'ID dell'ultima bicicletta
+ * della pagina. Un cursore nullo indica che non ci sono altre biciclette.
+ */
+public class WishlistPage {
+
+    private final List<BikeCard> bikes; // Le biciclette della pagina corrente
+    private final Long nextCursor; // Cursore per la pagina successiva
+
+    // Costruttore per inizializzare una pagina con le biciclette e il cursore.
+    public WishlistPage(List<BikeCard> bikes, Long nextCursor) {
+        this.bikes = bikes;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters
+    public List<BikeCard> getBikes() {
+        return bikes;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,47 @@
+package progettofinale.Repository;
+
+import progettofinale.Model.Bikemodel.BikeImage;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
+
+/**
+ * Repository per la lettura delle immagini delle biciclette ancora salvate nella tabella `bike_legacy_image`.
+ * Usato solo dagli endpoint che servono le immagini non migrate e dalla migrazione verso ImageStore.
+ * Espone solo le query di lettura e di eliminazione: le nuove immagini vengono salvate in ImageStore,
+ * quindi qui non esiste save.
+ */
+public interface BikeImageRepository extends Repository<BikeImage, Long> {
+
+    /**
+     * Recupera l'immagine di una bicicletta non ancora migrata in ImageStore, senza leggere la bicicletta.
+     *
+     * @param id       L'ID della bicicletta.
+     * @return         L'immagine binaria, oppure null se la bicicletta non esiste o non ha un'immagine da migrare.
+     */
+    @Query("SELECT i.image FROM BikeImage i WHERE i.id = :id")
+    byte[] findImageById(@Param("id") Long id);
+
+    /**
+     * Recupera gli ID delle biciclette la cui immagine non è ancora migrata in ImageStore.
+     *
+     * @return         Gli ID delle biciclette da migrare, in ordine crescente.
+     */
+    @Query("SELECT i.id FROM BikeImage i ORDER BY i.id")
+    List<Long> findIdsWithLegacyImage();
+
+    /**
+     * Elimina l'immagine di una bicicletta che è stata migrata in ImageStore.
+     *
+     * @param id       L'ID della bicicletta.
+     * @return         Il numero di righe eliminate.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BikeImage i WHERE i.id = :id")
+    int deleteImageById(@Param("id") Long id);
+}
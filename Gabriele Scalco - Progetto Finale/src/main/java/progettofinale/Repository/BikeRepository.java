@@ -1,16 +1,27 @@
 package progettofinale.Repository;
 
 import progettofinale.Model.Bikemodel.*;
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.ImageMetadata;
 import progettofinale.Model.User;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository per la gestione delle operazioni di persistenza relative alle biciclette.
  * Estende JpaRepository per fornire metodi CRUD standard e definisce metodi personalizzati per query specifiche.
+ * Estende inoltre JpaSpecificationExecutor per eseguire le ricerche definite in {@link BikeSpecifications}
+ * e BikeRepositoryCustom per la lettura paginata a keyset delle schede del catalogo.
  */
-public interface BikeRepository extends JpaRepository<Bike, Long> {
+public interface BikeRepository extends JpaRepository<Bike, Long>, JpaSpecificationExecutor<Bike>, BikeRepositoryCustom {
 
     /**
      * Recupera tutte le biciclette associate a un determinato utente.
@@ -19,4 +30,100 @@ public interface BikeRepository extends JpaRepository<Bike, Long> {
      * @return         Una lista di biciclette appartenenti all'utente specificato.
      */
     List<Bike> findByUser(User user);
+
+    /**
+     * Recupera le schede delle biciclette pubblicate da un utente, senza leggere le immagini.
+     *
+     * @param userId   L'ID dell'utente proprietario delle biciclette.
+     * @return         Una lista di schede ordinate per ID.
+     */
+    @Query("SELECT new progettofinale.Model.BikeCard(b.id, b.brand, b.size, b.description, b.price, b.place, " +
+           "b.discriminator, b.user.id, CASE WHEN b.imageKey IS NULL AND b.legacyImage = false THEN false ELSE true END) " +
+           "FROM Bike b WHERE b.user.id = :userId ORDER BY b.id")
+    List<BikeCard> findCardsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Recupera i metadati dell'immagine di una bicicletta, senza leggere l'immagine.
+     *
+     * @param id       L'ID della bicicletta.
+     * @return         I metadati dell'immagine, vuoto se la bicicletta non esiste o non ha immagine.
+     */
+    @Query("SELECT new progettofinale.Model.ImageMetadata(b.id, b.imageUpdatedAt, b.imageKey, " +
+           "b.imageCardKey, b.imageDetailKey, b.imageContentType) " +
+           "FROM Bike b WHERE b.id = :id AND (b.imageKey IS NOT NULL OR b.legacyImage = true)")
+    Optional<ImageMetadata> findImageMetadataById(@Param("id") Long id);
+
+    /**
+     * Recupera l'ID del proprietario di una bicicletta, senza caricarla.
+     *
+     * @param id       L'ID della bicicletta.
+     * @return         L'ID del proprietario, oppure null se la bicicletta non esiste o non ha proprietario.
+     */
+    @Query("SELECT b.user.id FROM Bike b WHERE b.id = :id")
+    Long findOwnerIdById(@Param("id") Long id);
+
+    /**
+     * Elimina una bicicletta con un'unica DELETE, senza caricarla.
+     * Messaggi, conversazioni e righe della wishlist che la riferiscono devono essere eliminati prima.
+     *
+     * @param id       L'ID della bicicletta.
+     * @return         Il numero di righe eliminate (0 se la bicicletta non esiste).
+     */
+    @Modifying
+    @Query("DELETE FROM Bike b WHERE b.id = :id")
+    int deleteBikeById(@Param("id") Long id);
+
+    /**
+     * Salva le chiavi delle versioni ridotte dell'immagine di una bicicletta con un'unica UPDATE.
+     * L'aggiornamento avviene solo se l'immagine originale non è cambiata nel frattempo.
+     *
+     * @param id         L'ID della bicicletta.
+     * @param imageKey   La chiave dell'immagine originale da cui sono state generate le versioni.
+     * @param cardKey    La chiave della miniatura per le schede.
+     * @param detailKey  La chiave della versione per la pagina di dettaglio.
+     * @return           Il numero di righe aggiornate (0 se la bicicletta è stata eliminata o l'immagine cambiata).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Bike b SET b.imageCardKey = :cardKey, b.imageDetailKey = :detailKey " +
+           "WHERE b.id = :id AND b.imageKey = :imageKey")
+    int updateRenditionKeys(@Param("id") Long id, @Param("imageKey") String imageKey,
+                            @Param("cardKey") String cardKey, @Param("detailKey") String detailKey);
+
+    /**
+     * Registra la chiave in ImageStore di un'immagine migrata dalla tabella `bike_legacy_image`.
+     * La riga di quella tabella viene eliminata separatamente tramite {@link BikeImageRepository#deleteImageById(Long)}.
+     *
+     * @param id            L'ID della bicicletta.
+     * @param imageKey      La chiave dell'immagine in ImageStore.
+     * @param contentType   Il tipo di contenuto dell'immagine.
+     * @return              Il numero di righe aggiornate.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Bike b SET b.imageKey = :imageKey, b.imageContentType = :contentType, " +
+           "b.imageCardKey = null, b.imageDetailKey = null WHERE b.id = :id")
+    int moveLegacyImage(@Param("id") Long id, @Param("imageKey") String imageKey,
+                        @Param("contentType") String contentType);
+
+    /**
+     * Recupera, tra le chiavi indicate, quelle usate da almeno una bicicletta come immagine originale
+     * o come versione ridotta. Usato dalla pulizia delle immagini non referenziate di ImageStore.
+     *
+     * @param keys     Le chiavi da controllare.
+     * @return         Le chiavi referenziate.
+     */
+    @Query("SELECT b.imageKey FROM Bike b WHERE b.imageKey IN :keys " +
+           "UNION SELECT b.imageCardKey FROM Bike b WHERE b.imageCardKey IN :keys " +
+           "UNION SELECT b.imageDetailKey FROM Bike b WHERE b.imageDetailKey IN :keys")
+    List<String> findReferencedImageKeys(@Param("keys") Collection<String> keys);
+
+    /**
+     * Recupera gli ID delle biciclette con un'immagine in ImageStore ma senza versioni ridotte,
+     * ad esempio perché la loro elaborazione è stata scartata con la coda piena.
+     *
+     * @return         Gli ID delle biciclette, in ordine crescente.
+     */
+    @Query("SELECT b.id FROM Bike b WHERE b.imageKey IS NOT NULL AND b.imageCardKey IS NULL ORDER BY b.id")
+    List<Long> findIdsMissingRenditions();
 }
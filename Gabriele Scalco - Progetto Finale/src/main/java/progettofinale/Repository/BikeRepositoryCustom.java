@@ -0,0 +1,28 @@
+package progettofinale.Repository;
+
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.Bikemodel.*;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Estensione di BikeRepository con query scritte tramite Criteria API.
+ * Permette di limitare il numero di righe lette senza la query di conteggio
+ * che Spring Data eseguirebbe per una Page.
+ */
+public interface BikeRepositoryCustom {
+
+    /**
+     * Recupera le schede di al massimo `limit` biciclette che soddisfano la specifica, nell'ordine richiesto.
+     * La query seleziona solo le colonne mostrate nel catalogo e non legge mai le immagini.
+     *
+     * @param specification     I criteri di ricerca (inclusa l'eventuale condizione di keyset).
+     * @param sort              L'ordinamento da applicare.
+     * @param limit             Il numero massimo di righe da leggere.
+     * @return                  Una lista di al massimo `limit` schede.
+     */
+    List<BikeCard> findCardSlice(Specification<Bike> specification, Sort sort, int limit);
+}
@@ -0,0 +1,57 @@
+package progettofinale.Repository;
+
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.Bikemodel.*;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.List;
+
+/**
+ * Implementazione di BikeRepositoryCustom basata su Criteria API.
+ * Spring Data la collega automaticamente a BikeRepository grazie al suffisso "Impl".
+ */
+public class BikeRepositoryCustomImpl implements BikeRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BikeCard> findCardSlice(Specification<Bike> specification, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BikeCard> query = cb.createQuery(BikeCard.class);
+        Root<Bike> root = query.from(Bike.class);
+
+        // Seleziona solo le colonne della scheda: dell'immagine si verifica soltanto la presenza
+        query.select(cb.construct(BikeCard.class,
+                root.get("id"),
+                root.get("brand"),
+                root.get("size"),
+                root.get("description"),
+                root.get("price"),
+                root.get("place"),
+                root.get("discriminator"),
+                root.get("user").get("id"),
+                cb.<Boolean>selectCase()
+                        .when(cb.and(cb.isNull(root.get("imageKey")), cb.isFalse(root.get("legacyImage"))), false)
+                        .otherwise(true)));
+
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit) // Legge solo le righe della pagina richiesta
+                .getResultList();
+    }
+}
@@ -0,0 +1,95 @@
+package progettofinale.Repository;
+
+import progettofinale.Model.Bikemodel.*;
+
+import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.criteria.Predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specifiche JPA per la ricerca delle biciclette.
+ * Ogni criterio non nullo viene tradotto in un predicato SQL, in modo che il filtraggio
+ * avvenga direttamente nel database invece che in memoria.
+ */
+public class BikeSpecifications {
+
+    /**
+     * Costruisce una specifica che combina in AND tutti i criteri di ricerca forniti.
+     * I criteri nulli o vuoti vengono ignorati; i confronti testuali non distinguono maiuscole e minuscole.
+     *
+     * @param size         Dimensione della bicicletta (opzionale).
+     * @param place        Regione della bicicletta (opzionale).
+     * @param maxPrice     Prezzo massimo della bicicletta (opzionale).
+     * @param brand        Marca della bicicletta (opzionale).
+     * @param bikeType     Tipo di bicicletta (opzionale).
+     * @return             La specifica corrispondente ai criteri.
+     */
+    public static Specification<Bike> matching(String size, String place, Double maxPrice, String brand, String bikeType) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (size != null && !size.isEmpty()) {
+                predicates.add(cb.equal(cb.lower(root.get("size")), size.toLowerCase()));
+            }
+            if (place != null && !place.isEmpty()) {
+                predicates.add(cb.equal(cb.lower(root.get("place")), place.toLowerCase()));
+            }
+            if (maxPrice != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("price"), maxPrice));
+            }
+            if (brand != null && !brand.isEmpty()) {
+                predicates.add(cb.equal(cb.lower(root.get("brand")), brand.toLowerCase()));
+            }
+            if (bikeType != null && !bikeType.isEmpty()) {
+                Class<? extends Bike> bikeClass = resolveBikeClass(bikeType);
+                // Un tipo sconosciuto non corrisponde a nessuna bicicletta
+                predicates.add(bikeClass != null ? cb.equal(root.type(), bikeClass) : cb.disjunction());
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Costruisce la condizione di keyset che seleziona le biciclette successive alla posizione (prezzo, id)
+     * nell'ordine indicato. Con un indice su (price, id) il costo non dipende dalla profondità della pagina.
+     *
+     * @param price         Il prezzo dell'ultima bicicletta già mostrata.
+     * @param id            L'ID dell'ultima bicicletta già mostrata.
+     * @param descending    true se l'ordinamento è decrescente.
+     * @return              La specifica per la condizione di keyset.
+     */
+    public static Specification<Bike> seek(double price, long id, boolean descending) {
+        return (root, query, cb) -> {
+            if (descending) {
+                return cb.or(
+                        cb.lessThan(root.get("price"), price),
+                        cb.and(cb.equal(root.get("price"), price), cb.lessThan(root.get("id"), id)));
+            }
+            return cb.or(
+                    cb.greaterThan(root.get("price"), price),
+                    cb.and(cb.equal(root.get("price"), price), cb.greaterThan(root.get("id"), id)));
+        };
+    }
+
+    /**
+     * Converte il tipo di bicicletta nella sottoclasse corrispondente, usata come discriminatore.
+     *
+     * @param bikeType     Il tipo di bicicletta (es. Mountain, Road, Electric).
+     * @return             La sottoclasse di `Bike`, oppure null se il tipo non è supportato.
+     */
+    private static Class<? extends Bike> resolveBikeClass(String bikeType) {
+        switch (bikeType.toLowerCase()) {
+            case "mountain":
+                return MountainBike.class;
+            case "road":
+                return RoadBike.class;
+            case "electric":
+                return ElectricBike.class;
+            default:
+                return null;
+        }
+    }
+}
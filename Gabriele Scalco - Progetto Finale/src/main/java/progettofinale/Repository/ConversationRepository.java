@@ -0,0 +1,193 @@
+package progettofinale.Repository;
+
+import progettofinale.Model.Conversation;
+import progettofinale.Model.ConversationSummary;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository per la gestione delle conversazioni tra acquirente e venditore su una bicicletta.
+ * Le righe vengono create e aggiornate con singole istruzioni, senza caricare le entità.
+ */
+public interface ConversationRepository extends JpaRepository<Conversation, Long> {
+
+    /**
+     * Crea la conversazione tra acquirente e venditore su una bicicletta, se non esiste già.
+     * In caso di inserimenti concorrenti il vincolo di unicità lascia una sola riga.
+     *
+     * @param bikeId      L'ID della bicicletta.
+     * @param buyerId     L'ID dell'acquirente.
+     * @param sellerId    L'ID del venditore.
+     * @return            Il numero di righe inserite (0 se la conversazione esisteva già).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversation (bike_id, buyer_id, seller_id, message_count, " +
+                   "buyer_unread_count, seller_unread_count) " +
+                   "VALUES (:bikeId, :buyerId, :sellerId, 0, 0, 0) ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("bikeId") Long bikeId, @Param("buyerId") Long buyerId, @Param("sellerId") Long sellerId);
+
+    /**
+     * Recupera l'ID della conversazione tra acquirente e venditore su una bicicletta.
+     *
+     * @param bikeId      L'ID della bicicletta.
+     * @param buyerId     L'ID dell'acquirente.
+     * @param sellerId    L'ID del venditore.
+     * @return            L'ID della conversazione, oppure null se non esiste.
+     */
+    @Query("SELECT c.id FROM Conversation c " +
+           "WHERE c.bike.id = :bikeId AND c.buyer.id = :buyerId AND c.seller.id = :sellerId")
+    Long findIdByParticipants(@Param("bikeId") Long bikeId, @Param("buyerId") Long buyerId,
+                              @Param("sellerId") Long sellerId);
+
+    /**
+     * Recupera l'ID della conversazione di un utente con un altro utente su una bicicletta,
+     * indipendentemente da chi dei due sia l'acquirente.
+     *
+     * @param userId        L'ID dell'utente che apre la conversazione.
+     * @param otherUserId   L'ID dell'altro utente.
+     * @param bikeId        L'ID della bicicletta.
+     * @return              L'ID della conversazione, vuoto se i due utenti non hanno scambiato messaggi.
+     */
+    @Query("SELECT c.id FROM Conversation c WHERE c.bike.id = :bikeId " +
+           "AND ((c.buyer.id = :userId AND c.seller.id = :otherUserId) " +
+           "OR (c.buyer.id = :otherUserId AND c.seller.id = :userId))")
+    Optional<Long> findIdForUser(@Param("userId") Long userId, @Param("otherUserId") Long otherUserId,
+                                 @Param("bikeId") Long bikeId);
+
+    /**
+     * Verifica se un utente è l'acquirente o il venditore di una conversazione.
+     *
+     * @param id          L'ID della conversazione.
+     * @param userId      L'ID dell'utente.
+     * @return            true se l'utente partecipa alla conversazione.
+     */
+    @Query("SELECT COUNT(c) > 0 FROM Conversation c " +
+           "WHERE c.id = :id AND (c.buyer.id = :userId OR c.seller.id = :userId)")
+    boolean isParticipant(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Registra nuovi messaggi nella conversazione con un'unica UPDATE: incrementa il numero
+     * di messaggi e i non letti dei destinatari, e aggiorna ultimo messaggio e ultima attività
+     * solo se il messaggio è più recente di quello registrato.
+     *
+     * @param id             L'ID della conversazione.
+     * @param messageId      L'ID del più recente dei messaggi salvati.
+     * @param timestamp      Data e ora del più recente dei messaggi.
+     * @param messageCount   Il numero di messaggi salvati.
+     * @param buyerUnread    Il numero di messaggi destinati all'acquirente.
+     * @param sellerUnread   Il numero di messaggi destinati al venditore.
+     * @return               Il numero di righe aggiornate.
+     */
+    @Modifying
+    @Query("UPDATE Conversation c SET c.messageCount = c.messageCount + :messageCount, " +
+           "c.buyerUnreadCount = c.buyerUnreadCount + :buyerUnread, " +
+           "c.sellerUnreadCount = c.sellerUnreadCount + :sellerUnread, " +
+           "c.lastActivity = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId " +
+           "THEN :timestamp ELSE c.lastActivity END, " +
+           "c.lastMessageId = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId " +
+           "THEN :messageId ELSE c.lastMessageId END " +
+           "WHERE c.id = :id")
+    int recordMessages(@Param("id") Long id, @Param("messageId") Long messageId,
+                       @Param("timestamp") LocalDateTime timestamp, @Param("messageCount") long messageCount,
+                       @Param("buyerUnread") int buyerUnread, @Param("sellerUnread") int sellerUnread);
+
+    /**
+     * Azzera i messaggi non letti di un utente in una conversazione.
+     *
+     * @param id        L'ID della conversazione.
+     * @param userId    L'ID dell'utente che ha letto la conversazione.
+     * @return          Il numero di righe aggiornate.
+     */
+    @Modifying
+    @Query("UPDATE Conversation c SET " +
+           "c.buyerUnreadCount = CASE WHEN c.buyer.id = :userId THEN 0 ELSE c.buyerUnreadCount END, " +
+           "c.sellerUnreadCount = CASE WHEN c.seller.id = :userId THEN 0 ELSE c.sellerUnreadCount END " +
+           "WHERE c.id = :id")
+    int markRead(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Somma i messaggi non letti di un utente in tutte le sue conversazioni.
+     *
+     * @param userId    L'ID dell'utente.
+     * @return          Il numero totale di messaggi non letti (0 se l'utente non ha conversazioni).
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN c.buyer.id = :userId THEN c.buyerUnreadCount " +
+           "ELSE c.sellerUnreadCount END), 0) " +
+           "FROM Conversation c WHERE c.buyer.id = :userId OR c.seller.id = :userId")
+    long sumUnreadByUserId(@Param("userId") Long userId);
+
+    /**
+     * Recupera i riepiloghi delle conversazioni di un utente, dalla più recente.
+     * Legge solo le conversazioni dell'utente e, per ognuna, l'ultimo messaggio.
+     *
+     * @param userId      L'ID dell'utente che consulta l'inbox.
+     * @return            I riepiloghi ordinati per ultima attività.
+     */
+    @Query("SELECT new progettofinale.Model.ConversationSummary(" +
+           "CASE WHEN c.buyer.id = :userId THEN s.id ELSE bu.id END, " +
+           "CASE WHEN c.buyer.id = :userId THEN s.name ELSE bu.name END, " +
+           "b.id, b.brand, m.content, c.lastActivity, c.messageCount, " +
+           "CASE WHEN c.buyer.id = :userId THEN c.buyerUnreadCount ELSE c.sellerUnreadCount END) " +
+           "FROM Conversation c JOIN c.buyer bu JOIN c.seller s JOIN c.bike b " +
+           "LEFT JOIN Message m ON m.id = c.lastMessageId " +
+           "WHERE c.buyer.id = :userId OR c.seller.id = :userId " +
+           "ORDER BY c.lastActivity DESC, c.id DESC")
+    List<ConversationSummary> findSummariesByUserId(@Param("userId") Long userId);
+
+    /**
+     * Recupera i riepiloghi di alcune conversazioni di un utente, dalla più recente.
+     *
+     * @param userId      L'ID dell'utente.
+     * @param ids         Gli ID delle conversazioni.
+     * @return            I riepiloghi ordinati per ultima attività.
+     */
+    @Query("SELECT new progettofinale.Model.ConversationSummary(" +
+           "CASE WHEN c.buyer.id = :userId THEN s.id ELSE bu.id END, " +
+           "CASE WHEN c.buyer.id = :userId THEN s.name ELSE bu.name END, " +
+           "b.id, b.brand, m.content, c.lastActivity, c.messageCount, " +
+           "CASE WHEN c.buyer.id = :userId THEN c.buyerUnreadCount ELSE c.sellerUnreadCount END) " +
+           "FROM Conversation c JOIN c.buyer bu JOIN c.seller s JOIN c.bike b " +
+           "LEFT JOIN Message m ON m.id = c.lastMessageId " +
+           "WHERE c.id IN :ids AND (c.buyer.id = :userId OR c.seller.id = :userId) " +
+           "ORDER BY c.lastActivity DESC, c.id DESC")
+    List<ConversationSummary> findSummariesByUserIdAndIds(@Param("userId") Long userId,
+                                                          @Param("ids") Collection<Long> ids);
+
+    /**
+     * Recupera gli ID degli utenti che partecipano alle conversazioni su una bicicletta, come acquirenti o venditori.
+     *
+     * @param bikeId      L'ID della bicicletta.
+     * @return            Gli ID distinti dei partecipanti.
+     */
+    @Query("SELECT c.buyer.id FROM Conversation c WHERE c.bike.id = :bikeId " +
+           "UNION SELECT c.seller.id FROM Conversation c WHERE c.bike.id = :bikeId")
+    List<Long> findParticipantIdsByBikeId(@Param("bikeId") Long bikeId);
+
+    /**
+     * Recupera gli ID delle conversazioni su una bicicletta.
+     *
+     * @param bikeId      L'ID della bicicletta.
+     * @return            Gli ID delle conversazioni.
+     */
+    @Query("SELECT c.id FROM Conversation c WHERE c.bike.id = :bikeId")
+    List<Long> findIdsByBikeId(@Param("bikeId") Long bikeId);
+
+    /**
+     * Elimina tutte le conversazioni associate a una bicicletta con un'unica DELETE.
+     * I messaggi della bicicletta devono essere eliminati prima.
+     *
+     * @param bikeId      L'ID della bicicletta.
+     * @return            Il numero di conversazioni eliminate.
+     */
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.bike.id = :bikeId")
+    int deleteByBikeId(@Param("bikeId") Long bikeId);
+}
@@ -1,38 +1,126 @@
 package progettofinale.Repository;
 
 import progettofinale.Model.*;
-import progettofinale.Model.Bikemodel.*;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
- * Repository per la gestione delle operazioni di persistenza relative alle biciclette.
+ * Repository per la gestione delle operazioni di persistenza relative ai messaggi.
  * Estende JpaRepository per fornire metodi CRUD standard e definisce metodi personalizzati per query specifiche.
  */
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     /**
-     * Elimina tutti i messaggi associati a una determinata bicicletta.
+     * Elimina tutti i messaggi associati a una determinata bicicletta con un'unica DELETE,
+     * senza caricare i messaggi.
      *
-     * @param bike        La bicicletta i cui messaggi devono essere eliminati.
+     * @param bikeId      L'ID della bicicletta i cui messaggi devono essere eliminati.
+     * @return            Il numero di messaggi eliminati.
      */
-    void deleteByBike(Bike bike);
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.bike.id = :bikeId")
+    int deleteByBikeId(@Param("bikeId") Long bikeId);
 
     /**
-     * Recupera tutti i messaggi relativi a un determinato utente (sia come mittente che come destinatario),
-     * includendo i dettagli del mittente, destinatario e bicicletta associata.
+     * Recupera i messaggi più recenti di una conversazione, dal più recente al più vecchio.
+     * La lettura usa l'indice su (conversation_id, timestamp, id) e si ferma dopo il numero di messaggi richiesto.
      *
-     * @param userId      L'ID dell'utente (mittente o destinatario).
-     * @return            Una lista di messaggi ordinati per timestamp in ordine crescente.
+     * @param conversationId    L'ID della conversazione.
+     * @param pageable          Il numero massimo di messaggi da leggere.
+     * @return                  I messaggi dal più recente.
      */
-    @Query("SELECT m FROM Message m " +
-           "JOIN FETCH m.sender s " +
-           "JOIN FETCH m.receiver r " +
-           "JOIN FETCH m.bike b " +
-           "WHERE s.id = :userId OR r.id = :userId " +
-           "ORDER BY m.timestamp ASC")
-    List<Message> findAllByUserId(@Param("userId") Long userId);
+    @Query("SELECT new progettofinale.Model.MessageView(m.id, m.sender.id, m.content, m.timestamp) " +
+           "FROM Message m WHERE m.conversation.id = :conversationId " +
+           "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findLatestByConversationId(@Param("conversationId") Long conversationId, Pageable pageable);
+
+    /**
+     * Recupera i messaggi di una conversazione precedenti a una posizione (timestamp, id),
+     * dal più recente al più vecchio, senza scorrere i messaggi più recenti.
+     *
+     * @param conversationId    L'ID della conversazione.
+     * @param timestamp         Il timestamp del messaggio di confine.
+     * @param id                L'ID del messaggio di confine.
+     * @param pageable          Il numero massimo di messaggi da leggere.
+     * @return                  I messaggi precedenti dal più recente.
+     */
+    @Query("SELECT new progettofinale.Model.MessageView(m.id, m.sender.id, m.content, m.timestamp) " +
+           "FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+           "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findOlderByConversationId(@Param("conversationId") Long conversationId,
+                                                @Param("timestamp") LocalDateTime timestamp,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
+    /**
+     * Recupera i messaggi ricevuti da un utente dopo un determinato messaggio, in ordine di invio.
+     * Usato per reinviare i messaggi persi quando una connessione SSE si riconnette.
+     *
+     * @param userId        L'ID del destinatario.
+     * @param lastId        L'ID dell'ultimo messaggio già ricevuto.
+     * @param pageable      Il numero massimo di messaggi da leggere.
+     * @return              I messaggi successivi, dal più vecchio.
+     */
+    @Query("SELECT new progettofinale.Model.MessageEvent(m.id, m.conversation.id, m.sender.id, m.receiver.id, " +
+           "m.bike.id, m.content, m.timestamp) " +
+           "FROM Message m WHERE m.receiver.id = :userId AND m.id > :lastId ORDER BY m.id")
+    List<MessageEvent> findReceivedAfter(@Param("userId") Long userId, @Param("lastId") Long lastId, Pageable pageable);
+
+    /**
+     * Recupera tutti i messaggi dopo un determinato messaggio, in ordine di ID.
+     * Usato per leggere i messaggi a blocchi, ad esempio per costruire l'indice di ricerca.
+     *
+     * @param lastId        L'ID dell'ultimo messaggio già letto.
+     * @param pageable      Il numero massimo di messaggi da leggere.
+     * @return              I messaggi successivi, dal più vecchio.
+     */
+    @Query("SELECT new progettofinale.Model.MessageEvent(m.id, m.conversation.id, m.sender.id, m.receiver.id, " +
+           "m.bike.id, m.content, m.timestamp) " +
+           "FROM Message m WHERE m.id > :lastId ORDER BY m.id")
+    List<MessageEvent> findAllAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    /**
+     * Recupera i messaggi inviati o ricevuti da un utente dopo un cursore e fino a un limite, in ordine di ID.
+     * Il limite è quello di MessageCommitTracker: i messaggi oltre il limite possono essere già visibili
+     * mentre uno con ID minore non lo è ancora, e verranno letti insieme a lui dalla richiesta successiva.
+     * Usa gli indici su (sender_id, id) e (receiver_id, id): se non ci sono messaggi nuovi
+     * la query legge solo la prima voce di ciascun indice.
+     *
+     * @param userId        L'ID dell'utente.
+     * @param cursor        L'ID dell'ultimo messaggio già letto dal client.
+     * @param mark          L'ID più alto da leggere.
+     * @param pageable      Il numero massimo di messaggi da leggere.
+     * @return              I messaggi successivi al cursore, dal più vecchio.
+     */
+    @Query("SELECT new progettofinale.Model.MessageEvent(m.id, m.conversation.id, m.sender.id, m.receiver.id, " +
+           "m.bike.id, m.content, m.timestamp) " +
+           "FROM Message m WHERE m.id > :cursor AND m.id <= :mark " +
+           "AND (m.sender.id = :userId OR m.receiver.id = :userId) " +
+           "ORDER BY m.id")
+    List<MessageEvent> findChangesSince(@Param("userId") Long userId, @Param("cursor") Long cursor,
+                                        @Param("mark") Long mark, Pageable pageable);
+
+    /**
+     * Recupera l'ID del messaggio più recente inviato o ricevuto da un utente.
+     *
+     * @param userId        L'ID dell'utente.
+     * @return              L'ID del messaggio più recente, oppure null se l'utente non ha messaggi.
+     */
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.sender.id = :userId OR m.receiver.id = :userId")
+    Long findMaxIdByUserId(@Param("userId") Long userId);
+
+    /**
+     * Recupera l'ID del messaggio più recente.
+     *
+     * @return              L'ID più alto, oppure null se non ci sono messaggi.
+     */
+    @Query("SELECT MAX(m.id) FROM Message m")
+    Long findMaxId();
 }
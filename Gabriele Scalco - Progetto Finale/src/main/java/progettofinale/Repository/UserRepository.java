@@ -2,6 +2,9 @@ package progettofinale.Repository;
 
 import progettofinale.Model.*;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository per la gestione delle operazioni di persistenza relative alle biciclette.
@@ -12,9 +15,31 @@ public interface UserRepository extends JpaRepository<User, Long> {
     /**
      * Recupera un utente dal database in base alla sua email.
      * Questo metodo è utile per l'autenticazione o per operazioni che richiedono di identificare un utente univocamente.
+     * Il confronto non distingue maiuscole e minuscole e usa l'indice univoco su lower(email).
      *
      * @param email     L'email dell'utente da cercare.
      * @return          L'utente corrispondente all'email specificata, oppure null se non trovato.
      */
-    User findByEmail(String email);
+    @Query("SELECT u FROM User u WHERE lower(u.email) = lower(:email)")
+    User findByEmail(@Param("email") String email);
+
+    /**
+     * Recupera l'ID di un utente in base alla sua email, senza caricare l'entità.
+     *
+     * @param email     L'email dell'utente da cercare.
+     * @return          L'ID dell'utente, oppure null se non trovato.
+     */
+    @Query("SELECT u.id FROM User u WHERE lower(u.email) = lower(:email)")
+    Long findIdByEmail(@Param("email") String email);
+
+    /**
+     * Aggiorna l'hash della password di un utente, senza caricare l'entità.
+     *
+     * @param email     L'email dell'utente.
+     * @param password  Il nuovo hash della password.
+     * @return          Il numero di utenti aggiornati.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE lower(u.email) = lower(:email)")
+    int updatePassword(@Param("email") String email, @Param("password") String password);
 }
@@ -0,0 +1,69 @@
+package progettofinale.Repository;
+
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.WishlistEntry;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Repository per la wishlist degli utenti.
+ * Ogni operazione è una singola istruzione sulla tabella di join `user_wishlist`:
+ * né l'utente né le biciclette vengono caricati.
+ */
+public interface WishlistRepository extends JpaRepository<WishlistEntry, WishlistEntry.Key> {
+
+    /**
+     * Aggiunge una bicicletta alla wishlist di un utente.
+     * Se la bicicletta è già presente, la chiave primaria (user_id, bike_id) fa ignorare la riga.
+     *
+     * @param userId    L'ID dell'utente.
+     * @param bikeId    L'ID della bicicletta.
+     * @return          Il numero di righe inserite (0 se la bicicletta era già nella wishlist).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_wishlist (user_id, bike_id) VALUES (:userId, :bikeId) ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int add(@Param("userId") Long userId, @Param("bikeId") Long bikeId);
+
+    /**
+     * Rimuove una bicicletta dalla wishlist di un utente.
+     *
+     * @param userId    L'ID dell'utente.
+     * @param bikeId    L'ID della bicicletta.
+     * @return          Il numero di righe eliminate (0 se la bicicletta non era nella wishlist).
+     */
+    @Modifying
+    @Query("DELETE FROM WishlistEntry w WHERE w.userId = :userId AND w.bikeId = :bikeId")
+    int remove(@Param("userId") Long userId, @Param("bikeId") Long bikeId);
+
+    /**
+     * Rimuove una bicicletta dalle wishlist di tutti gli utenti.
+     *
+     * @param bikeId    L'ID della bicicletta.
+     * @return          Il numero di righe eliminate.
+     */
+    @Modifying
+    @Query("DELETE FROM WishlistEntry w WHERE w.bikeId = :bikeId")
+    int deleteByBikeId(@Param("bikeId") Long bikeId);
+
+    /**
+     * Recupera una pagina delle schede delle biciclette nella wishlist di un utente, senza leggere le immagini.
+     * La paginazione è a keyset sull'ID della bicicletta e usa la chiave primaria (user_id, bike_id).
+     *
+     * @param userId    L'ID dell'utente.
+     * @param after     L'ID dell'ultima bicicletta della pagina precedente (0 per la prima pagina).
+     * @param pageable  Il numero massimo di schede da restituire.
+     * @return          Le schede delle biciclette preferite, in ordine di ID.
+     */
+    @Query("SELECT new progettofinale.Model.BikeCard(b.id, b.brand, b.size, b.description, b.price, b.place, " +
+           "b.discriminator, b.user.id, CASE WHEN b.imageKey IS NULL AND b.legacyImage = false THEN false ELSE true END) " +
+           "FROM WishlistEntry w JOIN Bike b ON b.id = w.bikeId " +
+           "WHERE w.userId = :userId AND w.bikeId > :after ORDER BY w.bikeId")
+    List<BikeCard> findCardsByUserId(@Param("userId") Long userId, @Param("after") Long after, Pageable pageable);
+}
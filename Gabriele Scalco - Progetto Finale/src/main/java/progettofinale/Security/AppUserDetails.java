@@ -0,0 +1,58 @@
+package progettofinale.Security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.security.Principal;
+import java.util.Collection;
+
+/**
+ * Dettagli dell'utente autenticato, creati da CustomUserDetailsService al login.
+ * Oltre a email, password e ruoli contengono l'ID e il nome dell'utente, così i controller
+ * li ricevono con {@code @AuthenticationPrincipal} dalla sessione, senza leggere l'utente dal database.
+ * ID e nome sono quelli del momento del login.
+ */
+public class AppUserDetails extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id; // ID dell'utente
+    private final String displayName; // Nome dell'utente
+
+    /**
+     * Crea i dettagli di un utente autenticato.
+     *
+     * @param id             L'ID dell'utente.
+     * @param email          L'email dell'utente, usata come username.
+     * @param displayName    Il nome dell'utente.
+     * @param password       La password criptata.
+     * @param authorities    I ruoli dell'utente.
+     */
+    public AppUserDetails(Long id, String email, String displayName, String password,
+                          Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, authorities);
+        this.id = id;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Recupera i dettagli dell'utente da un Principal, ad esempio quello di una sessione STOMP,
+     * dove {@code @AuthenticationPrincipal} non è disponibile.
+     *
+     * @param principal      Il Principal dell'utente autenticato (può essere null).
+     * @return               I dettagli dell'utente, oppure null se il Principal non li contiene.
+     */
+    public static AppUserDetails from(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof AppUserDetails details) {
+            return details;
+        }
+        return null;
+    }
+
+    // Getter
+    public Long getId() { return id; }
+
+    public String getDisplayName() { return displayName; }
+}
@@ -0,0 +1,90 @@
+package progettofinale.Security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Benchmark per scegliere il costo BCrypt di un'installazione.
+ * Misura il tempo di un hash con costi crescenti sulla macchina su cui viene eseguito e indica il costo più alto
+ * che resta entro il tempo obiettivo per login. Il valore va impostato in app.security.bcrypt.strength:
+ * gli utenti con un hash di costo diverso vengono aggiornati al login successivo.
+ * Esecuzione, dal jar dell'applicazione:
+ * {@code java -cp progettofinale.jar -Dloader.main=progettofinale.Security.BCryptCostBenchmark
+ * org.springframework.boot.loader.launch.PropertiesLauncher [millisecondi obiettivo]}
+ */
+public final class BCryptCostBenchmark {
+
+    static final int MIN_STRENGTH = 4; // Costo minimo accettato da BCrypt
+    static final int MAX_STRENGTH = 16; // Costo massimo provato: oltre, un hash richiede diversi secondi
+    static final long DEFAULT_TARGET_MILLIS = 250; // Tempo obiettivo predefinito per un hash
+    static final int SAMPLES = 3; // Hash misurati per ogni costo, dopo uno di riscaldamento
+
+    private static final String SAMPLE_PASSWORD = "benchmark-password";
+
+    private BCryptCostBenchmark() {}
+
+    /**
+     * Sceglie il costo più alto il cui hash richiede al massimo il tempo obiettivo.
+     * Ogni costo raddoppia il tempo del precedente: la misura si ferma al primo costo che supera l'obiettivo.
+     *
+     * @param targetMillis   Il tempo massimo, in millisecondi, di un hash.
+     * @param samples        Il numero di hash misurati per ogni costo.
+     * @return               Il costo scelto, almeno MIN_STRENGTH.
+     */
+    public static int pickStrength(long targetMillis, int samples) {
+        return pickStrength(targetMillis, samples, (strength, millis) -> {});
+    }
+
+    /**
+     * Sceglie il costo come {@link #pickStrength(long, int)}, comunicando ogni misura a chi la richiede.
+     *
+     * @param targetMillis   Il tempo massimo, in millisecondi, di un hash.
+     * @param samples        Il numero di hash misurati per ogni costo.
+     * @param onMeasure      Riceve ogni costo misurato e il suo tempo medio in millisecondi.
+     * @return               Il costo scelto, almeno MIN_STRENGTH.
+     */
+    public static int pickStrength(long targetMillis, int samples, BiConsumer<Integer, Double> onMeasure) {
+        int chosen = MIN_STRENGTH;
+        for (int strength = MIN_STRENGTH; strength <= MAX_STRENGTH; strength++) {
+            double millis = measureMillis(strength, samples);
+            onMeasure.accept(strength, millis);
+            if (millis > targetMillis) {
+                break;
+            }
+            chosen = strength;
+        }
+        return chosen;
+    }
+
+    /**
+     * Misura il tempo medio di un hash con il costo indicato.
+     *
+     * @param strength       Il costo BCrypt.
+     * @param samples        Il numero di hash misurati.
+     * @return               Il tempo medio in millisecondi.
+     */
+    public static double measureMillis(int strength, int samples) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode(SAMPLE_PASSWORD); // Riscaldamento
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            encoder.encode(SAMPLE_PASSWORD);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / samples;
+    }
+
+    /**
+     * Stampa il tempo di ogni costo e il valore consigliato per app.security.bcrypt.strength.
+     *
+     * @param args           Il tempo obiettivo in millisecondi (opzionale, predefinito DEFAULT_TARGET_MILLIS).
+     */
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TARGET_MILLIS;
+        int chosen = pickStrength(targetMillis, SAMPLES, (strength, millis) ->
+                System.out.printf("Costo %d: %.1f ms per hash, %.1f hash al secondo per thread%n",
+                        strength, millis, 1000.0 / millis));
+        System.out.println("Costo consigliato per un obiettivo di " + targetMillis + " ms:");
+        System.out.println("app.security.bcrypt.strength=" + chosen);
+    }
+}
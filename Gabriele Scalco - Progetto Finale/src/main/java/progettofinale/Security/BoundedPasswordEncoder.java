@@ -0,0 +1,72 @@
+package progettofinale.Security;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * PasswordEncoder che calcola gli hash delle password su un executor dedicato con coda limitata,
+ * invece che sul thread della richiesta.
+ * Il thread della richiesta attende il risultato, ma al massimo tanti hash quanti sono i thread
+ * dell'executor occupano la CPU insieme: un picco di login o registrazioni non toglie CPU alle altre pagine.
+ * Quando la coda è piena la richiesta viene rifiutata con {@link PasswordHashingBusyException} (503).
+ * upgradeEncoding non calcola hash e viene eseguito direttamente.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate; // Encoder che calcola effettivamente gli hash
+    private final AsyncTaskExecutor executor; // Executor limitato per il calcolo degli hash
+
+    /**
+     * Crea l'encoder.
+     *
+     * @param delegate      L'encoder che calcola gli hash.
+     * @param executor      L'executor con numero di thread e coda limitati.
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, AsyncTaskExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    // Esegue il calcolo sull'executor e ne attende il risultato
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException("Password hashing busy", e);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Password hashing interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
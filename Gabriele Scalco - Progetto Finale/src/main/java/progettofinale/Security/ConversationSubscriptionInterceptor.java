@@ -0,0 +1,84 @@
+package progettofinale.Security;
+
+import progettofinale.Repository.ConversationRepository;
+import progettofinale.Repository.UserRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Interceptor del canale STOMP in ingresso che limita le sottoscrizioni e gli invii dei client.
+ * Un utente può sottoscrivere solo le conversazioni di cui è acquirente o venditore e la propria coda
+ * degli errori, e può inviare messaggi solo all'applicazione, mai direttamente al broker.
+ */
+@Component
+public class ConversationSubscriptionInterceptor implements ChannelInterceptor {
+
+    private static final Pattern CONVERSATION_TOPIC = Pattern.compile("^/topic/conversations/(\\d+)$");
+    private static final String ERROR_QUEUE = "/user/queue/errors";
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Verifica i frame SUBSCRIBE e SEND prima che vengano elaborati.
+     *
+     * @param message                  Il frame ricevuto dal client.
+     * @param channel                  Il canale in ingresso.
+     * @return                         Il frame, se consentito.
+     * @throws AccessDeniedException   Se l'utente non è autenticato o la destinazione non è consentita.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        String destination = accessor.getDestination();
+        if (command == StompCommand.SEND) {
+            if (destination == null || !destination.startsWith("/app/")) {
+                throw new AccessDeniedException("Destinazione non consentita");
+            }
+        } else if (command == StompCommand.SUBSCRIBE) {
+            checkSubscription(accessor.getUser(), destination);
+        }
+        return message;
+    }
+
+    // Consente la coda degli errori e le sole conversazioni di cui l'utente è partecipante
+    private void checkSubscription(Principal principal, String destination) {
+        if (principal == null || destination == null) {
+            throw new AccessDeniedException("Sottoscrizione non consentita");
+        }
+        if (ERROR_QUEUE.equals(destination)) {
+            return;
+        }
+
+        Matcher matcher = CONVERSATION_TOPIC.matcher(destination);
+        if (!matcher.matches()) {
+            throw new AccessDeniedException("Sottoscrizione non consentita");
+        }
+        AppUserDetails currentUser = AppUserDetails.from(principal);
+        Long userId = currentUser != null ? currentUser.getId() : userRepository.findIdByEmail(principal.getName());
+        Long conversationId = Long.valueOf(matcher.group(1));
+        if (userId == null || !conversationRepository.isParticipant(conversationId, userId)) {
+            throw new AccessDeniedException("Sottoscrizione non consentita");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package progettofinale.Security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCryptPasswordEncoder che richiede di rifare l'hash quando il costo salvato è diverso da quello configurato,
+ * sia più basso sia più alto. BCryptPasswordEncoder lo richiede solo se il costo salvato è più basso,
+ * quindi ridurre il costo non avrebbe effetto sugli utenti già registrati.
+ */
+public class CostAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$"); // Costo nell'hash "$2a$10$..."
+
+    private final int strength; // Costo configurato (log2 delle iterazioni)
+
+    /**
+     * Crea l'encoder con il costo indicato.
+     *
+     * @param strength      Il costo BCrypt, da 4 a 31.
+     */
+    public CostAwareBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Indica se l'hash salvato è stato calcolato con un costo diverso da quello configurato.
+     *
+     * @param encodedPassword   L'hash salvato, senza il prefisso {bcrypt}.
+     * @return                  true se il costo è diverso e l'hash va ricalcolato al prossimo login.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+}
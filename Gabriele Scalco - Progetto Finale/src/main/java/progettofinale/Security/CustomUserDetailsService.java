@@ -3,31 +3,57 @@ package progettofinale.Security;
 import progettofinale.Repository.UserRepository;
 import progettofinale.Model.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.security.core.userdetails.User.UserBuilder;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * Classe per la gestione dei dettagli dell'utente per Spring Security.
  * Implementa l'interfaccia UserDetailsService per caricare gli utenti
  * dal database in base all'email fornita durante il login.
+ * Implementa anche UserDetailsPasswordService, con cui Spring Security salva al login
+ * l'hash ricalcolato quando il costo BCrypt configurato è cambiato.
+ * Gli utenti con un'email elencata in `app.security.admin-emails` ricevono anche il ruolo "ADMIN".
  */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    private Set<String> adminEmails = Set.of(); // Email degli amministratori, in minuscolo
+
+    /**
+     * Imposta le email degli utenti a cui assegnare il ruolo "ADMIN".
+     *
+     * @param adminEmails    Le email degli amministratori, confrontate senza distinzione tra maiuscole e minuscole.
+     */
+    @Value("${app.security.admin-emails:}")
+    void setAdminEmails(List<String> adminEmails) {
+        this.adminEmails = adminEmails.stream()
+                .map(String::trim)
+                .filter(email -> !email.isEmpty())
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
     /**
      * Carica un utente dal database in base alla sua email.
-     * Utilizza UserBuilder di Spring Security per creare un oggetto UserDetails
-     * che rappresenta l'utente per il processo di autenticazione.
+     * Restituisce un oggetto AppUserDetails che, oltre alle credenziali, contiene l'ID e il nome dell'utente:
+     * viene salvato nella sessione e i controller lo ricevono senza altre query.
      *
      * @param email                          L'email dell'utente fornita durante il login.
-     * @return                               Un oggetto UserDetails contenente le credenziali e i ruoli dell'utente.
+     * @return                               Un oggetto AppUserDetails contenente ID, nome, credenziali e ruoli dell'utente.
      * @throws UsernameNotFoundException     Se l'utente non è presente nel database.
      */
     @Transactional
@@ -41,12 +67,28 @@ public class CustomUserDetailsService implements UserDetailsService {
             throw new UsernameNotFoundException("User not found");
         }
 
-        // Costruisce un oggetto UserDetails utilizzando UserBuilder di Spring Security
-        UserBuilder builder = org.springframework.security.core.userdetails.User.withUsername(user.getEmail());
-        builder.password(user.getPassword()); // Imposta la password (già criptata)
-        builder.roles("USER"); // Imposta il ruolo dell'utente (in questo caso, "USER")
+        // Costruisce i dettagli dell'utente con il ruolo "USER", più "ADMIN" per gli amministratori, e la password già criptata
+        List<SimpleGrantedAuthority> authorities = adminEmails.contains(user.getEmail().toLowerCase(Locale.ROOT))
+                ? List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"))
+                : List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        return new AppUserDetails(user.getId(), user.getEmail(), user.getName(), user.getPassword(), authorities);
+    }
 
-        // Restituisce l'oggetto UserDetails
-        return builder.build();
+    /**
+     * Salva il nuovo hash della password di un utente, ricalcolato da Spring Security dopo un login riuscito.
+     *
+     * @param user           I dettagli dell'utente autenticato.
+     * @param newPassword    Il nuovo hash, con il prefisso dell'algoritmo.
+     * @return               I dettagli dell'utente con il nuovo hash.
+     */
+    @Transactional
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        if (user instanceof AppUserDetails details) {
+            return new AppUserDetails(details.getId(), details.getUsername(), details.getDisplayName(), newPassword,
+                    details.getAuthorities());
+        }
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
     }
 }
@@ -0,0 +1,149 @@
+package progettofinale.Security;
+
+import progettofinale.Util.SlidingWindowSketch;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limita i tentativi di login falliti e le registrazioni in una finestra temporale scorrevole.
+ * Conta i login falliti per indirizzo IP e per email, e le registrazioni per indirizzo IP, con tre
+ * {@link SlidingWindowSketch}: la memoria è fissa anche con molti indirizzi o email diversi, e i conteggi
+ * sono approssimati per eccesso. Oltre il limite LoginThrottleFilter rifiuta la richiesta prima che
+ * l'utente venga letto dal database e la password verificata.
+ * I contatori totali sono esposti per il monitoraggio da LoginThrottleController.
+ */
+@Service
+public class LoginThrottle {
+
+    static final int SKETCH_DEPTH = 4; // Funzioni di hash di ogni sketch
+    static final int SKETCH_WIDTH = 2048; // Contatori per riga di ogni sketch
+
+    private final SlidingWindowSketch failuresByIp; // Login falliti per indirizzo IP
+    private final SlidingWindowSketch failuresByEmail; // Login falliti per email
+    private final SlidingWindowSketch registrationsByIp; // Registrazioni per indirizzo IP
+    private final int maxFailuresPerIp;
+    private final int maxFailuresPerEmail;
+    private final int maxRegistrationsPerIp;
+
+    private final LongAdder loginFailures = new LongAdder(); // Login falliti registrati
+    private final LongAdder loginsRejected = new LongAdder(); // Login rifiutati per troppi fallimenti
+    private final LongAdder registrations = new LongAdder(); // Registrazioni lasciate passare
+    private final LongAdder registrationsRejected = new LongAdder(); // Registrazioni rifiutate
+
+    /**
+     * Crea il servizio con la configurazione dei limiti.
+     *
+     * @param windowMinutes            Durata della finestra in minuti, divisa in intervalli di un minuto.
+     * @param maxFailuresPerIp         Login falliti consentiti per indirizzo IP nella finestra.
+     * @param maxFailuresPerEmail      Login falliti consentiti per email nella finestra.
+     * @param maxRegistrationsPerIp    Registrazioni consentite per indirizzo IP nella finestra.
+     */
+    @Autowired
+    public LoginThrottle(@Value("${app.security.throttle.window-minutes:15}") int windowMinutes,
+                         @Value("${app.security.throttle.max-failures-per-ip:50}") int maxFailuresPerIp,
+                         @Value("${app.security.throttle.max-failures-per-email:10}") int maxFailuresPerEmail,
+                         @Value("${app.security.throttle.max-registrations-per-ip:20}") int maxRegistrationsPerIp) {
+        this(windowMinutes, maxFailuresPerIp, maxFailuresPerEmail, maxRegistrationsPerIp, System::currentTimeMillis);
+    }
+
+    // Costruttore con orologio esplicito, usato dai test
+    LoginThrottle(int windowMinutes, int maxFailuresPerIp, int maxFailuresPerEmail, int maxRegistrationsPerIp,
+                  LongSupplier clock) {
+        long bucketMillis = TimeUnit.MINUTES.toMillis(1);
+        this.failuresByIp = new SlidingWindowSketch(SKETCH_DEPTH, SKETCH_WIDTH, windowMinutes, bucketMillis, clock);
+        this.failuresByEmail = new SlidingWindowSketch(SKETCH_DEPTH, SKETCH_WIDTH, windowMinutes, bucketMillis, clock);
+        this.registrationsByIp = new SlidingWindowSketch(SKETCH_DEPTH, SKETCH_WIDTH, windowMinutes, bucketMillis, clock);
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxRegistrationsPerIp = maxRegistrationsPerIp;
+    }
+
+    /**
+     * Indica se un tentativo di login va rifiutato perché l'indirizzo IP o l'email hanno superato
+     * il numero di login falliti consentiti nella finestra.
+     *
+     * @param ip       L'indirizzo IP del client.
+     * @param email    L'email inserita nel form (può essere null).
+     * @return         true se il login va rifiutato.
+     */
+    public boolean isLoginBlocked(String ip, String email) {
+        String normalizedEmail = normalize(email);
+        boolean blocked = failuresByIp.estimate(ip) >= maxFailuresPerIp
+                || (normalizedEmail != null && failuresByEmail.estimate(normalizedEmail) >= maxFailuresPerEmail);
+        if (blocked) {
+            loginsRejected.increment();
+        }
+        return blocked;
+    }
+
+    /**
+     * Registra un login fallito per l'indirizzo IP e per l'email.
+     *
+     * @param ip       L'indirizzo IP del client.
+     * @param email    L'email inserita nel form (può essere null).
+     */
+    public void recordLoginFailure(String ip, String email) {
+        loginFailures.increment();
+        failuresByIp.add(ip);
+        String normalizedEmail = normalize(email);
+        if (normalizedEmail != null) {
+            failuresByEmail.add(normalizedEmail);
+        }
+    }
+
+    /**
+     * Registra una registrazione per l'indirizzo IP, se non ha superato il limite della finestra.
+     *
+     * @param ip       L'indirizzo IP del client.
+     * @return         true se la registrazione può procedere, false se va rifiutata.
+     */
+    public boolean tryRegistration(String ip) {
+        if (registrationsByIp.estimate(ip) >= maxRegistrationsPerIp) {
+            registrationsRejected.increment();
+            return false;
+        }
+        registrationsByIp.add(ip);
+        registrations.increment();
+        return true;
+    }
+
+    /**
+     * Restituisce i secondi dopo cui riprovare una richiesta rifiutata: scade l'intervallo più vecchio della finestra.
+     *
+     * @return         I secondi per l'header Retry-After.
+     */
+    public long getRetryAfterSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(failuresByIp.getBucketMillis());
+    }
+
+    /**
+     * Restituisce i contatori totali dall'avvio, per il monitoraggio.
+     *
+     * @return         I contatori per nome.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("loginFailures", loginFailures.sum());
+        stats.put("loginsRejected", loginsRejected.sum());
+        stats.put("registrations", registrations.sum());
+        stats.put("registrationsRejected", registrationsRejected.sum());
+        return stats;
+    }
+
+    // Email confrontate senza distinzione tra maiuscole e minuscole, come in UserRepository.findByEmail
+    private static String normalize(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
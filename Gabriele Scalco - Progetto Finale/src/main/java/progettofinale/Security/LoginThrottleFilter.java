@@ -0,0 +1,52 @@
+package progettofinale.Security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filtro della catena di sicurezza, prima di quello del login, che applica i limiti di LoginThrottle.
+ * Un login da un indirizzo IP o per un'email con troppi fallimenti recenti, e una registrazione da un indirizzo IP
+ * con troppe registrazioni recenti, vengono rifiutati con 429 senza leggere l'utente né verificare la password.
+ * I login falliti vengono registrati dal gestore degli errori del login in WebSecurityConfig.
+ * L'indirizzo IP è quello restituito da getRemoteAddr(), che dietro un proxy fidato Tomcat ricava da X-Forwarded-For
+ * (proprietà server.tomcat.remoteip.* in application.properties).
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginThrottle loginThrottle;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if ("POST".equals(request.getMethod())) {
+            String path = request.getServletPath();
+            String ip = request.getRemoteAddr();
+            if ("/login".equals(path) && loginThrottle.isLoginBlocked(ip, request.getParameter("username"))) {
+                reject(response, "Too many failed logins");
+                return;
+            }
+            if ("/register".equals(path) && !loginThrottle.tryRegistration(ip)) {
+                reject(response, "Too many registrations");
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // Risponde 429 indicando quando riprovare
+    private void reject(HttpServletResponse response, String reason) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(loginThrottle.getRetryAfterSeconds()));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), reason);
+    }
+}
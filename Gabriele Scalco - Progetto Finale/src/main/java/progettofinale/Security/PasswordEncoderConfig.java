@@ -1,26 +1,67 @@
 package progettofinale.Security;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
 /**
  * Configurazione per il password encoder.
  * Fornisce un bean per la codifica delle password utilizzando l'algoritmo BCrypt.
  * Questo encoder viene utilizzato da Spring Security per salvare e verificare le password degli utenti.
+ * Gli hash vengono calcolati su un executor dedicato e limitato, e il costo BCrypt è configurabile
+ * per ogni installazione (vedi {@link BCryptCostBenchmark}).
  */
 @Configuration
 public class PasswordEncoderConfig {
 
+    /**
+     * Crea un executor limitato per il calcolo degli hash delle password.
+     * Il numero di thread limita la CPU usata da login e registrazioni; quando anche la coda è piena
+     * il calcolo viene rifiutato invece di accumulare richieste in attesa.
+     *
+     * @param threads          Numero di thread che calcolano gli hash.
+     * @param queueCapacity    Numero massimo di hash in attesa.
+     * @return                 L'executor per il calcolo degli hash.
+     */
+    @Bean(name = "passwordHashingExecutor")
+    public ThreadPoolTaskExecutor passwordHashingExecutor(
+            @Value("${app.security.hashing.threads:2}") int threads,
+            @Value("${app.security.hashing.queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
     /**
      * Crea un bean di tipo PasswordEncoder basato su BCrypt.
-     * BCrypt è un algoritmo di hashing sicuro per la gestione delle password.
+     * Le nuove password vengono salvate con il prefisso {bcrypt}; gli hash senza prefisso, salvati prima,
+     * vengono verificati con lo stesso BCrypt. Al login, se l'hash non ha il prefisso o è stato calcolato
+     * con un costo diverso da quello configurato, Spring Security lo ricalcola tramite
+     * CustomUserDetailsService#updatePassword.
      *
-     * @return         Un'istanza di BCryptPasswordEncoder.
+     * @param strength         Il costo BCrypt configurato.
+     * @param executor         L'executor limitato su cui calcolare gli hash.
+     * @return                 Il PasswordEncoder dell'applicazione.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${app.security.bcrypt.strength:10}") int strength,
+            @Qualifier("passwordHashingExecutor") ThreadPoolTaskExecutor executor) {
+        PasswordEncoder bcrypt = new CostAwareBCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt); // Hash salvati prima dell'introduzione del prefisso
+        return new BoundedPasswordEncoder(delegating, executor);
     }
 }
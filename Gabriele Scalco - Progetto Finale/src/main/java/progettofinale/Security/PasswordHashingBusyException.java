@@ -0,0 +1,15 @@
+package progettofinale.Security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Eccezione sollevata quando la coda dell'executor che calcola gli hash delle password è piena.
+ * Estende AuthenticationServiceException così, durante il login, arriva al gestore degli errori
+ * del form, che risponde con 503 invece di segnalare credenziali errate.
+ */
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    public PasswordHashingBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -3,12 +3,17 @@ package progettofinale.Security;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
  * Configurazione di Spring Security per gestire l'autenticazione e l'autorizzazione.
@@ -25,6 +30,9 @@ public class WebSecurityConfig {
     @Autowired
     private PasswordEncoder passwordEncoder; // PasswordEncoder configurato in PasswordEncoderConfig
 
+    @Autowired
+    private LoginThrottle loginThrottle;
+
     /**
      * Configura la catena di filtri di sicurezza di Spring Security.
      * Definisce l'accesso ai percorsi, il comportamento del login/logout
@@ -44,11 +52,17 @@ public class WebSecurityConfig {
             // Percorsi che richiedono autenticazione
             .requestMatchers("/profile", "/bikes/add", "/bikes/delete/{id}", "/wishlist/add", 
                              "/wishlist/remove", "/bikes/edit/{id}", "/bikes/update", 
-                             "/messages/send/**", "/messages/inbox").authenticated()
+                             "/messages/send/**", "/messages/inbox", "/messages/conversation/**",
+                             "/messages/stream", "/ws", "/api/messages/**").authenticated()
+            // Contatori di LoginThrottle, riservati agli amministratori
+            .requestMatchers("/api/security/**").hasRole("ADMIN")
           )
+          // Rifiuta login e registrazioni oltre i limiti prima che l'utente venga letto dal database
+          .addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class)
           // Configura il login
           .formLogin((form) -> form
             .loginPage("/login") // Pagina personalizzata per il login
+            .failureHandler(loginFailureHandler()) // Conta i login falliti; 503 se la coda del calcolo degli hash è piena
             .permitAll() // Permetti l'accesso alla pagina di login
           )
           // Configura il logout
@@ -72,4 +86,24 @@ public class WebSecurityConfig {
     public void configure(AuthenticationManagerBuilder auth) throws Exception {
         auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
     }
+
+    /**
+     * Gestisce i login falliti: se il controllo della password è stato rifiutato perché la coda
+     * del calcolo degli hash è piena risponde 503, altrimenti conta il fallimento per indirizzo IP ed email
+     * in LoginThrottle e torna al form di login con l'errore.
+     *
+     * @return         Il gestore dei login falliti.
+     */
+    private AuthenticationFailureHandler loginFailureHandler() {
+        AuthenticationFailureHandler formFailureHandler = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        return (request, response, exception) -> {
+            if (exception instanceof PasswordHashingBusyException) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), exception.getMessage());
+                return;
+            }
+            loginThrottle.recordLoginFailure(request.getRemoteAddr(), request.getParameter("username"));
+            formFailureHandler.onAuthenticationFailure(request, response, exception);
+        };
+    }
 }
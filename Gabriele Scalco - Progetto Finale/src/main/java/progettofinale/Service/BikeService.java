@@ -4,84 +4,165 @@ import progettofinale.Repository.*;
 import progettofinale.Model.Bikemodel.*;
 import progettofinale.Model.*;
 import progettofinale.Service.SortingStrategy.*;
-import progettofinale.Util.*;
+import progettofinale.Service.ImageStore.ImageStore;
+import progettofinale.Util.ImageUtil;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service per la gestione delle operazioni relative alle biciclette.
  * Fornisce metodi per il recupero, l'aggiunta, l'aggiornamento, l'eliminazione
- * e la ricerca delle biciclette. Gestisce anche la conversione delle immagini in Base64.
+ * e la ricerca delle biciclette. Gestisce anche la lettura delle immagini servite dall'endpoint dedicato.
  */
 @Service
 public class BikeService {
 
+    public static final int PAGE_SIZE = 20; // Numero di biciclette per pagina del catalogo
+
     @Autowired
     private BikeRepository bikeRepository;
 
+    @Autowired
+    private BikeImageRepository bikeImageRepository;
+
     @Autowired
     private MessageRepository messageRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private ConversationRepository conversationRepository;
 
-    /**
-     * Recupera tutte le biciclette dal database e converte le immagini in formato Base64.
-     *
-     * @return Una lista di tutte le biciclette con immagini convertite.
-     */
-    @Transactional
-    public List<Bike> getAllBikes() {
-        return bikeRepository.findAll().stream()
-                .peek(this::convertImageToBase64) // Converte ogni immagine in Base64
-                .collect(Collectors.toList());
-    }
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    @Autowired
+    private ImageStore imageStore;
 
     /**
      * Aggiunge una nuova bicicletta al database.
+     * Se è presente un'immagine, viene salvata in ImageStore e la bicicletta ne conserva solo la chiave;
+     * le sue versioni ridotte vengono generate in background dopo il commit. In caso di rollback il file
+     * resta nell'archivio senza riferimenti e viene eliminato da {@link ImageCleanupService}.
      *
-     * @param         bike La bicicletta da aggiungere.
-     * @return        La bicicletta aggiunta.
+     * @param bike           La bicicletta da aggiungere.
+     * @param image          L'immagine caricata dall'utente (opzionale).
+     * @return               La bicicletta aggiunta.
+     * @throws IOException   Se il salvataggio dell'immagine fallisce.
      */
     @Transactional
-    public Bike addBike(Bike bike) {
-        return bikeRepository.save(bike);
+    public Bike addBike(Bike bike, byte[] image) throws IOException {
+        if (image != null) {
+            bike.setImageKey(imageStore.store(image), ImageUtil.detectContentType(image).toString());
+        }
+        Bike saved = bikeRepository.save(bike);
+        if (image != null) {
+            imageProcessingService.scheduleRenditions(saved.getId(), saved.getImageKey(), image);
+        }
+        return saved;
     }
 
     /**
-     * Recupera tutte le biciclette associate a un utente specifico.
-     * Le immagini delle biciclette vengono convertite in formato Base64.
+     * Recupera le schede di tutte le biciclette associate a un utente specifico.
+     * Le immagini non vengono lette: ogni scheda contiene l'URL da cui il browser le scarica.
      *
-     * @param user         L'utente proprietario delle biciclette.
-     * @return             Una lista di biciclette appartenenti all'utente.
+     * @param userId       L'ID dell'utente proprietario delle biciclette.
+     * @return             Una lista di schede delle biciclette appartenenti all'utente.
      */
-    @Transactional
-    public List<Bike> getBikesByUser(User user) {
-        return bikeRepository.findByUser(user).stream()
-                .peek(this::convertImageToBase64)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public List<BikeCard> getBikeCardsByUser(Long userId) {
+        return bikeRepository.findCardsByUserId(userId);
     }
 
     /**
-     * Recupera una bicicletta specifica per ID e converte l'immagine in formato Base64.
+     * Recupera una bicicletta specifica per ID.
      *
      * @param id                         L'ID della bicicletta da recuperare.
      * @return                           La bicicletta corrispondente all'ID specificato.
      * @throws ResponseStatusException   Se la bicicletta non viene trovata.
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public Bike getBikeById(Long id) {
-        Bike bike = bikeRepository.findById(id)
+        return bikeRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Bike not found"));
-        convertImageToBase64(bike);
-        return bike;
+    }
+
+    /**
+     * Recupera i metadati dell'immagine di una bicicletta, usati per ETag e Last-Modified.
+     *
+     * @param id                         L'ID della bicicletta.
+     * @return                           I metadati dell'immagine.
+     * @throws ResponseStatusException   Se la bicicletta non esiste o non ha un'immagine.
+     */
+    @Transactional(readOnly = true)
+    public ImageMetadata getImageMetadata(Long id) {
+        return bikeRepository.findImageMetadataById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found"));
+    }
+
+    /**
+     * Recupera l'immagine binaria di una bicicletta salvata nella colonna LOB.
+     * Usato solo per le immagini non ancora migrate in ImageStore.
+     *
+     * @param id                         L'ID della bicicletta.
+     * @return                           L'immagine della bicicletta.
+     * @throws ResponseStatusException   Se la bicicletta non esiste o non ha un'immagine nella colonna LOB.
+     */
+    @Transactional(readOnly = true)
+    public byte[] getLegacyImage(Long id) {
+        byte[] image = bikeImageRepository.findImageById(id);
+        if (image == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found");
+        }
+        return image;
+    }
+
+    /**
+     * Restituisce la dimensione di un'immagine salvata in ImageStore.
+     *
+     * @param key                        La chiave dell'immagine.
+     * @return                           La dimensione in byte.
+     * @throws ResponseStatusException   Se il file dell'immagine non esiste.
+     */
+    public long getStoredImageSize(String key) {
+        try {
+            return imageStore.size(key);
+        } catch (NoSuchFileException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found");
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Image not readable");
+        }
+    }
+
+    /**
+     * Copia un'immagine salvata in ImageStore nello stream indicato, senza caricarla in memoria.
+     *
+     * @param key              La chiave dell'immagine.
+     * @param target           Lo stream di destinazione.
+     * @throws IOException     Se la lettura o la scrittura falliscono.
+     */
+    public void writeStoredImage(String key, OutputStream target) throws IOException {
+        imageStore.transferTo(key, target);
     }
 
     /**
@@ -110,75 +191,121 @@ public class BikeService {
 
     /**
      * Elimina una bicicletta specifica dal database, 
-     * inclusi i messaggi associati e i riferimenti nelle wishlist degli utenti.
+     * inclusi i messaggi e le conversazioni associati e i riferimenti nelle wishlist degli utenti.
+     * L'eliminazione richiede quattro DELETE per bike_id, indipendentemente dal numero di utenti,
+     * più la lettura degli ID delle conversazioni e dei loro partecipanti: nessuna entità viene caricata.
+     * I file dell'immagine possono essere condivisi con altre biciclette e restano in ImageStore:
+     * quelli non più referenziati vengono eliminati da {@link ImageCleanupService}.
      *
      * @param id                           L'ID della bicicletta da eliminare.
      * @throws ResponseStatusException     Se la bicicletta non viene trovata.
      */
     @Transactional
     public void deleteBike(Long id) {
-        Bike bike = bikeRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Bike not found"));
-
         // Rimuovi la bicicletta dalle wishlist di tutti gli utenti
-        List<User> users = userRepository.findAll();
-        for (User user : users) {
-            if (user.getWishlist().contains(bike)) {
-                user.getWishlist().remove(bike);
-                userRepository.save(user);
-            }
-        }
+        wishlistRepository.deleteByBikeId(id);
 
-        // Elimina tutti i messaggi associati alla bicicletta
-        messageRepository.deleteByBike(bike);
+        // I non letti delle conversazioni eliminate non vanno più contati: i totali dei partecipanti vengono riletti,
+        // e i loro messaggi escono dall'indice di ricerca
+        List<Long> participantIds = conversationRepository.findParticipantIdsByBikeId(id);
+        unreadCounterService.evictAfterCommit(participantIds);
+        messageSearchService.removeConversationsAfterCommit(participantIds, conversationRepository.findIdsByBikeId(id));
 
-        // Elimina la bicicletta
-        bikeRepository.deleteById(id);
+        // Elimina tutti i messaggi e le conversazioni associati alla bicicletta
+        messageRepository.deleteByBikeId(id);
+        conversationRepository.deleteByBikeId(id);
+
+        // Elimina la bicicletta; se non esisteva, il rollback annulla anche le DELETE precedenti
+        if (bikeRepository.deleteBikeById(id) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Bike not found");
+        }
     }
 
 
     /**
-     * Cerca biciclette in base ai criteri forniti e ordina i risultati
-     * utilizzando una strategia di ordinamento specifica.
-     * Le immagini delle biciclette vengono convertite in formato Base64.
+     * Cerca biciclette in base ai criteri forniti e restituisce una pagina del catalogo,
+     * ordinata secondo la strategia di ordinamento specificata.
+     * Filtri e ordinamento vengono tradotti in predicati SQL e ORDER BY, e la paginazione
+     * avviene a keyset su (prezzo, id): una pagina profonda costa quanto la prima.
+     * Vengono lette solo le colonne delle schede, mai le immagini.
      *
      * @param size               Dimensione della bicicletta (opzionale).
+     * @param place              Regione della bicicletta (opzionale).
      * @param maxPrice           Prezzo massimo della bicicletta (opzionale).
      * @param brand              Marca della bicicletta (opzionale).
      * @param bikeType           Tipo di bicicletta (opzionale).
      * @param sortingStrategy    Strategia di ordinamento da applicare.
-     * @return                   Una lista di biciclette filtrate e ordinate.
+     * @param after              Cursore dopo il quale iniziare la pagina (opzionale).
+     * @param before             Cursore prima del quale terminare la pagina (opzionale, ha la precedenza su after).
+     * @return                   La pagina di biciclette filtrate e ordinate, con i cursori di navigazione.
+     * @throws ResponseStatusException   Se il cursore non è valido.
      */
-    @Transactional
-    public List<Bike> searchBikes(String size, Double maxPrice, String brand, String bikeType, SortingStrategy sortingStrategy) {
-        List<Bike> filteredBikes = bikeRepository.findAll().stream()
-                .filter(bike -> (
-                        (size == null || size.isEmpty() || bike.getSize().equalsIgnoreCase(size)) &&
-                        (maxPrice == null || bike.getPrice() <= maxPrice) &&
-                        (brand == null || brand.isEmpty() || bike.getBrand().equalsIgnoreCase(brand)) &&
-                        (bikeType == null || bikeType.isEmpty() || bike.getBikeType().equalsIgnoreCase(bikeType))
-                ))
-                .peek(this::convertImageToBase64) // Converte le immagini in Base64
-                .collect(Collectors.toList());
-
-        // Applica la strategia di ordinamento
-        return sortingStrategy.sort(filteredBikes);
+    @Transactional(readOnly = true)
+    public BikePage searchBikesPage(String size, String place, Double maxPrice, String brand, String bikeType,
+                                    SortingStrategy sortingStrategy, String after, String before) {
+        Sort sort = sortingStrategy.getSort();
+        Sort.Order priceOrder = sort.getOrderFor("price");
+        boolean descending = priceOrder != null && priceOrder.isDescending();
+
+        // Verso la pagina precedente si legge all'indietro, invertendo ordinamento e condizione di keyset
+        boolean backwards = before != null && !before.isEmpty();
+        String cursor = backwards ? before : after;
+
+        Specification<Bike> specification = BikeSpecifications.matching(size, place, maxPrice, brand, bikeType);
+        if (cursor != null && !cursor.isEmpty()) {
+            specification = specification.and(seekFrom(cursor, descending != backwards));
+        }
+        Sort querySort = backwards ? (descending ? sort.ascending() : sort.descending()) : sort;
+
+        // Legge un elemento in più per sapere se esiste un'altra pagina nella stessa direzione
+        List<BikeCard> bikes = new ArrayList<>(bikeRepository.findCardSlice(specification, querySort, PAGE_SIZE + 1));
+        boolean hasMore = bikes.size() > PAGE_SIZE;
+        if (hasMore) {
+            bikes = new ArrayList<>(bikes.subList(0, PAGE_SIZE));
+        }
+        if (backwards) {
+            Collections.reverse(bikes);
+        }
+
+        String nextCursor;
+        String prevCursor;
+        if (backwards) {
+            prevCursor = hasMore ? encodeCursor(bikes.get(0)) : null;
+            nextCursor = bikes.isEmpty() ? null : encodeCursor(bikes.get(bikes.size() - 1));
+        } else {
+            nextCursor = hasMore ? encodeCursor(bikes.get(bikes.size() - 1)) : null;
+            prevCursor = (cursor != null && !cursor.isEmpty() && !bikes.isEmpty()) ? encodeCursor(bikes.get(0)) : null;
+        }
+
+        return new BikePage(bikes, nextCursor, prevCursor);
     }
 
     /**
-     * Converte l'immagine binaria di una bicicletta in una stringa Base64.
-     * Se l'immagine è null, imposta un'immagine predefinita.
+     * Codifica la posizione di una bicicletta nell'ordinamento come cursore "prezzo_id".
      *
-     * @param bike         La bicicletta di cui convertire l'immagine.
+     * @param bike         La scheda della bicicletta di confine della pagina.
+     * @return             Il cursore corrispondente.
      */
-    @Transactional
-    private void convertImageToBase64(Bike bike) {
-        if (bike.getImage() != null) {
-            String base64Image = "data:image/jpeg;base64," + ImageUtil.encodeToBase64(bike.getImage());
-            bike.setImagePath(base64Image);
-        } else {
-            // Imposta un'immagine predefinita se l'immagine non è presente
-            bike.setImagePath("/images/default-bike.jpg");
+    private String encodeCursor(BikeCard bike) {
+        return bike.getPrice() + "_" + bike.getId();
+    }
+
+    /**
+     * Decodifica un cursore "prezzo_id" nella condizione di keyset corrispondente.
+     *
+     * @param cursor                     Il cursore ricevuto dalla richiesta.
+     * @param descending                 true se la lettura avviene in ordine decrescente.
+     * @return                           La specifica per la condizione di keyset.
+     * @throws ResponseStatusException   Se il cursore non è valido.
+     */
+    private Specification<Bike> seekFrom(String cursor, boolean descending) {
+        try {
+            int separator = cursor.lastIndexOf('_');
+            double price = Double.parseDouble(cursor.substring(0, separator));
+            long id = Long.parseLong(cursor.substring(separator + 1));
+            return BikeSpecifications.seek(price, id, descending);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
         }
     }
 }
@@ -0,0 +1,68 @@
+package progettofinale.Service;
+
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Service.ImageStore.ImageStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service per l'eliminazione dei file di ImageStore non più usati da nessuna bicicletta.
+ * I file vengono scritti prima del commit della bicicletta, quindi un rollback o l'eliminazione
+ * della bicicletta li lascia nell'archivio; anche le versioni ridotte di un'immagine sostituita
+ * restano senza riferimenti. Le chiavi sono condivise tra biciclette con la stessa immagine,
+ * per cui un file viene eliminato solo se nessuna riga di `bike` lo usa.
+ * Vengono considerati solo i file non caricati durante il periodo di grazia: un file salvato
+ * da una transazione ancora in corso non ha ancora un riferimento, ma è recente.
+ */
+@Service
+public class ImageCleanupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageCleanupService.class);
+
+    static final int BATCH_SIZE = 500; // Numero di chiavi controllate per query
+
+    private final BikeRepository bikeRepository;
+    private final ImageStore imageStore;
+    private final Duration gracePeriod;
+
+    public ImageCleanupService(BikeRepository bikeRepository, ImageStore imageStore,
+                               @Value("${app.images.cleanup.grace-hours:24}") long graceHours) {
+        this.bikeRepository = bikeRepository;
+        this.imageStore = imageStore;
+        this.gracePeriod = Duration.ofHours(graceHours);
+    }
+
+    /**
+     * Elimina da ImageStore i file non referenziati e non caricati durante il periodo di grazia.
+     *
+     * @return               Il numero di file eliminati.
+     * @throws IOException   Se l'archivio non è leggibile o un file non può essere eliminato.
+     */
+    public int deleteUnreferencedImages() throws IOException {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        List<String> candidates = imageStore.findKeysStoredBefore(cutoff);
+        int deleted = 0;
+        for (int from = 0; from < candidates.size(); from += BATCH_SIZE) {
+            List<String> batch = candidates.subList(from, Math.min(from + BATCH_SIZE, candidates.size()));
+            Set<String> referenced = new HashSet<>(bikeRepository.findReferencedImageKeys(batch));
+            for (String key : batch) {
+                // Un file caricato di nuovo dopo la ricerca delle chiavi ha una data più recente e resta
+                if (!referenced.contains(key) && imageStore.deleteIfStoredBefore(key, cutoff)) {
+                    deleted++;
+                }
+            }
+        }
+        logger.info("Eliminate {} immagini non referenziate su {} controllate in ImageStore", deleted, candidates.size());
+        return deleted;
+    }
+}
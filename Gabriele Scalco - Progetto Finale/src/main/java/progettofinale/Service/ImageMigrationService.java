@@ -0,0 +1,118 @@
+package progettofinale.Service;
+
+import progettofinale.Model.ImageMetadata;
+import progettofinale.Model.ImageRendition;
+import progettofinale.Repository.BikeImageRepository;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Service.ImageStore.ImageStore;
+import progettofinale.Util.ImageUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service per la migrazione delle immagini dalla tabella `bike_legacy_image` a ImageStore.
+ * Ogni bicicletta viene migrata in modo indipendente: l'immagine viene copiata nell'archivio,
+ * la sua riga viene eliminata e le versioni ridotte rigenerate. La migrazione può essere
+ * interrotta e ripresa, perché considera solo le biciclette con una riga ancora presente:
+ * una bicicletta interrotta tra l'UPDATE e la DELETE viene semplicemente migrata di nuovo.
+ *
+ * Genera inoltre le versioni ridotte mancanti delle immagini già in ImageStore.
+ *
+ * Su PostgreSQL eliminare una riga con una colonna `oid` non elimina il large object a cui puntava:
+ * al termine della migrazione va eseguito `vacuumlo` sul database per liberare lo spazio.
+ */
+@Service
+public class ImageMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageMigrationService.class);
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private BikeImageRepository bikeImageRepository;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    /**
+     * Migra in ImageStore tutte le immagini ancora salvate nelle colonne LOB.
+     *
+     * @return         Il numero di immagini migrate.
+     */
+    public int migrateLegacyImages() {
+        List<Long> bikeIds = bikeImageRepository.findIdsWithLegacyImage();
+        int migrated = 0;
+        for (Long bikeId : bikeIds) {
+            if (migrateLegacyImage(bikeId)) {
+                migrated++;
+            }
+        }
+        logger.info("Migrate {} immagini su {} in ImageStore", migrated, bikeIds.size());
+        return migrated;
+    }
+
+    /**
+     * Migra l'immagine di una singola bicicletta e ne rigenera le versioni ridotte.
+     * Il file viene scritto prima di aggiornare la riga, così un errore non lascia la bicicletta senza immagine.
+     *
+     * @param bikeId   L'ID della bicicletta.
+     * @return         true se l'immagine è stata migrata.
+     */
+    public boolean migrateLegacyImage(Long bikeId) {
+        byte[] image = bikeImageRepository.findImageById(bikeId);
+        if (image == null) {
+            return false; // Bicicletta eliminata o già migrata nel frattempo
+        }
+        try {
+            String key = imageStore.store(image);
+            bikeRepository.moveLegacyImage(bikeId, key, ImageUtil.detectContentType(image).toString());
+            bikeImageRepository.deleteImageById(bikeId);
+            imageProcessingService.generateRenditions(bikeId, key, image);
+            return true;
+        } catch (IOException e) {
+            logger.error("Errore durante la migrazione dell'immagine della bici {}", bikeId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Genera le versioni ridotte delle immagini in ImageStore che ne sono prive, ad esempio perché
+     * l'elaborazione è stata scartata con la coda dell'executor piena.
+     * Le immagini di formato non supportato restano senza versioni ridotte e vengono riprovate a ogni esecuzione.
+     *
+     * @return         Il numero di biciclette elaborate.
+     */
+    public int generateMissingRenditions() {
+        List<Long> bikeIds = bikeRepository.findIdsMissingRenditions();
+        int processed = 0;
+        for (Long bikeId : bikeIds) {
+            Optional<ImageMetadata> metadata = bikeRepository.findImageMetadataById(bikeId);
+            String key = metadata.map(m -> m.getKey(ImageRendition.ORIGINAL)).orElse(null);
+            if (key == null) {
+                continue; // Bicicletta eliminata nel frattempo
+            }
+            try {
+                ByteArrayOutputStream original = new ByteArrayOutputStream();
+                imageStore.transferTo(key, original);
+                imageProcessingService.generateRenditions(bikeId, key, original.toByteArray());
+                processed++;
+            } catch (IOException e) {
+                logger.error("Errore durante la lettura dell'immagine della bici {}", bikeId, e);
+            }
+        }
+        logger.info("Elaborate {} immagini su {} senza versioni ridotte", processed, bikeIds.size());
+        return processed;
+    }
+}
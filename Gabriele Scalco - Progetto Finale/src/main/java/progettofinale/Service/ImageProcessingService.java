@@ -0,0 +1,173 @@
+package progettofinale.Service;
+
+import progettofinale.Model.ImageRendition;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Service.ImageStore.ImageStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Service per la generazione delle versioni ridotte delle immagini delle biciclette.
+ * Le versioni CARD e DETAIL vengono prodotte con ImageIO su un executor dedicato e salvate
+ * in ImageStore accanto all'immagine originale, così le viste a elenco scaricano solo la miniatura.
+ */
+@Service
+public class ImageProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageProcessingService.class);
+
+    static final long MAX_PIXELS = 40_000_000L; // Pixel massimi decodificati (circa 160 MB in memoria come ARGB)
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    @Qualifier("imageProcessingExecutor")
+    private TaskExecutor imageProcessingExecutor;
+
+    /**
+     * Pianifica la generazione delle versioni ridotte dell'immagine di una bicicletta.
+     * Se è attiva una transazione, l'elaborazione parte solo dopo il commit, quando la bicicletta è visibile
+     * anche alle altre connessioni; altrimenti viene avviata subito.
+     *
+     * @param bikeId        L'ID della bicicletta.
+     * @param imageKey      La chiave dell'immagine originale in ImageStore.
+     * @param original      L'immagine originale caricata dall'utente.
+     */
+    public void scheduleRenditions(Long bikeId, String imageKey, byte[] original) {
+        Runnable task = () -> generateRenditions(bikeId, imageKey, original);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    imageProcessingExecutor.execute(task);
+                }
+            });
+        } else {
+            imageProcessingExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Genera le versioni CARD e DETAIL dell'immagine di una bicicletta, le salva in ImageStore
+     * e ne registra le chiavi. Se il formato non è leggibile da ImageIO, o l'immagine supera {@link #MAX_PIXELS},
+     * le versioni non vengono create e l'endpoint delle immagini continua a servire l'originale.
+     *
+     * @param bikeId        L'ID della bicicletta.
+     * @param imageKey      La chiave dell'immagine originale in ImageStore.
+     * @param original      L'immagine originale caricata dall'utente.
+     */
+    public void generateRenditions(Long bikeId, String imageKey, byte[] original) {
+        try {
+            BufferedImage source = decode(bikeId, original);
+            if (source == null) {
+                return;
+            }
+            String cardKey = imageStore.store(resize(source, ImageRendition.CARD.getMaxWidth()));
+            String detailKey = imageStore.store(resize(source, ImageRendition.DETAIL.getMaxWidth()));
+            bikeRepository.updateRenditionKeys(bikeId, imageKey, cardKey, detailKey);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Errore durante la generazione delle versioni ridotte per la bici {}", bikeId, e);
+        }
+    }
+
+    /**
+     * Decodifica un'immagine dopo averne letto le dimensioni dall'intestazione: un file di pochi KB può
+     * dichiarare decine di migliaia di pixel per lato, e decodificarlo esaurirebbe lo heap.
+     *
+     * @param bikeId        L'ID della bicicletta, usato nei log.
+     * @param original      L'immagine originale caricata dall'utente.
+     * @return              L'immagine decodificata, oppure null se il formato non è supportato o è troppo grande.
+     * @throws IOException  Se la lettura fallisce.
+     */
+    private BufferedImage decode(Long bikeId, byte[] original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                logger.warn("Formato immagine non supportato per la bici {}, nessuna versione ridotta generata", bikeId);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_PIXELS) {
+                    logger.warn("Immagine di {} pixel per la bici {}, oltre il limite di {}: nessuna versione ridotta generata",
+                            pixels, bikeId, MAX_PIXELS);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Ridimensiona un'immagine mantenendo le proporzioni e la codifica in JPEG.
+     * Le immagini già più strette della larghezza massima non vengono ingrandite.
+     * La riduzione procede per dimezzamenti successivi, che con l'interpolazione bilineare
+     * danno un risultato più nitido di un unico passaggio.
+     *
+     * @param source        L'immagine da ridimensionare.
+     * @param maxWidth      La larghezza massima in pixel.
+     * @return              L'immagine ridimensionata in formato JPEG.
+     * @throws IOException  Se la codifica fallisce.
+     */
+    byte[] resize(BufferedImage source, int maxWidth) throws IOException {
+        int targetWidth = Math.min(maxWidth, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width > targetWidth || height > targetHeight);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(current, "jpg", output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Disegna un'immagine alle dimensioni indicate su uno sfondo bianco (il JPEG non supporta la trasparenza).
+     */
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,157 @@
+package progettofinale.Service.ImageStore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Implementazione di ImageStore che salva le immagini sul filesystem locale.
+ * Il file di ogni immagine si trova in `<radice>/<ab>/<cd>/<chiave>`, dove `ab` e `cd` sono i primi
+ * caratteri della chiave SHA-256: la suddivisione in sottocartelle evita directory con milioni di file.
+ * Le immagini sono immutabili, quindi un file già presente non viene mai riscritto.
+ */
+@Component
+public class FileSystemImageStore implements ImageStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}"); // Formato delle chiavi SHA-256
+
+    private final Path root; // Cartella radice dell'archivio
+
+    public FileSystemImageStore(@Value("${app.images.store-path:data/images}") String rootPath) {
+        this.root = Paths.get(rootPath).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String store(byte[] content) throws IOException {
+        String key = sha256(content);
+        Path target = resolve(key);
+        if (Files.exists(target)) {
+            try {
+                // Immagine già presente: caricamento deduplicato. La data di modifica rinnovata
+                // protegge il file dalla pulizia finché la bicicletta che lo usa non è confermata
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return key;
+            } catch (NoSuchFileException e) {
+                // Eliminato nel frattempo dalla pulizia: viene scritto di nuovo
+            }
+        }
+
+        // Scrive su un file temporaneo nella stessa cartella e lo rinomina, così un lettore
+        // non vede mai un file scritto a metà
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Un caricamento concorrente dello stesso contenuto ha già creato il file
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return key;
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    /**
+     * Copia il file nello stream con un buffer di pochi KB: l'immagine non viene mai caricata per intero
+     * nello heap. La destinazione è uno stream della risposta e non un canale di socket, quindi la copia
+     * passa comunque dalla memoria dell'applicazione.
+     */
+    @Override
+    public void transferTo(String key, OutputStream target) throws IOException {
+        Files.copy(resolve(key), target);
+    }
+
+    /**
+     * Usa la data di modifica dei file, rinnovata da {@link #store(byte[])} a ogni caricamento.
+     * I file temporanei di scritture in corso vengono ignorati.
+     */
+    @Override
+    public List<String> findKeysStoredBefore(Instant cutoff) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String name = file.getFileName().toString();
+                if (KEY_PATTERN.matcher(name).matches() && attributes.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                    keys.add(name);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return keys;
+    }
+
+    /**
+     * La data di modifica viene controllata subito prima di eliminare il file, così un'immagine
+     * caricata di nuovo dopo la ricerca delle chiavi non viene eliminata.
+     */
+    @Override
+    public boolean deleteIfStoredBefore(String key, Instant cutoff) throws IOException {
+        Path file = resolve(key);
+        try {
+            if (!Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                return false;
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return Files.deleteIfExists(file);
+    }
+
+    /**
+     * Calcola il percorso del file corrispondente a una chiave.
+     *
+     * @param key                          La chiave SHA-256 dell'immagine.
+     * @return                             Il percorso del file.
+     * @throws IllegalArgumentException    Se la chiave non è un hash SHA-256 esadecimale.
+     */
+    Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid image key");
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    /**
+     * Calcola l'hash SHA-256 di un array di byte in formato esadecimale.
+     */
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package progettofinale.Service.ImageStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Interfaccia che rappresenta un archivio di immagini indirizzato per contenuto.
+ * Ogni immagine è identificata dalla chiave SHA-256 dei suoi byte: caricamenti identici producono
+ * la stessa chiave e vengono salvati una sola volta. Le implementazioni possono usare il filesystem locale
+ * o un servizio esterno senza modificare il resto dell'applicazione.
+ */
+public interface ImageStore {
+
+    /**
+     * Salva un'immagine, se non è già presente, e ne restituisce la chiave.
+     * Se l'immagine è già presente ne viene rinnovata la data di salvataggio, così la pulizia
+     * delle immagini non referenziate non la elimina prima che il chiamante l'abbia registrata.
+     *
+     * @param content        I byte dell'immagine.
+     * @return               La chiave SHA-256 (esadecimale) dell'immagine.
+     * @throws IOException   Se il salvataggio fallisce.
+     */
+    String store(byte[] content) throws IOException;
+
+    /**
+     * Restituisce la dimensione in byte di un'immagine salvata.
+     *
+     * @param key            La chiave dell'immagine.
+     * @return               La dimensione dell'immagine.
+     * @throws IOException   Se l'immagine non esiste.
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Copia un'immagine salvata nello stream indicato, senza caricarla per intero in memoria.
+     *
+     * @param key            La chiave dell'immagine.
+     * @param target         Lo stream di destinazione (es. il corpo della risposta HTTP).
+     * @throws IOException   Se l'immagine non esiste o la scrittura fallisce.
+     */
+    void transferTo(String key, OutputStream target) throws IOException;
+
+    /**
+     * Restituisce le chiavi delle immagini salvate, o caricate di nuovo, prima dell'istante indicato.
+     *
+     * @param cutoff         L'istante limite.
+     * @return               Le chiavi delle immagini.
+     * @throws IOException   Se l'archivio non è leggibile.
+     */
+    List<String> findKeysStoredBefore(Instant cutoff) throws IOException;
+
+    /**
+     * Elimina un'immagine se non è stata salvata, o caricata di nuovo, dopo l'istante indicato.
+     *
+     * @param key            La chiave dell'immagine.
+     * @param cutoff         L'istante limite.
+     * @return               true se l'immagine è stata eliminata.
+     * @throws IOException   Se l'eliminazione fallisce.
+     */
+    boolean deleteIfStoredBefore(String key, Instant cutoff) throws IOException;
+}
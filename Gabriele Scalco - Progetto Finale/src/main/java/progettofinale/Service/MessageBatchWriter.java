@@ -0,0 +1,216 @@
+package progettofinale.Service;
+
+import progettofinale.Model.Message;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service per il salvataggio in gruppo dei messaggi della chat.
+ * Se abilitato, i messaggi vengono messi in una coda limitata e un unico thread, preso da messageBatchExecutor, li salva in gruppi
+ * con {@link MessageService#saveMessages(List)}: un gruppo viene scritto quando raggiunge la dimensione
+ * massima o quando il primo messaggio ha atteso il ritardo massimo, con un solo commit per gruppo
+ * invece di uno per messaggio. Chi invia riceve un CompletableFuture completato dopo il commit.
+ * Se disabilitato, ogni messaggio viene salvato subito nella propria transazione.
+ */
+@Service
+public class MessageBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchWriter.class);
+
+    private static final long IDLE_POLL_MS = 100; // Attesa massima di un messaggio prima di ricontrollare l'arresto
+
+    private final boolean enabled; // Se false i messaggi vengono salvati subito, uno per transazione
+    private final int batchSize; // Numero massimo di messaggi per gruppo
+    private final long maxDelayMs; // Attesa massima del primo messaggio di un gruppo
+    private final BlockingQueue<PendingMessage> queue; // Messaggi in attesa di essere salvati
+
+    private volatile boolean running;
+    private final CountDownLatch writerStopped = new CountDownLatch(1); // Aperto quando il ciclo di scrittura termina
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    @Qualifier("messageBatchExecutor")
+    private TaskExecutor messageBatchExecutor;
+
+    /**
+     * Crea il service con la configurazione della coda.
+     *
+     * @param enabled          Se abilitare il salvataggio in gruppo.
+     * @param batchSize        Numero massimo di messaggi per gruppo.
+     * @param maxDelayMs       Attesa massima, in millisecondi, prima di salvare un gruppo incompleto.
+     * @param queueCapacity    Numero massimo di messaggi in attesa.
+     */
+    public MessageBatchWriter(@Value("${app.messages.batch.enabled:false}") boolean enabled,
+                              @Value("${app.messages.batch.size:50}") int batchSize,
+                              @Value("${app.messages.batch.max-delay-ms:5}") long maxDelayMs,
+                              @Value("${app.messages.batch.queue-capacity:1000}") int queueCapacity) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Avvia il thread di scrittura, se il salvataggio in gruppo è abilitato.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        messageBatchExecutor.execute(() -> {
+            try {
+                run();
+            } finally {
+                writerStopped.countDown();
+            }
+        });
+    }
+
+    /**
+     * Ferma il thread di scrittura e salva i messaggi rimasti in coda.
+     * I messaggi inviati dopo l'arresto vengono rifiutati da submit.
+     *
+     * @throws InterruptedException   Se l'attesa del thread viene interrotta.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false; // Il thread non viene interrotto: un'interruzione durante il commit lo farebbe fallire
+        writerStopped.await();
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            writeBatch(remaining);
+        }
+    }
+
+    /**
+     * Invia un messaggio riferendo mittente, destinatario e bicicletta solo tramite ID.
+     * Destinatario e bicicletta vengono verificati subito; il salvataggio avviene con il gruppo successivo.
+     *
+     * @param senderId                       L'ID del mittente, già autenticato.
+     * @param receiverId                     L'ID del destinatario.
+     * @param bikeId                         L'ID della bicicletta oggetto del messaggio.
+     * @param content                        Il contenuto del messaggio.
+     * @return                               Il messaggio salvato, disponibile dopo il commit del suo gruppo.
+     * @throws ResponseStatusException       Se il destinatario o la bicicletta non sono trovati (404),
+     *                                       se la coda è piena o se il thread di scrittura è fermo (503).
+     */
+    public CompletableFuture<Message> submit(Long senderId, Long receiverId, Long bikeId, String content) {
+        Message message = messageService.createMessage(senderId, receiverId, bikeId, content);
+        if (!enabled) {
+            return CompletableFuture.completedFuture(messageService.saveMessage(message));
+        }
+        if (!running) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Message writer stopped");
+        }
+
+        PendingMessage pending = new PendingMessage(message);
+        if (!queue.offer(pending)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Message queue full");
+        }
+        // stop() può aver svuotato la coda tra il controllo di running e offer: il messaggio non verrebbe più salvato.
+        // Se invece stop() lo ha già preso dalla coda, remove restituisce false e lo salva stop().
+        if (!running && queue.remove(pending)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Message writer stopped");
+        }
+        return pending.future;
+    }
+
+    // Ciclo del thread di scrittura: attende il primo messaggio, ricontrollando l'arresto ogni IDLE_POLL_MS,
+    // poi raccoglie il gruppo fino alla dimensione massima o al ritardo massimo, e lo salva
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingMessage first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue; // Coda vuota: ricontrolla se è stato richiesto l'arresto
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Interruzione dall'executor: il gruppo già raccolto viene comunque salvato
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Salva un gruppo in un'unica transazione; se fallisce, riprova un messaggio alla volta,
+    // così un messaggio non valido non fa fallire gli altri
+    private void writeBatch(List<PendingMessage> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.newAttempt());
+        }
+        try {
+            List<Message> saved = messageService.saveMessages(messages);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(saved.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            logger.warn("Salvataggio del gruppo di {} messaggi fallito, nuovo tentativo un messaggio alla volta", batch.size(), e);
+            for (PendingMessage pending : batch) {
+                writeBatch(List.of(pending));
+            }
+        }
+    }
+
+    // Messaggio in coda con il risultato atteso da chi lo ha inviato
+    private static final class PendingMessage {
+        private final Message message;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        private PendingMessage(Message message) {
+            this.message = message;
+        }
+
+        // Una transazione fallita lascia ID e conversazione sull'entità: ogni tentativo usa un'entità nuova
+        private Message newAttempt() {
+            return new Message(message.getSender(), message.getReceiver(), message.getBike(), message.getContent());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package progettofinale.Service;
+
+import progettofinale.Model.Message;
+import progettofinale.Repository.MessageRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Tiene traccia degli ID dei messaggi assegnati ma non ancora confermati, per calcolare un cursore
+ * che segue l'ordine di commit.
+ * Gli ID vengono dalla sequenza al momento del salvataggio, ma il commit può arrivare molto dopo:
+ * due transazioni concorrenti possono rendere visibile l'ID 102 prima del 101. Un cursore uguale
+ * all'ID più alto letto salterebbe per sempre il 101. Il limite restituito da {@link #commitMark()}
+ * è invece un ID sotto il quale ogni messaggio è già visibile o non lo sarà mai (rollback).
+ * Gli ID vengono assegnati in ordine crescente nel processo, quindi il limite vale solo con
+ * un'unica istanza dell'applicazione che salva i messaggi.
+ */
+@Component
+public class MessageCommitTracker {
+
+    private final TreeSet<Long> inFlight = new TreeSet<>(); // ID assegnati e non ancora confermati
+    private long highestAssigned = -1; // ID più alto assegnato, -1 finché non è stato letto dal database
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    /**
+     * Salva i messaggi registrando i loro ID tra quelli non confermati, fino alla fine della transazione corrente.
+     * L'assegnazione degli ID e la registrazione avvengono sotto lo stesso lock di {@link #commitMark()},
+     * così il limite non può mai superare un ID assegnato ma non ancora registrato.
+     *
+     * @param messages    I messaggi da salvare.
+     * @param save        Salva un messaggio e lo restituisce con l'ID assegnato.
+     * @return            I messaggi salvati, nello stesso ordine.
+     */
+    public List<Message> persist(List<Message> messages, UnaryOperator<Message> save) {
+        List<Long> ids = new ArrayList<>(messages.size());
+        boolean synchronizationActive = TransactionSynchronizationManager.isSynchronizationActive();
+        if (synchronizationActive) {
+            // Dopo il commit o il rollback, e dopo gli invii registrati da MessageService per il commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(ids);
+                }
+            });
+        }
+        try {
+            List<Message> saved = new ArrayList<>(messages.size());
+            synchronized (this) {
+                for (Message message : messages) {
+                    Message result = save.apply(message);
+                    ids.add(result.getId());
+                    inFlight.add(result.getId());
+                    highestAssigned = Math.max(highestAssigned, result.getId());
+                    saved.add(result);
+                }
+            }
+            return saved;
+        } finally {
+            if (!synchronizationActive) {
+                release(ids); // Senza transazione ogni salvataggio è già confermato
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'ID più alto sotto il quale, compreso, ogni messaggio è già confermato o non lo sarà mai.
+     * Il valore non diminuisce mai: un cursore che non lo supera non salta nessun messaggio.
+     *
+     * @return            Il limite dei messaggi confermati.
+     */
+    public synchronized long commitMark() {
+        if (!inFlight.isEmpty()) {
+            return inFlight.first() - 1;
+        }
+        if (highestAssigned < 0) {
+            // Nessun messaggio salvato dall'avvio: quelli presenti nel database sono tutti confermati
+            Long maxId = messageRepository.findMaxId();
+            highestAssigned = maxId != null ? maxId : 0L;
+        }
+        return highestAssigned;
+    }
+
+    // Rimuove gli ID di una transazione conclusa
+    private synchronized void release(List<Long> ids) {
+        ids.forEach(inFlight::remove);
+    }
+}
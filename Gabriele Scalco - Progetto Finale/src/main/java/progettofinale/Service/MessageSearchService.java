@@ -0,0 +1,280 @@
+package progettofinale.Service;
+
+import progettofinale.Model.ConversationSummary;
+import progettofinale.Model.MessageEvent;
+import progettofinale.Repository.ConversationRepository;
+import progettofinale.Repository.MessageRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Service per la ricerca testuale nei messaggi di un utente.
+ * Mantiene in memoria un indice invertito separato per ogni utente: per ogni parola dei messaggi
+ * inviati o ricevuti dall'utente, gli ID dei messaggi che la contengono, in ordine crescente.
+ * L'indice viene costruito all'avvio dai messaggi salvati e aggiornato dopo il commit di ogni nuovo messaggio,
+ * così la ricerca non legge i messaggi dal database. Le conversazioni eliminate vengono rimosse dall'indice
+ * dei loro partecipanti dopo il commit dell'eliminazione.
+ * Le parole vengono confrontate senza distinzione tra maiuscole e minuscole e senza accenti.
+ */
+@Service
+public class MessageSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchService.class);
+
+    static final int REBUILD_PAGE_SIZE = 1000; // Messaggi letti per blocco durante la costruzione dell'indice
+    static final int MAX_RESULTS = 20; // Numero massimo di conversazioni restituite da una ricerca
+    static final int MIN_TOKEN_LENGTH = 2; // Lunghezza minima delle parole indicizzate
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+"); // Tutto ciò che non è lettera o cifra
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+"); // Accenti separati dalla normalizzazione
+
+    private final Map<Long, UserIndex> indexByUser = new ConcurrentHashMap<>(); // Indice di ogni utente
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    /**
+     * Aggiunge all'indice tutti i messaggi salvati, leggendoli a blocchi in ordine di ID.
+     * I messaggi già indicizzati, ad esempio perché salvati durante la costruzione, vengono ignorati.
+     * Se il thread viene interrotto, ad esempio alla chiusura dell'applicazione, la lettura si ferma al blocco corrente.
+     */
+    public void rebuildIndex() {
+        long lastId = 0L;
+        int indexed = 0;
+        List<MessageEvent> page;
+        do {
+            page = messageRepository.findAllAfter(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            for (MessageEvent message : page) {
+                index(message);
+            }
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+                indexed += page.size();
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE && !Thread.currentThread().isInterrupted());
+        logger.info("Indice di ricerca dei messaggi costruito: {} messaggi, {} utenti", indexed, indexByUser.size());
+    }
+
+    /**
+     * Aggiunge un messaggio all'indice del mittente e del destinatario dopo il commit della transazione corrente,
+     * o subito se non c'è una transazione. In caso di rollback il messaggio non viene indicizzato.
+     *
+     * @param message     Il messaggio salvato.
+     */
+    public void indexAfterCommit(MessageEvent message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(message);
+                }
+            });
+        } else {
+            index(message);
+        }
+    }
+
+    /**
+     * Rimuove dall'indice dei partecipanti i messaggi di alcune conversazioni dopo il commit della transazione
+     * corrente, o subito se non c'è una transazione. In caso di rollback l'indice non cambia.
+     *
+     * @param userIds           Gli ID dei partecipanti alle conversazioni.
+     * @param conversationIds   Gli ID delle conversazioni eliminate.
+     */
+    public void removeConversationsAfterCommit(Collection<Long> userIds, Collection<Long> conversationIds) {
+        if (userIds.isEmpty() || conversationIds.isEmpty()) {
+            return;
+        }
+        Set<Long> removed = new HashSet<>(conversationIds);
+        Runnable removal = () -> userIds.forEach(userId -> {
+            UserIndex index = indexByUser.get(userId);
+            if (index != null) {
+                index.removeConversations(removed);
+            }
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removal.run();
+                }
+            });
+        } else {
+            removal.run();
+        }
+    }
+
+    /**
+     * Cerca le conversazioni di un utente con almeno un messaggio che contiene tutte le parole cercate.
+     * Le conversazioni vengono individuate dall'indice, partendo dai messaggi più recenti, e lette dal database
+     * solo per comporre i riepiloghi; le conversazioni eliminate nel frattempo non vengono restituite.
+     *
+     * @param userId      L'ID dell'utente che cerca.
+     * @param query       Il testo cercato.
+     * @return            I riepiloghi delle conversazioni trovate, ordinati per ultima attività.
+     */
+    @Transactional(readOnly = true)
+    public List<ConversationSummary> search(Long userId, String query) {
+        Set<String> tokens = tokenize(query);
+        UserIndex index = indexByUser.get(userId);
+        if (tokens.isEmpty() || index == null) {
+            return List.of();
+        }
+
+        Set<Long> conversationIds = index.findConversations(tokens, MAX_RESULTS);
+        if (conversationIds.isEmpty()) {
+            return List.of();
+        }
+        return conversationRepository.findSummariesByUserIdAndIds(userId, conversationIds);
+    }
+
+    /**
+     * Divide un testo nelle parole indicizzate: minuscole, senza accenti, di almeno MIN_TOKEN_LENGTH caratteri.
+     *
+     * @param text        Il testo da dividere (può essere null).
+     * @return            Le parole distinte, nell'ordine in cui compaiono.
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD))
+                .replaceAll("");
+        for (String token : TOKEN_SEPARATOR.split(normalized)) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Aggiunge un messaggio all'indice del mittente e a quello del destinatario
+    private void index(MessageEvent message) {
+        Set<String> tokens = tokenize(message.getContent());
+        if (tokens.isEmpty()) {
+            return;
+        }
+        indexByUser.computeIfAbsent(message.getSenderId(), id -> new UserIndex())
+                .add(tokens, message.getId(), message.getConversationId());
+        indexByUser.computeIfAbsent(message.getReceiverId(), id -> new UserIndex())
+                .add(tokens, message.getId(), message.getConversationId());
+    }
+
+    // Indice invertito dei messaggi di un utente
+    private static final class UserIndex {
+        private final Map<String, Postings> postingsByToken = new HashMap<>();
+
+        private synchronized void add(Set<String> tokens, long messageId, long conversationId) {
+            for (String token : tokens) {
+                postingsByToken.computeIfAbsent(token, t -> new Postings()).add(messageId, conversationId);
+            }
+        }
+
+        // Rimuove i messaggi delle conversazioni indicate e le parole rimaste senza messaggi
+        private synchronized void removeConversations(Set<Long> conversationIds) {
+            Iterator<Postings> iterator = postingsByToken.values().iterator();
+            while (iterator.hasNext()) {
+                Postings postings = iterator.next();
+                postings.removeConversations(conversationIds);
+                if (postings.size == 0) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        // Scorre la lista più corta dal messaggio più recente e tiene i messaggi presenti in tutte le altre
+        private synchronized Set<Long> findConversations(Set<String> tokens, int limit) {
+            List<Postings> lists = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Postings postings = postingsByToken.get(token);
+                if (postings == null) {
+                    return Set.of(); // Una parola non compare in nessun messaggio
+                }
+                lists.add(postings);
+            }
+            lists.sort(Comparator.comparingInt(postings -> postings.size));
+
+            Postings shortest = lists.get(0);
+            Set<Long> conversationIds = new LinkedHashSet<>();
+            for (int i = shortest.size - 1; i >= 0 && conversationIds.size() < limit; i--) {
+                boolean matches = true;
+                for (int j = 1; j < lists.size() && matches; j++) {
+                    matches = lists.get(j).contains(shortest.messageIds[i]);
+                }
+                if (matches) {
+                    conversationIds.add(shortest.conversationIds[i]);
+                }
+            }
+            return conversationIds;
+        }
+    }
+
+    // Messaggi che contengono una parola: ID in ordine crescente e, nelle stesse posizioni, le loro conversazioni
+    private static final class Postings {
+        private long[] messageIds = new long[4];
+        private long[] conversationIds = new long[4];
+        private int size;
+
+        // Inserisce il messaggio nella sua posizione; di norma è il più recente e finisce in coda
+        private void add(long messageId, long conversationId) {
+            int position = Arrays.binarySearch(messageIds, 0, size, messageId);
+            if (position >= 0) {
+                return; // Messaggio già indicizzato
+            }
+            position = -position - 1;
+            if (size == messageIds.length) {
+                messageIds = Arrays.copyOf(messageIds, size * 2);
+                conversationIds = Arrays.copyOf(conversationIds, size * 2);
+            }
+            System.arraycopy(messageIds, position, messageIds, position + 1, size - position);
+            System.arraycopy(conversationIds, position, conversationIds, position + 1, size - position);
+            messageIds[position] = messageId;
+            conversationIds[position] = conversationId;
+            size++;
+        }
+
+        // Compatta gli array saltando i messaggi delle conversazioni indicate, mantenendo l'ordine
+        private void removeConversations(Set<Long> removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.contains(conversationIds[i])) {
+                    messageIds[kept] = messageIds[i];
+                    conversationIds[kept] = conversationIds[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        private boolean contains(long messageId) {
+            return Arrays.binarySearch(messageIds, 0, size, messageId) >= 0;
+        }
+    }
+}
@@ -1,30 +1,76 @@
 package progettofinale.Service;
 
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Repository.ConversationRepository;
 import progettofinale.Repository.MessageRepository;
-import progettofinale.Model.Conversation;
+import progettofinale.Repository.UserRepository;
+import progettofinale.Model.ConversationSummary;
 import progettofinale.Model.Message;
-import progettofinale.Util.ConversationUtil;
+import progettofinale.Model.MessageChanges;
+import progettofinale.Model.MessageEvent;
+import progettofinale.Model.MessagePage;
+import progettofinale.Model.MessageView;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service per la gestione delle operazioni relative ai messaggi.
- * Fornisce metodi per salvare i messaggi e recuperare le conversazioni
- * basate sui messaggi di un utente specifico.
+ * Fornisce metodi per salvare i messaggi, singolarmente o in gruppo, recuperare i riepiloghi delle conversazioni
+ * di un utente specifico e i messaggi di una singola conversazione, una pagina alla volta.
  */
 @Service
 public class MessageService {
 
+    public static final int MESSAGE_PAGE_SIZE = 20; // Numero di messaggi per pagina di una conversazione
+    public static final int CHANGES_LIMIT = 100; // Numero massimo di messaggi per richiesta di sincronizzazione
+
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageStreamService messageStreamService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private MessageCommitTracker messageCommitTracker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
     /**
-     * Salva un messaggio nel database.
+     * Salva un messaggio nel database e aggiorna, nella stessa transazione, la conversazione
+     * a cui appartiene: la conversazione viene creata se non esiste e il messaggio viene registrato
+     * come ultimo messaggio, incrementando i non letti del destinatario.
+     * Dopo il commit il messaggio viene contato tra i non letti del destinatario e inviato in tempo reale
+     * alle sue pagine aperte.
      * Imposta automaticamente il timestamp corrente prima di salvare.
      *
      * @param message     Il messaggio da salvare.
@@ -32,27 +78,291 @@ public class MessageService {
      */
     @Transactional
     public Message saveMessage(Message message) {
-        if (message == null) {
-            throw new IllegalArgumentException("Messaggio nullo non valido");
-        }// Controlla se messaggio vuoto
-        
-        message.setTimestamp(LocalDateTime.now()); // Imposta il timestamp al momento attuale
-        return messageRepository.save(message); // Salva il messaggio nel database
+        return saveMessages(Collections.singletonList(message)).get(0);
+    }
+
+    /**
+     * Salva un gruppo di messaggi in un'unica transazione, come {@link #saveMessage(Message)} per ciascuno.
+     * Le conversazioni vengono create e lette una sola volta per gruppo, gli INSERT dei messaggi
+     * vengono inviati insieme in batch JDBC (gli ID vengono dalla sequenza, non dall'INSERT) e ogni
+     * conversazione viene aggiornata con un'unica UPDATE per tutti i suoi messaggi del gruppo.
+     *
+     * @param messages    I messaggi da salvare, nell'ordine di invio.
+     * @return            I messaggi salvati, nello stesso ordine.
+     * @throws IllegalArgumentException   Se un messaggio è nullo o incompleto; in tal caso nessun messaggio viene salvato.
+     */
+    @Transactional
+    public List<Message> saveMessages(List<Message> messages) {
+        for (Message message : messages) {
+            if (message == null) {
+                throw new IllegalArgumentException("Messaggio nullo non valido");
+            }// Controlla se messaggio vuoto
+            if (message.getSender() == null || message.getReceiver() == null || message.getBike() == null) {
+                throw new IllegalArgumentException("Messaggio incompleto non valido");
+            }// La conversazione è identificata da mittente, destinatario e bici
+        }
+
+        // Determina acquirente e venditore di ogni messaggio e crea le conversazioni che non esistono
+        Map<Long, Long> ownerIdByBike = new HashMap<>();
+        Map<List<Long>, Long> conversationIdByParticipants = new HashMap<>();
+        Long[] conversationIds = new Long[messages.size()];
+        boolean[] sendersAreSellers = new boolean[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            message.setTimestamp(LocalDateTime.now()); // Imposta il timestamp al momento attuale
+
+            Long senderId = message.getSender().getId();
+            Long receiverId = message.getReceiver().getId();
+            Long bikeId = message.getBike().getId();
+            if (!ownerIdByBike.containsKey(bikeId)) {
+                ownerIdByBike.put(bikeId, bikeRepository.findOwnerIdById(bikeId));
+            }
+            boolean senderIsSeller = isSeller(senderId, receiverId, ownerIdByBike.get(bikeId));
+            Long buyerId = senderIsSeller ? receiverId : senderId;
+            Long sellerId = senderIsSeller ? senderId : receiverId;
+
+            conversationIds[i] = conversationIdByParticipants.computeIfAbsent(List.of(bikeId, buyerId, sellerId), key -> {
+                conversationRepository.insertIfAbsent(bikeId, buyerId, sellerId);
+                return conversationRepository.findIdByParticipants(bikeId, buyerId, sellerId);
+            });
+            sendersAreSellers[i] = senderIsSeller;
+            message.setConversation(conversationRepository.getReferenceById(conversationIds[i]));
+        }
+
+        // Salva i messaggi: gli INSERT partono insieme al flush, in batch JDBC.
+        // Gli ID restano tra quelli non confermati fino alla fine della transazione
+        List<Message> saved = messageCommitTracker.persist(messages, messageRepository::save);
+        messageRepository.flush();
+
+        // Aggiorna ogni conversazione una sola volta con i suoi messaggi del gruppo
+        Map<Long, ConversationUpdate> updates = new LinkedHashMap<>();
+        for (int i = 0; i < saved.size(); i++) {
+            updates.computeIfAbsent(conversationIds[i], id -> new ConversationUpdate()).add(saved.get(i), sendersAreSellers[i]);
+        }
+        updates.forEach((conversationId, update) -> conversationRepository.recordMessages(conversationId,
+                update.lastMessageId, update.lastActivity, update.messageCount, update.buyerUnread, update.sellerUnread));
+
+        // Dopo il commit incrementa i non letti dei destinatari, indicizza i messaggi per la ricerca
+        // e li invia alle pagine aperte dei destinatari
+        for (int i = 0; i < saved.size(); i++) {
+            Message message = saved.get(i);
+            Long receiverId = message.getReceiver().getId();
+            MessageEvent event = new MessageEvent(message.getId(), conversationIds[i], message.getSender().getId(),
+                    receiverId, message.getBike().getId(), message.getContent(), message.getTimestamp());
+            unreadCounterService.incrementAfterCommit(receiverId);
+            messageSearchService.indexAfterCommit(event);
+            messageStreamService.publishAfterCommit(event);
+        }
+        return saved;
+    }
+
+    /**
+     * Invia un messaggio riferendo mittente, destinatario e bicicletta solo tramite ID.
+     *
+     * @param senderId                       L'ID del mittente, già autenticato.
+     * @param receiverId                     L'ID del destinatario.
+     * @param bikeId                         L'ID della bicicletta oggetto del messaggio.
+     * @param content                        Il contenuto del messaggio.
+     * @return                               Il messaggio salvato.
+     * @throws ResponseStatusException       Se il destinatario o la bicicletta non sono trovati.
+     */
+    @Transactional
+    public Message sendMessage(Long senderId, Long receiverId, Long bikeId, String content) {
+        return saveMessage(createMessage(senderId, receiverId, bikeId, content));
+    }
+
+    /**
+     * Crea, senza salvarlo, un messaggio che riferisce mittente, destinatario e bicicletta solo tramite ID.
+     * Destinatario e bicicletta vengono verificati con una query di esistenza e collegati
+     * al messaggio come riferimenti, senza caricare le entità.
+     *
+     * @param senderId                       L'ID del mittente, già autenticato.
+     * @param receiverId                     L'ID del destinatario.
+     * @param bikeId                         L'ID della bicicletta oggetto del messaggio.
+     * @param content                        Il contenuto del messaggio.
+     * @return                               Il messaggio da salvare.
+     * @throws ResponseStatusException       Se il destinatario o la bicicletta non sono trovati.
+     */
+    public Message createMessage(Long senderId, Long receiverId, Long bikeId, String content) {
+        if (!userRepository.existsById(receiverId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+        if (!bikeRepository.existsById(bikeId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Bike not found");
+        }
+
+        return new Message(
+                userRepository.getReferenceById(senderId),
+                userRepository.getReferenceById(receiverId),
+                bikeRepository.getReferenceById(bikeId),
+                content);
     }
 
     /**
-     * Recupera tutte le conversazioni di un utente specifico.
-     * I messaggi sono raggruppati per interlocutore e bicicletta.
+     * Recupera i riepiloghi delle conversazioni di un utente specifico, dalla più recente.
+     * I riepiloghi vengono letti dalle conversazioni dell'utente, senza leggere i messaggi
+     * tranne l'ultimo di ogni conversazione.
      *
      * @param userId     L'ID dell'utente per cui recuperare le conversazioni.
-     * @return           Una lista di conversazioni, ciascuna contenente i messaggi relativi.
+     * @return           Una lista di riepiloghi ordinata per ultima attività.
+     */
+    @Transactional(readOnly = true)
+    public List<ConversationSummary> getConversationSummaries(Long userId) {
+        return conversationRepository.findSummariesByUserId(userId);
+    }
+
+    /**
+     * Recupera una pagina dei messaggi di una conversazione, letti solo quando la conversazione viene aperta.
+     * La paginazione avviene a keyset su (timestamp, id) dal messaggio più recente: ogni pagina legge
+     * al massimo MESSAGE_PAGE_SIZE + 1 messaggi, indipendentemente dalla lunghezza della conversazione.
+     * All'apertura della pagina più recente vengono azzerati i messaggi non letti dell'utente.
+     *
+     * @param userId        L'ID dell'utente che apre la conversazione.
+     * @param otherUserId   L'ID dell'altro utente.
+     * @param bikeId        L'ID della bicicletta.
+     * @param before        Cursore prima del quale iniziare la pagina (opzionale, altrimenti i messaggi più recenti).
+     * @return              La pagina di messaggi in ordine cronologico, vuota se la conversazione non esiste.
+     * @throws ResponseStatusException   Se il cursore non è valido.
+     */
+    @Transactional
+    public MessagePage getConversationPage(Long userId, Long otherUserId, Long bikeId, String before) {
+        Optional<Long> conversationId = conversationRepository.findIdForUser(userId, otherUserId, bikeId);
+        if (conversationId.isEmpty()) {
+            return new MessagePage(null, List.of(), null);
+        }
+
+        // Legge un messaggio in più per sapere se esistono messaggi più vecchi
+        Pageable limit = PageRequest.of(0, MESSAGE_PAGE_SIZE + 1);
+        List<MessageView> messages;
+        if (before == null || before.isEmpty()) {
+            conversationRepository.markRead(conversationId.get(), userId);
+            unreadCounterService.evictAfterCommit(userId);
+            messages = new ArrayList<>(messageRepository.findLatestByConversationId(conversationId.get(), limit));
+        } else {
+            messages = new ArrayList<>(seekBefore(conversationId.get(), before, limit));
+        }
+
+        boolean hasOlder = messages.size() > MESSAGE_PAGE_SIZE;
+        if (hasOlder) {
+            messages = new ArrayList<>(messages.subList(0, MESSAGE_PAGE_SIZE));
+        }
+        Collections.reverse(messages); // Dal più vecchio al più recente
+
+        return new MessagePage(conversationId.get(), messages, hasOlder ? encodeCursor(messages.get(0)) : null);
+    }
+
+    /**
+     * Restituisce il numero totale di messaggi non letti di un utente, mantenuto in memoria
+     * dopo la prima lettura.
+     *
+     * @param userId      L'ID dell'utente.
+     * @return            Il numero di messaggi non letti.
+     */
+    public long getUnreadCount(Long userId) {
+        return unreadCounterService.getUnreadCount(userId);
+    }
+
+    /**
+     * Recupera le modifiche all'inbox di un utente dopo un cursore, per i client che sincronizzano periodicamente.
+     * Il cursore è l'ID dell'ultimo messaggio letto, quindi una richiesta senza novità costa una lettura
+     * degli indici e nessun'altra query. Gli ID non seguono l'ordine di commit: vengono letti solo i messaggi
+     * fino al limite di MessageCommitTracker, sotto il quale non può più comparire nessun messaggio,
+     * così il cursore non supera mai un messaggio non ancora visibile. Senza cursore viene restituito
+     * solo il cursore corrente, da usare per le richieste successive.
+     *
+     * @param userId      L'ID dell'utente.
+     * @param since       L'ID dell'ultimo messaggio già letto dal client (opzionale).
+     * @return            I nuovi messaggi, i riepiloghi delle conversazioni modificate e il nuovo cursore.
      */
     @Transactional(readOnly = true)
-    public List<Conversation> getConversations(Long userId) {
-        // Recupera tutti i messaggi dell'utente (come mittente o destinatario)
-        List<Message> allMessages = messageRepository.findAllByUserId(userId);
+    public MessageChanges getChangesSince(Long userId, Long since) {
+        long mark = messageCommitTracker.commitMark(); // Letto prima dei messaggi
+        if (since == null) {
+            Long maxId = messageRepository.findMaxIdByUserId(userId);
+            return new MessageChanges(List.of(), List.of(), maxId != null ? Math.min(maxId, mark) : 0L, false);
+        }
+
+        // Legge un messaggio in più per sapere se ci sono altre modifiche
+        List<MessageEvent> messages = new ArrayList<>(
+                messageRepository.findChangesSince(userId, since, mark, PageRequest.of(0, CHANGES_LIMIT + 1)));
+        if (messages.isEmpty()) {
+            return new MessageChanges(List.of(), List.of(), since, false);
+        }
+        boolean hasMore = messages.size() > CHANGES_LIMIT;
+        if (hasMore) {
+            messages = new ArrayList<>(messages.subList(0, CHANGES_LIMIT));
+        }
+
+        // Legge i riepiloghi delle sole conversazioni modificate
+        Set<Long> conversationIds = new HashSet<>();
+        for (MessageEvent message : messages) {
+            conversationIds.add(message.getConversationId());
+        }
+        List<ConversationSummary> conversations = conversationRepository.findSummariesByUserIdAndIds(userId, conversationIds);
+
+        return new MessageChanges(messages, conversations, messages.get(messages.size() - 1).getId(), hasMore);
+    }
+
+    /**
+     * Codifica la posizione di un messaggio come cursore "timestamp_id".
+     *
+     * @param message      Il messaggio più vecchio della pagina.
+     * @return             Il cursore corrispondente.
+     */
+    private String encodeCursor(MessageView message) {
+        return message.getTimestamp() + "_" + message.getId();
+    }
+
+    /**
+     * Decodifica un cursore "timestamp_id" e legge i messaggi precedenti.
+     *
+     * @param conversationId             L'ID della conversazione.
+     * @param cursor                     Il cursore ricevuto dalla richiesta.
+     * @param limit                      Il numero massimo di messaggi da leggere.
+     * @return                           I messaggi precedenti al cursore, dal più recente.
+     * @throws ResponseStatusException   Se il cursore non è valido.
+     */
+    private List<MessageView> seekBefore(Long conversationId, String cursor, Pageable limit) {
+        LocalDateTime timestamp;
+        long id;
+        try {
+            int separator = cursor.lastIndexOf('_');
+            timestamp = LocalDateTime.parse(cursor.substring(0, separator));
+            id = Long.parseLong(cursor.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+        return messageRepository.findOlderByConversationId(conversationId, timestamp, id, limit);
+    }
+
+    // Modifiche a una conversazione per i suoi messaggi di un gruppo
+    private static final class ConversationUpdate {
+        private Long lastMessageId;
+        private LocalDateTime lastActivity;
+        private long messageCount;
+        private int buyerUnread;
+        private int sellerUnread;
+
+        // Aggiunge un messaggio salvato: il non letto è del destinatario, l'ultimo messaggio è quello con l'ID maggiore
+        private void add(Message message, boolean senderIsSeller) {
+            messageCount++;
+            if (senderIsSeller) {
+                buyerUnread++;
+            } else {
+                sellerUnread++;
+            }
+            if (lastMessageId == null || message.getId() > lastMessageId) {
+                lastMessageId = message.getId();
+                lastActivity = message.getTimestamp();
+            }
+        }
+    }
 
-        // Raggruppa i messaggi in conversazioni basate sull'interlocutore e la bicicletta
-        return ConversationUtil.groupMessagesByConversation(allMessages, userId);
+    // Il venditore è il proprietario della bici; se nessuno dei due lo è, è l'utente con l'ID minore
+    private static boolean isSeller(Long senderId, Long receiverId, Long ownerId) {
+        if (senderId.equals(ownerId)) {
+            return true;
+        }
+        return !receiverId.equals(ownerId) && senderId < receiverId;
     }
 }
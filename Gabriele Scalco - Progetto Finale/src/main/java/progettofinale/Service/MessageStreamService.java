@@ -0,0 +1,166 @@
+package progettofinale.Service;
+
+import progettofinale.Model.MessageEvent;
+import progettofinale.Repository.MessageRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Service per l'invio in tempo reale dei nuovi messaggi.
+ * Mantiene in memoria, per ogni utente, le connessioni Server-Sent Events aperte dalle sue pagine e invia
+ * a ciascuna i messaggi ricevuti, così le pagine non devono ricaricarsi per vederli.
+ * Inoltra inoltre ogni messaggio alla destinazione STOMP della sua conversazione.
+ */
+@Service
+public class MessageStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStreamService.class);
+
+    static final long STREAM_TIMEOUT_MS = 30 * 60 * 1000L; // Durata massima di una connessione, poi il browser si riconnette
+    static final int REPLAY_LIMIT = 100; // Numero massimo di messaggi reinviati alla riconnessione
+    static final String EVENT_NAME = "message"; // Nome dell'evento SSE dei nuovi messaggi
+    static final String CONVERSATION_TOPIC = "/topic/conversations/"; // Prefisso delle destinazioni STOMP delle conversazioni
+
+    private final Map<Long, List<SseEmitter>> emittersByUser = new ConcurrentHashMap<>(); // Connessioni aperte per utente
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessageCommitTracker messageCommitTracker;
+
+    /**
+     * Apre una connessione SSE per un utente.
+     * Se il browser si sta riconnettendo e indica l'ultimo evento ricevuto, vengono reinviati i messaggi
+     * ricevuti nel frattempo. La connessione viene registrata prima di leggere i messaggi persi:
+     * un messaggio può quindi arrivare due volte, e la pagina scarta quelli già mostrati in base all'ID.
+     * L'ID di ogni evento non supera il limite dei messaggi confermati di {@link MessageCommitTracker}:
+     * gli ID dei messaggi non seguono l'ordine di commit, e un Last-Event-ID uguale all'ID del messaggio
+     * farebbe saltare alla riconnessione un messaggio con ID minore confermato più tardi.
+     *
+     * @param userId        L'ID dell'utente autenticato.
+     * @param lastEventId   L'ID dell'ultimo messaggio ricevuto dal browser (opzionale).
+     * @return              La connessione SSE.
+     */
+    public SseEmitter subscribe(Long userId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        emittersByUser.compute(userId, (id, emitters) -> {
+            List<SseEmitter> registered = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+            registered.add(emitter);
+            return registered;
+        });
+
+        // Rimuove la connessione quando viene chiusa, scade o va in errore
+        Runnable remove = () -> unsubscribe(userId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        if (lastEventId != null) {
+            long mark = messageCommitTracker.commitMark(); // Letto prima dei messaggi
+            List<MessageEvent> missed = messageRepository.findReceivedAfter(userId, lastEventId, PageRequest.of(0, REPLAY_LIMIT));
+            for (MessageEvent event : missed) {
+                if (!send(emitter, event, mark)) {
+                    unsubscribe(userId, emitter);
+                    break;
+                }
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Invia un messaggio agli iscritti della conversazione e alle connessioni aperte del destinatario.
+     * Se è attiva una transazione, l'invio avviene solo dopo il commit, quando il messaggio è visibile
+     * anche alle altre connessioni al database; in caso di rollback non viene inviato nulla.
+     *
+     * @param event     Il messaggio da inviare.
+     */
+    public void publishAfterCommit(MessageEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(event);
+                }
+            });
+        } else {
+            publish(event);
+        }
+    }
+
+    /**
+     * Invia subito un messaggio agli iscritti STOMP della conversazione e alle connessioni SSE del destinatario.
+     * Le connessioni SSE che non accettano più dati vengono rimosse.
+     *
+     * @param event     Il messaggio da inviare.
+     */
+    void publish(MessageEvent event) {
+        messagingTemplate.convertAndSend(CONVERSATION_TOPIC + event.getConversationId(), event);
+
+        List<SseEmitter> emitters = emittersByUser.get(event.getReceiverId());
+        if (emitters == null) {
+            return; // Nessuna pagina aperta: il messaggio verrà letto alla prossima apertura
+        }
+        // Il messaggio è confermato, ma il limite resta sotto di esso finché la sua transazione non è conclusa:
+        // alla riconnessione verrà reinviato una volta e scartato dalla pagina
+        long mark = messageCommitTracker.commitMark();
+        for (SseEmitter emitter : emitters) {
+            if (!send(emitter, event, mark)) {
+                unsubscribe(event.getReceiverId(), emitter);
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di connessioni aperte di un utente.
+     *
+     * @param userId    L'ID dell'utente.
+     * @return          Il numero di connessioni aperte.
+     */
+    public int getSubscriberCount(Long userId) {
+        List<SseEmitter> emitters = emittersByUser.get(userId);
+        return emitters == null ? 0 : emitters.size();
+    }
+
+    // Invia un evento su una connessione, con un ID che non supera il limite dei messaggi confermati;
+    // restituisce false se la connessione non è più utilizzabile
+    private boolean send(SseEmitter emitter, MessageEvent event, long mark) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(Math.min(event.getId(), mark)))
+                    .name(EVENT_NAME)
+                    .data(event));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Connessione SSE chiusa durante l'invio del messaggio {}", event.getId(), e);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    // Rimuove una connessione e, se era l'ultima dell'utente, la voce dell'utente
+    private void unsubscribe(Long userId, SseEmitter emitter) {
+        emittersByUser.computeIfPresent(userId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
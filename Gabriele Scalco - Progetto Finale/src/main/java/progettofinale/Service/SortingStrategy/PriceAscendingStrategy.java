@@ -2,6 +2,7 @@ package progettofinale.Service.SortingStrategy;
 
 import java.util.List;
 import java.util.Comparator;
+import org.springframework.data.domain.Sort;
 import progettofinale.Model.Bikemodel.*;
 
 /**
@@ -22,4 +23,14 @@ public class PriceAscendingStrategy implements SortingStrategy {
                     .sorted(Comparator.comparingDouble(Bike::getPrice)) // Compara i prezzi delle biciclette
                     .toList(); // Converte il risultato in una lista
     }
+
+    /**
+     * Restituisce l'ordinamento per prezzo in ordine crescente, con l'ID come criterio secondario.
+     *
+     * @return          L'ordinamento da applicare alla query.
+     */
+    @Override
+    public Sort getSort() {
+        return Sort.by(Sort.Order.asc("price"), Sort.Order.asc("id"));
+    }
 }
@@ -1,6 +1,7 @@
 package progettofinale.Service.SortingStrategy;
 
 import java.util.List;
+import org.springframework.data.domain.Sort;
 import progettofinale.Model.Bikemodel.*;
 
 /**
@@ -18,4 +19,12 @@ public interface SortingStrategy {
      * @return          La lista ordinata secondo la strategia specifica.
      */
     List<Bike> sort(List<Bike> bikes);
+
+    /**
+     * Restituisce l'ordinamento equivalente da applicare direttamente alla query sul database.
+     * L'ID viene usato come criterio secondario per rendere l'ordine stabile tra biciclette con lo stesso prezzo.
+     *
+     * @return          L'ordinamento da tradurre in ORDER BY.
+     */
+    Sort getSort();
 }
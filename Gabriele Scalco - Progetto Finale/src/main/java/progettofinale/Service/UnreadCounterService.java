@@ -0,0 +1,117 @@
+package progettofinale.Service;
+
+import progettofinale.Repository.ConversationRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service per il conteggio dei messaggi non letti di ogni utente, letto a ogni aggiornamento del badge.
+ * Il totale di un utente viene letto dal database alla prima richiesta e poi mantenuto in memoria:
+ * i nuovi messaggi lo incrementano dopo il commit, mentre la lettura di una conversazione lo rimuove,
+ * così la richiesta successiva lo rilegge dalle conversazioni.
+ * Restano in memoria al più MAX_CACHED_USERS totali: oltre, viene rimosso quello letto meno di recente.
+ * Un messaggio salvato mentre il totale viene letto può essere contato due volte o nessuna;
+ * lo scarto si corregge alla successiva lettura di una conversazione.
+ */
+@Service
+public class UnreadCounterService {
+
+    static final int MAX_CACHED_USERS = 10_000; // Numero massimo di totali tenuti in memoria
+
+    // Non letti per utente, in ordine di accesso: il primo è quello letto meno di recente
+    private final Map<Long, LongAdder> countersByUser = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, LongAdder> eldest) {
+                    return size() > MAX_CACHED_USERS;
+                }
+            });
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    /**
+     * Restituisce il numero di messaggi non letti di un utente, leggendolo dal database solo
+     * se non è già in memoria.
+     *
+     * @param userId    L'ID dell'utente.
+     * @return          Il numero di messaggi non letti.
+     */
+    public long getUnreadCount(Long userId) {
+        LongAdder counter = countersByUser.get(userId);
+        if (counter == null) {
+            LongAdder loaded = new LongAdder();
+            loaded.add(conversationRepository.sumUnreadByUserId(userId));
+            counter = countersByUser.putIfAbsent(userId, loaded);
+            if (counter == null) {
+                counter = loaded;
+            }
+        }
+        return counter.sum();
+    }
+
+    /**
+     * Incrementa i non letti di un utente dopo il commit della transazione corrente.
+     * Se il totale dell'utente non è in memoria non viene fatto nulla: sarà letto dal database.
+     *
+     * @param userId    L'ID del destinatario del messaggio.
+     */
+    public void incrementAfterCommit(Long userId) {
+        afterCommit(() -> {
+            LongAdder counter = countersByUser.get(userId);
+            if (counter != null) {
+                counter.increment();
+            }
+        });
+    }
+
+    /**
+     * Rimuove dalla memoria il totale di un utente dopo il commit della transazione corrente,
+     * ad esempio quando l'utente ha letto una conversazione.
+     *
+     * @param userId    L'ID dell'utente.
+     */
+    public void evictAfterCommit(Long userId) {
+        afterCommit(() -> countersByUser.remove(userId));
+    }
+
+    /**
+     * Rimuove dalla memoria i totali di più utenti dopo il commit della transazione corrente,
+     * ad esempio i partecipanti delle conversazioni di una bicicletta eliminata.
+     *
+     * @param userIds   Gli ID degli utenti.
+     */
+    public void evictAfterCommit(Collection<Long> userIds) {
+        if (!userIds.isEmpty()) {
+            afterCommit(() -> userIds.forEach(countersByUser::remove));
+        }
+    }
+
+    // Numero di totali in memoria
+    int cachedCount() {
+        return countersByUser.size();
+    }
+
+    // Esegue un'azione dopo il commit della transazione corrente, o subito se non c'è una transazione
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,17 +1,18 @@
 package progettofinale.Service;
 
+import progettofinale.Repository.BikeRepository;
 import progettofinale.Repository.UserRepository;
+import progettofinale.Repository.WishlistRepository;
 import progettofinale.Model.*;
-import progettofinale.Model.Bikemodel.*;
-import progettofinale.Util.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
 import java.util.List;
-import org.hibernate.Hibernate;
 
 /**
  * Service per la gestione delle operazioni relative agli utenti.
@@ -21,9 +22,17 @@ import org.hibernate.Hibernate;
 @Service
 public class UserService {
 
+    public static final int WISHLIST_PAGE_SIZE = 12; // Numero di biciclette per pagina della wishlist
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -85,78 +94,69 @@ public class UserService {
 
     /**
      * Aggiunge una bicicletta alla wishlist di un utente.
+     * Non carica né l'utente né la bicicletta: verifica solo che la bicicletta esista
+     * e inserisce la riga nella tabella di join; se è già presente, la chiave primaria la fa ignorare.
      *
-     * @param user         L'utente a cui aggiungere la bicicletta.
-     * @param bike         La bicicletta da aggiungere alla wishlist.
+     * @param userId                         L'ID dell'utente a cui aggiungere la bicicletta.
+     * @param bikeId                         L'ID della bicicletta da aggiungere alla wishlist.
+     * @throws ResponseStatusException       Se la bicicletta non è trovata.
      */
     @Transactional
-    public void addToWishlist(User user, Bike bike) {
-        if (user.getWishlist().contains(bike)) {
-            return; // Evita duplicati
+    public void addToWishlist(Long userId, Long bikeId) {
+        if (!bikeRepository.existsById(bikeId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Bike not found");
         }
-        user.getWishlist().add(bike);
-        userRepository.save(user);
+        wishlistRepository.add(userId, bikeId); // ON CONFLICT DO NOTHING evita i duplicati
     }
 
 
     /**
-     * Rimuove una bicicletta dalla wishlist di un utente.
+     * Rimuove una bicicletta dalla wishlist di un utente con un'unica DELETE sulla tabella di join,
+     * senza caricare l'utente e la sua wishlist. Se la bicicletta non è nella wishlist non succede nulla.
      *
      * @param userId                         L'ID dell'utente.
      * @param bikeId                         L'ID della bicicletta da rimuovere.
-     * @throws IllegalArgumentException      Se l'utente non è trovato.
      */
     @Transactional
     public void removeBikeFromWishlist(Long userId, Long bikeId) {
-        User user = userRepository.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Bike bikeToRemove = user.getWishlist().stream()
-                .filter(b -> b.getId().equals(bikeId))
-                .findFirst()
-                .orElse(null);
-
-        if (bikeToRemove != null) {
-            user.getWishlist().remove(bikeToRemove);
-            userRepository.save(user);
-        }
+        wishlistRepository.remove(userId, bikeId);
     }
 
     /**
-     * Recupera un utente in base alla sua email, inizializzando la relazione wishlist
-     * e preparando i dati delle immagini associate per il rendering.
-     * 
-     * Questo metodo carica esplicitamente la wishlist dell'utente per evitare problemi 
-     * di LazyInitializationException, converte le immagini delle biciclette in formato Base64 
-     * e assegna un'immagine predefinita in caso di assenza.
-     * 
-     * @param email                         L'email dell'utente da recuperare.
-     * @return                              L'utente con la sua wishlist e immagini pronte per la visualizzazione.
+     * Recupera l'ID di un utente in base alla sua email, senza caricare l'entità.
+     *
+     * @param email                         L'email dell'utente.
+     * @return                              L'ID dell'utente.
      * @throws ResponseStatusException      Se l'utente non viene trovato.
      */
-    @Transactional
-    public User retrieveUserWithWishlistByEmail(String email) {
-        // Recupera l'utente dal database tramite l'email
-        User user = userRepository.findByEmail(email);
-        if (user == null) {
+    @Transactional(readOnly = true)
+    public Long retrieveUserIdByEmail(String email) {
+        Long userId = userRepository.findIdByEmail(email);
+        if (userId == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
         }
-
-        // Inizializza la relazione wishlist per evitare LazyInitializationException
-        Hibernate.initialize(user.getWishlist());
-
-        // Converte le immagini in Base64 per ciascuna bicicletta nella wishlist
-        user.getWishlist().forEach(bike -> {
-            if (bike.getImage() != null) {
-                // Codifica l'immagine in Base64
-                String base64Image = "data:image/jpeg;base64," + ImageUtil.encodeToBase64(bike.getImage());
-                bike.setImagePath(base64Image);
-            } else {
-                // Assegna un'immagine predefinita se nessuna immagine è presente
-                bike.setImagePath("/images/default-bike.jpg");
-            }
-        });
-
-        return user;
+        return userId;
     }
 
-
+    /**
+     * Recupera una pagina delle schede delle biciclette nella wishlist di un utente, in ordine di ID.
+     * Le immagini non vengono lette: ogni scheda contiene l'URL da cui il browser le scarica,
+     * oppure l'immagine predefinita se la bicicletta non ha foto.
+     * Viene letta una scheda in più del necessario per sapere se esiste una pagina successiva.
+     *
+     * @param userId        L'ID dell'utente.
+     * @param after         L'ID dell'ultima bicicletta della pagina precedente (opzionale).
+     * @return              La pagina con le schede e il cursore per la pagina successiva.
+     */
+    @Transactional(readOnly = true)
+    public WishlistPage retrieveWishlistPage(Long userId, Long after) {
+        List<BikeCard> bikes = new ArrayList<>(wishlistRepository.findCardsByUserId(
+                userId, after != null ? after : 0L, PageRequest.of(0, WISHLIST_PAGE_SIZE + 1)));
+        Long nextCursor = null;
+        if (bikes.size() > WISHLIST_PAGE_SIZE) {
+            bikes = new ArrayList<>(bikes.subList(0, WISHLIST_PAGE_SIZE));
+            nextCursor = bikes.get(WISHLIST_PAGE_SIZE - 1).getId();
+        }
+        return new WishlistPage(bikes, nextCursor);
+    }
 }
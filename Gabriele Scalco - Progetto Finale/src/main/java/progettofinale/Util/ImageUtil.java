@@ -1,20 +1,70 @@
 package progettofinale.Util;
 
-import java.util.Base64;
+import progettofinale.Model.ImageRendition;
+
+import org.springframework.http.MediaType;
 
 /**
  * Utility per la gestione delle immagini.
- * Fornisce metodi per la conversione delle immagini in formato Base64.
+ * Fornisce metodi per la costruzione degli URL da cui il browser scarica le immagini delle biciclette
+ * e per il riconoscimento del formato.
  */
 public class ImageUtil {
 
+    public static final String DEFAULT_IMAGE_PATH = "/images/default-bike.jpg"; // Immagine usata quando la bici non ha foto
+
     /**
-     * Converte un array di byte rappresentante un'immagine in una stringa codificata in Base64.
+     * Restituisce l'URL dell'immagine di una bicicletta nella versione richiesta, servita dall'endpoint dedicato.
      *
-     * @param image L'array di byte dell'immagine da convertire.
-     * @return La stringa Base64 rappresentante l'immagine, oppure null se l'immagine è null.
+     * @param bikeId      L'ID della bicicletta.
+     * @param hasImage    true se la bicicletta ha un'immagine salvata.
+     * @param rendition   La versione dell'immagine (miniatura, dettaglio o originale).
+     * @return L'URL dell'immagine, oppure quello dell'immagine predefinita.
+     */
+    public static String bikeImagePath(Long bikeId, boolean hasImage, ImageRendition rendition) {
+        if (!hasImage) {
+            return DEFAULT_IMAGE_PATH;
+        }
+        return rendition == ImageRendition.ORIGINAL
+                ? "/images/bike/" + bikeId
+                : "/images/bike/" + bikeId + "/" + rendition.getPathName();
+    }
+
+    /**
+     * Riconosce il formato di un'immagine dai primi byte (magic number).
+     * Sono supportati i formati caricabili dal browser: JPEG, PNG, GIF e WebP.
+     *
+     * @param image L'array di byte dell'immagine.
+     * @return Il tipo di contenuto dell'immagine, oppure application/octet-stream se il formato non è riconosciuto.
+     */
+    public static MediaType detectContentType(byte[] image) {
+        if (startsWith(image, 0, 0xFF, 0xD8, 0xFF)) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (startsWith(image, 0, 0x89, 'P', 'N', 'G')) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (startsWith(image, 0, 'G', 'I', 'F', '8')) {
+            return MediaType.IMAGE_GIF;
+        }
+        if (startsWith(image, 0, 'R', 'I', 'F', 'F') && startsWith(image, 8, 'W', 'E', 'B', 'P')) {
+            return MediaType.parseMediaType("image/webp");
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    /**
+     * Verifica se l'array contiene la sequenza di byte indicata a partire dalla posizione specificata.
      */
-    public static String encodeToBase64(byte[] image) {
-        return image != null ? Base64.getEncoder().encodeToString(image) : null;
+    private static boolean startsWith(byte[] data, int offset, int... signature) {
+        if (data == null || data.length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((data[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,190 @@
+package progettofinale.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Conteggio approssimato degli eventi per chiave in una finestra temporale scorrevole, con memoria limitata.
+ * La finestra è divisa in intervalli di durata fissa; ogni intervallo è un count-min sketch, cioè una matrice
+ * di contatori con una riga per funzione di hash. Un evento incrementa un contatore per riga; la stima per una
+ * chiave è il minimo, tra le righe, dei suoi contatori sommati sugli intervalli della finestra.
+ * La stima non è mai inferiore al conteggio reale e può superarlo solo per collisioni con altre chiavi.
+ * Le colonne di tutte le righe derivano da SipHash-2-4 dei byte della chiave, con una chiave segreta casuale
+ * per istanza: le chiavi vengono dai client (indirizzi IP, email), e con un hash non segreto come
+ * String.hashCode() chi le sceglie potrebbe farle collidere in tutte le righe (es. "Aa" e "BB").
+ * La memoria è fissa (intervalli × righe × colonne contatori) qualunque sia il numero di chiavi,
+ * e nessuna operazione usa lock: i contatori sono atomici e un intervallo scaduto viene sostituito
+ * da uno nuovo con compareAndSet.
+ */
+public class SlidingWindowSketch {
+
+    private static final SecureRandom RANDOM = new SecureRandom(); // Generatore delle chiavi SipHash
+
+    private final int depth; // Righe, cioè funzioni di hash
+    private final int width; // Colonne per riga, potenza di due
+    private final int buckets; // Intervalli nella finestra
+    private final long bucketMillis; // Durata di un intervallo
+    private final LongSupplier clock; // Orologio in millisecondi
+    private final AtomicReferenceArray<Bucket> ring; // Intervalli, in posizione epoch % buckets
+    private final long k0; // Prima metà della chiave SipHash
+    private final long k1; // Seconda metà della chiave SipHash
+
+    /**
+     * Crea lo sketch.
+     *
+     * @param depth          Numero di righe (funzioni di hash).
+     * @param width          Numero di colonne per riga, arrotondato alla potenza di due successiva.
+     * @param buckets        Numero di intervalli nella finestra.
+     * @param bucketMillis   Durata di un intervallo in millisecondi.
+     * @param clock          Orologio in millisecondi.
+     */
+    public SlidingWindowSketch(int depth, int width, int buckets, long bucketMillis, LongSupplier clock) {
+        this(depth, width, buckets, bucketMillis, clock, RANDOM.nextLong(), RANDOM.nextLong());
+    }
+
+    // Crea lo sketch con una chiave SipHash fissa, usato dai test
+    SlidingWindowSketch(int depth, int width, int buckets, long bucketMillis, LongSupplier clock, long k0, long k1) {
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.clock = clock;
+        this.ring = new AtomicReferenceArray<>(buckets);
+        this.k0 = k0;
+        this.k1 = k1;
+    }
+
+    /**
+     * Registra un evento per una chiave nell'intervallo corrente.
+     *
+     * @param key      La chiave dell'evento.
+     */
+    public void add(String key) {
+        Bucket bucket = currentBucket();
+        long hash = sipHash24(k0, k1, key.getBytes(StandardCharsets.UTF_8));
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            bucket.counts.incrementAndGet(row * width + index(h1, h2, row));
+        }
+    }
+
+    /**
+     * Stima il numero di eventi di una chiave negli intervalli della finestra.
+     *
+     * @param key      La chiave.
+     * @return         Il numero stimato di eventi, mai inferiore a quello reale.
+     */
+    public long estimate(String key) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        long hash = sipHash24(k0, k1, key.getBytes(StandardCharsets.UTF_8));
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = row * width + index(h1, h2, row);
+            long sum = 0;
+            for (int slot = 0; slot < buckets; slot++) {
+                Bucket bucket = ring.get(slot);
+                if (bucket != null && epoch - bucket.epoch < buckets && bucket.epoch <= epoch) {
+                    sum += bucket.counts.get(cell);
+                }
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    /**
+     * Restituisce la durata di un intervallo, cioè il tempo dopo cui scadono gli eventi più vecchi.
+     *
+     * @return         La durata in millisecondi.
+     */
+    public long getBucketMillis() { return bucketMillis; }
+
+    // Intervallo corrente: se la sua posizione contiene un intervallo scaduto, lo sostituisce con uno vuoto
+    private Bucket currentBucket() {
+        long epoch = clock.getAsLong() / bucketMillis;
+        int slot = (int) (epoch % buckets);
+        Bucket bucket = ring.get(slot);
+        while (bucket == null || bucket.epoch < epoch) {
+            Bucket fresh = new Bucket(epoch, depth * width);
+            if (ring.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+            bucket = ring.get(slot); // Un altro thread lo ha già sostituito
+        }
+        return bucket;
+    }
+
+    // Colonna della chiave nella riga indicata (doppio hashing sulle due metà dell'hash a 64 bit)
+    private int index(int h1, int h2, int row) {
+        return (h1 + row * h2) & (width - 1);
+    }
+
+    /**
+     * Calcola SipHash-2-4 di un array di byte con la chiave a 128 bit (k0, k1), letta in little-endian.
+     *
+     * @param k0       I primi 64 bit della chiave.
+     * @param k1       Gli ultimi 64 bit della chiave.
+     * @param data     I byte da elaborare.
+     * @return         L'hash a 64 bit.
+     */
+    static long sipHash24(long k0, long k1, byte[] data) {
+        long[] v = {
+                0x736f6d6570736575L ^ k0,
+                0x646f72616e646f6dL ^ k1,
+                0x6c7967656e657261L ^ k0,
+                0x7465646279746573L ^ k1
+        };
+        int end = data.length - data.length % 8;
+        for (int offset = 0; offset < end; offset += 8) {
+            long m = 0;
+            for (int i = 7; i >= 0; i--) {
+                m = (m << 8) | (data[offset + i] & 0xFFL);
+            }
+            compress(v, m);
+        }
+        // Ultimo blocco: byte rimanenti e lunghezza nel byte più significativo
+        long last = (long) data.length << 56;
+        for (int i = end; i < data.length; i++) {
+            last |= (data[i] & 0xFFL) << (8 * (i - end));
+        }
+        compress(v, last);
+        v[2] ^= 0xFF;
+        for (int round = 0; round < 4; round++) {
+            sipRound(v);
+        }
+        return v[0] ^ v[1] ^ v[2] ^ v[3];
+    }
+
+    // Elabora un blocco di 8 byte con due round
+    private static void compress(long[] v, long m) {
+        v[3] ^= m;
+        sipRound(v);
+        sipRound(v);
+        v[0] ^= m;
+    }
+
+    // Un round di SipHash sullo stato v0..v3
+    private static void sipRound(long[] v) {
+        v[0] += v[1]; v[1] = Long.rotateLeft(v[1], 13); v[1] ^= v[0]; v[0] = Long.rotateLeft(v[0], 32);
+        v[2] += v[3]; v[3] = Long.rotateLeft(v[3], 16); v[3] ^= v[2];
+        v[0] += v[3]; v[3] = Long.rotateLeft(v[3], 21); v[3] ^= v[0];
+        v[2] += v[1]; v[1] = Long.rotateLeft(v[1], 17); v[1] ^= v[2]; v[2] = Long.rotateLeft(v[2], 32);
+    }
+
+    // Contatori di un intervallo
+    private static final class Bucket {
+        private final long epoch; // Numero dell'intervallo dall'inizio dell'orologio
+        private final AtomicIntegerArray counts; // Matrice righe × colonne
+
+        private Bucket(long epoch, int size) {
+            this.epoch = epoch;
+            this.counts = new AtomicIntegerArray(size);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+-- Le immagini salvate prima di ImageStore passano dalla colonna image di bike a una tabella separata,
+-- mappata da BikeImage: caricare una bicicletta non legge più le colonne LOB.
+-- La riga viene eliminata quando l'immagine è migrata in ImageStore o quando la bicicletta viene eliminata.
+-- Su PostgreSQL viene copiato solo il riferimento oid: i large object non vengono duplicati.
+
+CREATE TABLE bike_legacy_image (
+    bike_id bigint NOT NULL,
+    image ${blob_type} NOT NULL,
+    CONSTRAINT bike_legacy_image_pkey PRIMARY KEY (bike_id),
+    CONSTRAINT fk_bike_legacy_image_bike FOREIGN KEY (bike_id) REFERENCES bike (id) ON DELETE CASCADE
+);
+
+INSERT INTO bike_legacy_image (bike_id, image) SELECT id, image FROM bike WHERE image IS NOT NULL;
+
+ALTER TABLE bike DROP COLUMN image;
@@ -0,0 +1,48 @@
+-- Schema iniziale, identico a quello generato da Hibernate con ddl-auto=update (vedi backup.sql).
+-- Sui database già esistenti questa migrazione non viene eseguita: Flyway li registra come baseline alla versione 1.
+
+CREATE SEQUENCE user_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE SEQUENCE bike_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE users (
+    id bigint NOT NULL,
+    email character varying(255),
+    name character varying(255),
+    password character varying(255),
+    CONSTRAINT users_pkey PRIMARY KEY (id)
+);
+
+CREATE TABLE bike (
+    type character varying(31) NOT NULL,
+    id bigint NOT NULL,
+    brand character varying(255),
+    description character varying(255),
+    image ${blob_type},
+    place character varying(255),
+    price double precision NOT NULL,
+    size character varying(255),
+    user_id bigint,
+    CONSTRAINT bike_pkey PRIMARY KEY (id),
+    CONSTRAINT fk2mkriqcy0gu39osvgeskk2vpo FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE message (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    content character varying(255),
+    "timestamp" timestamp(6) without time zone,
+    bike_id bigint NOT NULL,
+    receiver_id bigint NOT NULL,
+    sender_id bigint NOT NULL,
+    CONSTRAINT message_pkey PRIMARY KEY (id),
+    CONSTRAINT fktny9r7hx4qvihau32racn0oon FOREIGN KEY (bike_id) REFERENCES bike (id),
+    CONSTRAINT fk9a25x9o5r7wguarxeon2a9tmr FOREIGN KEY (receiver_id) REFERENCES users (id),
+    CONSTRAINT fkbi5avhe69aol2mb1lnm6r4o2p FOREIGN KEY (sender_id) REFERENCES users (id)
+);
+
+CREATE TABLE user_wishlist (
+    user_id bigint NOT NULL,
+    bike_id bigint NOT NULL,
+    CONSTRAINT fkxfiwf0ov64o4j979puogxloy FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk46cmwsfxwj9rkho97kkamxs9t FOREIGN KEY (bike_id) REFERENCES bike (id)
+);
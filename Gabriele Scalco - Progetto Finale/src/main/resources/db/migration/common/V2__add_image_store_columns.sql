@@ -0,0 +1,8 @@
+-- Colonne delle chiavi in ImageStore e dei metadati dell'immagine.
+-- IF NOT EXISTS perché sui database esistenti possono essere già state create da ddl-auto=update.
+
+ALTER TABLE bike ADD COLUMN IF NOT EXISTS image_key character varying(64);
+ALTER TABLE bike ADD COLUMN IF NOT EXISTS image_card_key character varying(64);
+ALTER TABLE bike ADD COLUMN IF NOT EXISTS image_detail_key character varying(64);
+ALTER TABLE bike ADD COLUMN IF NOT EXISTS image_content_type character varying(255);
+ALTER TABLE bike ADD COLUMN IF NOT EXISTS image_updated_at timestamp(6) with time zone;
@@ -0,0 +1,16 @@
+-- Indici secondari sulle chiavi esterne e sulle colonne usate da filtri e ordinamenti.
+
+-- Inbox: messaggi inviati, ricevuti e relativi a una bicicletta (anche per l'eliminazione della bici)
+CREATE INDEX IF NOT EXISTS idx_message_sender_id ON message (sender_id);
+CREATE INDEX IF NOT EXISTS idx_message_receiver_id ON message (receiver_id);
+CREATE INDEX IF NOT EXISTS idx_message_bike_id ON message (bike_id);
+
+-- Profilo: biciclette pubblicate da un utente
+CREATE INDEX IF NOT EXISTS idx_bike_user_id ON bike (user_id);
+
+-- Catalogo: ordinamento e paginazione a keyset su (prezzo, id)
+CREATE INDEX IF NOT EXISTS idx_bike_price_id ON bike (price, id);
+
+-- Wishlist: lettura per utente ed eliminazione per bicicletta
+CREATE INDEX IF NOT EXISTS idx_user_wishlist_user_id_bike_id ON user_wishlist (user_id, bike_id);
+CREATE INDEX IF NOT EXISTS idx_user_wishlist_bike_id ON user_wishlist (bike_id);
@@ -0,0 +1,59 @@
+-- Conversazioni persistenti tra acquirente e venditore su una bicicletta.
+-- Il venditore è il proprietario della bici; se nessuno dei due utenti lo è, è quello con l'ID minore
+-- (stessa regola di MessageService).
+
+CREATE TABLE conversation (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    bike_id bigint NOT NULL,
+    buyer_id bigint NOT NULL,
+    seller_id bigint NOT NULL,
+    last_message_id bigint,
+    last_activity timestamp(6) without time zone,
+    message_count bigint NOT NULL,
+    buyer_unread_count integer NOT NULL,
+    seller_unread_count integer NOT NULL,
+    CONSTRAINT conversation_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_conversation_bike_buyer_seller UNIQUE (bike_id, buyer_id, seller_id),
+    CONSTRAINT fk_conversation_bike FOREIGN KEY (bike_id) REFERENCES bike (id),
+    CONSTRAINT fk_conversation_buyer FOREIGN KEY (buyer_id) REFERENCES users (id),
+    CONSTRAINT fk_conversation_seller FOREIGN KEY (seller_id) REFERENCES users (id)
+);
+
+-- Inbox: conversazioni di un utente come acquirente o come venditore, dalla più recente
+CREATE INDEX idx_conversation_buyer_id_last_activity ON conversation (buyer_id, last_activity DESC);
+CREATE INDEX idx_conversation_seller_id_last_activity ON conversation (seller_id, last_activity DESC);
+
+ALTER TABLE message ADD COLUMN conversation_id bigint;
+
+-- Crea le conversazioni dei messaggi esistenti; i messaggi già inviati sono considerati letti
+INSERT INTO conversation (bike_id, buyer_id, seller_id, last_message_id, last_activity, message_count,
+                          buyer_unread_count, seller_unread_count)
+SELECT t.bike_id, t.buyer_id, t.seller_id, MAX(t.id), MAX(t."timestamp"), COUNT(*), 0, 0
+FROM (
+    SELECT m.id, m."timestamp", m.bike_id,
+           CASE WHEN m.sender_id = b.user_id THEN m.receiver_id
+                WHEN m.receiver_id = b.user_id THEN m.sender_id
+                ELSE GREATEST(m.sender_id, m.receiver_id) END AS buyer_id,
+           CASE WHEN m.sender_id = b.user_id THEN m.sender_id
+                WHEN m.receiver_id = b.user_id THEN m.receiver_id
+                ELSE LEAST(m.sender_id, m.receiver_id) END AS seller_id
+    FROM message m JOIN bike b ON b.id = m.bike_id
+) t
+GROUP BY t.bike_id, t.buyer_id, t.seller_id;
+
+UPDATE message SET conversation_id = (
+    SELECT c.id FROM conversation c JOIN bike b ON b.id = c.bike_id
+    WHERE c.bike_id = message.bike_id
+      AND c.buyer_id = CASE WHEN message.sender_id = b.user_id THEN message.receiver_id
+                            WHEN message.receiver_id = b.user_id THEN message.sender_id
+                            ELSE GREATEST(message.sender_id, message.receiver_id) END
+      AND c.seller_id = CASE WHEN message.sender_id = b.user_id THEN message.sender_id
+                             WHEN message.receiver_id = b.user_id THEN message.receiver_id
+                             ELSE LEAST(message.sender_id, message.receiver_id) END
+);
+
+ALTER TABLE message ALTER COLUMN conversation_id SET NOT NULL;
+ALTER TABLE message ADD CONSTRAINT fk_message_conversation FOREIGN KEY (conversation_id) REFERENCES conversation (id);
+
+-- Pagina della conversazione: messaggi di una conversazione in ordine cronologico
+CREATE INDEX idx_message_conversation_id_timestamp_id ON message (conversation_id, "timestamp", id);
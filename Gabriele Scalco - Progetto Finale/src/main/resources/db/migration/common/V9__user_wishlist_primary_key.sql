@@ -0,0 +1,12 @@
+-- Chiave primaria sulla tabella di join della wishlist, usata da INSERT ... ON CONFLICT DO NOTHING.
+-- Le eventuali righe duplicate vengono rimosse prima di creare il vincolo.
+
+CREATE TABLE user_wishlist_distinct AS SELECT DISTINCT user_id, bike_id FROM user_wishlist;
+DELETE FROM user_wishlist;
+INSERT INTO user_wishlist (user_id, bike_id) SELECT user_id, bike_id FROM user_wishlist_distinct;
+DROP TABLE user_wishlist_distinct;
+
+ALTER TABLE user_wishlist ADD CONSTRAINT user_wishlist_pkey PRIMARY KEY (user_id, bike_id);
+
+-- L'indice della chiave primaria copre già la lettura per utente
+DROP INDEX IF EXISTS idx_user_wishlist_user_id_bike_id;
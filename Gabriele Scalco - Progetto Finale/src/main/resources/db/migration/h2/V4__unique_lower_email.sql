@@ -0,0 +1,6 @@
+-- Email univoca senza distinzione tra maiuscole e minuscole.
+-- H2 non supporta indici su espressioni: l'indice univoco è definito su una colonna generata.
+
+ALTER TABLE users ADD COLUMN email_lower character varying(255) GENERATED ALWAYS AS (lower(email));
+
+CREATE UNIQUE INDEX ux_users_lower_email ON users (email_lower);
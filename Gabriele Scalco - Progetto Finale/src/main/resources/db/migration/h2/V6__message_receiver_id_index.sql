@@ -0,0 +1,5 @@
+-- Messaggi ricevuti da un utente dopo un determinato ID, reinviati alla riconnessione dello stream SSE.
+-- H2 usa l'indice sulla sola colonna receiver_id per la chiave esterna e non permette di eliminarlo:
+-- a differenza di PostgreSQL, viene mantenuto accanto a quello composto.
+
+CREATE INDEX idx_message_receiver_id_id ON message (receiver_id, id);
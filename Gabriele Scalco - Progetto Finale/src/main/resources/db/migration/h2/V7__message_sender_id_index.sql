@@ -0,0 +1,5 @@
+-- Sincronizzazione dell'inbox: messaggi inviati o ricevuti da un utente dopo un determinato ID.
+-- H2 usa l'indice sulla sola colonna sender_id per la chiave esterna e non permette di eliminarlo:
+-- a differenza di PostgreSQL, viene mantenuto accanto a quello composto.
+
+CREATE INDEX idx_message_sender_id_id ON message (sender_id, id);
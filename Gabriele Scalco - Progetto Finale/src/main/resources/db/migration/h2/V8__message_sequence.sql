@@ -0,0 +1,9 @@
+-- Sequenza per gli ID dei messaggi: Hibernate li assegna prima dell'INSERT, così gli INSERT
+-- possono essere inviati in batch JDBC (con IDENTITY ogni INSERT deve restituire il proprio ID).
+-- Hibernate riserva 50 ID per ogni valore letto (dal valore - 49 al valore).
+-- Il database H2 è usato solo nei test ed è vuoto quando la migrazione viene eseguita.
+
+CREATE SEQUENCE message_sequence START WITH 50 INCREMENT BY 50;
+
+-- Gli ID vengono ora assegnati solo dalla sequenza, come su PostgreSQL
+ALTER TABLE message ALTER COLUMN id DROP IDENTITY;
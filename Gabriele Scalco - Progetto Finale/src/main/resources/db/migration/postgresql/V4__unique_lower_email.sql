@@ -0,0 +1,5 @@
+-- Email univoca senza distinzione tra maiuscole e minuscole.
+-- L'indice serve anche le ricerche per email al login, che confrontano lower(email).
+-- La migrazione fallisce se esistono già utenti con la stessa email: vanno unificati prima.
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_users_lower_email ON users (lower(email));
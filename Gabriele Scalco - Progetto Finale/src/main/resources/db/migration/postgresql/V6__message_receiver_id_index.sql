@@ -0,0 +1,5 @@
+-- Messaggi ricevuti da un utente dopo un determinato ID, reinviati alla riconnessione dello stream SSE.
+-- L'indice composto sostituisce quello sulla sola colonna receiver_id.
+
+CREATE INDEX idx_message_receiver_id_id ON message (receiver_id, id);
+DROP INDEX IF EXISTS idx_message_receiver_id;
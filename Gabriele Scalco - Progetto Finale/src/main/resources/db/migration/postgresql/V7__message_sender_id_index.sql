@@ -0,0 +1,6 @@
+-- Sincronizzazione dell'inbox: messaggi inviati o ricevuti da un utente dopo un determinato ID.
+-- Insieme a idx_message_receiver_id_id, una richiesta senza novità legge solo la prima voce di ciascun indice.
+-- L'indice composto sostituisce quello sulla sola colonna sender_id.
+
+CREATE INDEX idx_message_sender_id_id ON message (sender_id, id);
+DROP INDEX IF EXISTS idx_message_sender_id;
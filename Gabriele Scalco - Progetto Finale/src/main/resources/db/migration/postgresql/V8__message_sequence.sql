@@ -0,0 +1,10 @@
+-- Sequenza per gli ID dei messaggi: Hibernate li assegna prima dell'INSERT, così gli INSERT
+-- possono essere inviati in batch JDBC (con IDENTITY ogni INSERT deve restituire il proprio ID).
+-- Hibernate riserva 50 ID per ogni valore letto (dal valore - 49 al valore), quindi la sequenza
+-- parte 50 oltre l'ID massimo esistente.
+
+CREATE SEQUENCE message_sequence INCREMENT BY 50;
+SELECT setval('message_sequence', (SELECT COALESCE(MAX(id), 0) FROM message) + 50, false);
+
+-- Gli ID vengono ora assegnati solo dalla sequenza
+ALTER TABLE message ALTER COLUMN id DROP IDENTITY;
@@ -0,0 +1,143 @@
+package progettofinale.Config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BatchingSessionRepositoryTest {
+
+    @Mock
+    private FindByIndexNameSessionRepository<Session> delegate;
+
+    @Mock
+    private JdbcOperations jdbcOperations;
+
+    private BatchingSessionRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        repository = new BatchingSessionRepository(delegate, jdbcOperations, TransactionOperations.withoutTransaction(), 1000);
+    }
+
+    /**
+     * Verifica che una sessione nuova venga salvata subito dal repository JDBC.
+     */
+    @Test
+    void testSave_NewSession() {
+        MapSession stored = new MapSession();
+        when(delegate.createSession()).thenReturn(stored);
+
+        Session session = repository.createSession();
+        repository.save(session);
+
+        verify(delegate).save(stored); // Verifica il salvataggio immediato
+        assertEquals(0, repository.pendingCount()); // Nessun accesso in attesa
+    }
+
+    /**
+     * Verifica che una sessione con attributi modificati venga salvata subito.
+     */
+    @Test
+    void testSave_ChangedSession() {
+        MapSession stored = new MapSession("session-1");
+        when(delegate.findById("session-1")).thenReturn(stored);
+
+        Session session = repository.findById("session-1");
+        session.setAttribute("SPRING_SECURITY_CONTEXT", "context");
+        repository.save(session);
+
+        verify(delegate).save(stored); // Verifica il salvataggio immediato
+        assertEquals("context", stored.getAttribute("SPRING_SECURITY_CONTEXT")); // L'attributo arriva alla sessione JDBC
+        assertEquals(0, repository.pendingCount()); // Nessun accesso in attesa
+    }
+
+    /**
+     * Verifica che di una sessione non modificata venga messo in attesa solo l'accesso più recente,
+     * e che venga scritto in gruppo con un batch JDBC.
+     */
+    @Test
+    void testSave_UnchangedSessionWrittenInBatch() {
+        MapSession first = new MapSession("session-1");
+        first.setMaxInactiveInterval(Duration.ofMinutes(30));
+        MapSession second = new MapSession("session-2");
+        when(delegate.findById("session-1")).thenReturn(first);
+        when(delegate.findById("session-2")).thenReturn(second);
+        Instant lastAccess = Instant.ofEpochMilli(1_000_000L);
+
+        Session session = repository.findById("session-1");
+        session.setLastAccessedTime(lastAccess.minusSeconds(1));
+        repository.save(session);
+        session = repository.findById("session-1");
+        session.setLastAccessedTime(lastAccess);
+        repository.save(session);
+        repository.save(repository.findById("session-2"));
+
+        verify(delegate, never()).save(any()); // Nessun salvataggio immediato
+        assertEquals(2, repository.pendingCount()); // Un accesso per sessione
+
+        repository.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcOperations).batchUpdate(eq(BatchingSessionRepository.UPDATE_ACCESS_SQL), batch.capture());
+        assertEquals(2, batch.getValue().size()); // Un solo batch con entrambe le sessioni
+        Object[] args = batch.getValue().stream().filter(row -> "session-1".equals(row[2])).findFirst().orElseThrow();
+        assertArrayEquals(new Object[] { 1_000_000L, 1_000_000L + Duration.ofMinutes(30).toMillis(), "session-1", 1_000_000L },
+                args); // Verifica l'accesso più recente e la nuova scadenza
+        assertEquals(0, repository.pendingCount()); // Nessun accesso rimasto in attesa
+    }
+
+    /**
+     * Verifica che, se la scrittura fallisce, gli accessi tornino in attesa.
+     */
+    @Test
+    void testFlush_FailureRequeues() {
+        when(delegate.findById("session-1")).thenReturn(new MapSession("session-1"));
+        when(jdbcOperations.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Database non raggiungibile"));
+        repository.save(repository.findById("session-1"));
+
+        repository.flush();
+
+        assertEquals(1, repository.pendingCount()); // L'accesso viene riprovato al prossimo intervallo
+    }
+
+    /**
+     * Verifica che l'eliminazione di una sessione scarti il suo accesso in attesa.
+     */
+    @Test
+    void testDeleteById_DropsPendingAccess() {
+        when(delegate.findById("session-1")).thenReturn(new MapSession("session-1"));
+        repository.save(repository.findById("session-1"));
+
+        repository.deleteById("session-1");
+        repository.flush();
+
+        verify(delegate).deleteById("session-1"); // Verifica l'eliminazione dal database
+        verifyNoInteractions(jdbcOperations); // Nessun accesso da scrivere
+    }
+
+    /**
+     * Verifica che una sessione non trovata restituisca null.
+     */
+    @Test
+    void testFindById_NotFound() {
+        assertNull(repository.findById("missing")); // Sessione scaduta o inesistente
+    }
+}
@@ -0,0 +1,105 @@
+package progettofinale.Config;
+
+import progettofinale.ProgettofinaleApplication;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di integrazione delle sessioni salvate nel database H2 con Spring Session JDBC:
+ * salvataggio degli attributi, scrittura in gruppo degli accessi ed eliminazione delle sessioni scadute.
+ */
+@SpringBootTest(classes = ProgettofinaleApplication.class,
+                properties = {
+                    "spring.datasource.url=jdbc:h2:mem:sessiondb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                    "app.session.access-flush-interval-ms=3600000"
+                })
+@ActiveProfiles("test")
+class SessionStoreIntegrationTest {
+
+    @Autowired
+    private SessionRepository<Session> sessionRepository; // BatchingSessionRepository, usato dal filtro di Spring Session
+
+    @Autowired
+    private BatchingSessionRepository batchingSessionRepository;
+
+    @Autowired
+    private JdbcIndexedSessionRepository jdbcSessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Verifica che una sessione salvata venga letta con i suoi attributi, come dopo un riavvio.
+     */
+    @Test
+    void testSaveAndFind() {
+        Session session = sessionRepository.createSession();
+        session.setAttribute("cart", "bike-1");
+        sessionRepository.save(session);
+
+        Session found = jdbcSessionRepository.findById(session.getId());
+
+        assertNotNull(found); // Verifica che la sessione sia nel database
+        assertEquals("bike-1", found.getAttribute("cart")); // Verifica l'attributo salvato
+        assertEquals(Duration.ofMinutes(30), found.getMaxInactiveInterval()); // Durata da app.session.timeout-minutes
+    }
+
+    /**
+     * Verifica che l'accesso a una sessione non modificata venga scritto solo con il gruppo successivo.
+     */
+    @Test
+    void testAccessWrittenInBatch() {
+        Session session = sessionRepository.createSession();
+        sessionRepository.save(session);
+        Instant lastAccess = Instant.now().plusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+
+        Session found = sessionRepository.findById(session.getId());
+        found.setLastAccessedTime(lastAccess);
+        sessionRepository.save(found);
+
+        assertNotEquals(lastAccess.toEpochMilli(), lastAccessTime(session.getId())); // Non ancora scritto
+
+        batchingSessionRepository.flush();
+
+        assertEquals(lastAccess.toEpochMilli(), lastAccessTime(session.getId())); // Verifica la scrittura in gruppo
+        Session reloaded = jdbcSessionRepository.findById(session.getId());
+        assertEquals(lastAccess, reloaded.getLastAccessedTime()); // La sessione riletta ha il nuovo accesso
+    }
+
+    /**
+     * Verifica che la pulizia periodica elimini le sessioni scadute e i loro attributi.
+     */
+    @Test
+    void testCleanUpExpiredSessions() {
+        Session session = sessionRepository.createSession();
+        session.setAttribute("cart", "bike-1");
+        session.setLastAccessedTime(Instant.now().minus(Duration.ofHours(1)));
+        sessionRepository.save(session);
+
+        jdbcSessionRepository.cleanUpExpiredSessions();
+
+        assertNull(jdbcSessionRepository.findById(session.getId())); // Verifica l'eliminazione della sessione
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM spring_session_attributes WHERE session_primary_id NOT IN (SELECT primary_id FROM spring_session)",
+                Integer.class)); // E dei suoi attributi
+    }
+
+    // Ultimo accesso salvato nel database
+    private long lastAccessTime(String sessionId) {
+        return jdbcTemplate.queryForObject("SELECT last_access_time FROM spring_session WHERE session_id = ?",
+                Long.class, sessionId);
+    }
+}
@@ -2,6 +2,7 @@ package progettofinale.Controller;
 
 import progettofinale.Model.Bikemodel.*;
 import progettofinale.Model.*;
+import progettofinale.Security.AppUserDetails;
 import progettofinale.Service.*;
 import progettofinale.Service.SortingStrategy.*;
 
@@ -10,11 +11,19 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.ui.Model;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.security.Principal;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 
@@ -32,12 +41,13 @@ class BikeControllerTest {
     @Mock
     private Model model;
 
-    @Mock
-    private Principal principal;
 
     @Mock
     private RedirectAttributes redirectAttributes;
 
+    @Mock
+    private WebRequest webRequest;
+
     @InjectMocks
     private BikeController bikeController;
 
@@ -51,16 +61,20 @@ class BikeControllerTest {
      */
     @Test
     void testViewBikes() {
-        List<Bike> bikes = Arrays.asList(
-            new MountainBike("Trek", "Large", "Good condition", 500.0, "Rome", null),
-            new RoadBike("Giant", "Medium", "Like new", 600.0, "Milan", null)
+        List<BikeCard> bikes = Arrays.asList(
+            new BikeCard(1L, "Trek", "Large", "Good condition", 500.0, "Rome", "Mountain", 1L, true),
+            new BikeCard(2L, "Giant", "Medium", "Like new", 600.0, "Milan", "Road", 1L, true)
         );
-        when(bikeService.getAllBikes()).thenReturn(bikes);
+        BikePage page = new BikePage(bikes, "600.0_2", null);
+        when(bikeService.searchBikesPage(
+            isNull(), isNull(), isNull(), isNull(), isNull(), any(SortingStrategy.class), isNull(), isNull())
+        ).thenReturn(page);
 
-        String viewName = bikeController.viewBikes(model);
+        String viewName = bikeController.viewBikes(null, null, model);
 
         assertEquals("bici", viewName); // Verifica che il nome della vista sia corretto
         verify(model).addAttribute("bikes", bikes); // Verifica che la lista di biciclette sia aggiunta al modello
+        verify(model).addAttribute("page", page); // Verifica che i cursori di navigazione siano aggiunti al modello
     }
 
     /**
@@ -68,45 +82,101 @@ class BikeControllerTest {
      */
     @Test
     void testShowUserProfile() {
-        // Configura l'utente e i suoi dati
-        User user = new User();
-        user.setEmail("user@example.com");
-
-        MountainBike wishlistBike = new MountainBike("Trek", "Large", "Wishlist item", 500.0, "Rome", null);
-        user.setWishlist(Arrays.asList(wishlistBike));
-
-        MountainBike userBike = new MountainBike("Trek", "Large", "User's Mountain Bike", 500.0, "Rome", null);
+        // Configura le schede delle bici dell'utente e della sua wishlist
+        BikeCard wishlistBike = new BikeCard(1L, "Trek", "Large", "Wishlist item", 500.0, "Rome", "Mountain", 2L, true);
+        BikeCard userBike = new BikeCard(3L, "Trek", "Large", "User's Mountain Bike", 500.0, "Rome", "Mountain", 5L, false);
 
         // Configura il comportamento del mock
-        when(principal.getName()).thenReturn("user@example.com");
-        when(userService.retrieveUserWithWishlistByEmail("user@example.com")).thenReturn(user);
-        when(bikeService.getBikesByUser(user)).thenReturn(Arrays.asList(userBike));
+        AppUserDetails currentUser = authenticatedUser(5L);
+        when(bikeService.getBikeCardsByUser(5L)).thenReturn(Arrays.asList(userBike));
+        when(userService.retrieveWishlistPage(5L, null)).thenReturn(new WishlistPage(Arrays.asList(wishlistBike), 1L));
 
         // Esegui il metodo
-        String viewName = bikeController.showUserProfile(model, principal);
+        String viewName = bikeController.showUserProfile(null, model, currentUser);
 
         // Verifica
         assertEquals("user-profile", viewName); // Verifica che il nome della vista sia corretto
-        verify(model).addAttribute(eq("user"), eq(user)); // Verifica che il modello contenga i dettagli dell'utente
-        verify(model).addAttribute(eq("bikes"), argThat(bikes -> ((List<Bike>) bikes).contains(userBike))); // Verifica che il modello contenga le biciclette dell'utente
+        verify(model).addAttribute(eq("userId"), eq(5L)); // Verifica che il modello contenga l'ID dell'utente
+        verify(model).addAttribute(eq("bikes"), argThat(bikes -> ((List<BikeCard>) bikes).contains(userBike))); // Verifica che il modello contenga le biciclette dell'utente
         verify(model).addAttribute(eq("bikeTypes"), eq(List.of("Mountain", "Road", "Electric"))); // Verifica che il modello contenga i tipi di biciclette
-        verify(model).addAttribute(eq("wishlist"), argThat(wishlist -> ((List<Bike>) wishlist).contains(wishlistBike))); // Verifica che il modello contenga la wishlist dell'utente
+        verify(model).addAttribute(eq("wishlist"), argThat(wishlist -> ((List<BikeCard>) wishlist).contains(wishlistBike))); // Verifica che il modello contenga la wishlist dell'utente
+        verify(model).addAttribute("wishlistNextCursor", 1L); // Verifica il cursore della pagina successiva della wishlist
+    }
+
+    /**
+     * Verifica che l'immagine salvata nell'archivio venga trasmessa con tipo di contenuto e header di cache.
+     */
+    @Test
+    void testBikeImage() throws IOException {
+        String key = "a".repeat(64);
+        when(bikeService.getImageMetadata(1L)).thenReturn(
+            new ImageMetadata(1L, Instant.ofEpochMilli(1000), key, null, null, "image/jpeg"));
+        when(bikeService.getStoredImageSize(key)).thenReturn(4L);
+        when(webRequest.checkNotModified(anyString(), anyLong())).thenReturn(false);
+
+        ResponseEntity<StreamingResponseBody> response = bikeController.bikeImage(1L, webRequest);
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode()); // Verifica lo stato della risposta
+        assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType()); // Verifica il tipo di contenuto
+        assertEquals(4L, response.getHeaders().getContentLength()); // Verifica la lunghezza del contenuto
+        assertEquals("\"" + key + "\"", response.getHeaders().getETag()); // Verifica l'ETag derivato dalla chiave
+        assertEquals(1000, response.getHeaders().getLastModified()); // Verifica il Last-Modified
+        assertTrue(response.getHeaders().getCacheControl().contains("max-age=31536000")); // Verifica la cache di lunga durata
+        verify(bikeService).writeStoredImage(eq(key), any(OutputStream.class)); // Verifica che il file venga trasmesso dall'archivio
+    }
+
+    /**
+     * Verifica che un'immagine già in cache nel browser non venga letta dall'archivio.
+     */
+    @Test
+    void testBikeImage_NotModified() throws IOException {
+        when(bikeService.getImageMetadata(1L)).thenReturn(
+            new ImageMetadata(1L, Instant.ofEpochMilli(1000), "abc", "def", null, "image/jpeg"));
+        when(webRequest.checkNotModified("\"def\"", 1000L)).thenReturn(true);
+
+        ResponseEntity<StreamingResponseBody> response = bikeController.bikeImageRendition(1L, "card", webRequest);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode()); // Verifica la risposta 304
+        assertNull(response.getBody()); // Verifica che non venga inviato alcun contenuto
+        verify(bikeService, never()).writeStoredImage(anyString(), any()); // Verifica che l'immagine non venga letta
     }
 
+    /**
+     * Verifica che un'immagine non ancora migrata venga servita dalla colonna del database
+     * senza cache di lunga durata finché la miniatura non è pronta.
+     */
+    @Test
+    void testBikeImageRendition_FallbackToLegacyOriginal() throws IOException {
+        byte[] image = new byte[] { (byte) 0x89, 'P', 'N', 'G' };
+        when(bikeService.getImageMetadata(1L)).thenReturn(
+            new ImageMetadata(1L, Instant.ofEpochMilli(1000), null, null, null, null));
+        when(bikeService.getLegacyImage(1L)).thenReturn(image);
+        when(webRequest.checkNotModified(anyString(), anyLong())).thenReturn(false);
+
+        ResponseEntity<StreamingResponseBody> response = bikeController.bikeImageRendition(1L, "card", webRequest);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+
+        assertArrayEquals(image, output.toByteArray()); // Verifica che venga servito l'originale
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType()); // Verifica il tipo rilevato dal contenuto
+        assertEquals("\"1-original-1000\"", response.getHeaders().getETag()); // Verifica l'ETag dell'originale
+        assertEquals("no-cache", response.getHeaders().getCacheControl()); // Verifica che il browser riconvalidi l'immagine
+    }
 
     /**
      * Verifica che il filtro delle biciclette funzioni correttamente.
      */
     @Test
     void testFilterBikes() {
-        List<Bike> filteredBikes = Arrays.asList(
-            new MountainBike("Trek", "Large", "Filtered Mountain Bike", 500.0, "Rome", null)
+        List<BikeCard> filteredBikes = Arrays.asList(
+            new BikeCard(1L, "Trek", "Large", "Filtered Mountain Bike", 500.0, "Rome", "Mountain", 1L, true)
         );
-        when(bikeService.searchBikes(
-            anyString(), anyDouble(), anyString(), anyString(), any(SortingStrategy.class))
-        ).thenReturn(filteredBikes);
+        when(bikeService.searchBikesPage(
+            anyString(), anyString(), anyDouble(), anyString(), anyString(), any(SortingStrategy.class), isNull(), isNull())
+        ).thenReturn(new BikePage(filteredBikes, null, null));
 
-        String viewName = bikeController.filterBikes("Large", "Rome", 500.0, "Trek", "Mountain", "asc", model);
+        String viewName = bikeController.filterBikes("Large", "Rome", 500.0, "Trek", "Mountain", "asc", null, null, model);
 
         assertEquals("bici", viewName); // Verifica che il nome della vista sia corretto
         verify(model).addAttribute("bikes", filteredBikes); // Verifica che la lista di biciclette filtrate sia aggiunta al modello
@@ -130,7 +200,7 @@ class BikeControllerTest {
         );
 
         assertEquals("redirect:/profile", redirectUrl); // Verifica che il reindirizzamento sia verso il profilo
-        verify(bikeService).addBike(any(Bike.class)); // Verifica che il servizio aggiunga correttamente la bici
+        verify(bikeService).addBike(any(Bike.class), eq("Test Image Content".getBytes())); // Verifica che il servizio riceva la bici e l'immagine
         verify(redirectAttributes).addFlashAttribute("successMessage", "Bici aggiunta con successo!"); // Verifica che il messaggio di successo sia impostato
     }
 
@@ -208,16 +278,21 @@ class BikeControllerTest {
      */
     @Test
     void testFilterBikes_EmptyCriteria() {
-        List<Bike> bikes = Arrays.asList(
-            new MountainBike("Trek", "Large", "Filtered bike", 500.0, "Rome", null)
+        List<BikeCard> bikes = Arrays.asList(
+            new BikeCard(1L, "Trek", "Large", "Filtered bike", 500.0, "Rome", "Mountain", 1L, false)
         );
-        when(bikeService.searchBikes(
-            isNull(), isNull(), isNull(), isNull(), any(SortingStrategy.class)
-        )).thenReturn(bikes);
+        when(bikeService.searchBikesPage(
+            isNull(), isNull(), isNull(), isNull(), isNull(), any(SortingStrategy.class), isNull(), isNull()
+        )).thenReturn(new BikePage(bikes, null, null));
 
-        String viewName = bikeController.filterBikes(null, null, null, null, null, null, model);
+        String viewName = bikeController.filterBikes(null, null, null, null, null, null, null, null, model);
 
         assertEquals("bici", viewName); // Verifica che il nome della vista sia corretto
         verify(model).addAttribute("bikes", bikes); // Verifica che le bici siano aggiunte al modello
     }
+
+    // Dettagli dell'utente autenticato, come salvati nella sessione al login
+    private static AppUserDetails authenticatedUser(Long id) {
+        return new AppUserDetails(id, "user" + id + "@example.com", "User " + id, "password", List.of());
+    }
 }
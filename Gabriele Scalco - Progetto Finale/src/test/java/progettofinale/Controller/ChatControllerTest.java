@@ -0,0 +1,130 @@
+package progettofinale.Controller;
+
+import progettofinale.Model.ChatMessage;
+import progettofinale.Model.Message;
+import progettofinale.Security.AppUserDetails;
+import progettofinale.Service.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatControllerTest {
+
+    @Mock
+    private MessageBatchWriter messageBatchWriter;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private Principal principal;
+
+    @InjectMocks
+    private ChatController chatController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Verifica che un messaggio ricevuto sul canale STOMP venga salvato tramite MessageBatchWriter.
+     */
+    @Test
+    void testSendMessage() {
+        when(principal.getName()).thenReturn("sender@example.com");
+        when(userService.retrieveUserIdByEmail("sender@example.com")).thenReturn(1L);
+        when(messageBatchWriter.submit(1L, 2L, 3L, "Ciao")).thenReturn(CompletableFuture.completedFuture(new Message()));
+
+        chatController.sendMessage(2L, 3L, new ChatMessage("Ciao"), principal);
+
+        verify(messageBatchWriter).submit(1L, 2L, 3L, "Ciao"); // Verifica che il messaggio venga salvato con gli ID
+    }
+
+    /**
+     * Verifica che l'ID del mittente venga letto dai dettagli salvati al login, senza cercarlo per email.
+     */
+    @Test
+    void testSendMessage_AuthenticatedUserDetails() {
+        AppUserDetails details = new AppUserDetails(1L, "sender@example.com", "Sender", "password", List.of());
+        Principal authentication = UsernamePasswordAuthenticationToken.authenticated(details, null, List.of());
+        when(messageBatchWriter.submit(1L, 2L, 3L, "Ciao")).thenReturn(CompletableFuture.completedFuture(new Message()));
+
+        chatController.sendMessage(2L, 3L, new ChatMessage("Ciao"), authentication);
+
+        verify(messageBatchWriter).submit(1L, 2L, 3L, "Ciao"); // Verifica che il messaggio venga salvato con l'ID della sessione
+        verifyNoInteractions(userService); // Verifica che l'utente non venga cercato nel database
+    }
+
+    /**
+     * Verifica che un errore durante il salvataggio del gruppo arrivi al mittente sulla coda degli errori.
+     */
+    @Test
+    void testSendMessage_SaveFailed() {
+        CompletableFuture<Message> saved = new CompletableFuture<>();
+        when(principal.getName()).thenReturn("sender@example.com");
+        when(userService.retrieveUserIdByEmail("sender@example.com")).thenReturn(1L);
+        when(messageBatchWriter.submit(1L, 2L, 3L, "Ciao")).thenReturn(saved);
+
+        chatController.sendMessage(2L, 3L, new ChatMessage("Ciao"), principal); // Ritorna senza attendere il salvataggio
+        verifyNoInteractions(messagingTemplate); // Nessun errore finché il gruppo non è salvato
+
+        saved.completeExceptionally(new IllegalArgumentException("Messaggio incompleto non valido"));
+
+        verify(messagingTemplate).convertAndSendToUser("sender@example.com", "/queue/errors",
+                "Messaggio incompleto non valido"); // Verifica che il mittente riceva il motivo
+    }
+
+    /**
+     * Verifica che il motivo di un errore imprevisto non venga esposto al mittente.
+     */
+    @Test
+    void testSendMessage_UnexpectedFailure() {
+        when(principal.getName()).thenReturn("sender@example.com");
+        when(userService.retrieveUserIdByEmail("sender@example.com")).thenReturn(1L);
+        when(messageBatchWriter.submit(1L, 2L, 3L, "Ciao"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Connessione chiusa")));
+
+        chatController.sendMessage(2L, 3L, new ChatMessage("Ciao"), principal);
+
+        verify(messagingTemplate).convertAndSendToUser("sender@example.com", "/queue/errors", "Message not saved"); // Messaggio generico
+    }
+
+    /**
+     * Verifica che un messaggio vuoto non venga salvato.
+     */
+    @Test
+    void testSendMessage_EmptyContent() {
+        assertThrows(IllegalArgumentException.class,
+                () -> chatController.sendMessage(2L, 3L, new ChatMessage("  "), principal)); // Verifica l'eccezione
+        verifyNoInteractions(messageBatchWriter); // Verifica che nulla venga salvato
+    }
+
+    /**
+     * Verifica che il mittente riceva il motivo dell'errore.
+     */
+    @Test
+    void testHandleError() {
+        assertEquals("Bike not found",
+                chatController.handleError(new ResponseStatusException(HttpStatus.NOT_FOUND, "Bike not found"))); // Motivo dell'errore HTTP
+        assertEquals("Messaggio non può essere vuoto",
+                chatController.handleError(new IllegalArgumentException("Messaggio non può essere vuoto"))); // Messaggio dell'eccezione
+    }
+}
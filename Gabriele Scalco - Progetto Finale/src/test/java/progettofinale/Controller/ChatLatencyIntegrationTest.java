@@ -0,0 +1,156 @@
+package progettofinale.Controller;
+
+import progettofinale.ProgettofinaleApplication;
+import progettofinale.Model.ChatMessage;
+import progettofinale.Model.User;
+import progettofinale.Model.Bikemodel.Bike;
+import progettofinale.Model.Bikemodel.MountainBike;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Service.MessageService;
+import progettofinale.Service.UserService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di integrazione del canale STOMP: un acquirente autenticato invia messaggi sulla conversazione
+ * e misura il tempo necessario perché tornino indietro dalla destinazione della conversazione,
+ * passando per MessageService e il database.
+ */
+@SpringBootTest(classes = ProgettofinaleApplication.class,
+                webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = "spring.datasource.url=jdbc:h2:mem:chatdb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH")
+@ActiveProfiles("test")
+class ChatLatencyIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatLatencyIntegrationTest.class);
+
+    private static final int ROUND_TRIPS = 20; // Numero di messaggi misurati
+    private static final long MAX_MEDIAN_LATENCY_MS = 500; // Latenza mediana massima accettata
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Verifica che i messaggi inviati sul canale STOMP vengano salvati e inoltrati agli iscritti
+     * della conversazione, e misura la latenza di andata e ritorno.
+     */
+    @Test
+    void testRoundTripLatency() throws Exception {
+        // Crea venditore, acquirente, bici e la conversazione tra i due
+        User seller = userService.addUser(new User("seller-chat@example.com", "password", "Seller"));
+        User buyer = userService.addUser(new User("buyer-chat@example.com", "password", "Buyer"));
+        Bike bike = bikeRepository.save(new MountainBike("BrandA", "M", "Test bike", 300.0, "CityA", seller));
+        Long conversationId = messageService.sendMessage(buyer.getId(), seller.getId(), bike.getId(), "Primo")
+                .getConversation().getId();
+
+        // Apre il WebSocket con la sessione dell'acquirente autenticato
+        StompSession session = connect(login("buyer-chat@example.com", "password"));
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        session.subscribe("/topic/conversations/" + conversationId, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((String) ((Map<?, ?>) payload).get("content"));
+            }
+        });
+        String destination = "/app/conversations/" + seller.getId() + "/" + bike.getId() + "/send";
+
+        // Attende che la sottoscrizione sia attiva ripetendo un messaggio di prova
+        boolean subscribed = false;
+        for (int attempt = 0; attempt < 50 && !subscribed; attempt++) {
+            session.send(destination, new ChatMessage("warm-up"));
+            subscribed = "warm-up".equals(received.poll(100, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(subscribed); // Verifica che la sottoscrizione riceva i messaggi
+
+        // Misura la latenza di andata e ritorno di ogni messaggio
+        long[] latencies = new long[ROUND_TRIPS];
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            String content = "Messaggio " + i;
+            long start = System.nanoTime();
+            session.send(destination, new ChatMessage(content));
+            String echoed;
+            do {
+                echoed = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(echoed); // Verifica che il messaggio torni indietro
+            } while (!content.equals(echoed)); // Scarta eventuali messaggi di prova arrivati in ritardo
+            latencies[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        session.disconnect();
+
+        Arrays.sort(latencies);
+        long median = latencies[ROUND_TRIPS / 2];
+        logger.info("Latenza STOMP andata e ritorno: mediana {} ms, massima {} ms", median, latencies[ROUND_TRIPS - 1]);
+        assertTrue(median <= MAX_MEDIAN_LATENCY_MS); // Verifica la latenza mediana
+    }
+
+    // Esegue il login con il form e restituisce il cookie di sessione
+    private String login(String email, String password) throws Exception {
+        HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("username=" + email.replace("@", "%40") + "&password=" + password))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        return response.headers().firstValue(HttpHeaders.SET_COOKIE).orElseThrow().split(";")[0];
+    }
+
+    // Apre una sessione STOMP sul WebSocket con il cookie di sessione
+    private StompSession connect(String cookie) throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        stompClient.setMessageConverter(converter);
+        stompClient.setDefaultHeartbeat(new long[] {0, 0});
+
+        WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+        handshakeHeaders.add(HttpHeaders.COOKIE, cookie);
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws", handshakeHeaders, new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,39 @@
+package progettofinale.Controller;
+
+import progettofinale.Security.LoginThrottle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoginThrottleControllerTest {
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
+    @InjectMocks
+    private LoginThrottleController loginThrottleController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Verifica che vengano restituiti i contatori di LoginThrottle.
+     */
+    @Test
+    void testGetLoginThrottleStats() {
+        Map<String, Long> stats = Map.of("loginFailures", 3L, "loginsRejected", 1L);
+        when(loginThrottle.getStats()).thenReturn(stats);
+
+        assertSame(stats, loginThrottleController.getLoginThrottleStats()); // Verifica i contatori restituiti
+    }
+}
@@ -1,21 +1,22 @@
 package progettofinale.Controller;
 
 import progettofinale.Model.*;
-import progettofinale.Model.Bikemodel.*;
+import progettofinale.Security.AppUserDetails;
 import progettofinale.Service.*;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ui.Model;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,16 +27,14 @@ class MessageControllerTest {
     private MessageService messageService;
 
     @Mock
-    private UserService userService;
+    private MessageStreamService messageStreamService;
 
     @Mock
-    private BikeService bikeService;
+    private MessageSearchService messageSearchService;
 
     @Mock
     private Model model;
 
-    @Mock
-    private Principal principal;
 
     @Mock
     private RedirectAttributes redirectAttributes;
@@ -73,57 +72,75 @@ class MessageControllerTest {
         Long receiverId = 1L;
         Long bikeId = 2L;
 
-        User sender = new User("sender@example.com", "password", "Sender");
-        User receiver = new User("receiver@example.com", "password", "Receiver");
-        Bike bike = new MountainBike("Trek", "Large", "Test Bike", 500.0, "Rome", null);
-
-        // Mock delle dipendenze
-        when(principal.getName()).thenReturn("sender@example.com");
-        when(userService.findByEmail("sender@example.com")).thenReturn(sender);
-        when(userService.retrieveUserById(receiverId)).thenReturn(receiver);
-        when(bikeService.getBikeById(bikeId)).thenReturn(bike);
+        // Utente autenticato
+        AppUserDetails currentUser = authenticatedUser(3L);
 
-        String redirectUrl = messageController.sendMessage(content, receiverId, bikeId, principal, redirectAttributes);
+        String redirectUrl = messageController.sendMessage(content, receiverId, bikeId, currentUser, redirectAttributes);
 
         assertEquals("redirect:/", redirectUrl); // Verifica che l'URL di reindirizzamento sia corretto
-
-        // Cattura l'oggetto Message passato al servizio
-        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
-        verify(messageService).saveMessage(captor.capture());
-        Message capturedMessage = captor.getValue();
-
-        // Verifica che i dati del messaggio siano corretti
-        assertEquals(sender, capturedMessage.getSender()); // Verifica il mittente del messaggio
-        assertEquals(receiver, capturedMessage.getReceiver()); // Verifica il destinatario del messaggio
-        assertEquals(bike, capturedMessage.getBike()); // Verifica la bici associata al messaggio
-        assertEquals(content, capturedMessage.getContent()); // Verifica il contenuto del messaggio
+        verify(messageService).sendMessage(3L, receiverId, bikeId, content); // Verifica che il messaggio venga inviato tramite ID
 
         verify(redirectAttributes).addFlashAttribute("successMessage", "Messaggio inviato con successo!"); // Verifica che il messaggio di successo sia impostato
     }
 
     /**
-     * Verifica che la pagina inbox venga mostrata con tutte le conversazioni dell'utente autenticato.
+     * Verifica che la pagina inbox venga mostrata con i riepiloghi delle conversazioni dell'utente autenticato.
      */
     @Test
     void testShowInbox() {
-        User currentUser = mock(User.class); // Mock dell'utente corrente
-        when(currentUser.getId()).thenReturn(1L);
-        when(currentUser.getEmail()).thenReturn("currentuser@example.com");
-
-        Conversation conversation1 = new Conversation();
-        Conversation conversation2 = new Conversation();
-        List<Conversation> conversations = Arrays.asList(conversation1, conversation2);
+        ConversationSummary conversation1 = new ConversationSummary(2L, "Seller", 5L, "Trek", "Ciao", LocalDateTime.now(), 3, 1);
+        ConversationSummary conversation2 = new ConversationSummary(3L, "Buyer", 6L, "Giant", "Ok", LocalDateTime.now(), 1, 0);
+        List<ConversationSummary> conversations = Arrays.asList(conversation1, conversation2);
 
         // Mock delle dipendenze
-        when(principal.getName()).thenReturn("currentuser@example.com");
-        when(userService.findByEmail("currentuser@example.com")).thenReturn(currentUser);
-        when(messageService.getConversations(1L)).thenReturn(conversations);
+        AppUserDetails currentUser = authenticatedUser(1L);
+        when(messageService.getConversationSummaries(1L)).thenReturn(conversations);
 
-        String viewName = messageController.showInbox(model, principal);
+        String viewName = messageController.showInbox(null, model, currentUser);
 
         assertEquals("inbox", viewName); // Verifica che il nome della vista sia corretto
         verify(model).addAttribute("conversations", conversations); // Verifica che le conversazioni siano aggiunte al modello
-        verify(model).addAttribute("currentUser", currentUser); // Verifica che l'utente corrente sia aggiunto al modello
+        verify(model).addAttribute("currentUserId", 1L); // Verifica che l'ID dell'utente corrente sia aggiunto al modello
+        verifyNoInteractions(messageSearchService); // Verifica che non venga eseguita nessuna ricerca
+    }
+
+    /**
+     * Verifica che con un testo da cercare vengano mostrate solo le conversazioni trovate.
+     */
+    @Test
+    void testShowInbox_Search() {
+        List<ConversationSummary> found = List.of(
+                new ConversationSummary(2L, "Seller", 5L, "Bianchi", "Offro 400", LocalDateTime.now(), 3, 0));
+        AppUserDetails currentUser = authenticatedUser(1L);
+        when(messageSearchService.search(1L, "400")).thenReturn(found);
+
+        String viewName = messageController.showInbox("400", model, currentUser);
+
+        assertEquals("inbox", viewName); // Verifica che il nome della vista sia corretto
+        verify(model).addAttribute("conversations", found); // Verifica che vengano mostrate le conversazioni trovate
+        verify(model).addAttribute("query", "400"); // Verifica che il testo cercato resti nel form
+        verify(messageService, never()).getConversationSummaries(anyLong()); // Verifica che non vengano lette tutte le conversazioni
+    }
+
+    /**
+     * Verifica che all'apertura di una conversazione vengano mostrati i messaggi più recenti e il cursore dei precedenti.
+     */
+    @Test
+    void testShowConversation() {
+        List<MessageView> messages = List.of(new MessageView(10L, 2L, "Ciao", LocalDateTime.now()));
+        MessagePage page = new MessagePage(7L, messages, "2024-01-01T10:00_9");
+
+        AppUserDetails currentUser = authenticatedUser(1L);
+        when(messageService.getConversationPage(1L, 2L, 5L, null)).thenReturn(page);
+
+        String viewName = messageController.showConversation(2L, 5L, null, model, currentUser);
+
+        assertEquals("conversation", viewName); // Verifica che il nome della vista sia corretto
+        verify(model).addAttribute("conversationId", 7L); // Verifica l'ID della conversazione per il canale STOMP
+        verify(model).addAttribute("messages", messages); // Verifica che i messaggi siano aggiunti al modello
+        verify(model).addAttribute("olderCursor", "2024-01-01T10:00_9"); // Verifica il cursore dei messaggi precedenti
+        verify(model).addAttribute("otherUserId", 2L); // Verifica l'ID dell'altro utente
+        verify(model).addAttribute("bikeId", 5L); // Verifica l'ID della bici
         verify(model).addAttribute(eq("newMessage"), any(Message.class)); // Verifica che un messaggio vuoto sia aggiunto al modello
     }
 
@@ -136,22 +153,61 @@ class MessageControllerTest {
         Long receiverId = 1L;
         Long bikeId = 2L;
 
-        User sender = new User("sender@example.com", "password", "Sender");
-        User receiver = new User("receiver@example.com", "password", "Receiver");
-        Bike bike = new MountainBike("Trek", "Large", "Test Bike", 500.0, "Rome", null);
-
-        // Mock delle dipendenze
-        when(principal.getName()).thenReturn("sender@example.com");
-        when(userService.findByEmail("sender@example.com")).thenReturn(sender);
-        when(userService.retrieveUserById(receiverId)).thenReturn(receiver);
-        when(bikeService.getBikeById(bikeId)).thenReturn(bike);
+        // Utente autenticato
+        AppUserDetails currentUser = authenticatedUser(3L);
 
         // Verifica che venga lanciata un'eccezione
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
-            messageController.sendMessage(content, receiverId, bikeId, principal, redirectAttributes);
+            messageController.sendMessage(content, receiverId, bikeId, currentUser, redirectAttributes);
         });
 
         assertEquals("Messaggio non può essere vuoto", exception.getMessage()); // Verifica il messaggio dell'eccezione
         verifyNoInteractions(messageService); // Verifica che il servizio non venga chiamato
     }
+
+    /**
+     * Verifica che le modifiche all'inbox vengano lette per l'utente autenticato a partire dal cursore.
+     */
+    @Test
+    void testGetChanges() {
+        MessageChanges changes = new MessageChanges(List.of(), List.of(), 42L, false);
+        AppUserDetails currentUser = authenticatedUser(1L);
+        when(messageService.getChangesSince(1L, 42L)).thenReturn(changes);
+
+        MessageChanges result = messageController.getChanges(42L, currentUser);
+
+        assertSame(changes, result); // Verifica che vengano restituite le modifiche del service
+    }
+
+    /**
+     * Verifica che venga restituito il numero di messaggi non letti dell'utente autenticato.
+     */
+    @Test
+    void testGetUnreadCount() {
+        AppUserDetails currentUser = authenticatedUser(1L);
+        when(messageService.getUnreadCount(1L)).thenReturn(3L);
+
+        Map<String, Long> result = messageController.getUnreadCount(currentUser);
+
+        assertEquals(Map.of("unreadCount", 3L), result); // Verifica il numero di non letti restituito
+    }
+
+    /**
+     * Verifica che lo stream dei messaggi venga aperto per l'utente autenticato, con l'ultimo evento ricevuto.
+     */
+    @Test
+    void testStreamMessages() {
+        SseEmitter emitter = new SseEmitter();
+        AppUserDetails currentUser = authenticatedUser(1L);
+        when(messageStreamService.subscribe(1L, 42L)).thenReturn(emitter);
+
+        SseEmitter result = messageController.streamMessages(42L, currentUser);
+
+        assertSame(emitter, result); // Verifica che venga restituita la connessione del service
+    }
+
+    // Dettagli dell'utente autenticato, come salvati nella sessione al login
+    private static AppUserDetails authenticatedUser(Long id) {
+        return new AppUserDetails(id, "user" + id + "@example.com", "User " + id, "password", List.of());
+    }
 }
@@ -1,8 +1,8 @@
 package progettofinale.Controller;
 
-import progettofinale.Model.Bikemodel.Bike;
 import progettofinale.Model.User;
-import progettofinale.Service.BikeService;
+import progettofinale.Security.AppUserDetails;
+import progettofinale.Security.PasswordHashingBusyException;
 import progettofinale.Service.UserService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -10,12 +10,15 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.security.Principal;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 class UserControllerTest {
@@ -23,15 +26,9 @@ class UserControllerTest {
     @Mock
     private UserService userService;
 
-    @Mock
-    private BikeService bikeService;
-
     @Mock
     private Model model;
 
-    @Mock
-    private Principal principal;
-
     @Mock
     private RedirectAttributes redirectAttributes;
 
@@ -91,24 +88,34 @@ class UserControllerTest {
         verify(model).addAttribute("error", "Errore nella registrazione dell'utente."); // Verifica che venga aggiunto l'attributo "error" con il messaggio corretto
     }
 
+    /**
+     * Verifica che la registrazione risponda 503 quando la coda del calcolo degli hash è piena.
+     */
+    @Test
+    void testRegisterUserHashingBusy() {
+        User user = new User();
+        doThrow(new PasswordHashingBusyException("Password hashing busy", null)).when(userService).addUser(user);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userController.registerUser(user, model)); // Verifica l'eccezione
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode()); // Verifica l'errore 503
+        verify(model, never()).addAttribute(eq("error"), any()); // Verifica che non venga mostrato il form con l'errore
+    }
+
     /**
      * Verifica che una bici venga aggiunta correttamente alla wishlist dell'utente.
      */
     @Test
     void testAddToWishlist() {
-        String username = "test@example.com";
         Long bikeId = 1L;
-        User user = new User();
-        Bike bike = mock(Bike.class);
+        AppUserDetails currentUser = authenticatedUser(5L);
 
-        when(principal.getName()).thenReturn(username);
-        when(userService.findByEmail(username)).thenReturn(user);
-        when(bikeService.getBikeById(bikeId)).thenReturn(bike);
-
-        String redirectUrl = userController.addToWishlist(bikeId, principal, redirectAttributes);
+        String redirectUrl = userController.addToWishlist(bikeId, currentUser, redirectAttributes);
 
         assertEquals("redirect:/", redirectUrl); // Verifica il redirect alla homepage
-        verify(userService).addToWishlist(user, bike); // Verifica che la bici venga aggiunta alla wishlist
+        verify(userService).addToWishlist(5L, bikeId); // Verifica che la bici venga aggiunta alla wishlist tramite ID
+        verify(userService, never()).retrieveUserIdByEmail(anyString()); // Verifica che l'utente non venga cercato nel database
         verify(redirectAttributes).addFlashAttribute("successMessage", "Bici aggiunta alla wishlist!"); // Verifica il messaggio di successo
     }
 
@@ -117,13 +124,11 @@ class UserControllerTest {
      */
     @Test
     void testAddToWishlistFailure() {
-        String username = "test@example.com";
         Long bikeId = 1L;
+        AppUserDetails currentUser = authenticatedUser(5L);
+        doThrow(new RuntimeException("Errore")).when(userService).addToWishlist(5L, bikeId);
 
-        when(principal.getName()).thenReturn(username);
-        doThrow(new RuntimeException("Errore")).when(userService).findByEmail(username);
-
-        String redirectUrl = userController.addToWishlist(bikeId, principal, redirectAttributes);
+        String redirectUrl = userController.addToWishlist(bikeId, currentUser, redirectAttributes);
 
         assertEquals("redirect:/", redirectUrl); // Verifica il redirect alla homepage
         verify(redirectAttributes).addFlashAttribute("errorMessage", "Errore durante l'aggiunta alla wishlist."); // Verifica il messaggio di errore
@@ -134,21 +139,14 @@ class UserControllerTest {
      */
     @Test
     void testRemoveFromWishlist() {
-        String username = "test@example.com";
         Long bikeId = 1L;
+        AppUserDetails currentUser = authenticatedUser(1L);
 
-        // Crea un mock per l'utente con un ID predefinito
-        User user = mock(User.class);
-        when(user.getId()).thenReturn(1L);
-
-        // Simula il comportamento dei metodi chiamati nel test
-        when(principal.getName()).thenReturn(username);
-        when(userService.findByEmail(username)).thenReturn(user);
-
-        String redirectUrl = userController.removeFromWishlist(bikeId, principal, redirectAttributes);
+        String redirectUrl = userController.removeFromWishlist(bikeId, currentUser, redirectAttributes);
 
         assertEquals("redirect:/profile", redirectUrl); // Verifica il redirect al profilo utente
-        verify(userService).removeBikeFromWishlist(user.getId(), bikeId); // Verifica che la bici venga rimossa dalla wishlist
+        verify(userService).removeBikeFromWishlist(1L, bikeId); // Verifica che la bici venga rimossa dalla wishlist
+        verify(userService, never()).retrieveUserIdByEmail(anyString()); // Verifica che l'utente non venga cercato nel database
         verify(redirectAttributes).addFlashAttribute("successMessage", "Bici rimossa dalla wishlist!"); // Verifica il messaggio di successo
     }
 
@@ -157,15 +155,18 @@ class UserControllerTest {
      */
     @Test
     void testRemoveFromWishlistFailure() {
-        String username = "test@example.com";
         Long bikeId = 1L;
+        AppUserDetails currentUser = authenticatedUser(5L);
+        doThrow(new RuntimeException("Errore")).when(userService).removeBikeFromWishlist(5L, bikeId);
 
-        when(principal.getName()).thenReturn(username);
-        doThrow(new RuntimeException("Errore")).when(userService).findByEmail(username);
-
-        String redirectUrl = userController.removeFromWishlist(bikeId, principal, redirectAttributes);
+        String redirectUrl = userController.removeFromWishlist(bikeId, currentUser, redirectAttributes);
 
         assertEquals("redirect:/profile", redirectUrl); // Verifica il redirect al profilo utente
         verify(redirectAttributes).addFlashAttribute("errorMessage", "Errore durante la rimozione dalla wishlist."); // Verifica il messaggio di errore
     }
+
+    // Dettagli dell'utente autenticato, come salvati nella sessione al login
+    private static AppUserDetails authenticatedUser(Long id) {
+        return new AppUserDetails(id, "user" + id + "@example.com", "User " + id, "password", List.of());
+    }
 }
@@ -4,13 +4,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.ImageRendition;
 import progettofinale.Model.Bikemodel.*;
 import progettofinale.Model.User;
 
+import jakarta.persistence.EntityManager;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataJpaTest
 @ActiveProfiles("test")
@@ -22,6 +29,12 @@ class BikeRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BikeImageRepository bikeImageRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
     private User user1;
     private User user2;
 
@@ -34,21 +47,20 @@ class BikeRepositoryTest {
         userRepository.save(user2);
 
         // Aggiungi bici di diversi tipi per user1
-        Bike mountainBike = new MountainBike("BrandA", "M", "Mountain bike", 500.0, "City1", user1);
-        mountainBike.setImage("MountainImage".getBytes());
-        Bike roadBike = new RoadBike("BrandB", "L", "Road bike", 600.0, "City2", user1);
-        roadBike.setImage("RoadImage".getBytes());
-        Bike electricBike = new ElectricBike("BrandC", "S", "Electric bike", 700.0, "City3", user1);
-        electricBike.setImage("ElectricImage".getBytes());
-
-        bikeRepository.save(mountainBike);
-        bikeRepository.save(roadBike);
-        bikeRepository.save(electricBike);
+        saveWithLegacyImage(new MountainBike("BrandA", "M", "Mountain bike", 500.0, "City1", user1), "MountainImage");
+        saveWithLegacyImage(new RoadBike("BrandB", "L", "Road bike", 600.0, "City2", user1), "RoadImage");
+        saveWithLegacyImage(new ElectricBike("BrandC", "S", "Electric bike", 700.0, "City3", user1), "ElectricImage");
 
         // Aggiungi una bici per user2
-        Bike anotherMountainBike = new MountainBike("BrandD", "XL", "Another mountain bike", 800.0, "City4", user2);
-        anotherMountainBike.setImage("AnotherMountainImage".getBytes());
-        bikeRepository.save(anotherMountainBike);
+        saveWithLegacyImage(new MountainBike("BrandD", "XL", "Another mountain bike", 800.0, "City4", user2), "AnotherMountainImage");
+    }
+
+    // Salva una bici con un'immagine nella tabella separata, come quelle caricate prima di ImageStore
+    private void saveWithLegacyImage(Bike bike, String image) {
+        bikeRepository.saveAndFlush(bike);
+        entityManager.persist(new BikeImage(bike, image.getBytes()));
+        entityManager.flush();
+        entityManager.clear();
     }
 
     /**
@@ -63,9 +75,9 @@ class BikeRepositoryTest {
         assertEquals("BrandB", bikes.get(1).getBrand()); // Verifica la marca della seconda bici
         assertEquals("BrandC", bikes.get(2).getBrand()); // Verifica la marca della terza bici
 
-        assertEquals("MountainImage", new String(bikes.get(0).getImage())); // Verifica l'immagine della prima bici
-        assertEquals("RoadImage", new String(bikes.get(1).getImage())); // Verifica l'immagine della seconda bici
-        assertEquals("ElectricImage", new String(bikes.get(2).getImage())); // Verifica l'immagine della terza bici
+        assertEquals("MountainImage", new String(bikeImageRepository.findImageById(bikes.get(0).getId()))); // Verifica l'immagine della prima bici
+        assertEquals("RoadImage", new String(bikeImageRepository.findImageById(bikes.get(1).getId()))); // Verifica l'immagine della seconda bici
+        assertEquals("ElectricImage", new String(bikeImageRepository.findImageById(bikes.get(2).getId()))); // Verifica l'immagine della terza bici
     }
 
     /**
@@ -77,7 +89,7 @@ class BikeRepositoryTest {
 
         assertEquals(1, bikes.size()); // Verifica che sia stata trovata solo una bici
         assertEquals("BrandD", bikes.get(0).getBrand()); // Verifica la marca della bici
-        assertEquals("AnotherMountainImage", new String(bikes.get(0).getImage())); // Verifica l'immagine della bici
+        assertEquals("AnotherMountainImage", new String(bikeImageRepository.findImageById(bikes.get(0).getId()))); // Verifica l'immagine della bici
     }
 
     /**
@@ -107,4 +119,169 @@ class BikeRepositoryTest {
 
         assertEquals(1, mountainBikeCount); // Verifica che ci sia esattamente una mountain bike
     }
+
+    /**
+     * Verifica che i filtri vengano applicati dalla query, senza distinguere maiuscole e minuscole.
+     */
+    @Test
+    void testFindAll_WithSpecification() {
+        List<Bike> bikes = bikeRepository.findAll(
+            BikeSpecifications.matching("m", "city1", 600.0, "branda", "Mountain"), Sort.by("price"));
+
+        assertEquals(1, bikes.size()); // Verifica che sia stata trovata solo una bici
+        assertEquals("BrandA", bikes.get(0).getBrand()); // Verifica la marca della bici trovata
+    }
+
+    /**
+     * Verifica che il filtro per tipo usi il discriminatore e che l'ordinamento venga rispettato.
+     */
+    @Test
+    void testFindAll_FilteredByTypeAndSorted() {
+        List<Bike> bikes = bikeRepository.findAll(
+            BikeSpecifications.matching(null, null, null, null, "mountain"),
+            Sort.by(Sort.Order.desc("price"), Sort.Order.desc("id")));
+
+        assertEquals(2, bikes.size()); // Verifica che siano state trovate le due mountain bike
+        assertEquals("BrandD", bikes.get(0).getBrand()); // Verifica che la più costosa sia la prima
+        assertEquals("BrandA", bikes.get(1).getBrand()); // Verifica che la più economica sia l'ultima
+    }
+
+    /**
+     * Verifica che un tipo di bici sconosciuto non restituisca risultati.
+     */
+    @Test
+    void testFindAll_UnknownType() {
+        List<Bike> bikes = bikeRepository.findAll(
+            BikeSpecifications.matching(null, null, null, null, "Gravel"), Sort.by("price"));
+
+        assertEquals(0, bikes.size()); // Verifica che non siano state trovate bici
+    }
+
+    /**
+     * Verifica che findCardSlice limiti i risultati e riprenda dal cursore (prezzo, id).
+     */
+    @Test
+    void testFindCardSlice_SeekAfterCursor() {
+        Sort sort = Sort.by(Sort.Order.asc("price"), Sort.Order.asc("id"));
+        List<BikeCard> firstPage = bikeRepository.findCardSlice(
+            BikeSpecifications.matching(null, null, null, null, null), sort, 2);
+
+        assertEquals(2, firstPage.size()); // Verifica che venga rispettato il limite
+        assertEquals("BrandB", firstPage.get(1).getBrand()); // Verifica l'ultima bici della prima pagina
+
+        BikeCard last = firstPage.get(1);
+        List<BikeCard> nextPage = bikeRepository.findCardSlice(
+            BikeSpecifications.matching(null, null, null, null, null)
+                .and(BikeSpecifications.seek(last.getPrice(), last.getId(), false)), sort, 2);
+
+        assertEquals(2, nextPage.size()); // Verifica che la pagina successiva contenga le bici rimanenti
+        assertEquals("BrandC", nextPage.get(0).getBrand()); // Verifica che la lettura riprenda dopo il cursore
+        assertEquals("BrandD", nextPage.get(1).getBrand());
+    }
+
+    /**
+     * Verifica che le schede di un utente riportino tipo, proprietario e URL dell'immagine.
+     */
+    @Test
+    void testFindCardsByUserId() {
+        Bike withoutImage = new RoadBike("BrandE", "M", "Road bike without image", 300.0, "City5", user2);
+        bikeRepository.save(withoutImage);
+
+        List<BikeCard> cards = bikeRepository.findCardsByUserId(user2.getId());
+
+        assertEquals(2, cards.size()); // Verifica che siano state trovate le due bici di user2
+        assertEquals("Mountain", cards.get(0).getBikeType()); // Verifica il tipo letto dal discriminatore
+        assertEquals(user2.getId(), cards.get(0).getOwnerId()); // Verifica il proprietario
+        assertEquals("/images/bike/" + cards.get(0).getId() + "/card", cards.get(0).getImagePath()); // Verifica l'URL della miniatura
+        assertEquals("Road", cards.get(1).getBikeType());
+        assertEquals("/images/default-bike.jpg", cards.get(1).getImagePath()); // Verifica l'immagine predefinita
+    }
+
+    /**
+     * Verifica che l'immagine di una bici venga letta senza caricare l'entità.
+     */
+    @Test
+    void testFindImageById() {
+        Bike bike = bikeRepository.findByUser(user2).get(0);
+
+        assertEquals("AnotherMountainImage", new String(bikeImageRepository.findImageById(bike.getId()))); // Verifica l'immagine
+    }
+
+    /**
+     * Verifica che i metadati dell'immagine vengano letti solo per le bici con immagine.
+     */
+    @Test
+    void testFindImageMetadataById() {
+        Bike withImage = bikeRepository.findByUser(user2).get(0);
+        Bike withoutImage = bikeRepository.save(new RoadBike("BrandE", "M", "Road bike without image", 300.0, "City5", user2));
+
+        assertTrue(bikeRepository.findImageMetadataById(withImage.getId()).isPresent()); // Verifica i metadati della bici con immagine
+        assertEquals(withImage.getId(), bikeRepository.findImageMetadataById(withImage.getId()).get().getBikeId());
+        assertTrue(bikeRepository.findImageMetadataById(withoutImage.getId()).isEmpty()); // Verifica l'assenza di metadati senza immagine
+    }
+
+    /**
+     * Verifica che lo spostamento nell'archivio sostituisca la colonna LOB con la chiave dell'immagine.
+     */
+    @Test
+    void testMoveLegacyImage() {
+        Bike bike = bikeRepository.findByUser(user2).get(0);
+        String key = "a".repeat(64);
+
+        assertTrue(bikeImageRepository.findIdsWithLegacyImage().contains(bike.getId())); // Verifica che la bici sia da migrare
+        assertEquals(1, bikeRepository.moveLegacyImage(bike.getId(), key, "image/jpeg")); // Verifica l'aggiornamento
+        assertEquals(1, bikeImageRepository.deleteImageById(bike.getId())); // Verifica l'eliminazione dell'immagine precedente
+
+        assertNull(bikeImageRepository.findImageById(bike.getId())); // Verifica che l'immagine precedente sia eliminata
+        assertFalse(bikeImageRepository.findIdsWithLegacyImage().contains(bike.getId())); // Verifica che la bici non sia più da migrare
+        assertEquals(key, bikeRepository.findImageMetadataById(bike.getId()).get().getKey(ImageRendition.ORIGINAL)); // Verifica la chiave salvata
+    }
+
+    /**
+     * Verifica che una bici con un'immagine precedente la segnali senza leggerla,
+     * e che eliminarla elimini anche l'immagine.
+     */
+    @Test
+    void testDeleteBike_RemovesLegacyImage() {
+        Bike bike = bikeRepository.findByUser(user2).get(0);
+
+        assertTrue(bike.hasImage()); // Verifica che l'immagine precedente sia rilevata
+        bikeRepository.delete(bike);
+        bikeRepository.flush();
+
+        assertNull(bikeImageRepository.findImageById(bike.getId())); // Verifica che l'immagine sia eliminata con la bici
+    }
+
+    /**
+     * Verifica che tra le chiavi indicate vengano restituite solo quelle usate da una bici,
+     * come immagine originale o come versione ridotta.
+     */
+    @Test
+    void testFindReferencedImageKeys() {
+        Bike bike = bikeRepository.findByUser(user2).get(0);
+        String original = "a".repeat(64);
+        String card = "b".repeat(64);
+        String unused = "c".repeat(64);
+        bikeRepository.moveLegacyImage(bike.getId(), original, "image/jpeg");
+        bikeRepository.updateRenditionKeys(bike.getId(), original, card, null);
+
+        List<String> referenced = bikeRepository.findReferencedImageKeys(List.of(original, card, unused));
+
+        assertEquals(2, referenced.size()); // Verifica il numero di chiavi referenziate
+        assertTrue(referenced.containsAll(List.of(original, card))); // Verifica le chiavi dell'originale e della miniatura
+    }
+
+    /**
+     * Verifica che vengano trovate solo le bici con un'immagine in ImageStore e senza versioni ridotte.
+     */
+    @Test
+    void testFindIdsMissingRenditions() {
+        List<Bike> bikes = bikeRepository.findByUser(user1);
+        String key = "a".repeat(64);
+        bikeRepository.moveLegacyImage(bikes.get(0).getId(), key, "image/jpeg");
+        bikeRepository.moveLegacyImage(bikes.get(1).getId(), key, "image/jpeg");
+        bikeRepository.updateRenditionKeys(bikes.get(1).getId(), key, "b".repeat(64), "c".repeat(64));
+
+        assertEquals(List.of(bikes.get(0).getId()), bikeRepository.findIdsMissingRenditions()); // Verifica la sola bici senza versioni ridotte
+    }
 }
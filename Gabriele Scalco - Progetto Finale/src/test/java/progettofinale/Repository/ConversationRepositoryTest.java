@@ -0,0 +1,210 @@
+package progettofinale.Repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import progettofinale.Model.Conversation;
+import progettofinale.Model.ConversationSummary;
+import progettofinale.Model.Message;
+import progettofinale.Model.User;
+import progettofinale.Model.Bikemodel.Bike;
+import progettofinale.Model.Bikemodel.MountainBike;
+
+import jakarta.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class ConversationRepositoryTest {
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User seller;
+    private User buyer;
+    private Bike bike;
+    private Long conversationId;
+
+    @BeforeEach
+    void setUp() {
+        // Crea utenti e una bici del venditore
+        seller = new User("seller@example.com", "password", "Seller");
+        buyer = new User("buyer@example.com", "password", "Buyer");
+        userRepository.save(seller);
+        userRepository.save(buyer);
+        bike = new MountainBike("BrandA", "M", "Test bike", 300.0, "CityA", seller);
+        bikeRepository.save(bike);
+
+        conversationRepository.insertIfAbsent(bike.getId(), buyer.getId(), seller.getId());
+        conversationId = conversationRepository.findIdByParticipants(bike.getId(), buyer.getId(), seller.getId());
+    }
+
+    /**
+     * Verifica che la conversazione tra gli stessi utenti sulla stessa bici venga creata una sola volta.
+     */
+    @Test
+    void testInsertIfAbsent_NoDuplicates() {
+        int inserted = conversationRepository.insertIfAbsent(bike.getId(), buyer.getId(), seller.getId());
+
+        assertEquals(0, inserted); // Verifica che nessuna riga venga inserita
+        assertEquals(1, conversationRepository.count()); // Verifica che esista una sola conversazione
+    }
+
+    /**
+     * Verifica che la registrazione di un messaggio aggiorni ultimo messaggio, conteggio e non letti del destinatario.
+     */
+    @Test
+    void testRecordMessage() {
+        Message message = saveMessage(buyer, seller, "Ciao");
+
+        conversationRepository.recordMessages(conversationId, message.getId(), message.getTimestamp(), 1, 0, 1);
+        entityManager.clear();
+
+        Conversation conversation = conversationRepository.findById(conversationId).orElseThrow();
+        assertEquals(message.getId(), conversation.getLastMessageId()); // Verifica l'ultimo messaggio
+        assertEquals(1, conversation.getMessageCount()); // Verifica il numero di messaggi
+        assertEquals(0, conversation.getBuyerUnreadCount()); // L'acquirente ha inviato il messaggio
+        assertEquals(1, conversation.getSellerUnreadCount()); // Il venditore ha un messaggio non letto
+    }
+
+    /**
+     * Verifica che un messaggio registrato in ritardo non sostituisca l'ultimo messaggio più recente.
+     */
+    @Test
+    void testRecordMessage_OlderMessageKeepsLastMessage() {
+        Message older = saveMessage(buyer, seller, "Primo");
+        Message newer = saveMessage(seller, buyer, "Secondo");
+
+        conversationRepository.recordMessages(conversationId, newer.getId(), newer.getTimestamp(), 1, 1, 0);
+        conversationRepository.recordMessages(conversationId, older.getId(), older.getTimestamp(), 1, 0, 1);
+        entityManager.clear();
+
+        Conversation conversation = conversationRepository.findById(conversationId).orElseThrow();
+        assertEquals(newer.getId(), conversation.getLastMessageId()); // Verifica che l'ultimo messaggio non cambi
+        assertEquals(2, conversation.getMessageCount()); // Verifica che entrambi i messaggi siano contati
+    }
+
+    /**
+     * Verifica che il riepilogo mostri l'altro utente e i non letti dal punto di vista di ciascun partecipante.
+     */
+    @Test
+    void testFindSummariesByUserId() {
+        Message message = saveMessage(buyer, seller, "Ciao");
+        conversationRepository.recordMessages(conversationId, message.getId(), message.getTimestamp(), 1, 0, 1);
+
+        List<ConversationSummary> sellerInbox = conversationRepository.findSummariesByUserId(seller.getId());
+        List<ConversationSummary> buyerInbox = conversationRepository.findSummariesByUserId(buyer.getId());
+
+        assertEquals(1, sellerInbox.size()); // Verifica che il venditore abbia una conversazione
+        assertEquals("Buyer", sellerInbox.get(0).getOtherUserName()); // Verifica il nome dell'interlocutore
+        assertEquals("Ciao", sellerInbox.get(0).getLastMessage()); // Verifica l'ultimo messaggio
+        assertEquals("BrandA", sellerInbox.get(0).getBikeBrand()); // Verifica la marca della bici
+        assertEquals(1, sellerInbox.get(0).getUnreadCount()); // Verifica i non letti del venditore
+        assertEquals(seller.getId(), buyerInbox.get(0).getOtherUserId()); // Verifica l'interlocutore dell'acquirente
+        assertEquals(0, buyerInbox.get(0).getUnreadCount()); // Verifica i non letti dell'acquirente
+    }
+
+    /**
+     * Verifica che la conversazione venga trovata indipendentemente da chi la apre.
+     */
+    @Test
+    void testFindIdForUser() {
+        assertEquals(conversationId, conversationRepository.findIdForUser(buyer.getId(), seller.getId(), bike.getId()).orElseThrow()); // Dal punto di vista dell'acquirente
+        assertEquals(conversationId, conversationRepository.findIdForUser(seller.getId(), buyer.getId(), bike.getId()).orElseThrow()); // Dal punto di vista del venditore
+        assertTrue(conversationRepository.findIdForUser(seller.getId(), seller.getId(), bike.getId()).isEmpty()); // Nessuna conversazione con se stesso
+    }
+
+    /**
+     * Verifica che solo acquirente e venditore risultino partecipanti della conversazione.
+     */
+    @Test
+    void testIsParticipant() {
+        User other = new User("other@example.com", "password", "Other");
+        userRepository.save(other);
+
+        assertTrue(conversationRepository.isParticipant(conversationId, buyer.getId())); // L'acquirente partecipa
+        assertTrue(conversationRepository.isParticipant(conversationId, seller.getId())); // Il venditore partecipa
+        assertFalse(conversationRepository.isParticipant(conversationId, other.getId())); // Un altro utente no
+    }
+
+    /**
+     * Verifica che la lettura azzeri solo i non letti dell'utente che apre la conversazione.
+     */
+    @Test
+    void testMarkRead() {
+        Message message = saveMessage(buyer, seller, "Ciao");
+        conversationRepository.recordMessages(conversationId, message.getId(), message.getTimestamp(), 1, 1, 1);
+
+        conversationRepository.markRead(conversationId, seller.getId());
+        entityManager.clear();
+
+        Conversation conversation = conversationRepository.findById(conversationId).orElseThrow();
+        assertEquals(0, conversation.getSellerUnreadCount()); // Verifica che i non letti del venditore siano azzerati
+        assertEquals(1, conversation.getBuyerUnreadCount()); // Verifica che i non letti dell'acquirente non cambino
+    }
+
+    /**
+     * Verifica che i non letti di un utente vengano sommati sul suo ruolo in ogni conversazione.
+     */
+    @Test
+    void testSumUnreadByUserId() {
+        Message first = saveMessage(buyer, seller, "Ciao");
+        conversationRepository.recordMessages(conversationId, first.getId(), first.getTimestamp(), 1, 0, 1);
+        Message second = saveMessage(buyer, seller, "Ci sei?");
+        conversationRepository.recordMessages(conversationId, second.getId(), second.getTimestamp(), 1, 0, 1);
+
+        assertEquals(2L, conversationRepository.sumUnreadByUserId(seller.getId())); // Due non letti per il venditore
+        assertEquals(0L, conversationRepository.sumUnreadByUserId(buyer.getId())); // Nessun non letto per l'acquirente
+        assertEquals(0L, conversationRepository.sumUnreadByUserId(-1L)); // Nessuna conversazione per l'utente
+    }
+
+    /**
+     * Verifica che i partecipanti delle conversazioni su una bici vengano restituiti una sola volta.
+     */
+    @Test
+    void testFindParticipantIdsByBikeId() {
+        User other = new User("other@example.com", "password", "Other");
+        userRepository.save(other);
+        conversationRepository.insertIfAbsent(bike.getId(), other.getId(), seller.getId());
+
+        List<Long> participantIds = conversationRepository.findParticipantIdsByBikeId(bike.getId());
+
+        assertEquals(3, participantIds.size()); // Il venditore compare una sola volta
+        assertTrue(participantIds.containsAll(List.of(seller.getId(), buyer.getId(), other.getId()))); // Verifica i partecipanti
+        assertTrue(conversationRepository.findParticipantIdsByBikeId(-1L).isEmpty()); // Nessuna conversazione sulla bici
+    }
+
+    /**
+     * Verifica che vengano restituite solo le conversazioni sulla bici indicata.
+     */
+    @Test
+    void testFindIdsByBikeId() {
+        assertEquals(List.of(conversationId), conversationRepository.findIdsByBikeId(bike.getId())); // Verifica la conversazione della bici
+        assertTrue(conversationRepository.findIdsByBikeId(-1L).isEmpty()); // Nessuna conversazione su un'altra bici
+    }
+
+    // Salva un messaggio nella conversazione di test
+    private Message saveMessage(User from, User to, String content) {
+        Message message = new Message(from, to, bike, content);
+        message.setTimestamp(LocalDateTime.now());
+        message.setConversation(conversationRepository.getReferenceById(conversationId));
+        return messageRepository.save(message);
+    }
+}
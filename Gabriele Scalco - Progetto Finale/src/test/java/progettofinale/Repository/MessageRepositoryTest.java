@@ -4,8 +4,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import progettofinale.Model.Message;
+import progettofinale.Model.MessageEvent;
+import progettofinale.Model.MessageView;
 import progettofinale.Model.User;
 import progettofinale.Model.Bikemodel.Bike;
 import progettofinale.Model.Bikemodel.MountainBike;
@@ -14,6 +17,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataJpaTest
 @ActiveProfiles("test")
@@ -22,6 +27,9 @@ class MessageRepositoryTest {
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private ConversationRepository conversationRepository;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -31,6 +39,7 @@ class MessageRepositoryTest {
     private User sender;
     private User receiver;
     private Bike bike;
+    private Long conversationId;
 
     @BeforeEach
     void setUp() {
@@ -44,62 +53,149 @@ class MessageRepositoryTest {
         bike = new MountainBike("BrandA", "M", "Test bike", 300.0, "CityA", sender);
         bikeRepository.save(bike);
 
+        // Crea la conversazione: il mittente è il proprietario della bici
+        conversationRepository.insertIfAbsent(bike.getId(), receiver.getId(), sender.getId());
+        conversationId = conversationRepository.findIdByParticipants(bike.getId(), receiver.getId(), sender.getId());
+
         // Crea messaggi e salva nel repository
         Message message1 = new Message(sender, receiver, bike, "Hello");
         message1.setTimestamp(LocalDateTime.now().minusDays(1)); // Messaggio inviato ieri
         Message message2 = new Message(receiver, sender, bike, "Hi there");
         message2.setTimestamp(LocalDateTime.now()); // Messaggio inviato oggi
+        message1.setConversation(conversationRepository.getReferenceById(conversationId));
+        message2.setConversation(conversationRepository.getReferenceById(conversationId));
 
         messageRepository.save(message1);
         messageRepository.save(message2);
     }
 
     /**
-     * Verifica che tutti i messaggi inviati da un utente come mittente siano recuperati correttamente.
+     * Verifica che i messaggi più recenti di una conversazione siano restituiti dal più recente al più vecchio.
      */
     @Test
-    void testFindAllByUserId_AsOnlySender() {
-        List<Message> messages = messageRepository.findAllByUserId(sender.getId());
+    void testFindLatestByConversationId() {
+        List<MessageView> messages = messageRepository.findLatestByConversationId(conversationId, PageRequest.of(0, 10));
 
         assertEquals(2, messages.size()); // Verifica che siano stati recuperati 2 messaggi
-        assertEquals("Hello", messages.get(0).getContent()); // Verifica il contenuto del primo messaggio
-        assertEquals("Hi there", messages.get(1).getContent()); // Verifica il contenuto del secondo messaggio
+        assertEquals("Hi there", messages.get(0).getContent()); // Verifica che il primo messaggio sia il più recente
+        assertEquals("Hello", messages.get(1).getContent()); // Verifica che il secondo messaggio sia il più vecchio
+        assertEquals(receiver.getId(), messages.get(0).getSenderId()); // Verifica il mittente del messaggio più recente
     }
 
     /**
-     * Verifica che tutti i messaggi ricevuti da un utente siano recuperati correttamente.
+     * Verifica che la lettura si fermi al numero di messaggi richiesto.
      */
     @Test
-    void testFindAllByUserId_AsOnlyReceiver() {
-        List<Message> messages = messageRepository.findAllByUserId(receiver.getId());
+    void testFindLatestByConversationId_Limit() {
+        List<MessageView> messages = messageRepository.findLatestByConversationId(conversationId, PageRequest.of(0, 1));
 
-        assertEquals(2, messages.size()); // Verifica che siano stati recuperati 2 messaggi
-        assertEquals("Hello", messages.get(0).getContent()); // Verifica il contenuto del primo messaggio
-        assertEquals("Hi there", messages.get(1).getContent()); // Verifica il contenuto del secondo messaggio
+        assertEquals(1, messages.size()); // Verifica che sia stato recuperato un solo messaggio
+        assertEquals("Hi there", messages.get(0).getContent()); // Verifica che sia il più recente
     }
 
     /**
-     * Verifica che nessun messaggio venga restituito se un utente non ha inviato o ricevuto alcun messaggio.
+     * Verifica che a partire da un cursore vengano restituiti solo i messaggi precedenti,
+     * anche a parità di timestamp.
      */
     @Test
-    void testFindAllByUserId_NoMessages() {
-        User userWithoutMessages = new User("nomessages@example.com", "password", "NoMessagesUser");
-        userRepository.save(userWithoutMessages);
+    void testFindOlderByConversationId() {
+        MessageView newest = messageRepository.findLatestByConversationId(conversationId, PageRequest.of(0, 1)).get(0);
+        Message sameTimestamp = new Message(sender, receiver, bike, "Same time");
+        sameTimestamp.setTimestamp(newest.getTimestamp());
+        sameTimestamp.setConversation(conversationRepository.getReferenceById(conversationId));
+        messageRepository.save(sameTimestamp);
+
+        List<MessageView> older = messageRepository.findOlderByConversationId(conversationId,
+                sameTimestamp.getTimestamp(), sameTimestamp.getId(), PageRequest.of(0, 10));
+
+        assertEquals(2, older.size()); // Verifica che il messaggio di confine sia escluso
+        assertEquals("Hi there", older.get(0).getContent()); // Stesso timestamp, ID minore
+        assertEquals("Hello", older.get(1).getContent()); // Verifica il messaggio più vecchio
+    }
 
-        List<Message> messages = messageRepository.findAllByUserId(userWithoutMessages.getId());
+    /**
+     * Verifica che nessun messaggio venga restituito per una conversazione senza messaggi.
+     */
+    @Test
+    void testFindLatestByConversationId_NoMessages() {
+        User otherBuyer = new User("nomessages@example.com", "password", "NoMessagesUser");
+        userRepository.save(otherBuyer);
+        conversationRepository.insertIfAbsent(bike.getId(), otherBuyer.getId(), sender.getId());
+        Long emptyConversationId = conversationRepository.findIdByParticipants(bike.getId(), otherBuyer.getId(), sender.getId());
 
-        assertEquals(0, messages.size()); // Verifica che non siano stati recuperati messaggi
+        List<MessageView> messages = messageRepository.findLatestByConversationId(emptyConversationId, PageRequest.of(0, 10));
+
+        assertTrue(messages.isEmpty()); // Verifica che non siano stati recuperati messaggi
     }
 
     /**
-     * Verifica che i messaggi siano ordinati cronologicamente (dal più vecchio al più recente).
+     * Verifica che vengano restituiti solo i messaggi ricevuti dopo l'ultimo ID indicato.
      */
     @Test
-    void testMessagesAreSortedByTimestamp() {
-        List<Message> messages = messageRepository.findAllByUserId(sender.getId());
+    void testFindReceivedAfter() {
+        List<MessageEvent> all = messageRepository.findReceivedAfter(sender.getId(), 0L, PageRequest.of(0, 10));
+        List<MessageEvent> none = messageRepository.findReceivedAfter(sender.getId(), all.get(0).getId(), PageRequest.of(0, 10));
+
+        assertEquals(1, all.size()); // Verifica che il mittente abbia ricevuto un solo messaggio
+        assertEquals("Hi there", all.get(0).getContent()); // Verifica il contenuto del messaggio ricevuto
+        assertEquals(bike.getId(), all.get(0).getBikeId()); // Verifica la bici del messaggio
+        assertTrue(none.isEmpty()); // Verifica che non ci siano messaggi successivi
+    }
 
-        assertEquals(2, messages.size()); // Verifica che siano stati recuperati 2 messaggi
-        assertEquals("Hello", messages.get(0).getContent()); // Verifica che il primo messaggio sia il più vecchio
-        assertEquals("Hi there", messages.get(1).getContent()); // Verifica che il secondo messaggio sia il più recente
+    /**
+     * Verifica che tutti i messaggi vengano letti a blocchi in ordine di ID.
+     */
+    @Test
+    void testFindAllAfter() {
+        List<MessageEvent> first = messageRepository.findAllAfter(0L, PageRequest.of(0, 1));
+        List<MessageEvent> next = messageRepository.findAllAfter(first.get(0).getId(), PageRequest.of(0, 10));
+
+        assertEquals(1, first.size()); // Verifica il limite del blocco
+        assertEquals("Hello", first.get(0).getContent()); // Verifica che il primo blocco parta dal messaggio più vecchio
+        assertEquals(1, next.size()); // Verifica che il blocco successivo parta dopo l'ultimo ID letto
+        assertEquals("Hi there", next.get(0).getContent()); // Verifica il messaggio del blocco successivo
+    }
+
+    /**
+     * Verifica che vengano restituiti i messaggi inviati e ricevuti dopo il cursore, in ordine di ID.
+     */
+    @Test
+    void testFindChangesSince() {
+        List<MessageEvent> all = messageRepository.findChangesSince(receiver.getId(), 0L, Long.MAX_VALUE, PageRequest.of(0, 10));
+        List<MessageEvent> afterFirst = messageRepository.findChangesSince(receiver.getId(), all.get(0).getId(), Long.MAX_VALUE, PageRequest.of(0, 10));
+        List<MessageEvent> none = messageRepository.findChangesSince(receiver.getId(), all.get(1).getId(), Long.MAX_VALUE, PageRequest.of(0, 10));
+        List<MessageEvent> upToMark = messageRepository.findChangesSince(receiver.getId(), 0L, all.get(0).getId(), PageRequest.of(0, 10));
+
+        assertEquals(2, all.size()); // Verifica che vengano restituiti i messaggi inviati e ricevuti
+        assertEquals("Hello", all.get(0).getContent()); // Verifica l'ordine per ID
+        assertEquals(conversationId, all.get(0).getConversationId()); // Verifica la conversazione del messaggio
+        assertEquals(1, afterFirst.size()); // Verifica che il cursore escluda i messaggi già letti
+        assertTrue(none.isEmpty()); // Verifica che non ci siano messaggi dopo l'ultimo
+        assertEquals(1, upToMark.size()); // Verifica che il limite escluda i messaggi successivi
+    }
+
+    /**
+     * Verifica che venga restituito l'ID del messaggio più recente di un utente.
+     */
+    @Test
+    void testFindMaxIdByUserId() {
+        List<MessageEvent> all = messageRepository.findChangesSince(sender.getId(), 0L, Long.MAX_VALUE, PageRequest.of(0, 10));
+        User userWithoutMessages = new User("nomessages-max@example.com", "password", "NoMessagesUser");
+        userRepository.save(userWithoutMessages);
+
+        assertEquals(all.get(1).getId(), messageRepository.findMaxIdByUserId(sender.getId())); // Verifica l'ultimo messaggio
+        assertNull(messageRepository.findMaxIdByUserId(userWithoutMessages.getId())); // Verifica l'assenza di messaggi
+        assertEquals(all.get(1).getId(), messageRepository.findMaxId()); // Verifica l'ultimo messaggio di tutti gli utenti
+    }
+
+    /**
+     * Verifica che i messaggi di una bici vengano eliminati con un'unica DELETE.
+     */
+    @Test
+    void testDeleteByBikeId() {
+        int deleted = messageRepository.deleteByBikeId(bike.getId());
+
+        assertEquals(2, deleted); // Verifica il numero di messaggi eliminati
+        assertEquals(0, messageRepository.count()); // Verifica che non restino messaggi
     }
 }
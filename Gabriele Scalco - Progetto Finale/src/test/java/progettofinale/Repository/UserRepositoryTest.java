@@ -1,9 +1,11 @@
 package progettofinale.Repository;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 import progettofinale.Model.User;
 
@@ -16,6 +18,9 @@ class UserRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @BeforeEach
     void setUp() {
         // Popola il database con utenti di esempio
@@ -47,6 +52,27 @@ class UserRepositoryTest {
         assertNull(foundUser); // Verifica che il risultato sia null
     }
 
+    /**
+     * Verifica che la ricerca per email non distingua maiuscole e minuscole.
+     */
+    @Test
+    void testFindByEmail_IgnoresCase() {
+        User foundUser = userRepository.findByEmail("User1@Example.com");
+
+        assertNotNull(foundUser); // Verifica che l'utente venga trovato
+        assertEquals(foundUser.getId(), userRepository.findIdByEmail("USER1@EXAMPLE.COM")); // Verifica la ricerca dell'ID
+    }
+
+    /**
+     * Verifica che l'indice univoco su lower(email) impedisca di registrare due volte la stessa email.
+     */
+    @Test
+    void testSaveUser_DuplicateEmailIgnoringCase() {
+        User duplicate = new User("USER1@example.com", "password", "Duplicate");
+
+        assertThrows(DataIntegrityViolationException.class, () -> userRepository.saveAndFlush(duplicate)); // Verifica il vincolo
+    }
+
     /**
      * Verifica che un nuovo utente venga salvato correttamente nel database.
      */
@@ -93,4 +119,16 @@ class UserRepositoryTest {
 
         assertNull(deletedUser); // Verifica che l'utente sia stato eliminato
     }
+
+    /**
+     * Verifica che l'hash della password venga aggiornato tramite email, senza distinguere maiuscole e minuscole.
+     */
+    @Test
+    void testUpdatePassword() {
+        assertEquals(1, userRepository.updatePassword("USER1@example.com", "{bcrypt}new-hash")); // Verifica l'aggiornamento
+        entityManager.clear(); // L'aggiornamento non passa dal contesto di persistenza: rilegge l'utente dal database
+
+        User updated = userRepository.findByEmail("user1@example.com");
+        assertEquals("{bcrypt}new-hash", updated.getPassword()); // Verifica il nuovo hash
+    }
 }
@@ -0,0 +1,128 @@
+package progettofinale.Repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.User;
+import progettofinale.Model.Bikemodel.Bike;
+import progettofinale.Model.Bikemodel.MountainBike;
+
+import jakarta.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class WishlistRepositoryTest {
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+    private User other;
+    private Bike first;
+    private Bike second;
+    private Bike third;
+
+    @BeforeEach
+    void setUp() {
+        // Crea due utenti e tre biciclette
+        user = userRepository.save(new User("user1@example.com", "password1", "User One"));
+        other = userRepository.save(new User("user2@example.com", "password2", "User Two"));
+        first = bikeRepository.save(new MountainBike("BrandA", "M", "Mountain bike", 500.0, "City1", other));
+        second = bikeRepository.save(new MountainBike("BrandB", "L", "Mountain bike", 600.0, "City2", other));
+        third = bikeRepository.save(new MountainBike("BrandC", "S", "Mountain bike", 700.0, "City3", other));
+        bikeRepository.flush();
+    }
+
+    /**
+     * Verifica che l'aggiunta alla wishlist inserisca la bici una sola volta.
+     */
+    @Test
+    void testAdd_NoDuplicates() {
+        assertEquals(1, wishlistRepository.add(user.getId(), first.getId())); // Verifica l'inserimento
+        assertEquals(0, wishlistRepository.add(user.getId(), first.getId())); // Verifica che il duplicato venga ignorato
+
+        List<BikeCard> wishlist = wishlistRepository.findCardsByUserId(user.getId(), 0L, PageRequest.of(0, 10));
+        assertEquals(1, wishlist.size()); // Verifica che la wishlist contenga la bici una sola volta
+        assertEquals(first.getId(), wishlist.get(0).getId()); // Verifica la bici aggiunta
+    }
+
+    /**
+     * Verifica che la rimozione elimini solo la bici indicata dalla wishlist dell'utente indicato.
+     */
+    @Test
+    void testRemove() {
+        wishlistRepository.add(user.getId(), first.getId());
+        wishlistRepository.add(user.getId(), second.getId());
+        wishlistRepository.add(other.getId(), first.getId());
+
+        assertEquals(1, wishlistRepository.remove(user.getId(), first.getId())); // Verifica l'eliminazione
+        assertEquals(0, wishlistRepository.remove(user.getId(), first.getId())); // La bici non è più nella wishlist
+
+        List<BikeCard> wishlist = wishlistRepository.findCardsByUserId(user.getId(), 0L, PageRequest.of(0, 10));
+        assertEquals(List.of(second.getId()), wishlist.stream().map(BikeCard::getId).toList()); // Resta solo la seconda bici
+        assertEquals(1, wishlistRepository.findCardsByUserId(other.getId(), 0L, PageRequest.of(0, 10)).size()); // L'altro utente non cambia
+    }
+
+    /**
+     * Verifica che una bici venga rimossa dalle wishlist di tutti gli utenti.
+     */
+    @Test
+    void testDeleteByBikeId() {
+        wishlistRepository.add(user.getId(), first.getId());
+        wishlistRepository.add(other.getId(), first.getId());
+        wishlistRepository.add(user.getId(), second.getId());
+
+        assertEquals(2, wishlistRepository.deleteByBikeId(first.getId())); // Verifica le righe eliminate
+
+        List<BikeCard> wishlist = wishlistRepository.findCardsByUserId(user.getId(), 0L, PageRequest.of(0, 10));
+        assertEquals(List.of(second.getId()), wishlist.stream().map(BikeCard::getId).toList()); // Resta solo la seconda bici
+    }
+
+    /**
+     * Verifica che la wishlist venga letta a pagine in ordine di ID a partire dal cursore.
+     */
+    @Test
+    void testFindCardsByUserId_Keyset() {
+        wishlistRepository.add(user.getId(), third.getId());
+        wishlistRepository.add(user.getId(), first.getId());
+        wishlistRepository.add(user.getId(), second.getId());
+
+        List<BikeCard> firstPage = wishlistRepository.findCardsByUserId(user.getId(), 0L, PageRequest.of(0, 2));
+        List<BikeCard> secondPage = wishlistRepository.findCardsByUserId(user.getId(), firstPage.get(1).getId(), PageRequest.of(0, 2));
+
+        assertEquals(List.of(first.getId(), second.getId()), firstPage.stream().map(BikeCard::getId).toList()); // Prima pagina
+        assertEquals(List.of(third.getId()), secondPage.stream().map(BikeCard::getId).toList()); // Pagina successiva
+        assertEquals("/images/default-bike.jpg", firstPage.get(0).getImagePath()); // Le biciclette senza foto usano l'immagine predefinita
+    }
+
+    /**
+     * Verifica che caricare un utente non carichi la sua wishlist.
+     */
+    @Test
+    void testFindByEmail_WishlistNotLoaded() {
+        wishlistRepository.add(user.getId(), first.getId());
+        entityManager.clear();
+
+        User found = userRepository.findByEmail("user1@example.com");
+
+        assertFalse(Hibernate.isInitialized(found.getWishlist())); // Verifica che la wishlist non sia stata letta
+        assertTrue(found.getWishlist().contains(first)); // La wishlist viene letta solo se richiesta
+    }
+}
@@ -0,0 +1,39 @@
+package progettofinale.Security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptCostBenchmarkTest {
+
+    /**
+     * Verifica che venga misurato un tempo positivo per un hash.
+     */
+    @Test
+    void testMeasureMillis() {
+        assertTrue(BCryptCostBenchmark.measureMillis(BCryptCostBenchmark.MIN_STRENGTH, 1) > 0); // Verifica la misura
+    }
+
+    /**
+     * Verifica che con un obiettivo irraggiungibile venga scelto il costo minimo.
+     */
+    @Test
+    void testPickStrength_MinimumForZeroTarget() {
+        assertEquals(BCryptCostBenchmark.MIN_STRENGTH, BCryptCostBenchmark.pickStrength(0, 1)); // Verifica il costo minimo
+    }
+
+    /**
+     * Verifica che ogni misura venga comunicata, fino al primo costo oltre l'obiettivo.
+     */
+    @Test
+    void testPickStrength_ReportsMeasurements() {
+        List<Integer> measured = new ArrayList<>();
+
+        BCryptCostBenchmark.pickStrength(0, 1, (strength, millis) -> measured.add(strength));
+
+        assertEquals(List.of(BCryptCostBenchmark.MIN_STRENGTH), measured); // Solo il primo costo, già oltre l'obiettivo
+    }
+}
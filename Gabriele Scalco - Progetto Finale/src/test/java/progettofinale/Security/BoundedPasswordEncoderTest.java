@@ -0,0 +1,109 @@
+package progettofinale.Security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    @Mock
+    private PasswordEncoder delegate;
+
+    private ThreadPoolTaskExecutor executor;
+
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = new PasswordEncoderConfig().passwordHashingExecutor(1, 1);
+        encoder = new BoundedPasswordEncoder(delegate, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Verifica che l'hash venga calcolato su un thread dell'executor e non su quello della richiesta.
+     */
+    @Test
+    void testEncode_RunsOnHashingThread() {
+        when(delegate.encode("password")).thenAnswer(invocation -> Thread.currentThread().getName());
+
+        String threadName = encoder.encode("password");
+
+        assertTrue(threadName.startsWith("password-hashing-")); // Verifica il thread che ha calcolato l'hash
+    }
+
+    /**
+     * Verifica che il controllo della password restituisca il risultato dell'encoder delegato.
+     */
+    @Test
+    void testMatches() {
+        when(delegate.matches("password", "hash")).thenReturn(true);
+
+        assertTrue(encoder.matches("password", "hash")); // Verifica il risultato del controllo
+        assertFalse(encoder.matches("other", "hash")); // Verifica una password errata
+    }
+
+    /**
+     * Verifica che, con il thread occupato e la coda piena, il calcolo venga rifiutato con PasswordHashingBusyException.
+     */
+    @Test
+    void testMatches_QueueFull() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            hashing.countDown();
+            release.await(); // Tiene occupato l'unico thread
+            return true;
+        });
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> encoder.matches("uno", "hash"));
+        assertTrue(hashing.await(5, TimeUnit.SECONDS)); // Il primo controllo è in corso
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> encoder.matches("due", "hash"));
+        while (executor.getThreadPoolExecutor().getQueue().isEmpty()) {
+            Thread.sleep(1); // Attende che il secondo controllo occupi l'unico posto in coda
+        }
+
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.matches("tre", "hash")); // Verifica il rifiuto
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS)); // Il primo controllo termina comunque
+        assertTrue(second.get(5, TimeUnit.SECONDS)); // Anche quello in coda
+    }
+
+    /**
+     * Verifica che un errore dell'encoder delegato arrivi al chiamante.
+     */
+    @Test
+    void testEncode_DelegateFailure() {
+        IllegalArgumentException failure = new IllegalArgumentException("rawPassword cannot be null");
+        when(delegate.encode(null)).thenThrow(failure);
+
+        assertSame(failure, assertThrows(IllegalArgumentException.class, () -> encoder.encode(null))); // Verifica l'errore originale
+    }
+
+    /**
+     * Verifica che la richiesta di ricalcolo venga chiesta direttamente all'encoder delegato.
+     */
+    @Test
+    void testUpgradeEncoding() {
+        when(delegate.upgradeEncoding("hash")).thenReturn(true);
+
+        assertTrue(encoder.upgradeEncoding("hash")); // Verifica il risultato del delegato
+    }
+}
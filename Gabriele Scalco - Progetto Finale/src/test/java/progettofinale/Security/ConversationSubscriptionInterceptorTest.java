@@ -0,0 +1,122 @@
+package progettofinale.Security;
+
+import progettofinale.Repository.ConversationRepository;
+import progettofinale.Repository.UserRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.security.Principal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConversationSubscriptionInterceptorTest {
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MessageChannel channel;
+
+    @InjectMocks
+    private ConversationSubscriptionInterceptor interceptor;
+
+    private final Principal principal = () -> "buyer@example.com";
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(userRepository.findIdByEmail("buyer@example.com")).thenReturn(1L);
+    }
+
+    /**
+     * Verifica che un partecipante possa sottoscrivere la propria conversazione.
+     */
+    @Test
+    void testSubscribe_Participant() {
+        when(conversationRepository.isParticipant(7L, 1L)).thenReturn(true);
+        Message<byte[]> frame = frame(StompCommand.SUBSCRIBE, "/topic/conversations/7", principal);
+
+        assertSame(frame, interceptor.preSend(frame, channel)); // Verifica che il frame venga lasciato passare
+    }
+
+    /**
+     * Verifica che l'ID dell'utente venga letto dai dettagli salvati al login, senza cercarlo per email.
+     */
+    @Test
+    void testSubscribe_AuthenticatedUserDetails() {
+        AppUserDetails details = new AppUserDetails(1L, "buyer@example.com", "Buyer", "password", List.of());
+        Principal authentication = UsernamePasswordAuthenticationToken.authenticated(details, null, List.of());
+        when(conversationRepository.isParticipant(7L, 1L)).thenReturn(true);
+        Message<byte[]> frame = frame(StompCommand.SUBSCRIBE, "/topic/conversations/7", authentication);
+
+        assertSame(frame, interceptor.preSend(frame, channel)); // Verifica che il frame venga lasciato passare
+        verify(userRepository, never()).findIdByEmail(anyString()); // Verifica che l'utente non venga cercato nel database
+    }
+
+    /**
+     * Verifica che un utente non possa sottoscrivere una conversazione di altri utenti.
+     */
+    @Test
+    void testSubscribe_NotParticipant() {
+        when(conversationRepository.isParticipant(7L, 1L)).thenReturn(false);
+        Message<byte[]> frame = frame(StompCommand.SUBSCRIBE, "/topic/conversations/7", principal);
+
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(frame, channel)); // Verifica il rifiuto
+    }
+
+    /**
+     * Verifica che le destinazioni diverse dalle conversazioni e dalla coda degli errori vengano rifiutate.
+     */
+    @Test
+    void testSubscribe_OtherDestination() {
+        Message<byte[]> frame = frame(StompCommand.SUBSCRIBE, "/topic/other", principal);
+
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(frame, channel)); // Verifica il rifiuto
+        verifyNoInteractions(conversationRepository); // Verifica che non venga eseguita nessuna query
+    }
+
+    /**
+     * Verifica che un client non autenticato non possa sottoscrivere nulla.
+     */
+    @Test
+    void testSubscribe_Anonymous() {
+        Message<byte[]> frame = frame(StompCommand.SUBSCRIBE, "/user/queue/errors", null);
+
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(frame, channel)); // Verifica il rifiuto
+    }
+
+    /**
+     * Verifica che i messaggi inviati direttamente al broker vengano rifiutati.
+     */
+    @Test
+    void testSend_DirectlyToBroker() {
+        Message<byte[]> frame = frame(StompCommand.SEND, "/topic/conversations/7", principal);
+
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(frame, channel)); // Verifica il rifiuto
+    }
+
+    // Crea un frame STOMP con comando, destinazione e utente
+    private Message<byte[]> frame(StompCommand command, String destination, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -8,8 +8,12 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -36,9 +40,8 @@ class CustomUserDetailsServiceTest {
         String password = "password123";
 
         // Simula un utente trovato nel repository
-        User user = new User();
-        user.setEmail(email);
-        user.setPassword(password);
+        User user = new User(email, password, "Test User");
+        ReflectionTestUtils.setField(user, "id", 4L);
 
         when(userRepository.findByEmail(email)).thenReturn(user);
 
@@ -49,6 +52,9 @@ class CustomUserDetailsServiceTest {
         assertEquals(password, userDetails.getPassword()); // Verifica che la password corrisponda
         assertTrue(userDetails.getAuthorities().stream()
                 .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ROLE_USER"))); // Verifica che l'utente abbia il ruolo "ROLE_USER"
+        AppUserDetails appUserDetails = assertInstanceOf(AppUserDetails.class, userDetails); // Verifica il tipo dei dettagli
+        assertEquals(4L, appUserDetails.getId()); // Verifica che l'ID venga salvato con i dettagli
+        assertEquals("Test User", appUserDetails.getDisplayName()); // Verifica che il nome venga salvato con i dettagli
 
         verify(userRepository, times(1)).findByEmail(email); // Verifica che il repository sia stato chiamato una sola volta
     }
@@ -70,4 +76,36 @@ class CustomUserDetailsServiceTest {
         verify(userRepository, times(1)).findByEmail(email); // Verifica che il repository sia stato chiamato una sola volta
     }
 
+    /**
+     * Verifica che solo gli utenti con un'email configurata ricevano il ruolo "ROLE_ADMIN".
+     */
+    @Test
+    void testLoadUserByUsername_Admin() {
+        customUserDetailsService.setAdminEmails(List.of(" Admin@Example.com ", ""));
+        when(userRepository.findByEmail("admin@example.com")).thenReturn(new User("admin@example.com", "password", "Admin"));
+        when(userRepository.findByEmail("user@example.com")).thenReturn(new User("user@example.com", "password", "User"));
+
+        UserDetails admin = customUserDetailsService.loadUserByUsername("admin@example.com");
+        UserDetails user = customUserDetailsService.loadUserByUsername("user@example.com");
+
+        assertTrue(admin.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"))); // Verifica il ruolo dell'amministratore
+        assertTrue(admin.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER"))); // L'amministratore resta un utente
+        assertFalse(user.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"))); // Verifica che gli altri utenti non lo ricevano
+    }
+
+    /**
+     * Verifica che il nuovo hash calcolato al login venga salvato e restituito con i dettagli dell'utente.
+     */
+    @Test
+    void testUpdatePassword() {
+        AppUserDetails details = new AppUserDetails(4L, "test@example.com", "Test User", "$2a$04$old",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        UserDetails updated = customUserDetailsService.updatePassword(details, "{bcrypt}$2a$10$new");
+
+        verify(userRepository, times(1)).updatePassword("test@example.com", "{bcrypt}$2a$10$new"); // Verifica il salvataggio
+        AppUserDetails appUserDetails = assertInstanceOf(AppUserDetails.class, updated); // Verifica il tipo dei dettagli
+        assertEquals("{bcrypt}$2a$10$new", appUserDetails.getPassword()); // Verifica il nuovo hash
+        assertEquals(4L, appUserDetails.getId()); // Verifica che l'ID resti lo stesso
+    }
 }
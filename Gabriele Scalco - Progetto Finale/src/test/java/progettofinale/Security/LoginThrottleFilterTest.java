@@ -0,0 +1,100 @@
+package progettofinale.Security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoginThrottleFilterTest {
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
+    private LoginThrottleFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        filter = new LoginThrottleFilter(loginThrottle);
+        when(loginThrottle.getRetryAfterSeconds()).thenReturn(60L);
+    }
+
+    /**
+     * Verifica che un login bloccato venga rifiutato con 429 senza proseguire nella catena.
+     */
+    @Test
+    void testLogin_Blocked() throws Exception {
+        MockHttpServletRequest request = post("/login");
+        request.setParameter("username", "user@example.com");
+        when(loginThrottle.isLoginBlocked("10.0.0.1", "user@example.com")).thenReturn(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus()); // Verifica l'errore 429
+        assertEquals("60", response.getHeader(HttpHeaders.RETRY_AFTER)); // Verifica quando riprovare
+        assertNull(chain.getRequest()); // Verifica che il login non venga eseguito
+    }
+
+    /**
+     * Verifica che un login non bloccato prosegua nella catena.
+     */
+    @Test
+    void testLogin_Allowed() throws Exception {
+        MockHttpServletRequest request = post("/login");
+        request.setParameter("username", "user@example.com");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertSame(request, chain.getRequest()); // Verifica che il login prosegua
+    }
+
+    /**
+     * Verifica che una registrazione oltre il limite venga rifiutata con 429.
+     */
+    @Test
+    void testRegister_Blocked() throws Exception {
+        when(loginThrottle.tryRegistration("10.0.0.1")).thenReturn(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(post("/register"), response, chain);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus()); // Verifica l'errore 429
+        assertNull(chain.getRequest()); // Verifica che la registrazione non venga eseguita
+    }
+
+    /**
+     * Verifica che le altre richieste non vengano controllate.
+     */
+    @Test
+    void testOtherRequests_NotChecked() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+        request.setServletPath("/login");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertSame(request, chain.getRequest()); // Verifica che la richiesta prosegua
+        verify(loginThrottle, never()).isLoginBlocked(any(), any()); // Verifica che non venga controllata
+        verify(loginThrottle, never()).tryRegistration(any()); // Verifica che non venga contata
+    }
+
+    // Crea una richiesta POST dal client 10.0.0.1
+    private static MockHttpServletRequest post(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+}
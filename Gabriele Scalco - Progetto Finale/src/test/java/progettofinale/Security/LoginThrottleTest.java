@@ -0,0 +1,93 @@
+package progettofinale.Security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(1)); // Orologio controllato dal test
+
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        loginThrottle = new LoginThrottle(15, 5, 3, 2, now::get);
+    }
+
+    /**
+     * Verifica che i login di un'email vengano rifiutati dopo troppi fallimenti, senza distinguere maiuscole e minuscole.
+     */
+    @Test
+    void testIsLoginBlocked_ByEmail() {
+        for (int i = 0; i < 3; i++) {
+            assertFalse(loginThrottle.isLoginBlocked("10.0.0." + i, "user@example.com")); // Sotto il limite
+            loginThrottle.recordLoginFailure("10.0.0." + i, "User@Example.com");
+        }
+
+        assertTrue(loginThrottle.isLoginBlocked("10.0.0.9", "user@example.com")); // Verifica il rifiuto da un altro IP
+        assertFalse(loginThrottle.isLoginBlocked("10.0.0.9", "other@example.com")); // Le altre email non sono bloccate
+    }
+
+    /**
+     * Verifica che i login da un indirizzo IP vengano rifiutati dopo troppi fallimenti, per qualunque email.
+     */
+    @Test
+    void testIsLoginBlocked_ByIp() {
+        for (int i = 0; i < 5; i++) {
+            loginThrottle.recordLoginFailure("10.0.0.1", "user" + i + "@example.com");
+        }
+
+        assertTrue(loginThrottle.isLoginBlocked("10.0.0.1", "new@example.com")); // Verifica il rifiuto dell'IP
+        assertTrue(loginThrottle.isLoginBlocked("10.0.0.1", null)); // Anche senza email
+        assertFalse(loginThrottle.isLoginBlocked("10.0.0.2", "new@example.com")); // Gli altri IP non sono bloccati
+    }
+
+    /**
+     * Verifica che il blocco termini quando i fallimenti escono dalla finestra.
+     */
+    @Test
+    void testIsLoginBlocked_WindowExpires() {
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.recordLoginFailure("10.0.0.1", "user@example.com");
+        }
+        assertTrue(loginThrottle.isLoginBlocked("10.0.0.1", "user@example.com")); // Bloccato
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(15));
+
+        assertFalse(loginThrottle.isLoginBlocked("10.0.0.1", "user@example.com")); // Verifica lo sblocco
+    }
+
+    /**
+     * Verifica che le registrazioni da un indirizzo IP vengano rifiutate oltre il limite.
+     */
+    @Test
+    void testTryRegistration() {
+        assertTrue(loginThrottle.tryRegistration("10.0.0.1")); // Prima registrazione
+        assertTrue(loginThrottle.tryRegistration("10.0.0.1")); // Seconda registrazione
+        assertFalse(loginThrottle.tryRegistration("10.0.0.1")); // Verifica il rifiuto oltre il limite
+        assertTrue(loginThrottle.tryRegistration("10.0.0.2")); // Gli altri IP non sono limitati
+    }
+
+    /**
+     * Verifica i contatori esposti per il monitoraggio.
+     */
+    @Test
+    void testGetStats() {
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.recordLoginFailure("10.0.0.1", "user@example.com");
+        }
+        loginThrottle.isLoginBlocked("10.0.0.1", "user@example.com");
+        loginThrottle.tryRegistration("10.0.0.1");
+        loginThrottle.tryRegistration("10.0.0.1");
+        loginThrottle.tryRegistration("10.0.0.1");
+
+        assertEquals(Map.of("loginFailures", 3L, "loginsRejected", 1L, "registrations", 2L, "registrationsRejected", 1L),
+                loginThrottle.getStats()); // Verifica i contatori
+    }
+}
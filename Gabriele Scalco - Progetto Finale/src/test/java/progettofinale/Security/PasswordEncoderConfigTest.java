@@ -0,0 +1,66 @@
+package progettofinale.Security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordEncoderConfigTest {
+
+    private final PasswordEncoderConfig config = new PasswordEncoderConfig();
+
+    private ThreadPoolTaskExecutor executor;
+
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        executor = config.passwordHashingExecutor(1, 10);
+        passwordEncoder = config.passwordEncoder(5, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Verifica che le nuove password vengano salvate con il prefisso e il costo configurato.
+     */
+    @Test
+    void testEncode_PrefixAndStrength() {
+        String encoded = passwordEncoder.encode("password");
+
+        assertTrue(encoded.startsWith("{bcrypt}$2a$05$")); // Verifica prefisso e costo
+        assertTrue(passwordEncoder.matches("password", encoded)); // Verifica la password
+        assertFalse(passwordEncoder.upgradeEncoding(encoded)); // Nessun ricalcolo con lo stesso costo
+    }
+
+    /**
+     * Verifica che gli hash salvati senza prefisso vengano verificati e ricalcolati al login.
+     */
+    @Test
+    void testLegacyHash() {
+        String legacy = new BCryptPasswordEncoder(5).encode("password");
+
+        assertTrue(passwordEncoder.matches("password", legacy)); // Verifica la password
+        assertTrue(passwordEncoder.upgradeEncoding(legacy)); // Richiede il ricalcolo con il prefisso
+    }
+
+    /**
+     * Verifica che un hash venga ricalcolato se il costo salvato è più basso o più alto di quello configurato.
+     */
+    @Test
+    void testUpgradeEncoding_StrengthChanged() {
+        String lower = "{bcrypt}" + new BCryptPasswordEncoder(4).encode("password");
+        String higher = "{bcrypt}" + new BCryptPasswordEncoder(6).encode("password");
+
+        assertTrue(passwordEncoder.matches("password", lower)); // Il vecchio hash resta valido
+        assertTrue(passwordEncoder.upgradeEncoding(lower)); // Costo più basso
+        assertTrue(passwordEncoder.upgradeEncoding(higher)); // Costo più alto
+    }
+}
@@ -6,15 +6,29 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import progettofinale.Model.Bikemodel.*;
+import progettofinale.Model.BikeCard;
+import progettofinale.Model.BikePage;
+import progettofinale.Model.ImageMetadata;
+import progettofinale.Model.ImageRendition;
 import progettofinale.Model.User;
+import progettofinale.Repository.BikeImageRepository;
 import progettofinale.Repository.BikeRepository;
+import progettofinale.Repository.ConversationRepository;
 import progettofinale.Repository.MessageRepository;
-import progettofinale.Repository.UserRepository;
+import progettofinale.Repository.WishlistRepository;
+import progettofinale.Service.ImageStore.ImageStore;
+import progettofinale.Service.SortingStrategy.PriceAscendingStrategy;
 import progettofinale.Service.SortingStrategy.SortingStrategy;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -31,7 +45,25 @@ class BikeServiceTest {
     private MessageRepository messageRepository;
 
     @Mock
-    private UserRepository userRepository;
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    @Mock
+    private MessageSearchService messageSearchService;
+
+    @Mock
+    private WishlistRepository wishlistRepository;
+
+    @Mock
+    private ImageProcessingService imageProcessingService;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private BikeImageRepository bikeImageRepository;
 
     @InjectMocks
     private BikeService bikeService;
@@ -47,13 +79,11 @@ class BikeServiceTest {
 
         user = new User("test@example.com", "password", "Test User");
         bike1 = new MountainBike("BrandA", "M", "Mountain bike", 500.0, "City1", user);
-        bike1.setImage("MountainImage".getBytes());
+        bike1.setImageKey("a".repeat(64), "image/jpeg");
         bike2 = new RoadBike("BrandB", "L", "Road bike", 600.0, "City2", user);
-        bike2.setImage("RoadImage".getBytes());
+        bike2.setImageKey("b".repeat(64), "image/jpeg");
 
-        sortingStrategy = bikes -> bikes.stream()
-                .sorted((b1, b2) -> Double.compare(b1.getPrice(), b2.getPrice()))
-                .toList();
+        sortingStrategy = new PriceAscendingStrategy();
     }
 
     /**
@@ -61,45 +91,53 @@ class BikeServiceTest {
      */
     @Test
     void testDeleteBike_BikeExists() {
-        // Simula utenti con wishlist
-        User user1 = new User("user1@example.com", "password", "User One");
-        user1.setWishlist(new ArrayList<>(List.of(bike1)));
-        User user2 = new User("user2@example.com", "password", "User Two");
-        user2.setWishlist(new ArrayList<>(List.of(bike2, bike1)));
-
-        when(bikeRepository.findById(1L)).thenReturn(Optional.of(bike1));
-        when(userRepository.findAll()).thenReturn(Arrays.asList(user1, user2));
+        when(bikeRepository.deleteBikeById(1L)).thenReturn(1);
+        when(conversationRepository.findParticipantIdsByBikeId(1L)).thenReturn(List.of(2L, 3L));
+        when(conversationRepository.findIdsByBikeId(1L)).thenReturn(List.of(7L));
 
         // Esegue il metodo
         bikeService.deleteBike(1L);
 
-        // Verifica che la bici venga rimossa dalle wishlist degli utenti
-        assertFalse(user1.getWishlist().contains(bike1)); // Controlla la rimozione dalla wishlist di user1
-        assertFalse(user2.getWishlist().contains(bike1)); // Controlla la rimozione dalla wishlist di user2
-        assertTrue(user2.getWishlist().contains(bike2)); // Controlla che le altre bici rimangano nella wishlist
-
         // Verifica chiamate ai repository
-        verify(bikeRepository, times(1)).findById(1L); // La bici viene cercata
-        verify(messageRepository, times(1)).deleteByBike(bike1); // I messaggi associati vengono eliminati
-        verify(userRepository, times(1)).findAll(); // Gli utenti vengono recuperati
-        verify(bikeRepository, times(1)).deleteById(1L); // La bici viene eliminata
+        verify(wishlistRepository, times(1)).deleteByBikeId(1L); // La bici viene rimossa dalle wishlist
+        verify(messageRepository, times(1)).deleteByBikeId(1L); // I messaggi associati vengono eliminati
+        verify(conversationRepository, times(1)).deleteByBikeId(1L); // Le conversazioni associate vengono eliminate
+        verify(unreadCounterService, times(1)).evictAfterCommit(List.of(2L, 3L)); // Vengono riletti solo i non letti dei partecipanti
+        verify(messageSearchService, times(1)).removeConversationsAfterCommit(List.of(2L, 3L), List.of(7L)); // Le conversazioni escono dall'indice
+        verify(bikeRepository, times(1)).deleteBikeById(1L); // La bici viene eliminata
+        verify(bikeRepository, never()).findById(anyLong()); // La bici non viene caricata
     }
 
     /**
-     * Verifica che venga restituita una lista vuota se il database non contiene bici.
+     * Verifica che l'eliminazione di una bici inesistente generi un errore 404.
      */
     @Test
-    void testGetAllBikes_EmptyDatabase() {
-        when(bikeRepository.findAll()).thenReturn(Collections.emptyList());
+    void testDeleteBike_BikeNotFound() {
+        when(bikeRepository.deleteBikeById(1L)).thenReturn(0);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bikeService.deleteBike(1L)); // Verifica l'eccezione
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode()); // Verifica lo stato
+    }
+
+    /**
+     * Verifica che venga restituita una pagina vuota se il database non contiene bici.
+     */
+    @Test
+    void testSearchBikesPage_EmptyDatabase() {
+        when(bikeRepository.findCardSlice(any(Specification.class), any(Sort.class), anyInt())).thenReturn(Collections.emptyList());
 
         // Esegue il metodo
-        List<Bike> bikes = bikeService.getAllBikes();
+        BikePage page = bikeService.searchBikesPage(null, null, null, null, null, sortingStrategy, null, null);
 
-        // Verifica che la lista sia vuota
-        assertTrue(bikes.isEmpty()); // Controlla che non vengano restituite bici
+        // Verifica che la pagina sia vuota
+        assertTrue(page.getBikes().isEmpty()); // Controlla che non vengano restituite bici
+        assertNull(page.getNextCursor()); // Controlla che non ci sia una pagina successiva
+        assertNull(page.getPrevCursor()); // Controlla che non ci sia una pagina precedente
 
         // Verifica chiamata al repository
-        verify(bikeRepository, times(1)).findAll(); // Il repository viene chiamato
+        verify(bikeRepository, times(1)).findCardSlice(any(Specification.class), any(Sort.class), eq(BikeService.PAGE_SIZE + 1)); // Il repository legge una riga in più
+        verify(bikeRepository, never()).findAll(); // La tabella non viene caricata per intero
     }
 
     /**
@@ -128,64 +166,196 @@ class BikeServiceTest {
     }
 
     /**
-     * Verifica il comportamento del metodo searchBikes con parametri validi.
+     * Verifica il comportamento del metodo searchBikesPage con parametri validi.
      */
     @Test
-    void testSearchBikes_ValidParams() {
-        when(bikeRepository.findAll()).thenReturn(List.of(bike1, bike2));
+    void testSearchBikesPage_ValidParams() {
+        BikeCard card = new BikeCard(1L, "BrandA", "M", "Mountain bike", 500.0, "City1", "Mountain", 1L, true);
+        when(bikeRepository.findCardSlice(any(Specification.class), any(Sort.class), anyInt())).thenReturn(List.of(card));
 
         // Esegue il metodo
-        List<Bike> result = bikeService.searchBikes("M", 500.0, "BrandA", "Mountain", sortingStrategy);
+        BikePage page = bikeService.searchBikesPage("M", "City1", 500.0, "BrandA", "Mountain", sortingStrategy, null, null);
 
         // Verifica i risultati della ricerca
-        assertEquals(1, result.size()); // Controlla che venga trovata una sola bici
-        assertEquals(bike1, result.get(0)); // Controlla che la bici trovata sia quella attesa
+        assertEquals(1, page.getBikes().size()); // Controlla che venga trovata una sola bici
+        assertEquals(card, page.getBikes().get(0)); // Controlla che la bici trovata sia quella attesa
+        verify(bikeRepository, times(1)).findCardSlice(any(Specification.class), eq(sortingStrategy.getSort()), anyInt()); // Verifica l'ORDER BY richiesto
     }
 
     /**
-     * Verifica che il metodo searchBikes gestisca parametri nulli.
+     * Verifica che venga restituito il cursore della pagina successiva quando ci sono altre bici.
      */
     @Test
-    void testSearchBikes_NullParams() {
-        when(bikeRepository.findAll()).thenReturn(List.of(bike1, bike2));
+    void testSearchBikesPage_HasNextPage() {
+        List<BikeCard> bikes = new ArrayList<>();
+        for (int i = 0; i <= BikeService.PAGE_SIZE; i++) {
+            bikes.add(new BikeCard((long) i + 1, "Brand" + i, "M", "Bike", 100.0 + i, "City", "Mountain", 1L, false));
+        }
+        when(bikeRepository.findCardSlice(any(Specification.class), any(Sort.class), anyInt())).thenReturn(bikes);
+
+        BikePage page = bikeService.searchBikesPage(null, null, null, null, null, sortingStrategy, null, null);
+
+        assertEquals(BikeService.PAGE_SIZE, page.getBikes().size()); // Controlla che la riga in più venga scartata
+        assertEquals("119.0_20", page.getNextCursor()); // Controlla il cursore dell'ultima bici mostrata
+        assertNull(page.getPrevCursor()); // Controlla che la prima pagina non abbia una pagina precedente
+    }
 
-        // Esegue il metodo
-        List<Bike> result = bikeService.searchBikes(null, null, null, null, sortingStrategy);
+    /**
+     * Verifica che la lettura verso la pagina precedente inverta l'ordinamento e riordini i risultati.
+     */
+    @Test
+    void testSearchBikesPage_Backwards() {
+        BikeCard cheaper = new BikeCard(1L, "BrandA", "M", "Mountain bike", 400.0, "City1", "Mountain", 1L, true);
+        BikeCard pricier = new BikeCard(2L, "BrandB", "L", "Road bike", 450.0, "City2", "Road", 1L, true);
+        // Il repository restituisce le righe in ordine inverso
+        when(bikeRepository.findCardSlice(any(Specification.class), any(Sort.class), anyInt())).thenReturn(List.of(pricier, cheaper));
+
+        BikePage page = bikeService.searchBikesPage(null, null, null, null, null, sortingStrategy, null, "500.0_3");
+
+        assertEquals(cheaper, page.getBikes().get(0)); // Controlla che l'ordine originale venga ripristinato
+        assertEquals(pricier, page.getBikes().get(1));
+        assertEquals("450.0_2", page.getNextCursor()); // Controlla che si possa tornare avanti
+        assertNull(page.getPrevCursor()); // Controlla che non ci siano altre pagine precedenti
+        verify(bikeRepository).findCardSlice(any(Specification.class), eq(sortingStrategy.getSort().descending()), anyInt()); // Verifica l'ordinamento invertito
+    }
 
-        // Verifica che tutte le bici vengano restituite
-        assertEquals(2, result.size()); // Controlla che tutte le bici vengano restituite
-        assertTrue(result.contains(bike1) && result.contains(bike2)); // Controlla che entrambe le bici siano incluse
+    /**
+     * Verifica che un cursore non valido venga rifiutato.
+     */
+    @Test
+    void testSearchBikesPage_InvalidCursor() {
+        assertThrows(ResponseStatusException.class,
+                () -> bikeService.searchBikesPage(null, null, null, null, null, sortingStrategy, "not-a-cursor", null)); // Verifica l'eccezione
+        verify(bikeRepository, never()).findCardSlice(any(Specification.class), any(Sort.class), anyInt()); // Verifica che la query non venga eseguita
     }
 
     /**
      * Verifica che venga gestita l'assenza di immagine con un valore predefinito.
      */
     @Test
-    void testConvertImageToBase64_NullImage() {
-        bike1.setImage(null); // Simula una bici senza immagine
+    void testGetBikeById_NullImage() {
+        bike1.setImageKey(null, null); // Simula una bici senza immagine
 
         // Mock il repository per restituire bike1
-        when(bikeRepository.findAll()).thenReturn(List.of(bike1));
+        when(bikeRepository.findById(1L)).thenReturn(Optional.of(bike1));
 
         // Esegue il metodo
-        bikeService.getAllBikes();
+        Bike result = bikeService.getBikeById(1L);
 
         // Verifica che l'immagine predefinita venga impostata
-        assertEquals("/images/default-bike.jpg", bike1.getImagePath()); // Controlla il percorso dell'immagine predefinita
+        assertEquals("/images/default-bike.jpg", result.getImagePath()); // Controlla il percorso dell'immagine predefinita
     }
 
     /**
-     * Verifica che un'immagine venga convertita correttamente in Base64.
+     * Verifica che l'immagine venga referenziata tramite l'endpoint dedicato invece che in Base64.
      */
     @Test
-    void testConvertImageToBase64_WithImage() {
-        when(bikeRepository.findAll()).thenReturn(List.of(bike1)); // Mock per restituire bike1
+    void testGetBikeById_WithImage() {
+        ReflectionTestUtils.setField(bike1, "id", 1L); // Simula una bici già salvata
+        when(bikeRepository.findById(1L)).thenReturn(Optional.of(bike1)); // Mock per restituire bike1
 
         // Esegue il metodo
-        bikeService.getAllBikes();
+        Bike result = bikeService.getBikeById(1L);
+
+        // Verifica l'URL dell'immagine
+        assertEquals("/images/bike/1/detail", result.getImagePath()); // Controlla che punti alla versione di dettaglio
+        assertNotNull(result.getImageUpdatedAt()); // Controlla che l'istante di caricamento sia impostato
+    }
+
+    /**
+     * Verifica che una bicicletta inesistente generi un errore 404.
+     */
+    @Test
+    void testGetBikeById_NotFound() {
+        when(bikeRepository.findById(1L)).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> bikeService.getBikeById(1L));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode()); // Verifica l'errore 404
+    }
+
+    /**
+     * Verifica che i metadati dell'immagine vengano restituiti e che la loro assenza generi un errore.
+     */
+    @Test
+    void testGetImageMetadata() {
+        ImageMetadata metadata = new ImageMetadata(1L, Instant.ofEpochMilli(1000), null, "abc", null, null);
+        when(bikeRepository.findImageMetadataById(1L)).thenReturn(Optional.of(metadata));
+        when(bikeRepository.findImageMetadataById(2L)).thenReturn(Optional.empty());
+
+        assertEquals("\"abc\"", bikeService.getImageMetadata(1L).getETag(ImageRendition.CARD)); // Controlla l'ETag derivato dalla chiave
+        assertEquals("\"1-original-1000\"", bikeService.getImageMetadata(1L).getETag(ImageRendition.ORIGINAL)); // Controlla l'ETag dell'immagine non migrata
+        assertThrows(ResponseStatusException.class, () -> bikeService.getImageMetadata(2L)); // Verifica l'eccezione
+        verifyNoInteractions(bikeImageRepository); // Verifica che l'immagine non venga letta
+    }
+
+    /**
+     * Verifica che le schede delle bici di un utente vengano lette dalla query di proiezione.
+     */
+    @Test
+    void testGetBikeCardsByUser() {
+        BikeCard card = new BikeCard(1L, "BrandA", "M", "Mountain bike", 500.0, "City1", "Mountain", 7L, false);
+        when(bikeRepository.findCardsByUserId(7L)).thenReturn(List.of(card));
+
+        List<BikeCard> cards = bikeService.getBikeCardsByUser(7L);
+
+        assertEquals(List.of(card), cards); // Controlla le schede restituite
+        assertEquals("/images/default-bike.jpg", cards.get(0).getImagePath()); // Controlla l'immagine predefinita
+        verify(bikeRepository, never()).findByUser(any()); // Verifica che le entità complete non vengano caricate
+    }
+
+    /**
+     * Verifica che l'immagine non migrata venga restituita e che la sua assenza generi un errore.
+     */
+    @Test
+    void testGetLegacyImage() {
+        when(bikeImageRepository.findImageById(1L)).thenReturn("MountainImage".getBytes());
+        when(bikeImageRepository.findImageById(2L)).thenReturn(null);
+
+        assertArrayEquals("MountainImage".getBytes(), bikeService.getLegacyImage(1L)); // Controlla l'immagine restituita
+        assertThrows(ResponseStatusException.class, () -> bikeService.getLegacyImage(2L)); // Verifica l'eccezione
+    }
+
+    /**
+     * Verifica che un file mancante nell'archivio generi un errore 404.
+     */
+    @Test
+    void testGetStoredImageSize_MissingFile() throws IOException {
+        when(imageStore.size("abc")).thenThrow(new NoSuchFileException("abc"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bikeService.getStoredImageSize("abc")); // Verifica l'eccezione
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode()); // Verifica lo stato
+    }
+
+    /**
+     * Verifica che l'aggiunta di una bici salvi l'immagine nell'archivio e pianifichi le versioni ridotte.
+     */
+    @Test
+    void testAddBike_StoresImageAndSchedulesRenditions() throws IOException {
+        byte[] image = new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00 };
+        Bike bike = new MountainBike("BrandA", "M", "Mountain bike", 500.0, "City1", user);
+        ReflectionTestUtils.setField(bike, "id", 1L);
+        when(imageStore.store(image)).thenReturn("abc");
+        when(bikeRepository.save(bike)).thenReturn(bike);
+
+        bikeService.addBike(bike, image);
+
+        assertEquals("abc", bike.getImageKey()); // Controlla che la bici conservi solo la chiave
+        assertEquals("image/jpeg", bike.getImageContentType()); // Controlla il tipo di contenuto rilevato
+        verify(imageProcessingService, times(1)).scheduleRenditions(1L, "abc", image); // Verifica la generazione delle versioni
+    }
+
+    /**
+     * Verifica che l'aggiunta di una bici senza immagine non usi l'archivio.
+     */
+    @Test
+    void testAddBike_WithoutImage() throws IOException {
+        Bike bike = new RoadBike("BrandB", "L", "Road bike", 600.0, "City2", user);
+        when(bikeRepository.save(bike)).thenReturn(bike);
+
+        bikeService.addBike(bike, null);
 
-        // Verifica la conversione in Base64
-        assertNotNull(bike1.getImagePath()); // Controlla che l'immagine convertita non sia null
-        assertTrue(bike1.getImagePath().startsWith("data:image/jpeg;base64,")); // Controlla che inizi con il prefisso Base64
+        verify(bikeRepository, times(1)).save(bike); // Verifica il salvataggio della bici
+        verifyNoInteractions(imageStore, imageProcessingService); // Verifica che l'archivio non venga usato
     }
 }
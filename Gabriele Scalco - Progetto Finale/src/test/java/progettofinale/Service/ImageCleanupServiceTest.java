@@ -0,0 +1,80 @@
+package progettofinale.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Service.ImageStore.ImageStore;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageCleanupServiceTest {
+
+    @Mock
+    private BikeRepository bikeRepository;
+
+    @Mock
+    private ImageStore imageStore;
+
+    private ImageCleanupService imageCleanupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        imageCleanupService = new ImageCleanupService(bikeRepository, imageStore, 24);
+    }
+
+    /**
+     * Verifica che vengano eliminati solo i file non usati da nessuna bici.
+     */
+    @Test
+    void testDeleteUnreferencedImages() throws IOException {
+        String used = "a".repeat(64);
+        String orphan = "b".repeat(64);
+        when(imageStore.findKeysStoredBefore(any(Instant.class))).thenReturn(List.of(used, orphan));
+        when(bikeRepository.findReferencedImageKeys(List.of(used, orphan))).thenReturn(List.of(used));
+        when(imageStore.deleteIfStoredBefore(eq(orphan), any(Instant.class))).thenReturn(true);
+
+        assertEquals(1, imageCleanupService.deleteUnreferencedImages()); // Verifica il numero di file eliminati
+
+        verify(imageStore).deleteIfStoredBefore(eq(orphan), any(Instant.class)); // Verifica l'eliminazione del file orfano
+        verify(imageStore, never()).deleteIfStoredBefore(eq(used), any(Instant.class)); // Verifica che il file usato resti
+    }
+
+    /**
+     * Verifica che i file vengano considerati solo se precedenti al periodo di grazia.
+     */
+    @Test
+    void testDeleteUnreferencedImages_GracePeriod() throws IOException {
+        when(imageStore.findKeysStoredBefore(any(Instant.class))).thenReturn(List.of());
+
+        assertEquals(0, imageCleanupService.deleteUnreferencedImages()); // Verifica che non venga eliminato nulla
+
+        verify(imageStore).findKeysStoredBefore(argThat(cutoff -> cutoff.isBefore(Instant.now().minusSeconds(23 * 3600)))); // Verifica il limite
+        verifyNoInteractions(bikeRepository); // Verifica che senza candidati il database non venga interrogato
+    }
+
+    /**
+     * Verifica che le chiavi vengano controllate nel database a gruppi.
+     */
+    @Test
+    void testDeleteUnreferencedImages_Batches() throws IOException {
+        List<String> keys = IntStream.range(0, ImageCleanupService.BATCH_SIZE + 1)
+                .mapToObj(i -> String.format("%064x", i))
+                .toList();
+        when(imageStore.findKeysStoredBefore(any(Instant.class))).thenReturn(keys);
+        when(bikeRepository.findReferencedImageKeys(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertEquals(0, imageCleanupService.deleteUnreferencedImages()); // Verifica che i file usati restino
+
+        verify(bikeRepository, times(2)).findReferencedImageKeys(anyList()); // Verifica le due query per 501 chiavi
+    }
+}
@@ -0,0 +1,122 @@
+package progettofinale.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Service.ImageStore.ImageStore;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ImageProcessingServiceTest {
+
+    @Mock
+    private BikeRepository bikeRepository;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @InjectMocks
+    private ImageProcessingService imageProcessingService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // Esegue l'elaborazione sul thread del test
+        ReflectionTestUtils.setField(imageProcessingService, "imageProcessingExecutor", new SyncTaskExecutor());
+    }
+
+    /**
+     * Verifica che le versioni ridotte rispettino la larghezza massima e mantengano le proporzioni.
+     */
+    @Test
+    void testScheduleRenditions_GeneratesCardAndDetail() throws IOException {
+        byte[] original = createPng(1600, 1200);
+
+        when(imageStore.store(argThat(card -> hasSize(card, 200, 150)))).thenReturn("card-key");
+        when(imageStore.store(argThat(detail -> hasSize(detail, 800, 600)))).thenReturn("detail-key");
+
+        imageProcessingService.scheduleRenditions(1L, "original-key", original);
+
+        verify(imageStore, times(2)).store(any(byte[].class)); // Verifica che entrambe le versioni vengano archiviate
+        verify(bikeRepository, times(1)).updateRenditionKeys(1L, "original-key", "card-key", "detail-key"); // Verifica il salvataggio delle chiavi
+    }
+
+    /**
+     * Verifica che un'immagine più piccola della larghezza massima non venga ingrandita.
+     */
+    @Test
+    void testResize_SmallImageNotEnlarged() throws IOException {
+        BufferedImage small = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+
+        byte[] resized = imageProcessingService.resize(small, 200);
+
+        assertTrue(hasSize(resized, 120, 80)); // Verifica che le dimensioni siano invariate
+    }
+
+    /**
+     * Verifica che un formato non leggibile non generi versioni ridotte.
+     */
+    @Test
+    void testGenerateRenditions_UnsupportedFormat() {
+        imageProcessingService.generateRenditions(1L, "original-key", "Invalid Content".getBytes());
+
+        verifyNoInteractions(bikeRepository, imageStore); // Verifica che non venga salvato nulla
+    }
+
+    /**
+     * Verifica che un'immagine che dichiara troppi pixel venga scartata senza decodificarla.
+     */
+    @Test
+    void testGenerateRenditions_TooManyPixels() throws IOException {
+        byte[] bomb = withDeclaredSize(createPng(1, 1), 50_000, 50_000);
+
+        imageProcessingService.generateRenditions(1L, "original-key", bomb);
+
+        verifyNoInteractions(bikeRepository, imageStore); // Verifica che non venga salvato nulla
+    }
+
+    // Crea un'immagine PNG delle dimensioni indicate
+    private byte[] createPng(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", output);
+        return output.toByteArray();
+    }
+
+    // Modifica le dimensioni dichiarate nell'intestazione IHDR di un PNG, ricalcolandone il CRC
+    private byte[] withDeclaredSize(byte[] png, int width, int height) {
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.putInt(16, width);
+        buffer.putInt(20, height);
+        CRC32 crc = new CRC32();
+        crc.update(png, 12, 17); // Tipo e dati del blocco IHDR
+        buffer.putInt(29, (int) crc.getValue());
+        return png;
+    }
+
+    // Verifica le dimensioni di un'immagine codificata
+    private boolean hasSize(byte[] image, int width, int height) {
+        if (image == null) {
+            return false; // Argomento null usato da Mockito durante lo stubbing
+        }
+        try {
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+            return decoded != null && decoded.getWidth() == width && decoded.getHeight() == height;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package progettofinale.Service.ImageStore;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemImageStoreTest {
+
+    @TempDir
+    Path root;
+
+    private FileSystemImageStore imageStore;
+
+    @BeforeEach
+    void setUp() {
+        imageStore = new FileSystemImageStore(root.toString());
+    }
+
+    /**
+     * Verifica che l'immagine venga salvata in una sottocartella derivata dalla chiave SHA-256.
+     */
+    @Test
+    void testStore_ShardedPath() throws IOException {
+        String key = imageStore.store("image".getBytes());
+
+        assertTrue(key.matches("[0-9a-f]{64}")); // Verifica il formato della chiave
+        Path file = root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+        assertTrue(Files.exists(file)); // Verifica la posizione del file
+        assertArrayEquals("image".getBytes(), Files.readAllBytes(file)); // Verifica il contenuto salvato
+        assertEquals(5L, imageStore.size(key)); // Verifica la dimensione del file
+    }
+
+    /**
+     * Verifica che lo stesso contenuto caricato due volte occupi un solo file.
+     */
+    @Test
+    void testStore_Deduplicates() throws IOException {
+        String first = imageStore.store("image".getBytes());
+        String second = imageStore.store("image".getBytes());
+
+        assertEquals(first, second); // Verifica che la chiave sia la stessa
+        try (Stream<Path> files = Files.walk(root)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count()); // Verifica che esista un solo file
+        }
+    }
+
+    /**
+     * Verifica che caricare di nuovo un'immagine già presente ne rinnovi la data di salvataggio.
+     */
+    @Test
+    void testStore_DeduplicateRenewsTimestamp() throws IOException {
+        String key = imageStore.store("image".getBytes());
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+        Files.setLastModifiedTime(imageStore.resolve(key), FileTime.from(old));
+
+        imageStore.store("image".getBytes());
+
+        assertTrue(Files.getLastModifiedTime(imageStore.resolve(key)).toInstant().isAfter(old)); // Verifica la data rinnovata
+    }
+
+    /**
+     * Verifica che vengano trovate ed eliminate solo le immagini salvate prima dell'istante limite.
+     */
+    @Test
+    void testDeleteIfStoredBefore() throws IOException {
+        String oldKey = imageStore.store("old".getBytes());
+        String newKey = imageStore.store("new".getBytes());
+        Files.setLastModifiedTime(imageStore.resolve(oldKey), FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        Instant cutoff = Instant.now().minus(Duration.ofDays(1));
+
+        assertEquals(List.of(oldKey), imageStore.findKeysStoredBefore(cutoff)); // Verifica che venga trovata solo l'immagine vecchia
+        assertFalse(imageStore.deleteIfStoredBefore(newKey, cutoff)); // Verifica che l'immagine recente resti
+        assertTrue(imageStore.deleteIfStoredBefore(oldKey, cutoff)); // Verifica l'eliminazione dell'immagine vecchia
+        assertFalse(Files.exists(imageStore.resolve(oldKey))); // Verifica che il file non esista più
+        assertFalse(imageStore.deleteIfStoredBefore(oldKey, cutoff)); // Verifica che un file già eliminato venga ignorato
+    }
+
+    /**
+     * Verifica che il contenuto venga copiato per intero sullo stream di destinazione.
+     */
+    @Test
+    void testTransferTo() throws IOException {
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        String key = imageStore.store(content);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        imageStore.transferTo(key, output);
+
+        assertArrayEquals(content, output.toByteArray()); // Verifica il contenuto trasmesso
+    }
+
+    /**
+     * Verifica che una chiave non valida non possa uscire dalla cartella dell'archivio.
+     */
+    @Test
+    void testResolve_InvalidKey() {
+        assertThrows(IllegalArgumentException.class, () -> imageStore.size("../../etc/passwd")); // Verifica il rifiuto del percorso
+        assertThrows(IllegalArgumentException.class, () -> imageStore.transferTo(null, new ByteArrayOutputStream())); // Verifica il rifiuto della chiave nulla
+    }
+}
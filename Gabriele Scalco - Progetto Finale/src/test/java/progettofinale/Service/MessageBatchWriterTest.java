@@ -0,0 +1,189 @@
+package progettofinale.Service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import progettofinale.Model.Message;
+import progettofinale.Model.User;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageBatchWriterTest {
+
+    @Mock
+    private MessageService messageService;
+
+    private MessageBatchWriter messageBatchWriter;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(messageService.createMessage(anyLong(), anyLong(), anyLong(), anyString()))
+                .thenAnswer(invocation -> new Message(new User(), new User(), null, invocation.getArgument(3)));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (messageBatchWriter != null) {
+            messageBatchWriter.stop();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Verifica che, se il salvataggio in gruppo è disabilitato, il messaggio venga salvato subito.
+     */
+    @Test
+    void testSubmit_Disabled() throws Exception {
+        Message saved = new Message();
+        when(messageService.saveMessage(any(Message.class))).thenReturn(saved);
+        messageBatchWriter = create(false, 10, 1000, 10);
+
+        CompletableFuture<Message> result = messageBatchWriter.submit(1L, 2L, 3L, "Ciao");
+
+        assertTrue(result.isDone()); // Verifica che il messaggio sia già salvato
+        assertSame(saved, result.get()); // Controlla il messaggio salvato
+        verify(messageService, never()).saveMessages(anyList()); // Verifica che non venga usata la coda
+    }
+
+    /**
+     * Verifica che i messaggi inviati insieme vengano salvati in un unico gruppo.
+     */
+    @Test
+    void testSubmit_WritesBatch() throws Exception {
+        when(messageService.saveMessages(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        messageBatchWriter = create(true, 3, 1000, 10);
+
+        CompletableFuture<Message> first = messageBatchWriter.submit(1L, 2L, 3L, "Uno");
+        CompletableFuture<Message> second = messageBatchWriter.submit(1L, 2L, 3L, "Due");
+        CompletableFuture<Message> third = messageBatchWriter.submit(1L, 2L, 3L, "Tre");
+
+        assertEquals("Uno", first.get(5, TimeUnit.SECONDS).getContent()); // Controlla il primo messaggio
+        assertEquals("Due", second.get(5, TimeUnit.SECONDS).getContent()); // Controlla il secondo messaggio
+        assertEquals("Tre", third.get(5, TimeUnit.SECONDS).getContent()); // Controlla il terzo messaggio
+        verify(messageService, times(1)).saveMessages(argThat(messages -> messages.size() == 3)); // Un solo gruppo
+        verify(messageService, never()).saveMessage(any(Message.class)); // Nessun salvataggio singolo
+    }
+
+    /**
+     * Verifica che un gruppo incompleto venga salvato dopo il ritardo massimo.
+     */
+    @Test
+    void testSubmit_WritesAfterDelay() throws Exception {
+        when(messageService.saveMessages(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        messageBatchWriter = create(true, 50, 5, 10);
+
+        CompletableFuture<Message> result = messageBatchWriter.submit(1L, 2L, 3L, "Ciao");
+
+        assertEquals("Ciao", result.get(5, TimeUnit.SECONDS).getContent()); // Verifica che il messaggio venga salvato da solo
+    }
+
+    /**
+     * Verifica che, se il gruppo fallisce, i messaggi vengano riprovati uno alla volta
+     * e che fallisca solo quello non valido.
+     */
+    @Test
+    void testSubmit_BatchFailureRetriesEachMessage() throws Exception {
+        when(messageService.saveMessages(anyList())).thenAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(message -> "Errore".equals(message.getContent()))) {
+                throw new IllegalArgumentException("Messaggio non valido");
+            }
+            return messages;
+        });
+        messageBatchWriter = create(true, 2, 1000, 10);
+
+        CompletableFuture<Message> valid = messageBatchWriter.submit(1L, 2L, 3L, "Ciao");
+        CompletableFuture<Message> invalid = messageBatchWriter.submit(1L, 2L, 3L, "Errore");
+
+        assertEquals("Ciao", valid.get(5, TimeUnit.SECONDS).getContent()); // Il messaggio valido viene salvato
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> invalid.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause()); // Solo il messaggio non valido fallisce
+        verify(messageService, times(3)).saveMessages(anyList()); // Il gruppo e poi un tentativo per messaggio
+    }
+
+    /**
+     * Verifica che un messaggio venga rifiutato con errore 503 quando la coda è piena.
+     */
+    @Test
+    void testSubmit_QueueFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageService.saveMessages(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(); // Tiene occupato il thread di scrittura
+            return invocation.getArgument(0);
+        });
+        messageBatchWriter = create(true, 1, 1000, 1);
+
+        CompletableFuture<Message> first = messageBatchWriter.submit(1L, 2L, 3L, "Uno");
+        assertTrue(writing.await(5, TimeUnit.SECONDS)); // Il primo messaggio è in scrittura
+        messageBatchWriter.submit(1L, 2L, 3L, "Due"); // Il secondo occupa l'unico posto in coda
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> messageBatchWriter.submit(1L, 2L, 3L, "Tre"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode()); // Verifica l'errore 503
+
+        release.countDown();
+        assertEquals("Uno", first.get(5, TimeUnit.SECONDS).getContent()); // Il primo messaggio viene comunque salvato
+    }
+
+    /**
+     * Verifica che dopo l'arresto i messaggi vengano rifiutati con errore 503 invece di restare in coda senza risposta,
+     * e che quelli già in coda vengano salvati dall'arresto.
+     */
+    @Test
+    void testSubmit_AfterStop() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageService.saveMessages(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(); // Tiene occupato il thread di scrittura
+            return invocation.getArgument(0);
+        });
+        messageBatchWriter = create(true, 1, 1000, 10);
+        CompletableFuture<Message> first = messageBatchWriter.submit(1L, 2L, 3L, "Uno");
+        assertTrue(writing.await(5, TimeUnit.SECONDS)); // Il primo messaggio è in scrittura
+        CompletableFuture<Message> queued = messageBatchWriter.submit(1L, 2L, 3L, "Due"); // Resta in coda
+
+        release.countDown();
+        messageBatchWriter.stop();
+
+        assertEquals("Uno", first.get(5, TimeUnit.SECONDS).getContent()); // Il gruppo in scrittura viene completato
+        assertEquals("Due", queued.get(5, TimeUnit.SECONDS).getContent()); // Il messaggio in coda viene salvato dall'arresto
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> messageBatchWriter.submit(1L, 2L, 3L, "Tre"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode()); // Verifica l'errore 503
+    }
+
+    // Crea il service con la configurazione indicata e avvia il thread di scrittura
+    private MessageBatchWriter create(boolean enabled, int batchSize, long maxDelayMs, int queueCapacity) {
+        MessageBatchWriter writer = new MessageBatchWriter(enabled, batchSize, maxDelayMs, queueCapacity);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        ReflectionTestUtils.setField(writer, "messageService", messageService);
+        ReflectionTestUtils.setField(writer, "messageBatchExecutor", executor);
+        writer.start();
+        return writer;
+    }
+}
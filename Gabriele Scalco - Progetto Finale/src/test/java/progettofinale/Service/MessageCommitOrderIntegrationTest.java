@@ -0,0 +1,99 @@
+package progettofinale.Service;
+
+import progettofinale.ProgettofinaleApplication;
+import progettofinale.Model.Message;
+import progettofinale.Model.MessageChanges;
+import progettofinale.Model.MessageEvent;
+import progettofinale.Model.User;
+import progettofinale.Model.Bikemodel.Bike;
+import progettofinale.Model.Bikemodel.MountainBike;
+import progettofinale.Repository.BikeRepository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di integrazione della sincronizzazione dell'inbox quando due messaggi vengono confermati
+ * in ordine diverso da quello dei loro ID: il cursore non deve superare il messaggio confermato per ultimo.
+ */
+@SpringBootTest(classes = ProgettofinaleApplication.class,
+                properties = "spring.datasource.url=jdbc:h2:mem:commitorderdb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH")
+@ActiveProfiles("test")
+class MessageCommitOrderIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Verifica che un messaggio con ID minore, confermato dopo uno con ID maggiore, venga comunque restituito.
+     */
+    @Test
+    void testGetChangesSince_OutOfOrderCommits() throws Exception {
+        User seller = userService.addUser(new User("seller-commit-order@example.com", "password", "Seller"));
+        User firstBuyer = userService.addUser(new User("first-commit-order@example.com", "password", "First"));
+        User secondBuyer = userService.addUser(new User("second-commit-order@example.com", "password", "Second"));
+        Bike bike = bikeRepository.save(new MountainBike("BrandA", "M", "Test bike", 300.0, "CityA", seller));
+        // Crea le due conversazioni, così i due messaggi aggiornano righe diverse
+        messageService.sendMessage(firstBuyer.getId(), seller.getId(), bike.getId(), "warm-up");
+        messageService.sendMessage(secondBuyer.getId(), seller.getId(), bike.getId(), "warm-up");
+        long cursor = messageService.getChangesSince(seller.getId(), null).getCursor();
+
+        CountDownLatch firstSaved = new CountDownLatch(1);
+        CountDownLatch commitFirst = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Il primo messaggio riceve l'ID minore ma resta senza commit
+            Future<Message> first = executor.submit(() -> transaction.execute(status -> {
+                Message message = messageService.sendMessage(firstBuyer.getId(), seller.getId(), bike.getId(), "Primo");
+                firstSaved.countDown();
+                try {
+                    commitFirst.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return message;
+            }));
+            assertTrue(firstSaved.await(10, TimeUnit.SECONDS)); // Verifica che il primo messaggio sia stato salvato
+
+            // Il secondo messaggio riceve l'ID maggiore e viene confermato subito
+            Message second = messageService.sendMessage(secondBuyer.getId(), seller.getId(), bike.getId(), "Secondo");
+            MessageChanges beforeFirstCommit = messageService.getChangesSince(seller.getId(), cursor);
+
+            commitFirst.countDown();
+            Message firstMessage = first.get(10, TimeUnit.SECONDS);
+            assertTrue(firstMessage.getId() < second.getId()); // Verifica che gli ID siano in ordine inverso ai commit
+            assertTrue(beforeFirstCommit.getMessages().isEmpty()); // Il secondo messaggio attende il primo
+            assertTrue(beforeFirstCommit.getCursor() < firstMessage.getId()); // Il cursore non supera il primo messaggio
+
+            MessageChanges afterFirstCommit = messageService.getChangesSince(seller.getId(), beforeFirstCommit.getCursor());
+            List<Long> ids = afterFirstCommit.getMessages().stream().map(MessageEvent::getId).toList();
+            assertEquals(List.of(firstMessage.getId(), second.getId()), ids); // Verifica che nessun messaggio venga saltato
+        } finally {
+            commitFirst.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package progettofinale.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import progettofinale.Model.ConversationSummary;
+import progettofinale.Model.MessageEvent;
+import progettofinale.Repository.ConversationRepository;
+import progettofinale.Repository.MessageRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageSearchServiceTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @InjectMocks
+    private MessageSearchService messageSearchService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Verifica che il testo venga diviso in parole minuscole, senza accenti e senza parole troppo corte.
+     */
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("offro", "400", "per", "la", "bianchi", "perche", "no"),
+                new ArrayList<>(MessageSearchService.tokenize("Offro 400€ per la Bianchi, perché no? A"))); // Controlla le parole
+        assertTrue(MessageSearchService.tokenize(null).isEmpty()); // Nessuna parola per un testo nullo
+    }
+
+    /**
+     * Verifica che vengano trovate solo le conversazioni con un messaggio che contiene tutte le parole cercate.
+     */
+    @Test
+    void testSearch_AllWords() {
+        messageSearchService.indexAfterCommit(event(1L, 7L, 2L, 1L, "Offro 400 per la Bianchi"));
+        messageSearchService.indexAfterCommit(event(2L, 8L, 3L, 1L, "Offro 300"));
+        messageSearchService.indexAfterCommit(event(3L, 9L, 4L, 1L, "La Bianchi è ancora disponibile?"));
+        List<ConversationSummary> found = List.of(summary());
+        when(conversationRepository.findSummariesByUserIdAndIds(1L, Set.of(7L))).thenReturn(found);
+
+        List<ConversationSummary> result = messageSearchService.search(1L, "offro BIANCHI");
+
+        assertEquals(found, result); // Controlla i riepiloghi restituiti
+        verify(conversationRepository).findSummariesByUserIdAndIds(1L, Set.of(7L)); // Solo la conversazione con entrambe le parole
+    }
+
+    /**
+     * Verifica che il messaggio venga indicizzato sia per il mittente sia per il destinatario, e per nessun altro.
+     */
+    @Test
+    void testSearch_ScopedToParticipants() {
+        messageSearchService.indexAfterCommit(event(1L, 7L, 2L, 1L, "Offro 400"));
+
+        messageSearchService.search(2L, "400");
+        List<ConversationSummary> other = messageSearchService.search(3L, "400");
+
+        verify(conversationRepository).findSummariesByUserIdAndIds(2L, Set.of(7L)); // Il mittente trova la conversazione
+        assertTrue(other.isEmpty()); // Un altro utente non trova nulla
+        verify(conversationRepository, never()).findSummariesByUserIdAndIds(eq(3L), anyCollection()); // Senza leggere il database
+    }
+
+    /**
+     * Verifica che una ricerca senza corrispondenze o senza parole non legga il database.
+     */
+    @Test
+    void testSearch_NoMatch() {
+        messageSearchService.indexAfterCommit(event(1L, 7L, 2L, 1L, "Offro 400"));
+
+        assertTrue(messageSearchService.search(1L, "500").isEmpty()); // Parola assente
+        assertTrue(messageSearchService.search(1L, "offro 500").isEmpty()); // Una delle parole è assente
+        assertTrue(messageSearchService.search(1L, " ? ").isEmpty()); // Nessuna parola
+        verifyNoInteractions(conversationRepository); // Verifica che il database non venga letto
+    }
+
+    /**
+     * Verifica che vengano restituite al massimo MAX_RESULTS conversazioni, partendo dai messaggi più recenti.
+     */
+    @Test
+    void testSearch_MostRecentFirst() {
+        int conversations = MessageSearchService.MAX_RESULTS + 5;
+        for (long id = 1; id <= conversations; id++) {
+            messageSearchService.indexAfterCommit(event(id, 100L + id, 2L, 1L, "Ciao"));
+        }
+
+        messageSearchService.search(1L, "ciao");
+
+        verify(conversationRepository).findSummariesByUserIdAndIds(eq(1L), argThat(ids ->
+                ids.size() == MessageSearchService.MAX_RESULTS
+                        && ids.contains(100L + conversations) && !ids.contains(101L))); // Le conversazioni più recenti
+    }
+
+    /**
+     * Verifica che i messaggi delle conversazioni eliminate escano dall'indice di entrambi i partecipanti.
+     */
+    @Test
+    void testRemoveConversationsAfterCommit() {
+        messageSearchService.indexAfterCommit(event(1L, 7L, 2L, 1L, "Offro 400"));
+        messageSearchService.indexAfterCommit(event(2L, 8L, 2L, 1L, "Offro 500"));
+
+        messageSearchService.removeConversationsAfterCommit(List.of(1L, 2L), List.of(7L));
+
+        assertTrue(messageSearchService.search(1L, "400").isEmpty()); // Il destinatario non trova più il messaggio
+        assertTrue(messageSearchService.search(2L, "400").isEmpty()); // Nemmeno il mittente
+        messageSearchService.search(1L, "offro");
+        verify(conversationRepository).findSummariesByUserIdAndIds(1L, Set.of(8L)); // L'altra conversazione resta nell'indice
+    }
+
+    /**
+     * Verifica che la costruzione dell'indice legga tutti i messaggi a blocchi e ignori quelli già indicizzati.
+     */
+    @Test
+    void testRebuildIndex() {
+        List<MessageEvent> firstPage = new ArrayList<>();
+        for (long id = 1; id <= MessageSearchService.REBUILD_PAGE_SIZE; id++) {
+            firstPage.add(event(id, 7L, 2L, 1L, "Messaggio"));
+        }
+        MessageEvent last = event(MessageSearchService.REBUILD_PAGE_SIZE + 1L, 8L, 2L, 1L, "Offro 400");
+        when(messageRepository.findAllAfter(0L, PageRequest.of(0, MessageSearchService.REBUILD_PAGE_SIZE))).thenReturn(firstPage);
+        when(messageRepository.findAllAfter((long) MessageSearchService.REBUILD_PAGE_SIZE,
+                PageRequest.of(0, MessageSearchService.REBUILD_PAGE_SIZE))).thenReturn(List.of(last));
+        messageSearchService.indexAfterCommit(last); // Già indicizzato durante la costruzione
+
+        messageSearchService.rebuildIndex();
+        messageSearchService.search(1L, "400");
+
+        verify(messageRepository, times(2)).findAllAfter(anyLong(), any()); // Due blocchi
+        verify(conversationRepository).findSummariesByUserIdAndIds(1L, Set.of(8L)); // Il messaggio dell'ultimo blocco viene trovato
+    }
+
+    private static MessageEvent event(Long id, Long conversationId, Long senderId, Long receiverId, String content) {
+        return new MessageEvent(id, conversationId, senderId, receiverId, 5L, content, LocalDateTime.now());
+    }
+
+    private static ConversationSummary summary() {
+        return new ConversationSummary(2L, "Seller", 5L, "Bianchi", "Offro 400 per la Bianchi", LocalDateTime.now(), 1, 0);
+    }
+}
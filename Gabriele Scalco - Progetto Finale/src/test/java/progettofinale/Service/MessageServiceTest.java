@@ -6,15 +6,24 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import progettofinale.Model.*;
 import progettofinale.Model.Bikemodel.*;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Repository.ConversationRepository;
 import progettofinale.Repository.MessageRepository;
-import progettofinale.Util.ConversationUtil;
+import progettofinale.Repository.UserRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,6 +34,27 @@ class MessageServiceTest {
     @Mock
     private MessageRepository messageRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private BikeRepository bikeRepository;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private MessageStreamService messageStreamService;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    @Mock
+    private MessageSearchService messageSearchService;
+
+    @Spy
+    private MessageCommitTracker messageCommitTracker = new MessageCommitTracker();
+
     @InjectMocks
     private MessageService messageService;
 
@@ -37,6 +67,7 @@ class MessageServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(messageCommitTracker, "messageRepository", messageRepository);
 
         sender = mock(User.class);
         when(sender.getId()).thenReturn(1L);
@@ -52,6 +83,14 @@ class MessageServiceTest {
 
         message2 = new Message(receiver, sender, bike, "Hi there");
         message2.setTimestamp(LocalDateTime.now());
+
+        // Simula gli ID assegnati dalla sequenza al salvataggio
+        ReflectionTestUtils.setField(message1, "id", 10L);
+        ReflectionTestUtils.setField(message2, "id", 11L);
+
+        // La bici appartiene al destinatario: il mittente è l'acquirente
+        when(bikeRepository.findOwnerIdById(1L)).thenReturn(2L);
+        when(conversationRepository.findIdByParticipants(1L, 1L, 2L)).thenReturn(7L);
     }
 
     /**
@@ -73,39 +112,282 @@ class MessageServiceTest {
         ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
         verify(messageRepository).save(captor.capture());
         assertEquals(message1.getContent(), captor.getValue().getContent()); // Controlla che il contenuto corrisponda
+
+        // Verifica che la conversazione venga creata se assente e aggiornata nella stessa transazione
+        verify(conversationRepository).insertIfAbsent(1L, 1L, 2L); // Bici, acquirente e venditore
+        verify(conversationRepository).getReferenceById(7L); // Il messaggio viene collegato alla conversazione
+        verify(conversationRepository).recordMessages(eq(7L), any(), any(LocalDateTime.class), eq(1L), eq(0), eq(1)); // Un non letto per il venditore
+
+        // Verifica che il messaggio venga inviato in tempo reale al destinatario
+        ArgumentCaptor<MessageEvent> eventCaptor = ArgumentCaptor.forClass(MessageEvent.class);
+        verify(messageStreamService).publishAfterCommit(eventCaptor.capture());
+        assertEquals(2L, eventCaptor.getValue().getReceiverId()); // Controlla il destinatario dell'evento
+        assertEquals("Hello", eventCaptor.getValue().getContent()); // Controlla il contenuto dell'evento
+        verify(unreadCounterService).incrementAfterCommit(2L); // Verifica che il destinatario abbia un non letto in più
+        verify(messageSearchService).indexAfterCommit(eventCaptor.getValue()); // Verifica che il messaggio venga indicizzato per la ricerca
+    }
+
+    /**
+     * Verifica che la risposta del proprietario della bici venga registrata nella stessa conversazione
+     * e conteggiata tra i non letti dell'acquirente.
+     */
+    @Test
+    void testSaveMessage_ReplyFromSeller() {
+        when(messageRepository.save(any(Message.class))).thenReturn(message2);
+
+        messageService.saveMessage(message2);
+
+        verify(conversationRepository).insertIfAbsent(1L, 1L, 2L); // Stessa conversazione del primo messaggio
+        verify(conversationRepository).recordMessages(eq(7L), any(), any(LocalDateTime.class), eq(1L), eq(1), eq(0)); // Un non letto per l'acquirente
+    }
+
+    /**
+     * Verifica che un gruppo di messaggi della stessa conversazione venga salvato con un solo flush
+     * e una sola UPDATE della conversazione.
+     */
+    @Test
+    void testSaveMessages_SameConversation() {
+        when(messageRepository.save(message1)).thenReturn(message1);
+        when(messageRepository.save(message2)).thenReturn(message2);
+
+        List<Message> saved = messageService.saveMessages(List.of(message1, message2));
+
+        assertEquals(List.of(message1, message2), saved); // Controlla i messaggi salvati, nell'ordine di invio
+        verify(conversationRepository, times(1)).insertIfAbsent(1L, 1L, 2L); // La conversazione viene creata una sola volta
+        verify(bikeRepository, times(1)).findOwnerIdById(1L); // Il proprietario della bici viene letto una sola volta
+        verify(messageRepository, times(1)).flush(); // Gli INSERT partono insieme
+        verify(conversationRepository).recordMessages(7L, 11L, message2.getTimestamp(), 2L, 1, 1); // Un'unica UPDATE con il messaggio più recente
+        verify(messageStreamService, times(2)).publishAfterCommit(any(MessageEvent.class)); // Entrambi i messaggi vengono inviati
     }
 
     /**
-     * Verifica che le conversazioni di un utente vengano recuperate correttamente.
+     * Verifica che un gruppo con un messaggio incompleto venga rifiutato senza salvare nulla.
      */
     @Test
-    void testGetConversations() {
-        Long userId = sender.getId();
-        List<Message> messages = Arrays.asList(message1, message2);
+    void testSaveMessages_IncompleteMessage() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> messageService.saveMessages(List.of(message1, new Message())));
 
-        when(messageRepository.findAllByUserId(userId)).thenReturn(messages);
+        assertEquals("Messaggio incompleto non valido", exception.getMessage()); // Controlla il messaggio dell'eccezione
+        verifyNoInteractions(messageRepository, conversationRepository); // Verifica che nulla venga salvato
+    }
 
-        List<Conversation> expectedConversations = ConversationUtil.groupMessagesByConversation(messages, userId);
-        List<Conversation> result = messageService.getConversations(userId);
+    /**
+     * Verifica che l'invio di un messaggio usi solo riferimenti alle entità, senza caricarle.
+     */
+    @Test
+    void testSendMessage() {
+        when(userRepository.existsById(2L)).thenReturn(true);
+        when(bikeRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.getReferenceById(1L)).thenReturn(sender);
+        when(userRepository.getReferenceById(2L)).thenReturn(receiver);
+        when(bikeRepository.getReferenceById(1L)).thenReturn(bike);
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            ReflectionTestUtils.setField(message, "id", 12L); // ID assegnato dalla sequenza
+            return message;
+        });
 
-        assertEquals(expectedConversations.size(), result.size()); // Controlla il numero di conversazioni
-        assertEquals(expectedConversations, result); // Controlla il contenuto delle conversazioni
+        Message savedMessage = messageService.sendMessage(1L, 2L, 1L, "Hello");
 
-        verify(messageRepository, times(1)).findAllByUserId(userId); // Verifica che il metodo sia stato chiamato
+        assertEquals(sender, savedMessage.getSender()); // Controlla il mittente
+        assertEquals(receiver, savedMessage.getReceiver()); // Controlla il destinatario
+        assertEquals(bike, savedMessage.getBike()); // Controlla la bici
+        assertEquals("Hello", savedMessage.getContent()); // Controlla il contenuto
+        assertNotNull(savedMessage.getTimestamp()); // Controlla che il timestamp sia settato
+        verify(userRepository, never()).findById(anyLong()); // Verifica che gli utenti non vengano caricati
+        verify(bikeRepository, never()).findById(anyLong()); // Verifica che la bici non venga caricata
     }
 
     /**
-     * Verifica il comportamento in assenza di messaggi per un utente.
+     * Verifica che l'invio di un messaggio per una bici inesistente generi un errore 404.
      */
     @Test
-    void testGetConversations_NoMessages() {
-        Long userId = sender.getId();
-        when(messageRepository.findAllByUserId(userId)).thenReturn(List.of());
+    void testSendMessage_BikeNotFound() {
+        when(userRepository.existsById(2L)).thenReturn(true);
+        when(bikeRepository.existsById(1L)).thenReturn(false);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> messageService.sendMessage(1L, 2L, 1L, "Hello")); // Verifica l'eccezione
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode()); // Verifica lo stato
+        verify(messageRepository, never()).save(any(Message.class)); // Verifica che il messaggio non venga salvato
+    }
 
-        List<Conversation> result = messageService.getConversations(userId);
+    /**
+     * Verifica che l'invio di un messaggio a un destinatario inesistente generi un errore 404.
+     */
+    @Test
+    void testSendMessage_ReceiverNotFound() {
+        when(userRepository.existsById(2L)).thenReturn(false);
 
-        assertTrue(result.isEmpty()); // Controlla che non ci siano conversazioni
-        verify(messageRepository, times(1)).findAllByUserId(userId); // Verifica la chiamata al repository
+        assertThrows(ResponseStatusException.class,
+                () -> messageService.sendMessage(1L, 2L, 1L, "Hello")); // Verifica l'eccezione
+        verifyNoInteractions(bikeRepository, messageRepository); // Verifica che non venga eseguita nessun'altra query
+    }
+
+    /**
+     * Verifica che i riepiloghi delle conversazioni vengano letti dalle conversazioni persistenti.
+     */
+    @Test
+    void testGetConversationSummaries() {
+        List<ConversationSummary> summaries = List.of(
+            new ConversationSummary(2L, "Receiver", 1L, "BrandA", "Ok", LocalDateTime.now(), 5, 2));
+        when(conversationRepository.findSummariesByUserId(1L)).thenReturn(summaries);
+
+        List<ConversationSummary> result = messageService.getConversationSummaries(1L);
+
+        assertEquals(summaries, result); // Controlla i riepiloghi restituiti
+        verifyNoInteractions(messageRepository); // Verifica che i messaggi non vengano letti
+    }
+
+    /**
+     * Verifica che all'apertura di una conversazione vengano letti solo i messaggi più recenti,
+     * restituiti in ordine cronologico, e che i non letti vengano azzerati.
+     */
+    @Test
+    void testGetConversationPage_Latest() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<MessageView> newestFirst = new ArrayList<>();
+        for (long id = MessageService.MESSAGE_PAGE_SIZE + 1; id >= 1; id--) {
+            newestFirst.add(new MessageView(id, 2L, "Messaggio " + id, now.plusMinutes(id)));
+        }
+        when(conversationRepository.findIdForUser(1L, 2L, 1L)).thenReturn(Optional.of(7L));
+        when(messageRepository.findLatestByConversationId(7L, PageRequest.of(0, MessageService.MESSAGE_PAGE_SIZE + 1))).thenReturn(newestFirst);
+
+        MessagePage page = messageService.getConversationPage(1L, 2L, 1L, null);
+
+        assertEquals(MessageService.MESSAGE_PAGE_SIZE, page.getMessages().size()); // Controlla la dimensione della pagina
+        assertEquals(2L, page.getMessages().get(0).getId()); // Controlla che il primo messaggio sia il più vecchio della pagina
+        assertEquals(Long.valueOf(MessageService.MESSAGE_PAGE_SIZE + 1), page.getMessages().get(page.getMessages().size() - 1).getId()); // Controlla che l'ultimo sia il più recente
+        assertEquals(now.plusMinutes(2) + "_2", page.getOlderCursor()); // Controlla il cursore dei messaggi precedenti
+        verify(conversationRepository).markRead(7L, 1L); // Verifica che i non letti dell'utente vengano azzerati
+        verify(unreadCounterService).evictAfterCommit(1L); // Verifica che il totale in memoria venga riletto
+    }
+
+    /**
+     * Verifica che i messaggi precedenti vengano letti a partire dal cursore, senza cursore se non ce ne sono altri.
+     */
+    @Test
+    void testGetConversationPage_Older() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<MessageView> older = List.of(new MessageView(5L, 1L, "Ciao", timestamp.minusMinutes(1)));
+        when(conversationRepository.findIdForUser(1L, 2L, 1L)).thenReturn(Optional.of(7L));
+        when(messageRepository.findOlderByConversationId(eq(7L), eq(timestamp), eq(6L), any(Pageable.class))).thenReturn(older);
+
+        MessagePage page = messageService.getConversationPage(1L, 2L, 1L, timestamp + "_6");
+
+        assertEquals(older, page.getMessages()); // Controlla i messaggi restituiti
+        assertNull(page.getOlderCursor()); // Controlla che non ci siano altri messaggi precedenti
+        verify(conversationRepository, never()).markRead(anyLong(), anyLong()); // I non letti vengono azzerati solo sulla pagina più recente
+        verifyNoInteractions(unreadCounterService); // Il totale in memoria resta valido
+    }
+
+    /**
+     * Verifica che un cursore non valido generi un errore 400.
+     */
+    @Test
+    void testGetConversationPage_InvalidCursor() {
+        when(conversationRepository.findIdForUser(1L, 2L, 1L)).thenReturn(Optional.of(7L));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> messageService.getConversationPage(1L, 2L, 1L, "not-a-cursor")); // Verifica l'eccezione
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode()); // Verifica lo stato
+    }
+
+    /**
+     * Verifica il comportamento all'apertura di una conversazione inesistente.
+     */
+    @Test
+    void testGetConversationPage_NoConversation() {
+        when(conversationRepository.findIdForUser(1L, 2L, 1L)).thenReturn(Optional.empty());
+
+        MessagePage page = messageService.getConversationPage(1L, 2L, 1L, null);
+
+        assertTrue(page.getMessages().isEmpty()); // Controlla che non ci siano messaggi
+        assertNull(page.getOlderCursor()); // Controlla che non ci sia un cursore
+        verifyNoInteractions(messageRepository); // Verifica che nessun messaggio venga letto
+        verify(conversationRepository, never()).markRead(anyLong(), anyLong()); // Verifica che nulla venga aggiornato
+    }
+
+    /**
+     * Verifica che senza cursore venga restituito solo il cursore corrente.
+     */
+    @Test
+    void testGetChangesSince_NoCursor() {
+        when(messageRepository.findMaxId()).thenReturn(100L);
+        when(messageRepository.findMaxIdByUserId(1L)).thenReturn(42L);
+
+        MessageChanges changes = messageService.getChangesSince(1L, null);
+
+        assertTrue(changes.getMessages().isEmpty()); // Controlla che non vengano restituiti messaggi
+        assertEquals(42L, changes.getCursor()); // Controlla il cursore corrente
+        verifyNoInteractions(conversationRepository); // Verifica che le conversazioni non vengano lette
+    }
+
+    /**
+     * Verifica che una richiesta senza novità esegua una sola query e restituisca lo stesso cursore.
+     */
+    @Test
+    void testGetChangesSince_NothingNew() {
+        when(messageRepository.findMaxId()).thenReturn(100L);
+        when(messageRepository.findChangesSince(eq(1L), eq(42L), eq(100L), any(Pageable.class))).thenReturn(List.of());
+
+        MessageChanges changes = messageService.getChangesSince(1L, 42L);
+
+        assertTrue(changes.getMessages().isEmpty()); // Controlla che non ci siano messaggi
+        assertTrue(changes.getConversations().isEmpty()); // Controlla che non ci siano conversazioni
+        assertEquals(42L, changes.getCursor()); // Controlla che il cursore non cambi
+        assertFalse(changes.isHasMore()); // Controlla che non ci siano altre modifiche
+        verifyNoInteractions(conversationRepository); // Verifica che le conversazioni non vengano lette
+    }
+
+    /**
+     * Verifica che vengano restituiti i nuovi messaggi, i riepiloghi delle sole conversazioni modificate
+     * e il cursore dell'ultimo messaggio.
+     */
+    @Test
+    void testGetChangesSince_NewMessages() {
+        List<MessageEvent> messages = List.of(
+            new MessageEvent(43L, 7L, 2L, 1L, 1L, "Ciao", LocalDateTime.now()),
+            new MessageEvent(44L, 7L, 1L, 2L, 1L, "Ok", LocalDateTime.now()));
+        List<ConversationSummary> summaries = List.of(
+            new ConversationSummary(2L, "Receiver", 1L, "BrandA", "Ok", LocalDateTime.now(), 2, 0));
+        when(messageRepository.findMaxId()).thenReturn(100L);
+        when(messageRepository.findChangesSince(1L, 42L, 100L, PageRequest.of(0, MessageService.CHANGES_LIMIT + 1))).thenReturn(messages);
+        when(conversationRepository.findSummariesByUserIdAndIds(eq(1L), anyCollection())).thenReturn(summaries);
+
+        MessageChanges changes = messageService.getChangesSince(1L, 42L);
+
+        assertEquals(messages, changes.getMessages()); // Controlla i nuovi messaggi
+        assertEquals(summaries, changes.getConversations()); // Controlla i riepiloghi aggiornati
+        assertEquals(44L, changes.getCursor()); // Controlla il nuovo cursore
+        verify(conversationRepository).findSummariesByUserIdAndIds(eq(1L),
+                argThat(ids -> ids.size() == 1 && ids.contains(7L))); // Verifica che venga letta solo la conversazione modificata
+    }
+
+    /**
+     * Verifica che il cursore non superi un messaggio salvato ma non ancora confermato.
+     */
+    @Test
+    void testGetChangesSince_StopsBelowMessageInFlight() {
+        doReturn(43L).when(messageCommitTracker).commitMark(); // Il messaggio 44 non è ancora confermato
+        when(messageRepository.findMaxIdByUserId(1L)).thenReturn(45L);
+        when(messageRepository.findChangesSince(1L, 42L, 43L, PageRequest.of(0, MessageService.CHANGES_LIMIT + 1)))
+                .thenReturn(List.of(new MessageEvent(43L, 7L, 2L, 1L, 1L, "Ciao", LocalDateTime.now())));
+
+        assertEquals(43L, messageService.getChangesSince(1L, null).getCursor()); // Il cursore iniziale si ferma al limite
+        assertEquals(43L, messageService.getChangesSince(1L, 42L).getCursor()); // Vengono letti solo i messaggi fino al limite
+    }
+
+    /**
+     * Verifica che il numero di non letti venga letto dal contatore in memoria.
+     */
+    @Test
+    void testGetUnreadCount() {
+        when(unreadCounterService.getUnreadCount(1L)).thenReturn(3L);
+
+        assertEquals(3L, messageService.getUnreadCount(1L)); // Controlla il numero di non letti
+        verifyNoInteractions(messageRepository, conversationRepository); // Verifica che non venga letto il database
     }
 
     /**
@@ -122,21 +404,18 @@ class MessageServiceTest {
     }
 
     /**
-     * Verifica il comportamento con un messaggio incompleto.
+     * Verifica che un messaggio incompleto venga rifiutato, perché non può essere associato a una conversazione.
      */
     @Test
     void testSaveMessage_IncompleteMessage() {
         Message incompleteMessage = new Message();
         incompleteMessage.setContent("Incomplete");
 
-        when(messageRepository.save(any(Message.class))).thenReturn(incompleteMessage);
-
-        Message result = messageService.saveMessage(incompleteMessage);
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> messageService.saveMessage(incompleteMessage));
 
-        assertEquals("Incomplete", result.getContent()); // Controlla il contenuto
-        assertNull(result.getSender()); // Controlla che il mittente sia nullo
-        assertNull(result.getReceiver()); // Controlla che il destinatario sia nullo
-        assertNull(result.getBike()); // Controlla che la bici sia nulla
+        assertEquals("Messaggio incompleto non valido", exception.getMessage()); // Controlla il messaggio dell'eccezione
+        verifyNoInteractions(messageRepository, conversationRepository); // Verifica che nulla venga salvato
     }
 
     /**
@@ -152,5 +431,6 @@ class MessageServiceTest {
 
         assertEquals("Database error", exception.getMessage()); // Controlla il messaggio dell'errore
         verify(messageRepository, times(1)).save(message1); // Verifica che il metodo sia stato chiamato
+        verifyNoInteractions(messageStreamService, unreadCounterService); // Verifica che nessun messaggio venga inviato né conteggiato
     }
 }
@@ -0,0 +1,111 @@
+package progettofinale.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import progettofinale.Model.MessageEvent;
+import progettofinale.Repository.MessageRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageStreamServiceTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private MessageCommitTracker messageCommitTracker;
+
+    @InjectMocks
+    private MessageStreamService messageStreamService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Verifica che una nuova connessione venga registrata per l'utente senza leggere messaggi.
+     */
+    @Test
+    void testSubscribe() {
+        SseEmitter emitter = messageStreamService.subscribe(1L, null);
+
+        assertNotNull(emitter); // Verifica che la connessione venga creata
+        assertEquals(MessageStreamService.STREAM_TIMEOUT_MS, emitter.getTimeout()); // Verifica la durata della connessione
+        assertEquals(1, messageStreamService.getSubscriberCount(1L)); // Verifica che la connessione sia registrata
+        verifyNoInteractions(messageRepository, messageCommitTracker); // Verifica che non venga letto nessun messaggio
+    }
+
+    /**
+     * Verifica che alla riconnessione vengano letti i messaggi ricevuti dopo l'ultimo evento,
+     * dopo aver letto il limite dei messaggi confermati.
+     */
+    @Test
+    void testSubscribe_ReplaysMissedMessages() {
+        when(messageCommitTracker.commitMark()).thenReturn(43L);
+        when(messageRepository.findReceivedAfter(1L, 42L, PageRequest.of(0, MessageStreamService.REPLAY_LIMIT)))
+                .thenReturn(List.of(new MessageEvent(43L, 7L, 2L, 1L, 5L, "Ciao", LocalDateTime.now())));
+
+        messageStreamService.subscribe(1L, 42L);
+
+        InOrder inOrder = inOrder(messageCommitTracker, messageRepository);
+        inOrder.verify(messageCommitTracker).commitMark(); // Verifica che il limite venga letto per primo
+        inOrder.verify(messageRepository).findReceivedAfter(1L, 42L, PageRequest.of(0, MessageStreamService.REPLAY_LIMIT)); // Verifica la lettura dei messaggi persi
+        assertEquals(1, messageStreamService.getSubscriberCount(1L)); // Verifica che la connessione resti registrata
+    }
+
+    /**
+     * Verifica che le connessioni di utenti diversi siano tenute separate.
+     */
+    @Test
+    void testSubscribe_MultipleUsers() {
+        messageStreamService.subscribe(1L, null);
+        messageStreamService.subscribe(1L, null);
+        messageStreamService.subscribe(2L, null);
+
+        assertEquals(2, messageStreamService.getSubscriberCount(1L)); // Due pagine aperte dal primo utente
+        assertEquals(1, messageStreamService.getSubscriberCount(2L)); // Una pagina aperta dal secondo utente
+        assertEquals(0, messageStreamService.getSubscriberCount(3L)); // Nessuna pagina aperta dal terzo utente
+    }
+
+    /**
+     * Verifica che l'invio a un utente senza connessioni SSE aperte raggiunga comunque la conversazione STOMP.
+     */
+    @Test
+    void testPublishAfterCommit_NoSubscribers() {
+        MessageEvent event = new MessageEvent(1L, 7L, 2L, 3L, 5L, "Ciao", LocalDateTime.now());
+
+        assertDoesNotThrow(() -> messageStreamService.publishAfterCommit(event)); // Verifica che l'invio SSE venga ignorato
+        assertEquals(0, messageStreamService.getSubscriberCount(3L)); // Verifica che non vengano create connessioni
+        verify(messagingTemplate).convertAndSend("/topic/conversations/7", event); // Verifica l'invio agli iscritti della conversazione
+    }
+
+    /**
+     * Verifica che l'invio alle connessioni aperte del destinatario legga il limite dei messaggi confermati.
+     */
+    @Test
+    void testPublishAfterCommit_ReadsCommitMark() {
+        when(messageCommitTracker.commitMark()).thenReturn(0L);
+        messageStreamService.subscribe(3L, null);
+        MessageEvent event = new MessageEvent(1L, 7L, 2L, 3L, 5L, "Ciao", LocalDateTime.now());
+
+        messageStreamService.publishAfterCommit(event);
+
+        verify(messageCommitTracker).commitMark(); // Verifica che l'ID dell'evento venga limitato
+        assertEquals(1, messageStreamService.getSubscriberCount(3L)); // Verifica che la connessione resti registrata
+    }
+}
@@ -0,0 +1,123 @@
+package progettofinale.Service;
+
+import progettofinale.ProgettofinaleApplication;
+import progettofinale.Model.ConversationSummary;
+import progettofinale.Model.User;
+import progettofinale.Model.Bikemodel.Bike;
+import progettofinale.Model.Bikemodel.MountainBike;
+import progettofinale.Repository.BikeRepository;
+import progettofinale.Repository.ConversationRepository;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di integrazione che confronta il numero di messaggi salvati al secondo con una transazione
+ * per messaggio e con il salvataggio in gruppo di MessageBatchWriter, con più mittenti concorrenti.
+ * Su H2 in memoria il commit costa poco e il confronto è solo indicativo: il guadagno del salvataggio
+ * in gruppo cresce con il costo del commit, come su PostgreSQL.
+ */
+@SpringBootTest(classes = ProgettofinaleApplication.class,
+                properties = {
+                    "spring.datasource.url=jdbc:h2:mem:throughputdb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                    "app.messages.batch.enabled=true"
+                })
+@ActiveProfiles("test")
+class MessageWriteThroughputIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteThroughputIntegrationTest.class);
+
+    private static final int SENDERS = 8; // Numero di mittenti concorrenti
+    private static final int MESSAGES_PER_SENDER = 250; // Messaggi inviati da ogni mittente per ciascun percorso
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    /**
+     * Verifica che entrambi i percorsi salvino tutti i messaggi e ne misura il numero al secondo.
+     */
+    @Test
+    void testWriteThroughput() throws Exception {
+        User seller = userService.addUser(new User("seller-throughput@example.com", "password", "Seller"));
+        User buyer = userService.addUser(new User("buyer-throughput@example.com", "password", "Buyer"));
+        Bike bike = bikeRepository.save(new MountainBike("BrandA", "M", "Test bike", 300.0, "CityA", seller));
+        Long buyerId = buyer.getId();
+        Long sellerId = seller.getId();
+        Long bikeId = bike.getId();
+        messageService.sendMessage(buyerId, sellerId, bikeId, "warm-up"); // Crea la conversazione
+
+        long singleStart = System.nanoTime();
+        runSenders(() -> messageService.sendMessage(buyerId, sellerId, bikeId, "Singolo"));
+        long singleNanos = System.nanoTime() - singleStart;
+
+        long batchStart = System.nanoTime();
+        runSenders(() -> messageBatchWriter.submit(buyerId, sellerId, bikeId, "Gruppo").join());
+        long batchNanos = System.nanoTime() - batchStart;
+
+        int total = SENDERS * MESSAGES_PER_SENDER;
+        logger.info("Messaggi al secondo: una transazione per messaggio {}, salvataggio in gruppo {}",
+                perSecond(total, singleNanos), perSecond(total, batchNanos));
+
+        List<ConversationSummary> summaries = conversationRepository.findSummariesByUserId(buyerId);
+        assertEquals(1, summaries.size()); // Tutti i messaggi nella stessa conversazione
+        assertEquals(2L * total + 1, summaries.get(0).getMessageCount()); // Verifica che nessun messaggio vada perso
+        assertEquals("Gruppo", summaries.get(0).getLastMessage()); // L'ultimo messaggio è del salvataggio in gruppo
+    }
+
+    // Esegue l'invio da più mittenti concorrenti e attende che tutti i messaggi siano salvati
+    private void runSenders(SendAction action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(SENDERS);
+        try {
+            List<Future<?>> senders = new ArrayList<>();
+            for (int i = 0; i < SENDERS; i++) {
+                senders.add(executor.submit(() -> {
+                    for (int j = 0; j < MESSAGES_PER_SENDER; j++) {
+                        action.send();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> sender : senders) {
+                sender.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Numero di messaggi salvati al secondo
+    private static long perSecond(int messages, long nanos) {
+        return messages * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+    }
+
+    // Invio di un singolo messaggio
+    @FunctionalInterface
+    private interface SendAction {
+        Object send();
+    }
+}
@@ -2,6 +2,7 @@ package progettofinale.Service.SortingStrategy;
 
 import progettofinale.Model.Bikemodel.*;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -74,4 +75,15 @@ class PriceAscendingStrategyTest {
         assertEquals(bike1, sortedBikes.get(0)); // Verifica che la prima bici rimanga la prima
         assertEquals(bike2, sortedBikes.get(1)); // Verifica che la seconda bici rimanga la seconda
     }
+
+    /**
+     * Verifica che l'ordinamento per il database sia per prezzo crescente con l'ID come criterio secondario.
+     */
+    @Test
+    void testGetSort() {
+        Sort sort = new PriceAscendingStrategy().getSort();
+
+        assertEquals(Sort.Direction.ASC, sort.getOrderFor("price").getDirection()); // Verifica la direzione sul prezzo
+        assertEquals(Sort.Direction.ASC, sort.getOrderFor("id").getDirection()); // Verifica il criterio secondario
+    }
 }
@@ -0,0 +1,118 @@
+package progettofinale.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import progettofinale.Repository.ConversationRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UnreadCounterServiceTest {
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @InjectMocks
+    private UnreadCounterService unreadCounterService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Verifica che il totale venga letto dal database solo alla prima richiesta.
+     */
+    @Test
+    void testGetUnreadCount_LoadsOnce() {
+        when(conversationRepository.sumUnreadByUserId(1L)).thenReturn(3L);
+
+        assertEquals(3L, unreadCounterService.getUnreadCount(1L)); // Prima richiesta: letto dal database
+        assertEquals(3L, unreadCounterService.getUnreadCount(1L)); // Seconda richiesta: letto dalla memoria
+        verify(conversationRepository, times(1)).sumUnreadByUserId(1L); // Verifica una sola query
+    }
+
+    /**
+     * Verifica che un nuovo messaggio incrementi il totale in memoria senza leggere il database.
+     */
+    @Test
+    void testIncrementAfterCommit() {
+        when(conversationRepository.sumUnreadByUserId(1L)).thenReturn(3L);
+        unreadCounterService.getUnreadCount(1L);
+
+        unreadCounterService.incrementAfterCommit(1L);
+
+        assertEquals(4L, unreadCounterService.getUnreadCount(1L)); // Controlla il totale incrementato
+        verify(conversationRepository, times(1)).sumUnreadByUserId(1L); // Verifica che il database non venga riletto
+    }
+
+    /**
+     * Verifica che l'incremento per un utente senza totale in memoria non crei il contatore.
+     */
+    @Test
+    void testIncrementAfterCommit_NotLoaded() {
+        unreadCounterService.incrementAfterCommit(1L);
+
+        when(conversationRepository.sumUnreadByUserId(1L)).thenReturn(1L);
+        assertEquals(1L, unreadCounterService.getUnreadCount(1L)); // Il totale viene letto dal database, già aggiornato
+    }
+
+    /**
+     * Verifica che dopo la lettura di una conversazione il totale venga riletto dal database.
+     */
+    @Test
+    void testEvictAfterCommit() {
+        when(conversationRepository.sumUnreadByUserId(1L)).thenReturn(3L, 0L);
+        unreadCounterService.getUnreadCount(1L);
+
+        unreadCounterService.evictAfterCommit(1L);
+
+        assertEquals(0L, unreadCounterService.getUnreadCount(1L)); // Controlla il totale riletto
+        verify(conversationRepository, times(2)).sumUnreadByUserId(1L); // Verifica la seconda lettura
+    }
+
+    /**
+     * Verifica che vengano riletti solo i totali degli utenti indicati.
+     */
+    @Test
+    void testEvictAfterCommit_Users() {
+        when(conversationRepository.sumUnreadByUserId(anyLong())).thenReturn(1L);
+        unreadCounterService.getUnreadCount(1L);
+        unreadCounterService.getUnreadCount(2L);
+        unreadCounterService.getUnreadCount(3L);
+
+        unreadCounterService.evictAfterCommit(List.of(1L, 2L));
+        unreadCounterService.getUnreadCount(1L);
+        unreadCounterService.getUnreadCount(2L);
+        unreadCounterService.getUnreadCount(3L);
+
+        verify(conversationRepository, times(2)).sumUnreadByUserId(1L); // Primo utente riletto
+        verify(conversationRepository, times(2)).sumUnreadByUserId(2L); // Secondo utente riletto
+        verify(conversationRepository, times(1)).sumUnreadByUserId(3L); // Terzo utente ancora in memoria
+    }
+
+    /**
+     * Verifica che oltre il limite venga rimosso il totale letto meno di recente.
+     */
+    @Test
+    void testGetUnreadCount_EvictsLeastRecentlyUsed() {
+        when(conversationRepository.sumUnreadByUserId(anyLong())).thenReturn(1L);
+        for (long userId = 1; userId <= UnreadCounterService.MAX_CACHED_USERS; userId++) {
+            unreadCounterService.getUnreadCount(userId);
+        }
+        unreadCounterService.getUnreadCount(1L); // Il primo utente diventa il più recente
+
+        unreadCounterService.getUnreadCount(0L);
+
+        assertEquals(UnreadCounterService.MAX_CACHED_USERS, unreadCounterService.cachedCount()); // Verifica il limite
+        unreadCounterService.getUnreadCount(1L);
+        unreadCounterService.getUnreadCount(2L);
+        verify(conversationRepository, times(1)).sumUnreadByUserId(1L); // Ancora in memoria
+        verify(conversationRepository, times(2)).sumUnreadByUserId(2L); // Rimosso e riletto
+    }
+}
@@ -6,17 +6,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import progettofinale.Model.*;
-import progettofinale.Model.Bikemodel.Bike;
-import progettofinale.Model.Bikemodel.MountainBike;
+import progettofinale.Repository.BikeRepository;
 import progettofinale.Repository.UserRepository;
+import progettofinale.Repository.WishlistRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.server.ResponseStatusException;
-import progettofinale.Util.ImageUtil;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,6 +27,12 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BikeRepository bikeRepository;
+
+    @Mock
+    private WishlistRepository wishlistRepository;
+
     @Mock
     private PasswordEncoder passwordEncoder;
 
@@ -35,19 +41,12 @@ class UserServiceTest {
 
     private User user;
 
-    private Bike bike;
-
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
         // Configura un utente reale
         user = new User("test@example.com", "password", "Test User");
-
-        // Configura una bici come spy per simulare il comportamento del database
-        bike = spy(new MountainBike());
-        doReturn(1L).when(bike).getId(); // Mocka l'ID
-        bike.setImage(null); // Nessuna immagine inizialmente
     }
 
      /**
@@ -98,122 +97,109 @@ class UserServiceTest {
      */
     @Test
     void testAddToWishlist() {
-        user.setWishlist(new ArrayList<>()); // Configura una wishlist vuota
+        when(bikeRepository.existsById(1L)).thenReturn(true);
 
-        when(userRepository.save(user)).thenReturn(user); // Mock del salvataggio
+        userService.addToWishlist(2L, 1L);
 
-        userService.addToWishlist(user, bike);
-
-        assertEquals(1, user.getWishlist().size()); // Verifica la dimensione della wishlist
-        assertTrue(user.getWishlist().contains(bike)); // Verifica che la bici sia stata aggiunta
-        verify(userRepository, times(1)).save(user); // Verifica il salvataggio dell'utente aggiornato
+        verify(wishlistRepository, times(1)).add(2L, 1L); // Verifica l'inserimento nella tabella di join
+        verify(userRepository, never()).findById(anyLong()); // Verifica che l'utente non venga caricato
+        verify(userRepository, never()).save(any(User.class)); // Verifica che l'utente non venga salvato
     }
 
     /**
-     * Verifica comportamento quando si tenta di aggiungere una bici già presente
-     * nella wishlist.
+     * Verifica che l'aggiunta di una bici inesistente alla wishlist generi un errore 404.
      */
     @Test
-    void testAddToWishlist_BikeAlreadyExists() {
-        user.setWishlist(new ArrayList<>(List.of(bike))); // Configura una wishlist con la bici già presente
-
-        userService.addToWishlist(user, bike);
+    void testAddToWishlist_BikeNotFound() {
+        when(bikeRepository.existsById(1L)).thenReturn(false);
 
-        assertEquals(1, user.getWishlist().size()); // Verifica che non ci siano duplicati
-        verify(userRepository, never()).save(user); // Verifica che il salvataggio non sia avvenuto
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.addToWishlist(2L, 1L)); // Verifica l'eccezione
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode()); // Verifica lo stato
+        verify(wishlistRepository, never()).add(anyLong(), anyLong()); // Verifica che non venga inserito nulla
     }
 
     /**
-     * Verifica comportamento quando si tenta di rimuovere una bici da un utente
-     * inesistente.
+     * Verifica che una bici venga rimossa dalla wishlist con un'unica DELETE, senza caricare l'utente.
      */
     @Test
-    void testRemoveBikeFromWishlist_UserNotFound() {
-        when(userRepository.findById(1L)).thenReturn(Optional.empty()); // Mock per utente inesistente
+    void testRemoveBikeFromWishlist() {
+        when(wishlistRepository.remove(2L, 1L)).thenReturn(1);
+
+        userService.removeBikeFromWishlist(2L, 1L);
 
-        assertThrows(IllegalArgumentException.class, () -> userService.removeBikeFromWishlist(1L, 1L)); // Verifica
-                                                                                                        // l'eccezione
-        verify(userRepository, times(1)).findById(1L); // Verifica la chiamata al repository
-        verify(userRepository, never()).save(any(User.class)); // Verifica che il salvataggio non sia avvenuto
+        verify(wishlistRepository, times(1)).remove(2L, 1L); // Verifica l'eliminazione dalla tabella di join
+        verify(userRepository, never()).findById(anyLong()); // Verifica che l'utente non venga caricato
+        verify(userRepository, never()).save(any(User.class)); // Verifica che l'utente non venga salvato
     }
 
     /**
-     * Verifica comportamento quando si tenta di rimuovere una bici non presente
-     * nella wishlist.
+     * Verifica che la rimozione di una bici non presente nella wishlist non generi errori.
      */
     @Test
     void testRemoveBikeFromWishlist_BikeNotInWishlist() {
-        user.setWishlist(new ArrayList<>());
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(wishlistRepository.remove(2L, 1L)).thenReturn(0);
 
-        userService.removeBikeFromWishlist(1L, 1L);
-
-        assertTrue(user.getWishlist().isEmpty()); // Verifica che la wishlist sia vuota
-        verify(userRepository, times(1)).findById(1L); // Verifica che il metodo `findById` sia stato chiamato una sola volta
-        verify(userRepository, never()).save(user); // Verifica che il metodo `save` non sia stato chiamato
+        assertDoesNotThrow(() -> userService.removeBikeFromWishlist(2L, 1L)); // Verifica che non venga sollevata eccezione
+        verify(wishlistRepository, times(1)).remove(2L, 1L); // Verifica il tentativo di eliminazione
     }
 
     /**
-     * Verifica che una bici venga rimossa correttamente dalla wishlist.
+     * Verifica il recupero dell'ID di un utente esistente tramite email.
      */
     @Test
-    void testRemoveBikeFromWishlist_BikeExists() {
-        user.setWishlist(new ArrayList<>(List.of(bike)));
-
-        // Simula il comportamento del repository
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-
-        // Rimuove la bici dalla wishlist
-        userService.removeBikeFromWishlist(1L, 1L);
+    void testRetrieveUserIdByEmail_UserExists() {
+        when(userRepository.findIdByEmail("test@example.com")).thenReturn(1L); // Mock per utente esistente
 
-        assertTrue(user.getWishlist().isEmpty()); // Verifica che la wishlist sia vuota
-        verify(userRepository, times(1)).findById(1L); // Verifica il recupero dell'utente
-        verify(userRepository, times(1)).save(user); // Verifica il salvataggio dell'utente aggiornato
+        assertEquals(1L, userService.retrieveUserIdByEmail("test@example.com")); // Verifica l'ID restituito
+        verify(userRepository, never()).findByEmail(anyString()); // Verifica che l'entità non venga caricata
     }
 
     /**
-     * Verifica il recupero di un utente con una wishlist contenente una bici con
-     * immagine.
+     * Verifica comportamento quando si tenta di recuperare un utente inesistente.
      */
     @Test
-    void testRetrieveUserWithWishlistByEmail_UserExists() {
-        bike.setImage(new byte[] { 1, 2, 3 }); // Configura un'immagine per la bici
-        user.setWishlist(new ArrayList<>(List.of(bike))); // Configura la wishlist
-        when(userRepository.findByEmail("test@example.com")).thenReturn(user); // Mock per utente esistente
-
-        User result = userService.retrieveUserWithWishlistByEmail("test@example.com");
+    void testRetrieveUserIdByEmail_UserNotFound() {
+        when(userRepository.findIdByEmail("unknown@example.com")).thenReturn(null); // Mock per utente inesistente
 
-        String expectedBase64 = "data:image/jpeg;base64," + ImageUtil.encodeToBase64(bike.getImage()); // Immagine
-                                                                                                       // codificata in
-                                                                                                       // Base64
-        assertEquals(expectedBase64, result.getWishlist().get(0).getImagePath()); // Verifica la codifica dell'immagine
-        verify(userRepository, times(1)).findByEmail("test@example.com"); // Verifica la chiamata al repository
+        assertThrows(ResponseStatusException.class,
+                () -> userService.retrieveUserIdByEmail("unknown@example.com")); // Verifica l'eccezione
+        verify(userRepository, times(1)).findIdByEmail("unknown@example.com"); // Verifica la chiamata al repository
     }
 
     /**
-     * Verifica comportamento quando la bici non ha un'immagine.
+     * Verifica che la wishlist venga letta come schede, con l'URL dell'immagine o quella predefinita.
      */
     @Test
-    void testRetrieveUserWithWishlistByEmail_BikeWithoutImage() {
-        user.setWishlist(new ArrayList<>(List.of(bike))); // Configura la wishlist
-        when(userRepository.findByEmail("test@example.com")).thenReturn(user); // Mock per utente esistente
-
-        User result = userService.retrieveUserWithWishlistByEmail("test@example.com");
-
-        assertEquals("/images/default-bike.jpg", result.getWishlist().get(0).getImagePath()); // Verifica l'immagine
-                                                                                              // predefinita
-        verify(userRepository, times(1)).findByEmail("test@example.com"); // Verifica la chiamata al repository
+    void testRetrieveWishlistPage() {
+        BikeCard withImage = new BikeCard(1L, "BrandA", "M", "Mountain bike", 500.0, "City1", "Mountain", 2L, true);
+        BikeCard withoutImage = new BikeCard(3L, "BrandB", "L", "Road bike", 600.0, "City2", "Road", 2L, false);
+        when(wishlistRepository.findCardsByUserId(1L, 0L, PageRequest.of(0, UserService.WISHLIST_PAGE_SIZE + 1)))
+                .thenReturn(List.of(withImage, withoutImage));
+
+        WishlistPage result = userService.retrieveWishlistPage(1L, null);
+
+        assertEquals(2, result.getBikes().size()); // Verifica la dimensione della wishlist
+        assertEquals("/images/bike/1/card", result.getBikes().get(0).getImagePath()); // Verifica l'URL della miniatura
+        assertEquals("/images/default-bike.jpg", result.getBikes().get(1).getImagePath()); // Verifica l'immagine predefinita
+        assertNull(result.getNextCursor()); // Verifica che non ci siano altre pagine
     }
 
     /**
-     * Verifica comportamento quando si tenta di recuperare un utente inesistente.
+     * Verifica che, se la wishlist contiene altre biciclette, la pagina sia completa e il cursore sia l'ultimo ID.
      */
     @Test
-    void testRetrieveUserWithWishlistByEmail_UserNotFound() {
-        when(userRepository.findByEmail("unknown@example.com")).thenReturn(null); // Mock per utente inesistente
-
-        assertThrows(ResponseStatusException.class,
-                () -> userService.retrieveUserWithWishlistByEmail("unknown@example.com")); // Verifica l'eccezione
-        verify(userRepository, times(1)).findByEmail("unknown@example.com"); // Verifica la chiamata al repository
+    void testRetrieveWishlistPage_HasNextPage() {
+        List<BikeCard> cards = new ArrayList<>();
+        for (long id = 11; id <= 11 + UserService.WISHLIST_PAGE_SIZE; id++) {
+            cards.add(new BikeCard(id, "BrandA", "M", "Mountain bike", 500.0, "City1", "Mountain", 2L, false));
+        }
+        when(wishlistRepository.findCardsByUserId(1L, 10L, PageRequest.of(0, UserService.WISHLIST_PAGE_SIZE + 1)))
+                .thenReturn(cards);
+
+        WishlistPage result = userService.retrieveWishlistPage(1L, 10L);
+
+        assertEquals(UserService.WISHLIST_PAGE_SIZE, result.getBikes().size()); // Verifica che la scheda in più venga scartata
+        assertEquals(10L + UserService.WISHLIST_PAGE_SIZE, result.getNextCursor()); // Verifica il cursore della pagina successiva
     }
 }
@@ -1,54 +1,40 @@
 package progettofinale.Util;
 
 import org.junit.jupiter.api.Test;
-
-import java.util.Base64;
+import org.springframework.http.MediaType;
+import progettofinale.Model.ImageRendition;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class ImageUtilTest {
 
     /**
-     * Testa la codifica di un'immagine valida in Base64.
+     * Testa il riconoscimento dei formati di immagine supportati dai primi byte.
      */
     @Test
-    void testEncodeToBase64_ValidImage() {
-        // Arrange
-        byte[] image = "Test Image Content".getBytes();
-
-        // Act
-        String encoded = ImageUtil.encodeToBase64(image);
-
-        // Assert
-        assertNotNull(encoded); // Verifica che il risultato non sia null
-        assertEquals(Base64.getEncoder().encodeToString(image), encoded); // Verifica che la stringa codificata sia corretta
+    void testDetectContentType_KnownFormats() {
+        assertEquals(MediaType.IMAGE_JPEG, ImageUtil.detectContentType(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00 })); // JPEG
+        assertEquals(MediaType.IMAGE_PNG, ImageUtil.detectContentType(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A })); // PNG
+        assertEquals(MediaType.IMAGE_GIF, ImageUtil.detectContentType("GIF89a".getBytes())); // GIF
+        assertEquals(MediaType.parseMediaType("image/webp"), ImageUtil.detectContentType("RIFF0000WEBPVP8 ".getBytes())); // WebP
     }
 
     /**
-     * Testa il comportamento con un'immagine null.
+     * Testa il comportamento con un formato sconosciuto o un array troppo corto.
      */
     @Test
-    void testEncodeToBase64_NullImage() {
-        // Act
-        String encoded = ImageUtil.encodeToBase64(null);
-
-        // Assert
-        assertNull(encoded); // Verifica che il risultato sia null
+    void testDetectContentType_UnknownFormat() {
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, ImageUtil.detectContentType("Test Image Content".getBytes())); // Formato sconosciuto
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, ImageUtil.detectContentType(new byte[] { (byte) 0xFF })); // Array troppo corto
     }
 
     /**
-     * Testa la codifica di un'immagine vuota in Base64.
+     * Testa la costruzione dell'URL dell'immagine di una bici.
      */
     @Test
-    void testEncodeToBase64_EmptyImage() {
-        // Arrange
-        byte[] image = new byte[0];
-
-        // Act
-        String encoded = ImageUtil.encodeToBase64(image);
-
-        // Assert
-        assertNotNull(encoded); // Verifica che il risultato non sia null
-        assertEquals("", encoded); // Verifica che una stringa vuota venga restituita per un array vuoto
+    void testBikeImagePath() {
+        assertEquals("/images/bike/5", ImageUtil.bikeImagePath(5L, true, ImageRendition.ORIGINAL)); // Verifica l'URL dell'originale
+        assertEquals("/images/bike/5/card", ImageUtil.bikeImagePath(5L, true, ImageRendition.CARD)); // Verifica l'URL della miniatura
+        assertEquals(ImageUtil.DEFAULT_IMAGE_PATH, ImageUtil.bikeImagePath(5L, false, ImageRendition.CARD)); // Verifica l'immagine predefinita
     }
 }
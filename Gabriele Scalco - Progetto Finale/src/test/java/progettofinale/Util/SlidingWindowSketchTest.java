@@ -0,0 +1,130 @@
+package progettofinale.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowSketchTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L); // Orologio controllato dal test
+
+    /**
+     * Verifica che gli eventi di una chiave vengano contati e che le altre chiavi restino a zero.
+     */
+    @Test
+    void testEstimate_CountsPerKey() {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 5, 1000, now::get);
+
+        sketch.add("a");
+        sketch.add("a");
+        sketch.add("b");
+
+        assertEquals(2, sketch.estimate("a")); // Verifica il conteggio della prima chiave
+        assertEquals(1, sketch.estimate("b")); // Verifica il conteggio della seconda chiave
+        assertEquals(0, sketch.estimate("c")); // Verifica una chiave mai vista
+    }
+
+    /**
+     * Verifica che gli eventi escano dalla finestra quando scade il loro intervallo.
+     */
+    @Test
+    void testEstimate_SlidingWindow() {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 3, 1000, now::get);
+
+        sketch.add("a");
+        now.addAndGet(1000);
+        sketch.add("a");
+        now.addAndGet(1000);
+        assertEquals(2, sketch.estimate("a")); // Entrambi gli eventi sono nella finestra
+
+        now.addAndGet(1000);
+        assertEquals(1, sketch.estimate("a")); // Il primo intervallo è scaduto
+
+        sketch.add("a"); // Riusa la posizione del primo intervallo
+        assertEquals(2, sketch.estimate("a")); // Verifica che l'intervallo riusato riparta da zero
+    }
+
+    /**
+     * Verifica che con molte più chiavi delle colonne la stima non sia mai inferiore al conteggio reale.
+     */
+    @Test
+    void testEstimate_NeverUnderestimates() {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 64, 2, 1000, now::get);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("key-" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            sketch.add("frequent");
+        }
+
+        assertTrue(sketch.estimate("frequent") >= 5); // Verifica la stima per eccesso
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(sketch.estimate("key-" + i) >= 1); // Nessuna chiave viene sottostimata
+        }
+    }
+
+    /**
+     * Verifica che gli incrementi concorrenti non vadano persi.
+     */
+    @Test
+    void testAdd_Concurrent() throws Exception {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 5, 1000, now::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        sketch.add("a");
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(8000, sketch.estimate("a")); // Verifica il conteggio totale
+    }
+
+    /**
+     * Verifica che chiavi con lo stesso String.hashCode() non collidano in tutte le righe.
+     */
+    @Test
+    void testEstimate_HashCodeCollisions() {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 5, 1000, now::get,
+                0x0706050403020100L, 0x0F0E0D0C0B0A0908L);
+        assertEquals("Aa".hashCode(), "BB".hashCode()); // Le due chiavi hanno lo stesso hashCode
+
+        for (int i = 0; i < 10; i++) {
+            sketch.add("Aa");
+        }
+
+        assertEquals(10, sketch.estimate("Aa")); // Verifica il conteggio della chiave vista
+        assertEquals(0, sketch.estimate("BB")); // Verifica che l'altra chiave non erediti il conteggio
+    }
+
+    /**
+     * Verifica SipHash-2-4 con il vettore di test della specifica (chiave 00..0f, messaggio 00..0e).
+     */
+    @Test
+    void testSipHash24_ReferenceVector() {
+        byte[] message = new byte[15];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) i;
+        }
+
+        assertEquals(0xa129ca6149be45e5L,
+                SlidingWindowSketch.sipHash24(0x0706050403020100L, 0x0F0E0D0C0B0A0908L, message)); // Verifica l'hash atteso
+    }
+}